@@ -175,6 +175,14 @@ public class EventLogger implements DemoPlayer.Listener, DemoPlayer.InfoListener
         + seekRangeValuesUs[1] + "]");
   }
 
+  @Override
+  public void onStartupTimings(long manifestLoadedMs, long enabledMs, long initializationLoadedMs,
+      long firstSegmentLoadedMs, boolean firstSegmentPrefetched) {
+    Log.d(TAG, "startupTimings [" + getSessionTimeString() + ", " + manifestLoadedMs + ", "
+        + enabledMs + ", " + initializationLoadedMs + ", " + firstSegmentLoadedMs + ", "
+        + firstSegmentPrefetched + "]");
+  }
+
   private void printInternalError(String type, Exception e) {
     Log.e(TAG, "internalError [" + getSessionTimeString() + ", " + type + "]", e);
   }
@@ -269,7 +269,7 @@ public class PlayerActivity extends Activity implements SurfaceHolder.Callback,
         return new ExtractorRendererBuilder(this, userAgent, contentUri, new AdtsExtractor());
       case TYPE_FMP4:
         return new ExtractorRendererBuilder(this, userAgent, contentUri,
-            new FragmentedMp4Extractor());
+            new FragmentedMp4Extractor(FragmentedMp4Extractor.FLAG_SEEK_USING_MFRA));
       case TYPE_WEBM:
       case TYPE_MKV:
         return new ExtractorRendererBuilder(this, userAgent, contentUri, new WebmExtractor());
@@ -302,6 +302,7 @@ public class PlayerActivity extends Activity implements SurfaceHolder.Callback,
       updateButtonVisibilities();
     }
     player.setSurface(surfaceView.getHolder().getSurface());
+    player.setCueLayoutCache(subtitleLayout.getLayoutCache());
     player.setPlayWhenReady(true);
   }
 
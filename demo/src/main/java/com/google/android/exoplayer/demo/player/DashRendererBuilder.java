@@ -222,10 +222,12 @@ public class DashRendererBuilder implements RendererBuilder,
       videoRenderer = null;
     } else {
       DataSource videoDataSource = new DefaultUriDataSource(context, bandwidthMeter, userAgent);
+      DataSource videoPrefetchDataSource = new DefaultUriDataSource(context, bandwidthMeter,
+          userAgent);
       ChunkSource videoChunkSource = new DashChunkSource(manifestFetcher,
           videoAdaptationSetIndex, videoRepresentationIndices, videoDataSource,
-          new AdaptiveEvaluator(bandwidthMeter), LIVE_EDGE_LATENCY_MS, elapsedRealtimeOffset,
-          mainHandler, player);
+          videoPrefetchDataSource, new AdaptiveEvaluator(bandwidthMeter), LIVE_EDGE_LATENCY_MS,
+          elapsedRealtimeOffset, true, mainHandler, player);
       ChunkSampleSource videoSampleSource = new ChunkSampleSource(videoChunkSource, loadControl,
           VIDEO_BUFFER_SEGMENTS * BUFFER_SEGMENT_SIZE, true, mainHandler, player,
           DemoPlayer.TYPE_VIDEO);
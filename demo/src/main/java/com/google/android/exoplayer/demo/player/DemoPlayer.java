@@ -34,7 +34,9 @@ import com.google.android.exoplayer.drm.StreamingDrmSessionManager;
 import com.google.android.exoplayer.hls.HlsSampleSource;
 import com.google.android.exoplayer.metadata.MetadataTrackRenderer.MetadataRenderer;
 import com.google.android.exoplayer.text.Cue;
+import com.google.android.exoplayer.text.CueLayoutCache;
 import com.google.android.exoplayer.text.TextRenderer;
+import com.google.android.exoplayer.text.TextTrackRenderer;
 import com.google.android.exoplayer.upstream.BandwidthMeter;
 import com.google.android.exoplayer.upstream.DefaultBandwidthMeter;
 import com.google.android.exoplayer.util.DebugTextViewHelper;
@@ -59,8 +61,9 @@ import java.util.concurrent.CopyOnWriteArrayList;
 public class DemoPlayer implements ExoPlayer.Listener, ChunkSampleSource.EventListener,
     HlsSampleSource.EventListener, DefaultBandwidthMeter.EventListener,
     MediaCodecVideoTrackRenderer.EventListener, MediaCodecAudioTrackRenderer.EventListener,
-    StreamingDrmSessionManager.EventListener, DashChunkSource.EventListener, TextRenderer,
-    MetadataRenderer<Map<String, Object>>, DebugTextViewHelper.Provider {
+    StreamingDrmSessionManager.EventListener, DashChunkSource.EventListener,
+    DashChunkSource.StartupTimingsListener, TextRenderer, MetadataRenderer<Map<String, Object>>,
+    DebugTextViewHelper.Provider, ExoPlayer.RenderingWakeupCounter {
 
   /**
    * Builds renderers for the player.
@@ -144,6 +147,8 @@ public class DemoPlayer implements ExoPlayer.Listener, ChunkSampleSource.EventLi
     void onDecoderInitialized(String decoderName, long elapsedRealtimeMs,
         long initializationDurationMs);
     void onSeekRangeChanged(TimeRange seekRange);
+    void onStartupTimings(long manifestLoadedMs, long enabledMs, long initializationLoadedMs,
+        long firstSegmentLoadedMs, boolean firstSegmentPrefetched);
   }
 
   /**
@@ -193,6 +198,8 @@ public class DemoPlayer implements ExoPlayer.Listener, ChunkSampleSource.EventLi
   private Surface surface;
   private InternalRendererBuilderCallback builderCallback;
   private TrackRenderer videoRenderer;
+  private TrackRenderer textRenderer;
+  private CueLayoutCache cueLayoutCache;
   private CodecCounters codecCounters;
   private Format videoFormat;
   private int videoTrackToRestore;
@@ -264,6 +271,11 @@ public class DemoPlayer implements ExoPlayer.Listener, ChunkSampleSource.EventLi
     pushSurface(true);
   }
 
+  public void setCueLayoutCache(CueLayoutCache cueLayoutCache) {
+    this.cueLayoutCache = cueLayoutCache;
+    pushCueLayoutCache();
+  }
+
   public int getTrackCount(int type) {
     return !player.getRendererHasMedia(type) ? 0 : trackNames[type].length;
   }
@@ -310,6 +322,7 @@ public class DemoPlayer implements ExoPlayer.Listener, ChunkSampleSource.EventLi
     }
     videoFormat = null;
     videoRenderer = null;
+    textRenderer = null;
     multiTrackSources = null;
     rendererBuildingState = RENDERER_BUILDING_STATE_BUILDING;
     maybeReportPlayerState();
@@ -343,6 +356,7 @@ public class DemoPlayer implements ExoPlayer.Listener, ChunkSampleSource.EventLi
     // Complete preparation.
     this.trackNames = trackNames;
     this.videoRenderer = renderers[TYPE_VIDEO];
+    this.textRenderer = renderers[TYPE_TEXT];
     this.codecCounters = videoRenderer instanceof MediaCodecTrackRenderer
         ? ((MediaCodecTrackRenderer) videoRenderer).codecCounters
         : renderers[TYPE_AUDIO] instanceof MediaCodecTrackRenderer
@@ -350,6 +364,7 @@ public class DemoPlayer implements ExoPlayer.Listener, ChunkSampleSource.EventLi
     this.multiTrackSources = multiTrackSources;
     this.bandwidthMeter = bandwidthMeter;
     pushSurface(false);
+    pushCueLayoutCache();
     pushTrackSelection(TYPE_VIDEO, true);
     pushTrackSelection(TYPE_AUDIO, true);
     pushTrackSelection(TYPE_TEXT, true);
@@ -422,6 +437,12 @@ public class DemoPlayer implements ExoPlayer.Listener, ChunkSampleSource.EventLi
     return player.getCurrentPosition();
   }
 
+  @Override
+  public int getRenderingWakeupCount() {
+    return player instanceof ExoPlayer.RenderingWakeupCounter
+        ? ((ExoPlayer.RenderingWakeupCounter) player).getRenderingWakeupCount() : 0;
+  }
+
   public long getDuration() {
     return player.getDuration();
   }
@@ -560,6 +581,15 @@ public class DemoPlayer implements ExoPlayer.Listener, ChunkSampleSource.EventLi
     }
   }
 
+  @Override
+  public void onStartupTimings(long manifestLoadedMs, long enabledMs, long initializationLoadedMs,
+      long firstSegmentLoadedMs, boolean firstSegmentPrefetched) {
+    if (infoListener != null) {
+      infoListener.onStartupTimings(manifestLoadedMs, enabledMs, initializationLoadedMs,
+          firstSegmentLoadedMs, firstSegmentPrefetched);
+    }
+  }
+
   @Override
   public void onPlayWhenReadyCommitted() {
     // Do nothing.
@@ -624,6 +654,13 @@ public class DemoPlayer implements ExoPlayer.Listener, ChunkSampleSource.EventLi
     }
   }
 
+  private void pushCueLayoutCache() {
+    if (textRenderer == null) {
+      return;
+    }
+    player.sendMessage(textRenderer, TextTrackRenderer.MSG_SET_LAYOUT_CACHE, cueLayoutCache);
+  }
+
   private void pushTrackSelection(int type, boolean allowRendererEnable) {
     if (multiTrackSources == null) {
       return;
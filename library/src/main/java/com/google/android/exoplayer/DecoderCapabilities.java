@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer;
+
+/**
+ * The capabilities of a media decoder that are needed to select and configure it.
+ * <p>
+ * Unlike {@link android.media.MediaCodecInfo.CodecCapabilities}, instances contain only plain data,
+ * so they can be persisted by {@link DecoderCapabilitiesCache}.
+ */
+public final class DecoderCapabilities {
+
+  /**
+   * The name of the decoder.
+   */
+  public final String name;
+
+  /**
+   * Whether the decoder supports seamless resolution switches.
+   */
+  public final boolean adaptive;
+
+  /**
+   * The profiles supported by the decoder, as {@link
+   * android.media.MediaCodecInfo.CodecProfileLevel} profile constants. The maximum level supported
+   * for the profile at each index is at the same index in {@link #levels}.
+   */
+  public final int[] profiles;
+
+  /**
+   * The maximum levels supported for each of {@link #profiles}, as {@link
+   * android.media.MediaCodecInfo.CodecProfileLevel} level constants.
+   */
+  public final int[] levels;
+
+  /**
+   * @param name The name of the decoder.
+   * @param adaptive Whether the decoder is adaptive.
+   * @param profiles The profiles supported by the decoder.
+   * @param levels The maximum levels supported for each of {@code profiles}.
+   */
+  /* package */ DecoderCapabilities(String name, boolean adaptive, int[] profiles, int[] levels) {
+    this.name = name;
+    this.adaptive = adaptive;
+    this.profiles = profiles;
+    this.levels = levels;
+  }
+
+}
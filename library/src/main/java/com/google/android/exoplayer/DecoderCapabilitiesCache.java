@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer;
+
+import com.google.android.exoplayer.MediaCodecUtil.DecoderQueryException;
+import com.google.android.exoplayer.util.Util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A {@link DecoderCapabilitiesLookup} that caches the results of another lookup in a file, so that
+ * they're available without querying the device's decoders when the application next starts.
+ * <p>
+ * The file is tagged with a fingerprint, which should identify everything that the results depend
+ * on (e.g. the build of the device and the version of the library). A file with a different
+ * fingerprint or format version is ignored, and overwritten the next time a result is cached.
+ * <p>
+ * New results are written to the file on a background thread, so that callers aren't blocked by
+ * the write. Results obtained while a write is in progress are batched into the next write.
+ */
+public final class DecoderCapabilitiesCache implements DecoderCapabilitiesLookup {
+
+  private static final String TAG = "DecoderCapabilitiesCache";
+
+  /**
+   * The version of the file format. Must be incremented whenever the format changes.
+   */
+  private static final int VERSION = 1;
+
+  private final DecoderCapabilitiesLookup upstream;
+  private final File file;
+  private final String fingerprint;
+  private final HashMap<CacheKey, DecoderCapabilities> entries;
+
+  private boolean storePending;
+  private boolean storing;
+
+  /**
+   * Constructs an instance, loading any results previously cached in {@code file}.
+   * <p>
+   * The file is read synchronously, so the constructor should not be called on the application's
+   * main thread.
+   *
+   * @param upstream The lookup whose results should be cached.
+   * @param file The file in which to cache the results.
+   * @param fingerprint The fingerprint with which to tag the file.
+   */
+  public DecoderCapabilitiesCache(DecoderCapabilitiesLookup upstream, File file,
+      String fingerprint) {
+    this.upstream = upstream;
+    this.file = file;
+    this.fingerprint = fingerprint;
+    entries = new HashMap<>();
+    load();
+  }
+
+  @Override
+  public synchronized DecoderCapabilities getDecoderCapabilities(String mimeType, boolean secure)
+      throws DecoderQueryException {
+    CacheKey key = new CacheKey(mimeType, secure);
+    if (entries.containsKey(key)) {
+      return entries.get(key);
+    }
+    DecoderCapabilities capabilities = upstream.getDecoderCapabilities(mimeType, secure);
+    entries.put(key, capabilities);
+    storePending = true;
+    if (!storing) {
+      storing = true;
+      new Thread(TAG) {
+        @Override
+        public void run() {
+          storePendingEntries();
+        }
+      }.start();
+    }
+    return capabilities;
+  }
+
+  /**
+   * Blocks until the results obtained so far have been written to the file.
+   *
+   * @throws InterruptedException If the thread is interrupted.
+   */
+  // Visible for testing.
+  /* package */ synchronized void blockUntilStored() throws InterruptedException {
+    while (storing) {
+      wait();
+    }
+  }
+
+  private void load() {
+    DataInputStream input = null;
+    try {
+      input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+      if (input.readInt() != VERSION || !fingerprint.equals(input.readUTF())) {
+        // The file was written by a different version of the library or on a different build.
+        return;
+      }
+      int entryCount = input.readInt();
+      HashMap<CacheKey, DecoderCapabilities> loadedEntries = new HashMap<>();
+      for (int i = 0; i < entryCount; i++) {
+        CacheKey key = new CacheKey(input.readUTF(), input.readBoolean());
+        DecoderCapabilities capabilities = null;
+        if (input.readBoolean()) {
+          String name = input.readUTF();
+          boolean adaptive = input.readBoolean();
+          int profileLevelCount = input.readInt();
+          int[] profiles = new int[profileLevelCount];
+          int[] levels = new int[profileLevelCount];
+          for (int j = 0; j < profileLevelCount; j++) {
+            profiles[j] = input.readInt();
+            levels[j] = input.readInt();
+          }
+          capabilities = new DecoderCapabilities(name, adaptive, profiles, levels);
+        }
+        loadedEntries.put(key, capabilities);
+      }
+      entries.putAll(loadedEntries);
+    } catch (FileNotFoundException e) {
+      // Nothing has been cached yet.
+    } catch (IOException | RuntimeException e) {
+      // The file is truncated or corrupt. It will be overwritten when a result is next cached.
+    } finally {
+      if (input != null) {
+        Util.closeQuietly(input);
+      }
+    }
+  }
+
+  /**
+   * Writes the file until it holds every result obtained so far. Must only be called on the thread
+   * started when {@link #storing} was set.
+   */
+  private void storePendingEntries() {
+    while (true) {
+      HashMap<CacheKey, DecoderCapabilities> entriesToStore;
+      synchronized (this) {
+        if (!storePending) {
+          storing = false;
+          notifyAll();
+          return;
+        }
+        storePending = false;
+        entriesToStore = new HashMap<>(entries);
+      }
+      store(entriesToStore);
+    }
+  }
+
+  private void store(HashMap<CacheKey, DecoderCapabilities> entriesToStore) {
+    // Write to a temporary file and rename it, so that a partially written file is never read.
+    File tempFile = new File(file.getPath() + ".tmp");
+    DataOutputStream output = null;
+    try {
+      output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+      output.writeInt(VERSION);
+      output.writeUTF(fingerprint);
+      output.writeInt(entriesToStore.size());
+      for (Map.Entry<CacheKey, DecoderCapabilities> entry : entriesToStore.entrySet()) {
+        CacheKey key = entry.getKey();
+        DecoderCapabilities capabilities = entry.getValue();
+        output.writeUTF(key.mimeType);
+        output.writeBoolean(key.secure);
+        output.writeBoolean(capabilities != null);
+        if (capabilities != null) {
+          output.writeUTF(capabilities.name);
+          output.writeBoolean(capabilities.adaptive);
+          output.writeInt(capabilities.profiles.length);
+          for (int i = 0; i < capabilities.profiles.length; i++) {
+            output.writeInt(capabilities.profiles[i]);
+            output.writeInt(capabilities.levels[i]);
+          }
+        }
+      }
+      output.close();
+      output = null;
+      if (!tempFile.renameTo(file)) {
+        throw new IOException("Failed to rename " + tempFile + " to " + file);
+      }
+    } catch (IOException e) {
+      // Caching is best effort, so we can swallow the exception. The results remain cached in
+      // memory, and the write is retried when the next result is stored.
+      tempFile.delete();
+    } finally {
+      if (output != null) {
+        Util.closeQuietly(output);
+      }
+    }
+  }
+
+  private static final class CacheKey {
+
+    public final String mimeType;
+    public final boolean secure;
+
+    public CacheKey(String mimeType, boolean secure) {
+      this.mimeType = mimeType;
+      this.secure = secure;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * mimeType.hashCode() + (secure ? 1 : 0);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (obj == null || obj.getClass() != CacheKey.class) {
+        return false;
+      }
+      CacheKey other = (CacheKey) obj;
+      return mimeType.equals(other.mimeType) && secure == other.secure;
+    }
+
+  }
+
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer;
+
+import com.google.android.exoplayer.MediaCodecUtil.DecoderQueryException;
+
+/**
+ * Looks up the capabilities of the decoder that should be used for a given mime type.
+ */
+public interface DecoderCapabilitiesLookup {
+
+  /**
+   * Returns the capabilities of the best decoder for the specified mime type.
+   *
+   * @param mimeType The mime type.
+   * @param secure Whether the decoder is required to support secure decryption.
+   * @return The capabilities of the decoder, or null if no suitable decoder exists.
+   * @throws DecoderQueryException If an error occurs querying the device's decoders.
+   */
+  DecoderCapabilities getDecoderCapabilities(String mimeType, boolean secure)
+      throws DecoderQueryException;
+
+}
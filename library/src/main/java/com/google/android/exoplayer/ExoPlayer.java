@@ -15,6 +15,9 @@
  */
 package com.google.android.exoplayer;
 
+import com.google.android.exoplayer.util.HeadlessMessageLoop;
+import com.google.android.exoplayer.util.MessageLoop;
+
 import android.os.Looper;
 
 /**
@@ -141,6 +144,30 @@ public interface ExoPlayer {
       return new ExoPlayerImpl(rendererCount, DEFAULT_MIN_BUFFER_MS, DEFAULT_MIN_REBUFFER_MS);
     }
 
+    /**
+     * Obtains an {@link ExoPlayer} instance that runs playback and delivers events on the
+     * specified {@link MessageLoop}s.
+     * <p>
+     * Passing {@link HeadlessMessageLoop}s allows the player to run without an Android
+     * {@link Looper}, for example to measure the throughput of a {@link SampleSource} on a
+     * desktop JVM. The player's {@link #getPlaybackLooper()} is null in this case.
+     *
+     * @param rendererCount The number of {@link TrackRenderer}s that will be passed to
+     *     {@link #prepare(TrackRenderer[])}.
+     * @param minBufferMs A minimum duration of data that must be buffered for playback to start
+     *     or resume following a user action such as a seek.
+     * @param minRebufferMs A minimum duration of data that must be buffered for playback to resume
+     *     after a player invoked rebuffer.
+     * @param playbackLoop The loop on which playback should run. The player quits the loop when
+     *     it's released.
+     * @param eventLoop The loop on which events should be delivered to listeners.
+     */
+    public static ExoPlayer newInstance(int rendererCount, int minBufferMs, int minRebufferMs,
+        MessageLoop playbackLoop, MessageLoop eventLoop) {
+      return new ExoPlayerImpl(rendererCount, minBufferMs, minRebufferMs, playbackLoop,
+          eventLoop);
+    }
+
   }
 
   /**
@@ -196,6 +223,24 @@ public interface ExoPlayer {
 
   }
 
+  /**
+   * Implemented by players, and by other objects that expose a player's debug information, that
+   * count how often the playback thread wakes up to run the rendering loop. Players created by
+   * {@link Factory} implement this interface.
+   */
+  public interface RenderingWakeupCounter {
+
+    /**
+     * Gets the number of times that the playback thread has woken up to run the rendering loop
+     * since the player was created. Sampling the count periodically gives the rate at which the
+     * player wakes the CPU.
+     *
+     * @return The number of times that the rendering loop has run.
+     */
+    int getRenderingWakeupCount();
+
+  }
+
   /**
    * The player is neither prepared or being prepared.
    */
@@ -227,7 +272,8 @@ public interface ExoPlayer {
   /**
    * Gets the {@link Looper} associated with the playback thread.
    *
-   * @return The {@link Looper} associated with the playback thread.
+   * @return The {@link Looper} associated with the playback thread, or null if the player was
+   *     created with a playback {@link MessageLoop} that isn't backed by a {@link Looper}.
    */
   public Looper getPlaybackLooper();
 
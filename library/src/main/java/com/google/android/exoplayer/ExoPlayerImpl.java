@@ -15,10 +15,13 @@
  */
 package com.google.android.exoplayer;
 
-import android.annotation.SuppressLint;
-import android.os.Handler;
+import com.google.android.exoplayer.util.LooperMessageLoop;
+import com.google.android.exoplayer.util.MessageLoop;
+import com.google.android.exoplayer.util.PriorityHandlerThread;
+
+import android.os.HandlerThread;
 import android.os.Looper;
-import android.os.Message;
+import android.os.Process;
 import android.util.Log;
 
 import java.util.Arrays;
@@ -27,11 +30,12 @@ import java.util.concurrent.CopyOnWriteArraySet;
 /**
  * Concrete implementation of {@link ExoPlayer}.
  */
-/* package */ final class ExoPlayerImpl implements ExoPlayer {
+/* package */ final class ExoPlayerImpl implements ExoPlayer, ExoPlayer.RenderingWakeupCounter {
 
   private static final String TAG = "ExoPlayerImpl";
 
-  private final Handler eventHandler;
+  private final MessageLoop playbackLoop;
+  private final MessageLoop.Sender eventHandler;
   private final ExoPlayerImplInternal internalPlayer;
   private final CopyOnWriteArraySet<Listener> listeners;
   private final boolean[] rendererHasMediaFlags;
@@ -52,9 +56,27 @@ import java.util.concurrent.CopyOnWriteArraySet;
    *     after a player invoked rebuffer (i.e. a rebuffer that occurs due to buffer depletion, and
    *     not due to a user action such as starting playback or seeking).
    */
-  @SuppressLint("HandlerLeak")
   public ExoPlayerImpl(int rendererCount, int minBufferMs, int minRebufferMs) {
+    this(rendererCount, minBufferMs, minRebufferMs, createPlaybackLoop(),
+        new LooperMessageLoop(Looper.myLooper()));
     Log.i(TAG, "Init " + ExoPlayerLibraryInfo.VERSION);
+  }
+
+  /**
+   * Constructs an instance that runs playback and delivers events on the specified loops.
+   *
+   * @param rendererCount The number of {@link TrackRenderer}s that will be passed to
+   *     {@link #prepare(TrackRenderer[])}.
+   * @param minBufferMs A minimum duration of data that must be buffered for playback to start
+   *     or resume following a user action such as a seek.
+   * @param minRebufferMs A minimum duration of data that must be buffered for playback to resume
+   *     after a player invoked rebuffer.
+   * @param playbackLoop The loop on which playback should run. The player quits the loop when it's
+   *     released.
+   * @param eventLoop The loop on which events should be delivered to listeners.
+   */
+  public ExoPlayerImpl(int rendererCount, int minBufferMs, int minRebufferMs,
+      MessageLoop playbackLoop, MessageLoop eventLoop) {
     this.playWhenReady = false;
     this.playbackState = STATE_IDLE;
     this.listeners = new CopyOnWriteArraySet<>();
@@ -63,19 +85,21 @@ import java.util.concurrent.CopyOnWriteArraySet;
     for (int i = 0; i < rendererEnabledFlags.length; i++) {
       rendererEnabledFlags[i] = true;
     }
-    eventHandler = new Handler() {
+    this.playbackLoop = playbackLoop;
+    eventHandler = eventLoop.createSender(new MessageLoop.Callback() {
       @Override
-      public void handleMessage(Message msg) {
-        ExoPlayerImpl.this.handleEvent(msg);
+      public void handleMessage(int what, int arg1, int arg2, Object obj) {
+        ExoPlayerImpl.this.handleEvent(what, arg1, obj);
       }
-    };
-    internalPlayer = new ExoPlayerImplInternal(eventHandler, playWhenReady, rendererEnabledFlags,
-        minBufferMs, minRebufferMs);
+    });
+    internalPlayer = new ExoPlayerImplInternal(playbackLoop, eventHandler, playWhenReady,
+        rendererEnabledFlags, minBufferMs, minRebufferMs);
   }
 
   @Override
   public Looper getPlaybackLooper() {
-    return internalPlayer.getPlaybackLooper();
+    return playbackLoop instanceof LooperMessageLoop
+        ? ((LooperMessageLoop) playbackLoop).getLooper() : null;
   }
 
   @Override
@@ -152,7 +176,7 @@ import java.util.concurrent.CopyOnWriteArraySet;
   @Override
   public void release() {
     internalPlayer.release();
-    eventHandler.removeCallbacksAndMessages(null);
+    eventHandler.removeAllMessages();
   }
 
   @Override
@@ -188,21 +212,26 @@ import java.util.concurrent.CopyOnWriteArraySet;
         : (int) (duration == 0 ? 100 : (bufferedPosition * 100) / duration);
   }
 
+  @Override
+  public int getRenderingWakeupCount() {
+    return internalPlayer.getRenderingWakeupCount();
+  }
+
   // Not private so it can be called from an inner class without going through a thunk method.
-  /* package */ void handleEvent(Message msg) {
-    switch (msg.what) {
+  /* package */ void handleEvent(int what, int arg1, Object obj) {
+    switch (what) {
       case ExoPlayerImplInternal.MSG_PREPARED: {
-        boolean[] rendererHasMediaFlags = (boolean[]) msg.obj;
+        boolean[] rendererHasMediaFlags = (boolean[]) obj;
         System.arraycopy(rendererHasMediaFlags, 0, this.rendererHasMediaFlags, 0,
             rendererHasMediaFlags.length);
-        playbackState = msg.arg1;
+        playbackState = arg1;
         for (Listener listener : listeners) {
           listener.onPlayerStateChanged(playWhenReady, playbackState);
         }
         break;
       }
       case ExoPlayerImplInternal.MSG_STATE_CHANGED: {
-        playbackState = msg.arg1;
+        playbackState = arg1;
         for (Listener listener : listeners) {
           listener.onPlayerStateChanged(playWhenReady, playbackState);
         }
@@ -218,7 +247,7 @@ import java.util.concurrent.CopyOnWriteArraySet;
         break;
       }
       case ExoPlayerImplInternal.MSG_ERROR: {
-        ExoPlaybackException exception = (ExoPlaybackException) msg.obj;
+        ExoPlaybackException exception = (ExoPlaybackException) obj;
         for (Listener listener : listeners) {
           listener.onPlayerError(exception);
         }
@@ -227,4 +256,13 @@ import java.util.concurrent.CopyOnWriteArraySet;
     }
   }
 
+  private static MessageLoop createPlaybackLoop() {
+    // Note: The documentation for Process.THREAD_PRIORITY_AUDIO that states "Applications can
+    // not normally change to this priority" is incorrect.
+    HandlerThread playbackThread = new PriorityHandlerThread(
+        ExoPlayerImplInternal.class.getSimpleName() + ":Handler", Process.THREAD_PRIORITY_AUDIO);
+    playbackThread.start();
+    return new LooperMessageLoop(playbackThread.getLooper());
+  }
+
 }
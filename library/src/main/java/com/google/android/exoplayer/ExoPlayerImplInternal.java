@@ -17,15 +17,10 @@ package com.google.android.exoplayer;
 
 import com.google.android.exoplayer.ExoPlayer.ExoPlayerComponent;
 import com.google.android.exoplayer.util.Assertions;
-import com.google.android.exoplayer.util.PriorityHandlerThread;
+import com.google.android.exoplayer.util.Clock;
+import com.google.android.exoplayer.util.MessageLoop;
 import com.google.android.exoplayer.util.TraceUtil;
 
-import android.os.Handler;
-import android.os.HandlerThread;
-import android.os.Looper;
-import android.os.Message;
-import android.os.Process;
-import android.os.SystemClock;
 import android.util.Log;
 import android.util.Pair;
 
@@ -35,7 +30,7 @@ import java.util.List;
 /**
  * Implements the internal behavior of {@link ExoPlayerImpl}.
  */
-/* package */ final class ExoPlayerImplInternal implements Handler.Callback {
+/* package */ final class ExoPlayerImplInternal implements MessageLoop.Callback {
 
   private static final String TAG = "ExoPlayerImplInternal";
 
@@ -58,11 +53,14 @@ import java.util.List;
 
   private static final int PREPARE_INTERVAL_MS = 10;
   private static final int RENDERING_INTERVAL_MS = 10;
+  private static final int MAX_RENDERING_INTERVAL_MS = 100;
+  private static final int PAUSED_BUFFERING_INTERVAL_MS = 100;
   private static final int IDLE_INTERVAL_MS = 1000;
 
-  private final Handler handler;
-  private final HandlerThread internalPlaybackThread;
-  private final Handler eventHandler;
+  private final MessageLoop playbackLoop;
+  private final MessageLoop.Sender handler;
+  private final MessageLoop.Sender eventHandler;
+  private final Clock clock;
   private final StandaloneMediaClock standaloneMediaClock;
   private final boolean[] rendererEnabledFlags;
   private final long minBufferUs;
@@ -84,9 +82,11 @@ import java.util.List;
   private volatile long durationUs;
   private volatile long positionUs;
   private volatile long bufferedPositionUs;
+  private volatile int renderingWakeupCount;
 
-  public ExoPlayerImplInternal(Handler eventHandler, boolean playWhenReady,
-      boolean[] rendererEnabledFlags, int minBufferMs, int minRebufferMs) {
+  public ExoPlayerImplInternal(MessageLoop playbackLoop, MessageLoop.Sender eventHandler,
+      boolean playWhenReady, boolean[] rendererEnabledFlags, int minBufferMs, int minRebufferMs) {
+    this.playbackLoop = playbackLoop;
     this.eventHandler = eventHandler;
     this.playWhenReady = playWhenReady;
     this.rendererEnabledFlags = new boolean[rendererEnabledFlags.length];
@@ -100,18 +100,10 @@ import java.util.List;
     this.durationUs = TrackRenderer.UNKNOWN_TIME_US;
     this.bufferedPositionUs = TrackRenderer.UNKNOWN_TIME_US;
 
-    standaloneMediaClock = new StandaloneMediaClock();
+    clock = playbackLoop.getClock();
+    standaloneMediaClock = new StandaloneMediaClock(clock);
     enabledRenderers = new ArrayList<>(rendererEnabledFlags.length);
-    // Note: The documentation for Process.THREAD_PRIORITY_AUDIO that states "Applications can
-    // not normally change to this priority" is incorrect.
-    internalPlaybackThread = new PriorityHandlerThread(getClass().getSimpleName() + ":Handler",
-        Process.THREAD_PRIORITY_AUDIO);
-    internalPlaybackThread.start();
-    handler = new Handler(internalPlaybackThread.getLooper(), this);
-  }
-
-  public Looper getPlaybackLooper() {
-    return internalPlaybackThread.getLooper();
+    handler = playbackLoop.createSender(this);
   }
 
   public long getCurrentPosition() {
@@ -128,29 +120,33 @@ import java.util.List;
         : durationUs / 1000;
   }
 
+  public int getRenderingWakeupCount() {
+    return renderingWakeupCount;
+  }
+
   public void prepare(TrackRenderer... renderers) {
-    handler.obtainMessage(MSG_PREPARE, renderers).sendToTarget();
+    handler.sendMessage(MSG_PREPARE, 0, 0, renderers);
   }
 
   public void setPlayWhenReady(boolean playWhenReady) {
-    handler.obtainMessage(MSG_SET_PLAY_WHEN_READY, playWhenReady ? 1 : 0, 0).sendToTarget();
+    handler.sendMessage(MSG_SET_PLAY_WHEN_READY, playWhenReady ? 1 : 0, 0, null);
   }
 
   public void seekTo(long positionMs) {
-    handler.obtainMessage(MSG_SEEK_TO, positionMs).sendToTarget();
+    handler.sendMessage(MSG_SEEK_TO, 0, 0, positionMs);
   }
 
   public void stop() {
-    handler.sendEmptyMessage(MSG_STOP);
+    handler.sendMessage(MSG_STOP, 0, 0, null);
   }
 
   public void setRendererEnabled(int index, boolean enabled) {
-    handler.obtainMessage(MSG_SET_RENDERER_ENABLED, index, enabled ? 1 : 0).sendToTarget();
+    handler.sendMessage(MSG_SET_RENDERER_ENABLED, index, enabled ? 1 : 0, null);
   }
 
   public void sendMessage(ExoPlayerComponent target, int messageType, Object message) {
     customMessagesSent++;
-    handler.obtainMessage(MSG_CUSTOM, messageType, 0, Pair.create(target, message)).sendToTarget();
+    handler.sendMessage(MSG_CUSTOM, messageType, 0, Pair.create(target, message));
   }
 
   public synchronized void blockingSendMessage(ExoPlayerComponent target, int messageType,
@@ -160,7 +156,7 @@ import java.util.List;
       return;
     }
     int messageNumber = customMessagesSent++;
-    handler.obtainMessage(MSG_CUSTOM, messageType, 0, Pair.create(target, message)).sendToTarget();
+    handler.sendMessage(MSG_CUSTOM, messageType, 0, Pair.create(target, message));
     while (customMessagesProcessed <= messageNumber) {
       try {
         wait();
@@ -174,7 +170,7 @@ import java.util.List;
     if (released) {
       return;
     }
-    handler.sendEmptyMessage(MSG_RELEASE);
+    handler.sendMessage(MSG_RELEASE, 0, 0, null);
     while (!released) {
       try {
         wait();
@@ -182,69 +178,65 @@ import java.util.List;
         Thread.currentThread().interrupt();
       }
     }
-    internalPlaybackThread.quit();
+    playbackLoop.quit();
   }
 
   @Override
-  public boolean handleMessage(Message msg) {
+  public void handleMessage(int what, int arg1, int arg2, Object obj) {
     try {
-      switch (msg.what) {
+      switch (what) {
         case MSG_PREPARE: {
-          prepareInternal((TrackRenderer[]) msg.obj);
-          return true;
+          prepareInternal((TrackRenderer[]) obj);
+          break;
         }
         case MSG_INCREMENTAL_PREPARE: {
           incrementalPrepareInternal();
-          return true;
+          break;
         }
         case MSG_SET_PLAY_WHEN_READY: {
-          setPlayWhenReadyInternal(msg.arg1 != 0);
-          return true;
+          setPlayWhenReadyInternal(arg1 != 0);
+          break;
         }
         case MSG_DO_SOME_WORK: {
           doSomeWork();
-          return true;
+          break;
         }
         case MSG_SEEK_TO: {
-          seekToInternal((Long) msg.obj);
-          return true;
+          seekToInternal((Long) obj);
+          break;
         }
         case MSG_STOP: {
           stopInternal();
-          return true;
+          break;
         }
         case MSG_RELEASE: {
           releaseInternal();
-          return true;
+          break;
         }
         case MSG_CUSTOM: {
-          sendMessageInternal(msg.arg1, msg.obj);
-          return true;
+          sendMessageInternal(arg1, obj);
+          break;
         }
         case MSG_SET_RENDERER_ENABLED: {
-          setRendererEnabledInternal(msg.arg1, msg.arg2 != 0);
-          return true;
+          setRendererEnabledInternal(arg1, arg2 != 0);
+          break;
         }
-        default:
-          return false;
       }
     } catch (ExoPlaybackException e) {
       Log.e(TAG, "Internal track renderer error.", e);
-      eventHandler.obtainMessage(MSG_ERROR, e).sendToTarget();
+      eventHandler.sendMessage(MSG_ERROR, 0, 0, e);
       stopInternal();
-      return true;
     } catch (RuntimeException e) {
       Log.e(TAG, "Internal runtime error.", e);
-      eventHandler.obtainMessage(MSG_ERROR, new ExoPlaybackException(e, true)).sendToTarget();
+      eventHandler.sendMessage(MSG_ERROR, 0, 0, new ExoPlaybackException(e, true));
       stopInternal();
-      return true;
     }
   }
 
   private void setState(int state) {
     if (this.state != state) {
       this.state = state;
-      eventHandler.obtainMessage(MSG_STATE_CHANGED, state, 0).sendToTarget();
+      eventHandler.sendMessage(MSG_STATE_CHANGED, state, 0, null);
     }
   }
 
@@ -264,7 +256,7 @@ import java.util.List;
   }
 
   private void incrementalPrepareInternal() throws ExoPlaybackException {
-    long operationStartTimeMs = SystemClock.elapsedRealtime();
+    long operationStartTimeMs = clock.elapsedRealtime();
     boolean prepared = true;
     for (int i = 0; i < renderers.length; i++) {
       if (renderers[i].getState() == TrackRenderer.STATE_UNPREPARED) {
@@ -322,13 +314,13 @@ import java.util.List;
 
     // Fire an event indicating that the player has been prepared, passing the initial state and
     // renderer media flags.
-    eventHandler.obtainMessage(MSG_PREPARED, state, 0, rendererHasMediaFlags).sendToTarget();
+    eventHandler.sendMessage(MSG_PREPARED, state, 0, rendererHasMediaFlags);
 
     // Start the renderers if required, and schedule the first piece of work.
     if (playWhenReady && state == ExoPlayer.STATE_READY) {
       startRenderers();
     }
-    handler.sendEmptyMessage(MSG_DO_SOME_WORK);
+    handler.sendMessage(MSG_DO_SOME_WORK, 0, 0, null);
   }
 
   private boolean rendererReadyOrEnded(TrackRenderer renderer) {
@@ -363,13 +355,13 @@ import java.util.List;
       } else {
         if (state == ExoPlayer.STATE_READY) {
           startRenderers();
-          handler.sendEmptyMessage(MSG_DO_SOME_WORK);
+          handler.sendMessage(MSG_DO_SOME_WORK, 0, 0, null);
         } else if (state == ExoPlayer.STATE_BUFFERING) {
-          handler.sendEmptyMessage(MSG_DO_SOME_WORK);
+          handler.sendMessage(MSG_DO_SOME_WORK, 0, 0, null);
         }
       }
     } finally {
-      eventHandler.obtainMessage(MSG_SET_PLAY_WHEN_READY_ACK).sendToTarget();
+      eventHandler.sendMessage(MSG_SET_PLAY_WHEN_READY_ACK, 0, 0, null);
     }
   }
 
@@ -396,23 +388,27 @@ import java.util.List;
     } else {
       positionUs = standaloneMediaClock.getPositionUs();
     }
-    elapsedRealtimeUs = SystemClock.elapsedRealtime() * 1000;
+    elapsedRealtimeUs = clock.elapsedRealtime() * 1000;
   }
 
   private void doSomeWork() throws ExoPlaybackException {
     TraceUtil.beginSection("doSomeWork");
-    long operationStartTimeMs = SystemClock.elapsedRealtime();
+    long operationStartTimeMs = clock.elapsedRealtime();
+    // Only the playback thread writes the count.
+    renderingWakeupCount++;
     long bufferedPositionUs = durationUs != TrackRenderer.UNKNOWN_TIME_US ? durationUs
         : Long.MAX_VALUE;
+    long maxWorkDelayUs = Long.MAX_VALUE;
     boolean allRenderersEnded = true;
     boolean allRenderersReadyOrEnded = true;
     updatePositionUs();
     for (int i = 0; i < enabledRenderers.size(); i++) {
       TrackRenderer renderer = enabledRenderers.get(i);
-      // TODO: Each renderer should return the maximum delay before which it wishes to be
-      // invoked again. The minimum of these values should then be used as the delay before the next
-      // invocation of this method.
       renderer.doSomeWork(positionUs, elapsedRealtimeUs);
+      long rendererMaxWorkDelayUs = renderer.getMaxWorkDelayUs();
+      maxWorkDelayUs = Math.min(maxWorkDelayUs,
+          rendererMaxWorkDelayUs == TrackRenderer.UNKNOWN_TIME_US ? RENDERING_INTERVAL_MS * 1000L
+          : rendererMaxWorkDelayUs);
       allRenderersEnded = allRenderersEnded && renderer.isEnded();
       allRenderersReadyOrEnded = allRenderersReadyOrEnded && rendererReadyOrEnded(renderer);
 
@@ -452,8 +448,17 @@ import java.util.List;
     }
 
     handler.removeMessages(MSG_DO_SOME_WORK);
-    if ((playWhenReady && state == ExoPlayer.STATE_READY) || state == ExoPlayer.STATE_BUFFERING) {
-      scheduleNextOperation(MSG_DO_SOME_WORK, operationStartTimeMs, RENDERING_INTERVAL_MS);
+    if (playWhenReady && state == ExoPlayer.STATE_READY) {
+      // Sleep until the renderer that needs servicing soonest wants to be invoked. The interval is
+      // capped so that the sources are still asked to continue buffering regularly.
+      long intervalMs = Math.max(RENDERING_INTERVAL_MS,
+          Math.min(MAX_RENDERING_INTERVAL_MS, maxWorkDelayUs / 1000));
+      scheduleNextOperation(MSG_DO_SOME_WORK, operationStartTimeMs, intervalMs);
+    } else if (state == ExoPlayer.STATE_BUFFERING) {
+      // Loads continue without the rendering loop, since the sources' load callbacks run on this
+      // thread. When paused, readiness only needs to be checked occasionally.
+      scheduleNextOperation(MSG_DO_SOME_WORK, operationStartTimeMs,
+          playWhenReady ? RENDERING_INTERVAL_MS : PAUSED_BUFFERING_INTERVAL_MS);
     } else if (!enabledRenderers.isEmpty()) {
       scheduleNextOperation(MSG_DO_SOME_WORK, operationStartTimeMs, IDLE_INTERVAL_MS);
     }
@@ -464,9 +469,9 @@ import java.util.List;
   private void scheduleNextOperation(int operationType, long thisOperationStartTimeMs,
       long intervalMs) {
     long nextOperationStartTimeMs = thisOperationStartTimeMs + intervalMs;
-    long nextOperationDelayMs = nextOperationStartTimeMs - SystemClock.elapsedRealtime();
+    long nextOperationDelayMs = nextOperationStartTimeMs - clock.elapsedRealtime();
     if (nextOperationDelayMs <= 0) {
-      handler.sendEmptyMessage(operationType);
+      handler.sendMessage(operationType, 0, 0, null);
     } else {
       handler.sendEmptyMessageDelayed(operationType, nextOperationDelayMs);
     }
@@ -486,7 +491,7 @@ import java.util.List;
       renderer.seekTo(positionUs);
     }
     setState(ExoPlayer.STATE_BUFFERING);
-    handler.sendEmptyMessage(MSG_DO_SOME_WORK);
+    handler.sendMessage(MSG_DO_SOME_WORK, 0, 0, null);
   }
 
   private void stopInternal() {
@@ -563,7 +568,7 @@ import java.util.List;
     }
     if (state != ExoPlayer.STATE_IDLE && state != ExoPlayer.STATE_PREPARING) {
       // The message may have caused something to change that now requires us to do work.
-      handler.sendEmptyMessage(MSG_DO_SOME_WORK);
+      handler.sendMessage(MSG_DO_SOME_WORK, 0, 0, null);
     }
   }
 
@@ -593,7 +598,7 @@ import java.util.List;
       if (playing) {
         renderer.start();
       }
-      handler.sendEmptyMessage(MSG_DO_SOME_WORK);
+      handler.sendMessage(MSG_DO_SOME_WORK, 0, 0, null);
     } else {
       if (renderer == rendererMediaClockSource) {
         // We've been using rendererMediaClockSource to advance the current position, but it's being
@@ -308,6 +308,14 @@ public class MediaCodecAudioTrackRenderer extends MediaCodecTrackRenderer implem
     return false;
   }
 
+  @Override
+  protected long getPendingOutputBufferDelayUs(long positionUs, long elapsedRealtimeUs,
+      MediaCodec.BufferInfo bufferInfo) {
+    // The pending output buffer couldn't be written because the audio track is full. Come back
+    // once it has played out around half of its data, leaving plenty of time to refill it.
+    return audioTrack.getPendingDurationUs() / 2;
+  }
+
   protected void handleDiscontinuity() {
     // Do nothing
   }
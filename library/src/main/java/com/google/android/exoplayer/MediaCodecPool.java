@@ -0,0 +1,355 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer;
+
+import com.google.android.exoplayer.util.Assertions;
+
+import android.annotation.TargetApi;
+import android.media.MediaCodec;
+import android.util.Log;
+import android.view.Surface;
+
+import java.util.ArrayList;
+
+/**
+ * A bounded pool of idle {@link MediaCodec} instances, shared by all
+ * {@link MediaCodecTrackRenderer}s.
+ * <p>
+ * Creating a decoder is expensive, and on many devices dominates the time taken to switch tracks or
+ * to move between the items of a playlist. When a renderer releases its codec, it offers it to the
+ * pool instead. Codecs that were used without a {@link android.media.MediaCrypto} are pooled
+ * flushed and configured, and may be reused as they are by a renderer whose output (e.g. its
+ * {@link android.view.Surface}) is the same and whose format the codec can be reconfigured for.
+ * Other codecs are pooled stopped, and can be reused by any renderer that requires a decoder of
+ * the same name, after it configures them. {@link MediaCodecUtil#warmCodec(String, boolean,
+ * boolean)} can be used to pre-populate the pool with stopped codecs.
+ * <p>
+ * Pooled codecs hold on to decoder resources that are scarce on most devices, so the pool is empty
+ * and disabled until the application gives it a non-zero size by calling {@link #setMaxSize(int)}.
+ * When the pool is full the least recently pooled codec is released. Configured codecs whose
+ * output is a {@link Surface} that's no longer valid can't be reused, and are released when the
+ * pool is next accessed.
+ */
+@TargetApi(16)
+public final class MediaCodecPool {
+
+  private static final String TAG = "MediaCodecPool";
+
+  private static final MediaCodecPool DEFAULT = new MediaCodecPool();
+
+  /**
+   * Determines whether a configured codec can be reconfigured for a new format.
+   */
+  /* package */ interface ReconfigurationChecker {
+
+    /**
+     * Returns whether the codec can be reconfigured from {@code oldFormat} to {@code newFormat}.
+     * See {@link MediaCodecTrackRenderer#canReconfigureCodec(MediaCodec, boolean, MediaFormat,
+     * MediaFormat)}.
+     */
+    boolean canReconfigureCodec(MediaCodec codec, boolean codecIsAdaptive, MediaFormat oldFormat,
+        MediaFormat newFormat);
+
+  }
+
+  /**
+   * A codec held by the pool.
+   */
+  /* package */ static class PooledCodec {
+
+    /**
+     * The codec.
+     */
+    public final MediaCodec codec;
+    /**
+     * The name of the codec.
+     */
+    public final String name;
+    /**
+     * Whether the codec is adaptive.
+     */
+    public final boolean adaptive;
+    /**
+     * The format for which the codec is configured, or null if the codec is stopped.
+     */
+    public final MediaFormat format;
+    /**
+     * The output with which the codec is configured. Null if the codec is stopped, or if it was
+     * configured without an output.
+     */
+    public final Object output;
+
+    public PooledCodec(MediaCodec codec, String name, boolean adaptive, MediaFormat format,
+        Object output) {
+      this.codec = codec;
+      this.name = name;
+      this.adaptive = adaptive;
+      this.format = format;
+      this.output = output;
+    }
+
+    /**
+     * Returns whether the output with which the codec is configured can still be used.
+     */
+    public boolean isOutputValid() {
+      return !(output instanceof Surface) || ((Surface) output).isValid();
+    }
+
+    /**
+     * Releases the codec, stopping it first if it's configured.
+     */
+    public void release() {
+      try {
+        if (format != null) {
+          codec.stop();
+        }
+      } catch (RuntimeException e) {
+        Log.w(TAG, "Failed to stop pooled " + name, e);
+      } finally {
+        codec.release();
+      }
+    }
+
+  }
+
+  private final ArrayList<PooledCodec> pooledCodecs;
+
+  private int maxSize;
+
+  /**
+   * Returns the pool used by {@link MediaCodecTrackRenderer}s.
+   */
+  public static MediaCodecPool getDefault() {
+    return DEFAULT;
+  }
+
+  // Visible for testing.
+  /* package */ MediaCodecPool() {
+    pooledCodecs = new ArrayList<>();
+  }
+
+  /**
+   * Sets the maximum number of codecs that the pool may hold, releasing the least recently pooled
+   * codecs if the pool currently holds more. A size of zero disables the pool.
+   *
+   * @param maxSize The maximum number of codecs.
+   */
+  public void setMaxSize(int maxSize) {
+    Assertions.checkArgument(maxSize >= 0);
+    ArrayList<PooledCodec> evictedCodecs = new ArrayList<>();
+    synchronized (this) {
+      this.maxSize = maxSize;
+      while (pooledCodecs.size() > maxSize) {
+        evictedCodecs.add(pooledCodecs.remove(0));
+      }
+    }
+    releaseCodecs(evictedCodecs);
+  }
+
+  /**
+   * Returns the maximum number of codecs that the pool may hold.
+   */
+  public synchronized int getMaxSize() {
+    return maxSize;
+  }
+
+  /**
+   * Returns the number of codecs in the pool.
+   */
+  public synchronized int getSize() {
+    return pooledCodecs.size();
+  }
+
+  /**
+   * Releases all of the codecs in the pool.
+   */
+  public void clear() {
+    ArrayList<PooledCodec> evictedCodecs;
+    synchronized (this) {
+      evictedCodecs = new ArrayList<>(pooledCodecs);
+      pooledCodecs.clear();
+    }
+    releaseCodecs(evictedCodecs);
+  }
+
+  /**
+   * Creates a codec with the specified name and adds it to the pool, if the pool has room for it.
+   *
+   * @param name The name of the codec.
+   * @param adaptive Whether the codec is adaptive.
+   * @return True if a codec was added to the pool. False otherwise.
+   */
+  /* package */ boolean prepopulate(String name, boolean adaptive) {
+    synchronized (this) {
+      if (pooledCodecs.size() >= maxSize) {
+        return false;
+      }
+    }
+    MediaCodec codec;
+    try {
+      codec = MediaCodec.createByCodecName(name);
+    } catch (Exception e) {
+      // Pre-populating the pool is best effort, so we can swallow the exception.
+      Log.e(TAG, "Failed to create " + name, e);
+      return false;
+    }
+    synchronized (this) {
+      if (pooledCodecs.size() < maxSize) {
+        pooledCodecs.add(new PooledCodec(codec, name, adaptive, null, null));
+        return true;
+      }
+    }
+    codec.release();
+    return false;
+  }
+
+  /**
+   * Offers a codec to the pool, releasing the least recently pooled codec if the pool is full.
+   * <p>
+   * If the codec is configured then it must have been flushed. If the codec is accepted then the
+   * caller must not use it again.
+   *
+   * @param pooledCodec The codec.
+   * @return True if the codec was accepted. False if the pool is disabled, in which case the caller
+   *     remains responsible for releasing the codec.
+   */
+  /* package */ boolean offer(PooledCodec pooledCodec) {
+    ArrayList<PooledCodec> evictedCodecs = new ArrayList<>();
+    synchronized (this) {
+      if (maxSize == 0) {
+        return false;
+      }
+      evictInvalidCodecs(evictedCodecs);
+      if (pooledCodecs.size() == maxSize) {
+        evictedCodecs.add(pooledCodecs.remove(0));
+      }
+      pooledCodecs.add(pooledCodec);
+    }
+    releaseCodecs(evictedCodecs);
+    return true;
+  }
+
+  /**
+   * Removes a codec with the specified name from the pool.
+   * <p>
+   * A configured codec is returned as it is if it was configured with the same output, and
+   * {@code checker} determines that it can be reconfigured for {@code format}. The checker is
+   * invoked without holding the pool's lock. Otherwise the most recently pooled codec with the
+   * specified name is stopped, if necessary, and returned.
+   *
+   * @param checker Determines whether a configured codec can be reconfigured for {@code format}.
+   * @param name The name of the codec.
+   * @param format The format that the codec will decode.
+   * @param output The output with which the renderer configures codecs. Ignored if
+   *     {@code allowConfigured} is false.
+   * @param allowConfigured Whether a configured codec may be returned.
+   * @return The codec, or null if the pool doesn't contain a codec with the specified name.
+   */
+  /* package */ PooledCodec acquire(ReconfigurationChecker checker, String name,
+      MediaFormat format, Object output, boolean allowConfigured) {
+    ArrayList<PooledCodec> evictedCodecs = new ArrayList<>();
+    ArrayList<PooledCodec> configuredCandidates = new ArrayList<>();
+    synchronized (this) {
+      evictInvalidCodecs(evictedCodecs);
+      if (allowConfigured) {
+        for (int i = pooledCodecs.size() - 1; i >= 0; i--) {
+          PooledCodec candidate = pooledCodecs.get(i);
+          if (candidate.name.equals(name) && candidate.format != null
+              && candidate.output == output) {
+            configuredCandidates.add(candidate);
+          }
+        }
+      }
+    }
+    releaseCodecs(evictedCodecs);
+    for (int i = 0; i < configuredCandidates.size(); i++) {
+      PooledCodec candidate = configuredCandidates.get(i);
+      if (checker.canReconfigureCodec(candidate.codec, candidate.adaptive, candidate.format,
+          format)) {
+        synchronized (this) {
+          // The candidate may have been acquired or evicted while the lock wasn't held.
+          if (pooledCodecs.remove(candidate)) {
+            return candidate;
+          }
+        }
+      }
+    }
+    PooledCodec pooledCodec = null;
+    synchronized (this) {
+      for (int i = pooledCodecs.size() - 1; i >= 0; i--) {
+        if (pooledCodecs.get(i).name.equals(name)) {
+          pooledCodec = pooledCodecs.remove(i);
+          break;
+        }
+      }
+    }
+    if (pooledCodec == null || pooledCodec.format == null) {
+      return pooledCodec;
+    }
+    try {
+      pooledCodec.codec.stop();
+    } catch (RuntimeException e) {
+      Log.w(TAG, "Failed to stop pooled " + name, e);
+      pooledCodec.release();
+      return null;
+    }
+    return new PooledCodec(pooledCodec.codec, name, pooledCodec.adaptive, null, null);
+  }
+
+  /**
+   * Releases all of the configured codecs in the pool whose output is {@code output}.
+   * <p>
+   * A {@link Surface} can be connected to only one codec at a time, so this must be called before a
+   * codec that wasn't acquired configured is configured with the output.
+   *
+   * @param output The output.
+   */
+  /* package */ void releaseConfiguredCodecs(Object output) {
+    ArrayList<PooledCodec> evictedCodecs = new ArrayList<>();
+    synchronized (this) {
+      for (int i = pooledCodecs.size() - 1; i >= 0; i--) {
+        PooledCodec pooledCodec = pooledCodecs.get(i);
+        if (pooledCodec.format != null && pooledCodec.output == output) {
+          evictedCodecs.add(pooledCodecs.remove(i));
+        }
+      }
+    }
+    releaseCodecs(evictedCodecs);
+  }
+
+  /**
+   * Removes the configured codecs whose output is no longer valid. Must be called with the pool's
+   * lock held.
+   *
+   * @param evictedCodecs A list to which the removed codecs are added, to be released once the lock
+   *     is no longer held.
+   */
+  private void evictInvalidCodecs(ArrayList<PooledCodec> evictedCodecs) {
+    for (int i = pooledCodecs.size() - 1; i >= 0; i--) {
+      PooledCodec pooledCodec = pooledCodecs.get(i);
+      if (pooledCodec.format != null && !pooledCodec.isOutputValid()) {
+        evictedCodecs.add(pooledCodecs.remove(i));
+      }
+    }
+  }
+
+  private static void releaseCodecs(ArrayList<PooledCodec> pooledCodecs) {
+    for (int i = 0; i < pooledCodecs.size(); i++) {
+      pooledCodecs.get(i).release();
+    }
+  }
+
+}
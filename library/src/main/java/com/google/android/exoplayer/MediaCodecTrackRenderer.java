@@ -20,6 +20,7 @@ import com.google.android.exoplayer.SampleSource.SampleSourceReader;
 import com.google.android.exoplayer.drm.DrmInitData;
 import com.google.android.exoplayer.drm.DrmSessionManager;
 import com.google.android.exoplayer.util.Assertions;
+import com.google.android.exoplayer.util.MetricsRegistry;
 import com.google.android.exoplayer.util.TraceUtil;
 import com.google.android.exoplayer.util.Util;
 
@@ -179,6 +180,19 @@ public abstract class MediaCodecTrackRenderer extends TrackRenderer {
    */
   private static final int REINITIALIZATION_STATE_WAIT_END_OF_STREAM = 2;
 
+  /**
+   * The maximum number of queued input buffers that are tracked to measure the decoder latency and
+   * input queue occupancy.
+   */
+  private static final int MAX_TRACKED_INPUT_BUFFERS = 32;
+
+  /**
+   * The maximum delay reported by {@link #getMaxWorkDelayUs()}. A delay is only reported whilst the
+   * renderer holds an output buffer that isn't due to be processed, during which the codec may
+   * decode further output buffers and free input buffers that need servicing before then.
+   */
+  private static final long MAX_PENDING_WORK_DELAY_US = 30000;
+
   public final CodecCounters codecCounters;
 
   private final DrmSessionManager drmSessionManager;
@@ -189,11 +203,21 @@ public abstract class MediaCodecTrackRenderer extends TrackRenderer {
   private final List<Long> decodeOnlyPresentationTimestamps;
   private final MediaCodec.BufferInfo outputBufferInfo;
   private final EventListener eventListener;
+  private final MetricsRegistry.Histogram decoderLatencyHistogram;
+  private final MetricsRegistry.Histogram inputQueueOccupancyHistogram;
+  private final long[] trackedInputTimesUs;
+  private final long[] trackedInputQueueTimesNs;
+  private final MediaCodecPool codecPool;
+  private final MediaCodecPool.ReconfigurationChecker reconfigurationChecker;
   protected final Handler eventHandler;
 
   private MediaFormat format;
   private DrmInitData drmInitData;
   private MediaCodec codec;
+  private String codecName;
+  private MediaFormat codecFormat;
+  private Object codecOutput;
+  private boolean codecUsesCrypto;
   private boolean codecIsAdaptive;
   private boolean codecNeedsEndOfStreamWorkaround;
   private ByteBuffer[] inputBuffers;
@@ -213,6 +237,8 @@ public abstract class MediaCodecTrackRenderer extends TrackRenderer {
   private boolean outputStreamEnded;
   private boolean waitingForKeys;
   private boolean waitingForFirstSyncFrame;
+  private long maxWorkDelayUs;
+  private int trackedInputCount;
 
   /**
    * @param source The upstream source from which the renderer obtains samples.
@@ -242,6 +268,22 @@ public abstract class MediaCodecTrackRenderer extends TrackRenderer {
     outputBufferInfo = new MediaCodec.BufferInfo();
     codecReconfigurationState = RECONFIGURATION_STATE_NONE;
     codecReinitializationState = REINITIALIZATION_STATE_NONE;
+    String metricsPrefix = getClass().getSimpleName();
+    decoderLatencyHistogram = MetricsRegistry.getDefault().getHistogram(
+        metricsPrefix + ".decoder_latency_us");
+    inputQueueOccupancyHistogram = MetricsRegistry.getDefault().getHistogram(
+        metricsPrefix + ".input_queue_occupancy");
+    trackedInputTimesUs = new long[MAX_TRACKED_INPUT_BUFFERS];
+    trackedInputQueueTimesNs = new long[MAX_TRACKED_INPUT_BUFFERS];
+    codecPool = MediaCodecPool.getDefault();
+    reconfigurationChecker = new MediaCodecPool.ReconfigurationChecker() {
+      @Override
+      public boolean canReconfigureCodec(MediaCodec codec, boolean codecIsAdaptive,
+          MediaFormat oldFormat, MediaFormat newFormat) {
+        return MediaCodecTrackRenderer.this.canReconfigureCodec(codec, codecIsAdaptive, oldFormat,
+            newFormat);
+      }
+    };
   }
 
   @Override
@@ -313,6 +355,31 @@ public abstract class MediaCodecTrackRenderer extends TrackRenderer {
     codec.configure(format, null, crypto, 0);
   }
 
+  /**
+   * Returns the output with which {@link #configureCodec(MediaCodec, String,
+   * android.media.MediaFormat, MediaCrypto)} configures codecs, such as a surface. A configured
+   * codec is only taken from the {@link MediaCodecPool} if it was configured with the same output.
+   * <p>
+   * The default implementation returns null.
+   *
+   * @return The output, or null if codecs are configured without an output.
+   */
+  protected Object getCodecOutput() {
+    return null;
+  }
+
+  /**
+   * Invoked when a configured codec is taken from the {@link MediaCodecPool}, in place of creating
+   * and configuring a new codec. Sub-classes should override this method if they configure codecs
+   * in ways that aren't accounted for by {@link #getCodecOutput()} and
+   * {@link #canReconfigureCodec(MediaCodec, boolean, MediaFormat, MediaFormat)}.
+   *
+   * @param codec The codec.
+   */
+  protected void onPooledCodecReused(MediaCodec codec) {
+    // Do nothing.
+  }
+
   @SuppressWarnings("deprecation")
   protected final void maybeInitCodec() throws ExoPlaybackException {
     if (!shouldInitCodec()) {
@@ -361,15 +428,40 @@ public abstract class MediaCodecTrackRenderer extends TrackRenderer {
     codecNeedsEndOfStreamWorkaround = codecNeedsEndOfStreamWorkaround(decoderName);
     try {
       long codecInitializingTimestamp = SystemClock.elapsedRealtime();
-      TraceUtil.beginSection("createByCodecName(" + decoderName + ")");
-      codec = MediaCodec.createByCodecName(decoderName);
-      TraceUtil.endSection();
-      TraceUtil.beginSection("configureCodec");
-      configureCodec(codec, decoderName, format.getFrameworkMediaFormatV16(), mediaCrypto);
-      TraceUtil.endSection();
-      TraceUtil.beginSection("codec.start()");
-      codec.start();
-      TraceUtil.endSection();
+      // The output is recorded when the codec is configured, since the output returned by
+      // getCodecOutput() may have changed by the time the codec is released.
+      Object output = getCodecOutput();
+      MediaCodecPool.PooledCodec pooledCodec = codecPool.acquire(reconfigurationChecker,
+          decoderName, format, output, mediaCrypto == null);
+      if (pooledCodec == null) {
+        TraceUtil.beginSection("createByCodecName(" + decoderName + ")");
+        codec = MediaCodec.createByCodecName(decoderName);
+        TraceUtil.endSection();
+      } else {
+        codec = pooledCodec.codec;
+      }
+      if (pooledCodec != null && pooledCodec.format != null) {
+        // The codec is flushed and configured for a format that it can be reconfigured from.
+        onPooledCodecReused(codec);
+        codecReconfigured = true;
+        codecReconfigurationState = RECONFIGURATION_STATE_WRITE_PENDING;
+      } else {
+        if (output != null) {
+          // Pooled codecs remain connected to the output with which they're configured, which would
+          // prevent the output from being connected to this codec.
+          codecPool.releaseConfiguredCodecs(output);
+        }
+        TraceUtil.beginSection("configureCodec");
+        configureCodec(codec, decoderName, format.getFrameworkMediaFormatV16(), mediaCrypto);
+        TraceUtil.endSection();
+        TraceUtil.beginSection("codec.start()");
+        codec.start();
+        TraceUtil.endSection();
+      }
+      codecName = decoderName;
+      codecFormat = format;
+      codecOutput = output;
+      codecUsesCrypto = mediaCrypto != null;
       long codecInitializedTimestamp = SystemClock.elapsedRealtime();
       notifyDecoderInitialized(decoderName, codecInitializedTimestamp,
           codecInitializedTimestamp - codecInitializingTimestamp);
@@ -429,25 +521,69 @@ public abstract class MediaCodecTrackRenderer extends TrackRenderer {
       outputIndex = -1;
       waitingForKeys = false;
       decodeOnlyPresentationTimestamps.clear();
+      trackedInputCount = 0;
       inputBuffers = null;
       outputBuffers = null;
       codecReconfigured = false;
       codecHasQueuedBuffers = false;
-      codecIsAdaptive = false;
       codecNeedsEndOfStreamWorkaround = false;
       codecReconfigurationState = RECONFIGURATION_STATE_NONE;
       codecReinitializationState = REINITIALIZATION_STATE_NONE;
       codecCounters.codecReleaseCount++;
       try {
-        codec.stop();
-      } finally {
-        try {
-          codec.release();
-        } finally {
-          codec = null;
+        if (!offerCodecToPool()) {
+          try {
+            codec.stop();
+          } finally {
+            codec.release();
+          }
         }
+      } finally {
+        codec = null;
+        codecName = null;
+        codecFormat = null;
+        codecOutput = null;
+        codecUsesCrypto = false;
+        codecIsAdaptive = false;
+      }
+    }
+  }
+
+  /**
+   * Offers the codec to the {@link MediaCodecPool}. Codecs used with a {@link MediaCrypto} are
+   * pooled stopped, since their configuration is specific to the drm session. Other codecs are
+   * pooled flushed and configured, except on API levels where flushing is unreliable. A stopped
+   * codec that the pool doesn't accept is released.
+   *
+   * @return True if the codec was pooled or released. False if the caller should release it.
+   */
+  private boolean offerCodecToPool() {
+    if (codecPool.getMaxSize() == 0) {
+      return false;
+    }
+    boolean poolConfigured = !codecUsesCrypto && Util.SDK_INT >= 18;
+    try {
+      if (poolConfigured) {
+        codec.flush();
+      } else {
+        codec.stop();
       }
+    } catch (RuntimeException e) {
+      return false;
     }
+    MediaCodecPool.PooledCodec pooledCodec = poolConfigured
+        ? new MediaCodecPool.PooledCodec(codec, codecName, codecIsAdaptive, codecFormat,
+            codecOutput)
+        : new MediaCodecPool.PooledCodec(codec, codecName, codecIsAdaptive, null, null);
+    if (codecPool.offer(pooledCodec)) {
+      return true;
+    }
+    if (!poolConfigured) {
+      // The codec is already stopped.
+      codec.release();
+      return true;
+    }
+    return false;
   }
 
   @Override
@@ -465,6 +601,11 @@ public abstract class MediaCodecTrackRenderer extends TrackRenderer {
     return source.getBufferedPositionUs();
   }
 
+  @Override
+  protected long getMaxWorkDelayUs() {
+    return maxWorkDelayUs;
+  }
+
   @Override
   protected void seekTo(long positionUs) throws ExoPlaybackException {
     source.seekToUs(positionUs);
@@ -489,6 +630,7 @@ public abstract class MediaCodecTrackRenderer extends TrackRenderer {
 
   @Override
   protected void doSomeWork(long positionUs, long elapsedRealtimeUs) throws ExoPlaybackException {
+    maxWorkDelayUs = UNKNOWN_TIME_US;
     try {
       sourceState = source.continueBuffering(trackIndex, positionUs)
           ? (sourceState == SOURCE_STATE_NOT_READY ? SOURCE_STATE_READY : sourceState)
@@ -503,10 +645,20 @@ public abstract class MediaCodecTrackRenderer extends TrackRenderer {
       if (codec != null) {
         TraceUtil.beginSection("drainAndFeed");
         while (drainOutputBuffer(positionUs, elapsedRealtimeUs)) {}
+        // The number of samples queued to the codec that it has yet to output. Zero means that the
+        // codec has been starved of input since the previous invocation.
+        inputQueueOccupancyHistogram.record(trackedInputCount);
         if (feedInputBuffer(positionUs, true)) {
           while (feedInputBuffer(positionUs, false)) {}
         }
         TraceUtil.endSection();
+        if (outputIndex >= 0 && getState() == TrackRenderer.STATE_STARTED) {
+          // The next output buffer isn't due to be processed yet.
+          long pendingOutputBufferDelayUs = getPendingOutputBufferDelayUs(positionUs,
+              elapsedRealtimeUs, outputBufferInfo);
+          maxWorkDelayUs = pendingOutputBufferDelayUs == UNKNOWN_TIME_US ? UNKNOWN_TIME_US
+              : Math.min(pendingOutputBufferDelayUs, MAX_PENDING_WORK_DELAY_US);
+        }
       }
       codecCounters.ensureUpdated();
     } catch (IOException e) {
@@ -538,6 +690,7 @@ public abstract class MediaCodecTrackRenderer extends TrackRenderer {
     waitingForFirstSyncFrame = true;
     waitingForKeys = false;
     decodeOnlyPresentationTimestamps.clear();
+    trackedInputCount = 0;
     // Workaround for framework bugs.
     // See [Internal: b/8347958], [Internal: b/8578467], [Internal: b/8543366].
     if (Util.SDK_INT >= 18 && codecReinitializationState == REINITIALIZATION_STATE_NONE) {
@@ -686,6 +839,7 @@ public abstract class MediaCodecTrackRenderer extends TrackRenderer {
       } else {
         codec.queueInputBuffer(inputIndex, 0 , bufferSize, presentationTimeUs, 0);
       }
+      trackInputBuffer(presentationTimeUs);
       inputIndex = -1;
       codecHasQueuedBuffers = true;
       codecReconfigurationState = RECONFIGURATION_STATE_NONE;
@@ -738,6 +892,7 @@ public abstract class MediaCodecTrackRenderer extends TrackRenderer {
     format = formatHolder.format;
     drmInitData = formatHolder.drmInitData;
     if (codec != null && canReconfigureCodec(codec, codecIsAdaptive, oldFormat, format)) {
+      codecFormat = format;
       codecReconfigured = true;
       codecReconfigurationState = RECONFIGURATION_STATE_WRITE_PENDING;
     } else {
@@ -832,6 +987,9 @@ public abstract class MediaCodecTrackRenderer extends TrackRenderer {
 
     if (outputIndex < 0) {
       outputIndex = codec.dequeueOutputBuffer(outputBufferInfo, getDequeueOutputBufferTimeoutUs());
+      if (outputIndex >= 0) {
+        maybeRecordDecoderLatency(outputBufferInfo.presentationTimeUs);
+      }
     }
 
     if (outputIndex == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
@@ -880,6 +1038,26 @@ public abstract class MediaCodecTrackRenderer extends TrackRenderer {
       MediaCodec codec, ByteBuffer buffer, MediaCodec.BufferInfo bufferInfo, int bufferIndex,
       boolean shouldSkip) throws ExoPlaybackException;
 
+  /**
+   * Returns the maximum delay before an output buffer that
+   * {@link #processOutputBuffer(long, long, MediaCodec, ByteBuffer, MediaCodec.BufferInfo, int,
+   * boolean)} declined to process should be offered to it again, in microseconds. Invoked whilst
+   * the renderer is started, and used to implement {@link #getMaxWorkDelayUs()}.
+   * <p>
+   * The default implementation returns {@link #UNKNOWN_TIME_US}.
+   *
+   * @param positionUs The current media time in microseconds, measured at the start of the
+   *     current iteration of the rendering loop.
+   * @param elapsedRealtimeUs {@link android.os.SystemClock#elapsedRealtime()} in microseconds,
+   *     measured at the start of the current iteration of the rendering loop.
+   * @param bufferInfo Information about the pending output buffer.
+   * @return The maximum delay in microseconds, or {@link #UNKNOWN_TIME_US}.
+   */
+  protected long getPendingOutputBufferDelayUs(long positionUs, long elapsedRealtimeUs,
+      MediaCodec.BufferInfo bufferInfo) {
+    return UNKNOWN_TIME_US;
+  }
+
   /**
    * Processes an end of stream signal.
    *
@@ -930,6 +1108,50 @@ public abstract class MediaCodecTrackRenderer extends TrackRenderer {
     }
   }
 
+  /**
+   * Tracks a queued input buffer until the corresponding output buffer is dequeued, so that the
+   * decoder latency and input queue occupancy can be measured. If the maximum number of buffers
+   * are already tracked, the one that was queued earliest is forgotten.
+   */
+  private void trackInputBuffer(long presentationTimeUs) {
+    int index = trackedInputCount;
+    if (index == MAX_TRACKED_INPUT_BUFFERS) {
+      index = 0;
+      for (int i = 1; i < MAX_TRACKED_INPUT_BUFFERS; i++) {
+        if (trackedInputQueueTimesNs[i] < trackedInputQueueTimesNs[index]) {
+          index = i;
+        }
+      }
+    } else {
+      trackedInputCount++;
+    }
+    trackedInputTimesUs[index] = presentationTimeUs;
+    trackedInputQueueTimesNs[index] = System.nanoTime();
+  }
+
+  /**
+   * Records the decoder latency of the input buffer corresponding to a dequeued output buffer, if
+   * it's tracked, and stops tracking it. Since output buffers are dequeued in presentation order,
+   * any tracked buffers with earlier timestamps will never be output and are forgotten too.
+   */
+  private void maybeRecordDecoderLatency(long presentationTimeUs) {
+    long nowNs = System.nanoTime();
+    int i = 0;
+    while (i < trackedInputCount) {
+      if (trackedInputTimesUs[i] <= presentationTimeUs) {
+        if (trackedInputTimesUs[i] == presentationTimeUs) {
+          decoderLatencyHistogram.record((nowNs - trackedInputQueueTimesNs[i]) / 1000);
+        }
+        // Fill the gap with the last tracked buffer.
+        trackedInputCount--;
+        trackedInputTimesUs[i] = trackedInputTimesUs[trackedInputCount];
+        trackedInputQueueTimesNs[i] = trackedInputQueueTimesNs[trackedInputCount];
+      } else {
+        i++;
+      }
+    }
+  }
+
   private int getDecodeOnlyIndex(long presentationTimeUs) {
     final int size = decodeOnlyPresentationTimestamps.size();
     for (int i = 0; i < size; i++) {
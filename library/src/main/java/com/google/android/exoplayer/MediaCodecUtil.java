@@ -24,10 +24,12 @@ import android.media.MediaCodecInfo;
 import android.media.MediaCodecInfo.CodecCapabilities;
 import android.media.MediaCodecInfo.CodecProfileLevel;
 import android.media.MediaCodecList;
+import android.os.Build;
 import android.text.TextUtils;
 import android.util.Log;
 import android.util.Pair;
 
+import java.io.File;
 import java.util.HashMap;
 
 /**
@@ -53,6 +55,39 @@ public class MediaCodecUtil {
   private static final String TAG = "MediaCodecUtil";
 
   private static final HashMap<CodecKey, Pair<String, CodecCapabilities>> codecs = new HashMap<>();
+  private static final HashMap<CodecKey, DecoderCapabilities> codecListCapabilities =
+      new HashMap<>();
+
+  /**
+   * Looks up decoder capabilities by querying {@link MediaCodecList}.
+   */
+  private static final DecoderCapabilitiesLookup MEDIA_CODEC_LIST_LOOKUP =
+      new DecoderCapabilitiesLookup() {
+        @Override
+        public DecoderCapabilities getDecoderCapabilities(String mimeType, boolean secure)
+            throws DecoderQueryException {
+          return getMediaCodecListCapabilities(mimeType, secure);
+        }
+      };
+
+  private static DecoderCapabilitiesLookup decoderCapabilitiesLookup = MEDIA_CODEC_LIST_LOOKUP;
+
+  /**
+   * Enables caching of decoder capabilities in a file, so that they're available without querying
+   * {@link MediaCodecList} when the application next starts. Enumerating the device's codecs can
+   * take hundreds of milliseconds on some devices.
+   * <p>
+   * Should be called once, when the application starts. Cached capabilities are discarded if the
+   * device's build or the version of the library changes. The file is read synchronously, so this
+   * method should not be called on the application's main thread.
+   *
+   * @param file The file in which to cache decoder capabilities, typically in the application's
+   *     cache directory.
+   */
+  public static synchronized void enablePersistentCache(File file) {
+    decoderCapabilitiesLookup = new DecoderCapabilitiesCache(MEDIA_CODEC_LIST_LOOKUP, file,
+        Build.FINGERPRINT + "/" + ExoPlayerLibraryInfo.VERSION);
+  }
 
   /**
    * Get information about the decoder that will be used for a given mime type.
@@ -64,11 +99,24 @@ public class MediaCodecUtil {
    */
   public static DecoderInfo getDecoderInfo(String mimeType, boolean secure)
       throws DecoderQueryException {
-    Pair<String, CodecCapabilities> info = getMediaCodecInfo(mimeType, secure);
-    if (info == null) {
+    DecoderCapabilities capabilities = getDecoderCapabilities(mimeType, secure);
+    if (capabilities == null) {
       return null;
     }
-    return new DecoderInfo(info.first, isAdaptive(info.second));
+    return new DecoderInfo(capabilities.name, capabilities.adaptive);
+  }
+
+  /**
+   * Get the capabilities of the decoder that will be used for a given mime type.
+   *
+   * @param mimeType The mime type.
+   * @param secure Whether the decoder is required to support secure decryption. Always pass false
+   *     unless secure decryption really is required.
+   * @return The capabilities of the decoder, or null if no suitable decoder exists.
+   */
+  public static synchronized DecoderCapabilities getDecoderCapabilities(String mimeType,
+      boolean secure) throws DecoderQueryException {
+    return decoderCapabilitiesLookup.getDecoderCapabilities(mimeType, secure);
   }
 
   /**
@@ -82,13 +130,69 @@ public class MediaCodecUtil {
    */
   public static synchronized void warmCodec(String mimeType, boolean secure) {
     try {
-      getMediaCodecInfo(mimeType, secure);
+      getDecoderCapabilities(mimeType, secure);
+    } catch (DecoderQueryException e) {
+      // Codec warming is best effort, so we can swallow the exception.
+      Log.e(TAG, "Codec warming failed", e);
+    }
+  }
+
+  /**
+   * Optional call to warm the codec cache for a given mime type and, optionally, to add an instance
+   * of the decoder to the default {@link MediaCodecPool}.
+   * <p>
+   * Pre-populating the pool may speed up the initialization of the first renderer that requires
+   * the decoder. The pool only accepts the instance if {@link MediaCodecPool#setMaxSize(int)} has
+   * been called and it has room for it. Creating a decoder can take some time, so this method
+   * should not be called on the application's main thread if {@code createDecoder} is true.
+   *
+   * @param mimeType The mime type.
+   * @param secure Whether the decoder is required to support secure decryption. Always pass false
+   *     unless secure decryption really is required.
+   * @param createDecoder Whether to add an instance of the decoder to the pool.
+   */
+  public static void warmCodec(String mimeType, boolean secure, boolean createDecoder) {
+    warmCodec(mimeType, secure);
+    if (!createDecoder) {
+      return;
+    }
+    try {
+      DecoderInfo decoderInfo = getDecoderInfo(mimeType, secure);
+      if (decoderInfo != null) {
+        MediaCodecPool.getDefault().prepopulate(decoderInfo.name, decoderInfo.adaptive);
+      }
     } catch (DecoderQueryException e) {
       // Codec warming is best effort, so we can swallow the exception.
       Log.e(TAG, "Codec warming failed", e);
     }
   }
 
+  /**
+   * Returns the capabilities of the best decoder listed by {@link MediaCodecList} for the given
+   * mimeType, converting them once and caching the result.
+   */
+  private static synchronized DecoderCapabilities getMediaCodecListCapabilities(String mimeType,
+      boolean secure) throws DecoderQueryException {
+    CodecKey key = new CodecKey(mimeType, secure);
+    if (codecListCapabilities.containsKey(key)) {
+      return codecListCapabilities.get(key);
+    }
+    Pair<String, CodecCapabilities> info = getMediaCodecInfo(mimeType, secure);
+    DecoderCapabilities capabilities = null;
+    if (info != null) {
+      CodecProfileLevel[] profileLevels = info.second.profileLevels;
+      int[] profiles = new int[profileLevels.length];
+      int[] levels = new int[profileLevels.length];
+      for (int i = 0; i < profileLevels.length; i++) {
+        profiles[i] = profileLevels[i].profile;
+        levels[i] = profileLevels[i].level;
+      }
+      capabilities = new DecoderCapabilities(info.first, isAdaptive(info.second), profiles, levels);
+    }
+    codecListCapabilities.put(key, capabilities);
+    return capabilities;
+  }
+
   /**
    * Returns the name of the best decoder and its capabilities for the given mimeType.
    */
@@ -241,15 +345,13 @@ public class MediaCodecUtil {
    */
   public static boolean isH264ProfileSupported(int profile, int level)
       throws DecoderQueryException {
-    Pair<String, CodecCapabilities> info = getMediaCodecInfo(MimeTypes.VIDEO_H264, false);
-    if (info == null) {
+    DecoderCapabilities capabilities = getDecoderCapabilities(MimeTypes.VIDEO_H264, false);
+    if (capabilities == null) {
       return false;
     }
 
-    CodecCapabilities capabilities = info.second;
-    for (int i = 0; i < capabilities.profileLevels.length; i++) {
-      CodecProfileLevel profileLevel = capabilities.profileLevels[i];
-      if (profileLevel.profile == profile && profileLevel.level >= level) {
+    for (int i = 0; i < capabilities.profiles.length; i++) {
+      if (capabilities.profiles[i] == profile && capabilities.levels[i] >= level) {
         return true;
       }
     }
@@ -261,17 +363,15 @@ public class MediaCodecUtil {
    * @return the maximum frame size for an H264 stream that can be decoded on the device.
    */
   public static int maxH264DecodableFrameSize() throws DecoderQueryException {
-    Pair<String, CodecCapabilities> info = getMediaCodecInfo(MimeTypes.VIDEO_H264, false);
-    if (info == null) {
+    DecoderCapabilities capabilities = getDecoderCapabilities(MimeTypes.VIDEO_H264, false);
+    if (capabilities == null) {
       return 0;
     }
 
     int maxH264DecodableFrameSize = 0;
-    CodecCapabilities capabilities = info.second;
-    for (int i = 0; i < capabilities.profileLevels.length; i++) {
-      CodecProfileLevel profileLevel = capabilities.profileLevels[i];
+    for (int i = 0; i < capabilities.levels.length; i++) {
       maxH264DecodableFrameSize = Math.max(
-          avcLevelToMaxFrameSize(profileLevel.level), maxH264DecodableFrameSize);
+          avcLevelToMaxFrameSize(capabilities.levels[i]), maxH264DecodableFrameSize);
     }
 
     return maxH264DecodableFrameSize;
@@ -367,6 +367,16 @@ public class MediaCodecVideoTrackRenderer extends MediaCodecTrackRenderer {
     codec.setVideoScalingMode(videoScalingMode);
   }
 
+  @Override
+  protected Object getCodecOutput() {
+    return surface;
+  }
+
+  @Override
+  protected void onPooledCodecReused(MediaCodec codec) {
+    codec.setVideoScalingMode(videoScalingMode);
+  }
+
   @Override
   protected void onInputFormatChanged(MediaFormatHolder holder) throws ExoPlaybackException {
     super.onInputFormatChanged(holder);
@@ -473,6 +483,16 @@ public class MediaCodecVideoTrackRenderer extends MediaCodecTrackRenderer {
     return false;
   }
 
+  @Override
+  protected long getPendingOutputBufferDelayUs(long positionUs, long elapsedRealtimeUs,
+      MediaCodec.BufferInfo bufferInfo) {
+    // Come back when the pending buffer enters the window in which processOutputBuffer releases it.
+    long elapsedSinceStartOfLoopUs = (SystemClock.elapsedRealtime() * 1000) - elapsedRealtimeUs;
+    long earlyUs = bufferInfo.presentationTimeUs - positionUs - elapsedSinceStartOfLoopUs;
+    long releaseWindowUs = Util.SDK_INT >= 21 ? 50000 : 30000;
+    return Math.max(0, earlyUs - releaseWindowUs);
+  }
+
   protected void skipOutputBuffer(MediaCodec codec, int bufferIndex) {
     TraceUtil.beginSection("skipVideoBuffer");
     codec.releaseOutputBuffer(bufferIndex, false);
@@ -15,14 +15,16 @@
  */
 package com.google.android.exoplayer;
 
-import android.os.SystemClock;
+import com.google.android.exoplayer.util.Clock;
 
 /**
  * A standalone {@link MediaClock}. The clock can be started, stopped and its time can be set and
- * retrieved. When started, this clock is based on {@link SystemClock#elapsedRealtime()}.
+ * retrieved. When started, this clock is based on {@link Clock#elapsedRealtime()}.
  */
 /* package */ class StandaloneMediaClock implements MediaClock {
 
+  private final Clock clock;
+
   private boolean started;
 
   /**
@@ -31,11 +33,18 @@ import android.os.SystemClock;
   private long positionUs;
 
   /**
-   * The difference between {@link SystemClock#elapsedRealtime()} and {@link #positionUs}
+   * The difference between {@link Clock#elapsedRealtime()} and {@link #positionUs}
    * when the clock was last set or started.
    */
   private long deltaUs;
 
+  /**
+   * @param clock The clock on which the media clock is based.
+   */
+  public StandaloneMediaClock(Clock clock) {
+    this.clock = clock;
+  }
+
   /**
    * Starts the clock. Does nothing if the clock is already started.
    */
@@ -70,7 +79,7 @@ import android.os.SystemClock;
   }
 
   private long elapsedRealtimeMinus(long toSubtractUs) {
-    return SystemClock.elapsedRealtime() * 1000 - toSubtractUs;
+    return clock.elapsedRealtime() * 1000 - toSubtractUs;
   }
 
 }
@@ -297,6 +297,28 @@ public abstract class TrackRenderer implements ExoPlayerComponent {
   protected abstract void doSomeWork(long positionUs, long elapsedRealtimeUs)
       throws ExoPlaybackException;
 
+  /**
+   * Returns the maximum delay before which the renderer wishes {@link #doSomeWork(long, long)} to
+   * be invoked again, in microseconds. The player may invoke it sooner, for example because another
+   * renderer needs to be serviced.
+   * <p>
+   * This method is invoked after each call to {@link #doSomeWork(long, long)}. The default
+   * implementation returns {@link #UNKNOWN_TIME_US}, in which case the player invokes
+   * {@link #doSomeWork(long, long)} at its default rendering interval. Renderers that know when
+   * they'll next be able to make progress, for example because their output is already buffered
+   * ahead of the playback position, should override it so that the player can sleep for longer.
+   * Renderers that have pending input or output that may need servicing sooner, for example input
+   * that a decoder may become ready to accept, should cap the delay accordingly.
+   * <p>
+   * This method may be called when the renderer is in the following states:
+   * {@link #STATE_ENABLED}, {@link #STATE_STARTED}
+   *
+   * @return The maximum delay in microseconds, or {@link #UNKNOWN_TIME_US}.
+   */
+  protected long getMaxWorkDelayUs() {
+    return UNKNOWN_TIME_US;
+  }
+
   /**
    * Returns the duration of the media being rendered.
    * <p>
@@ -549,6 +549,18 @@ public final class AudioTrack {
             || audioTrackUtil.overrideHasPendingData());
   }
 
+  /**
+   * Returns the duration of the data that has been written to the audio track but not yet played
+   * out, in microseconds, or zero if the track isn't initialized.
+   */
+  public long getPendingDurationUs() {
+    if (!isInitialized()) {
+      return 0;
+    }
+    long pendingFrames = bytesToFrames(submittedBytes) - audioTrackUtil.getPlaybackHeadPosition();
+    return pendingFrames <= 0 ? 0 : framesToDurationUs(pendingFrames);
+  }
+
   /** Returns whether enough data has been supplied via {@link #handleBuffer} to begin playback. */
   public boolean hasEnoughDataToBeginPlayback() {
     // The value of minBufferSize can be slightly less than what's actually required for playback
@@ -141,4 +141,10 @@ public final class ChunkExtractorWrapper implements ExtractorOutput, TrackOutput
     output.sampleMetadata(timeUs, flags, size, offset, encryptionKey);
   }
 
+  @Override
+  public void sampleMetadata(int sampleCount, long[] timesUs, int[] flags, int[] sizes, int offset,
+      byte[] encryptionKey) {
+    output.sampleMetadata(sampleCount, timesUs, flags, sizes, offset, encryptionKey);
+  }
+
 }
@@ -124,6 +124,19 @@ public class ContainerMediaChunk extends BaseMediaChunk implements SingleTrackOu
     getOutput().sampleMetadata(timeUs + sampleOffsetUs, flags, size, offset, encryptionKey);
   }
 
+  @Override
+  public void sampleMetadata(int sampleCount, long[] timesUs, int[] flags, int[] sizes, int offset,
+      byte[] encryptionKey) {
+    // Offset the timestamps in place, restoring them once the output has consumed them.
+    for (int i = 0; i < sampleCount; i++) {
+      timesUs[i] += sampleOffsetUs;
+    }
+    getOutput().sampleMetadata(sampleCount, timesUs, flags, sizes, offset, encryptionKey);
+    for (int i = 0; i < sampleCount; i++) {
+      timesUs[i] -= sampleOffsetUs;
+    }
+  }
+
   // Loadable implementation.
 
   @Override
@@ -152,6 +152,12 @@ public final class InitializationChunk extends Chunk implements SingleTrackOutpu
     throw new IllegalStateException("Unexpected sample data in initialization chunk");
   }
 
+  @Override
+  public void sampleMetadata(int sampleCount, long[] timesUs, int[] flags, int[] sizes, int offset,
+      byte[] encryptionKey) {
+    throw new IllegalStateException("Unexpected sample data in initialization chunk");
+  }
+
   // Loadable implementation.
 
   @Override
@@ -26,6 +26,7 @@ import com.google.android.exoplayer.chunk.ChunkExtractorWrapper;
 import com.google.android.exoplayer.chunk.ChunkOperationHolder;
 import com.google.android.exoplayer.chunk.ChunkSource;
 import com.google.android.exoplayer.chunk.ContainerMediaChunk;
+import com.google.android.exoplayer.chunk.DataChunk;
 import com.google.android.exoplayer.chunk.Format;
 import com.google.android.exoplayer.chunk.Format.DecreasingBandwidthComparator;
 import com.google.android.exoplayer.chunk.FormatEvaluator;
@@ -39,13 +40,17 @@ import com.google.android.exoplayer.dash.mpd.MediaPresentationDescription;
 import com.google.android.exoplayer.dash.mpd.Period;
 import com.google.android.exoplayer.dash.mpd.RangedUri;
 import com.google.android.exoplayer.dash.mpd.Representation;
+import com.google.android.exoplayer.dash.mpd.Representation.MultiSegmentRepresentation;
 import com.google.android.exoplayer.drm.DrmInitData;
 import com.google.android.exoplayer.extractor.ChunkIndex;
 import com.google.android.exoplayer.extractor.Extractor;
 import com.google.android.exoplayer.extractor.mp4.FragmentedMp4Extractor;
 import com.google.android.exoplayer.extractor.webm.WebmExtractor;
+import com.google.android.exoplayer.upstream.ByteArrayDataSource;
 import com.google.android.exoplayer.upstream.DataSource;
 import com.google.android.exoplayer.upstream.DataSpec;
+import com.google.android.exoplayer.upstream.Loader;
+import com.google.android.exoplayer.upstream.Loader.Loadable;
 import com.google.android.exoplayer.util.Clock;
 import com.google.android.exoplayer.util.ManifestFetcher;
 import com.google.android.exoplayer.util.MimeTypes;
@@ -64,7 +69,8 @@ import java.util.List;
  * <p>
  * This implementation currently supports fMP4, webm, and webvtt.
  */
-public class DashChunkSource implements ChunkSource {
+public class DashChunkSource implements ChunkSource,
+    FragmentedMp4Extractor.EventMessageListener {
 
   /**
    * Interface definition for a callback to be notified of {@link DashChunkSource} events.
@@ -80,6 +86,36 @@ public class DashChunkSource implements ChunkSource {
 
   }
 
+  /**
+   * Interface definition for a callback to be notified of the startup timings of a
+   * {@link DashChunkSource}.
+   * <p>
+   * An {@link EventListener} passed to a {@link DashChunkSource} that also implements this
+   * interface is notified of the timings, on the same {@link Handler} as its other events.
+   */
+  public interface StartupTimingsListener {
+
+    /**
+     * Invoked when the first media segment after the source is enabled has been loaded.
+     * <p>
+     * All of the timestamps are values of {@link android.os.SystemClock#elapsedRealtime()}.
+     * Together with the time at which the first frame is rendered, they can be used to break
+     * time-to-first-frame down into its component phases.
+     *
+     * @param manifestLoadedMs The time at which the manifest load completed, or -1 if the source
+     *     was created without a {@link ManifestFetcher}.
+     * @param enabledMs The time at which the source was enabled.
+     * @param initializationLoadedMs The time at which the initialization chunk load completed, or
+     *     -1 if no initialization chunk was required.
+     * @param firstSegmentLoadedMs The time at which the first media segment load completed.
+     * @param firstSegmentPrefetched Whether the first media segment was prefetched concurrently
+     *     with the initialization chunk.
+     */
+    public void onStartupTimings(long manifestLoadedMs, long enabledMs,
+        long initializationLoadedMs, long firstSegmentLoadedMs, boolean firstSegmentPrefetched);
+
+  }
+
   /**
    * Thrown when an AdaptationSet is missing from the MPD.
    */
@@ -96,11 +132,23 @@ public class DashChunkSource implements ChunkSource {
    */
   public static final int USE_ALL_TRACKS = -1;
 
+  /**
+   * The scheme of in-band event messages that signal a manifest update, as defined by 23009-1.
+   */
+  private static final String MANIFEST_EVENT_SCHEME_ID_URI = "urn:mpeg:dash:event:2012";
+
+  /**
+   * The interval at which a dynamic manifest whose minimumUpdatePeriod is 0 is refreshed once it
+   * has been exhausted, if no in-band signal to refresh it has been received.
+   */
+  private static final long FALLBACK_MIN_UPDATE_PERIOD_MS = 5000;
+
   private final Handler eventHandler;
   private final EventListener eventListener;
 
   private final TrackInfo trackInfo;
   private final DataSource dataSource;
+  private final DataSource prefetchDataSource;
   private final FormatEvaluator formatEvaluator;
   private final Evaluation evaluation;
   private final Clock systemClock;
@@ -119,6 +167,8 @@ public class DashChunkSource implements ChunkSource {
 
   private MediaPresentationDescription currentManifest;
   private boolean finishedCurrentManifest;
+  private volatile boolean manifestRefreshSignaled;
+  private volatile long lastManifestEventId;
 
   private DrmInitData drmInitData;
   private TimeRange seekRange;
@@ -130,6 +180,14 @@ public class DashChunkSource implements ChunkSource {
   private boolean lastChunkWasInitialization;
   private IOException fatalError;
 
+  private boolean fastStartPending;
+  private boolean firstSegmentPrefetched;
+  private Loader prefetchLoader;
+  private PrefetchChunk prefetchChunk;
+  private boolean startupTimingsPending;
+  private long enabledTimestampMs;
+  private long initializationLoadedTimestampMs;
+
   /**
    * Lightweight constructor to use for fixed duration content.
    *
@@ -167,8 +225,8 @@ public class DashChunkSource implements ChunkSource {
    */
   public DashChunkSource(MediaPresentationDescription manifest, int adaptationSetIndex,
       int[] representationIndices, DataSource dataSource, FormatEvaluator formatEvaluator) {
-    this(null, manifest, adaptationSetIndex, representationIndices, dataSource, formatEvaluator,
-        new SystemClock(), 0, 0, false, null, null);
+    this(null, manifest, adaptationSetIndex, representationIndices, dataSource, null,
+        formatEvaluator, new SystemClock(), 0, 0, false, null, null);
   }
 
   /**
@@ -202,7 +260,7 @@ public class DashChunkSource implements ChunkSource {
       FormatEvaluator formatEvaluator, long liveEdgeLatencyMs, long elapsedRealtimeOffsetMs,
       Handler eventHandler, EventListener eventListener) {
     this(manifestFetcher, manifestFetcher.getManifest(), adaptationSetIndex, representationIndices,
-        dataSource, formatEvaluator, new SystemClock(), liveEdgeLatencyMs * 1000,
+        dataSource, null, formatEvaluator, new SystemClock(), liveEdgeLatencyMs * 1000,
         elapsedRealtimeOffsetMs * 1000, true, eventHandler, eventListener);
   }
 
@@ -235,21 +293,70 @@ public class DashChunkSource implements ChunkSource {
       int adaptationSetIndex, int[] representationIndices, DataSource dataSource,
       FormatEvaluator formatEvaluator, long liveEdgeLatencyMs, long elapsedRealtimeOffsetMs,
       boolean startAtLiveEdge, Handler eventHandler, EventListener eventListener) {
+    this(manifestFetcher, adaptationSetIndex, representationIndices, dataSource, null,
+        formatEvaluator, liveEdgeLatencyMs, elapsedRealtimeOffsetMs, startAtLiveEdge, eventHandler,
+        eventListener);
+  }
+
+  /**
+   * Constructor to use for streaming with a fast start.
+   * <p>
+   * When a {@code prefetchDataSource} is provided, playback starts from the lowest bandwidth
+   * representation, and if the segment index of that representation is known from the manifest
+   * then the first media segment is requested through {@code prefetchDataSource} concurrently with
+   * the initialization chunk.
+   *
+   * @param manifestFetcher A fetcher for the manifest, which must have already successfully
+   *     completed an initial load.
+   * @param adaptationSetIndex The index of the adaptation set that should be used.
+   * @param representationIndices The indices of the representations within the adaptations set
+   *     that should be used. May be null if all representations within the adaptation set should
+   *     be considered.
+   * @param dataSource A {@link DataSource} suitable for loading the media data.
+   * @param prefetchDataSource A {@link DataSource} suitable for loading the media data, distinct
+   *     from {@code dataSource}, used to prefetch the first media segment. May be null if a fast
+   *     start is not required.
+   * @param formatEvaluator Selects from the available formats.
+   * @param liveEdgeLatencyMs For live streams, the number of milliseconds that the playback should
+   *     lag behind the "live edge" (i.e. the end of the most recently defined media in the
+   *     manifest). Choosing a small value will minimize latency introduced by the player, however
+   *     note that the value sets an upper bound on the length of media that the player can buffer.
+   *     Hence a small value may increase the probability of rebuffering and playback failures.
+   * @param elapsedRealtimeOffsetMs If known, an estimate of the instantaneous difference between
+   *     server-side unix time and {@link SystemClock#elapsedRealtime()} in milliseconds, specified
+   *     as the server's unix time minus the local elapsed time. It unknown, set to 0.
+   * @param startAtLiveEdge True if the stream should start at the live edge; false if it should
+   *     at the beginning of the live window.
+   * @param eventHandler A handler to use when delivering events to {@code EventListener}. May be
+   *     null if delivery of events is not required.
+   * @param eventListener A listener of events. May be null if delivery of events is not required.
+   *     If it also implements {@link StartupTimingsListener} then it's notified of the startup
+   *     timings.
+   */
+  public DashChunkSource(ManifestFetcher<MediaPresentationDescription> manifestFetcher,
+      int adaptationSetIndex, int[] representationIndices, DataSource dataSource,
+      DataSource prefetchDataSource, FormatEvaluator formatEvaluator, long liveEdgeLatencyMs,
+      long elapsedRealtimeOffsetMs, boolean startAtLiveEdge, Handler eventHandler,
+      EventListener eventListener) {
     this(manifestFetcher, manifestFetcher.getManifest(), adaptationSetIndex, representationIndices,
-        dataSource, formatEvaluator, new SystemClock(), liveEdgeLatencyMs * 1000,
-        elapsedRealtimeOffsetMs * 1000, startAtLiveEdge, eventHandler, eventListener);
+        dataSource, prefetchDataSource, formatEvaluator, new SystemClock(),
+        liveEdgeLatencyMs * 1000, elapsedRealtimeOffsetMs * 1000, startAtLiveEdge, eventHandler,
+        eventListener);
   }
 
   /* package */ DashChunkSource(ManifestFetcher<MediaPresentationDescription> manifestFetcher,
       MediaPresentationDescription initialManifest, int adaptationSetIndex,
-      int[] representationIndices, DataSource dataSource, FormatEvaluator formatEvaluator,
-      Clock systemClock, long liveEdgeLatencyUs, long elapsedRealtimeOffsetUs,
-      boolean startAtLiveEdge, Handler eventHandler, EventListener eventListener) {
+      int[] representationIndices, DataSource dataSource, DataSource prefetchDataSource,
+      FormatEvaluator formatEvaluator, Clock systemClock, long liveEdgeLatencyUs,
+      long elapsedRealtimeOffsetUs, boolean startAtLiveEdge, Handler eventHandler,
+      EventListener eventListener) {
     this.manifestFetcher = manifestFetcher;
     this.currentManifest = initialManifest;
+    lastManifestEventId = -1;
     this.adaptationSetIndex = adaptationSetIndex;
     this.representationIndices = representationIndices;
     this.dataSource = dataSource;
+    this.prefetchDataSource = prefetchDataSource;
     this.formatEvaluator = formatEvaluator;
     this.systemClock = systemClock;
     this.liveEdgeLatencyUs = liveEdgeLatencyUs;
@@ -277,7 +384,7 @@ public class DashChunkSource implements ChunkSource {
       maxWidth = Math.max(formats[i].width, maxWidth);
       maxHeight = Math.max(formats[i].height, maxHeight);
       Extractor extractor = mimeTypeIsWebm(formats[i].mimeType) ? new WebmExtractor()
-          : new FragmentedMp4Extractor();
+          : new FragmentedMp4Extractor(0, this);
       representationHolders.put(formats[i].id,
           new RepresentationHolder(representations[i], new ChunkExtractorWrapper(extractor)));
     }
@@ -306,6 +413,12 @@ public class DashChunkSource implements ChunkSource {
   @Override
   public void enable() {
     fatalError = null;
+    fastStartPending = prefetchDataSource != null;
+    firstSegmentPrefetched = false;
+    // The timings are only recorded if there's a listener to notify of them.
+    startupTimingsPending = eventHandler != null && eventListener instanceof StartupTimingsListener;
+    enabledTimestampMs = startupTimingsPending ? systemClock.elapsedRealtime() : -1;
+    initializationLoadedTimestampMs = -1;
     formatEvaluator.enable();
     if (manifestFetcher != null) {
       manifestFetcher.enable();
@@ -324,6 +437,11 @@ public class DashChunkSource implements ChunkSource {
 
   @Override
   public void disable(List<? extends MediaChunk> queue) {
+    if (prefetchLoader != null) {
+      prefetchLoader.release();
+      prefetchLoader = null;
+    }
+    prefetchChunk = null;
     formatEvaluator.disable();
     if (manifestFetcher != null) {
       manifestFetcher.disable();
@@ -345,6 +463,12 @@ public class DashChunkSource implements ChunkSource {
         RepresentationHolder representationHolder =
             representationHolders.get(representation.format.id);
         DashSegmentIndex oldIndex = representationHolder.segmentIndex;
+        if (oldIndex instanceof MultiSegmentRepresentation
+            && ((MultiSegmentRepresentation) oldIndex).appendSegments(representation)) {
+          // The new segments have been appended to the existing index, so we can continue to use
+          // it without adjusting the segment numbers.
+          continue;
+        }
         int oldIndexLastSegmentNum = oldIndex.getLastSegmentNum();
         long oldIndexEndTimeUs = oldIndex.getTimeUs(oldIndexLastSegmentNum)
             + oldIndex.getDurationUs(oldIndexLastSegmentNum);
@@ -371,18 +495,26 @@ public class DashChunkSource implements ChunkSource {
       currentManifest = newManifest;
       finishedCurrentManifest = false;
 
+      DashSegmentIndex segmentIndex =
+          representationHolders.get(newRepresentations[0].format.id).segmentIndex;
       long nowUs = getNowUs();
-      updateAvailableSegmentBounds(newRepresentations[0].getIndex(), nowUs);
-      updateSeekRange(newRepresentations[0].getIndex(), nowUs);
+      updateAvailableSegmentBounds(segmentIndex, nowUs);
+      updateSeekRange(segmentIndex, nowUs);
+    }
+
+    if (manifestRefreshSignaled) {
+      // The stream has signaled that the manifest has been updated.
+      manifestRefreshSignaled = false;
+      manifestFetcher.requestRefresh();
+      return;
     }
 
-    // TODO: This is a temporary hack to avoid constantly refreshing the MPD in cases where
-    // minUpdatePeriod is set to 0. In such cases we shouldn't refresh unless there is explicit
-    // signaling in the stream, according to:
-    // http://azure.microsoft.com/blog/2014/09/13/dash-live-streaming-with-azure-media-service/
     long minUpdatePeriod = currentManifest.minUpdatePeriod;
     if (minUpdatePeriod == 0) {
-      minUpdatePeriod = 5000;
+      // The manifest should only be refreshed when signaled in the stream, according to:
+      // http://azure.microsoft.com/blog/2014/09/13/dash-live-streaming-with-azure-media-service/
+      // Fall back to refreshing periodically in case the signal is never received.
+      minUpdatePeriod = FALLBACK_MIN_UPDATE_PERIOD_MS;
     }
 
     if (finishedCurrentManifest && (android.os.SystemClock.elapsedRealtime()
@@ -402,6 +534,10 @@ public class DashChunkSource implements ChunkSource {
     evaluation.queueSize = queue.size();
     if (evaluation.format == null || !lastChunkWasInitialization) {
       formatEvaluator.evaluate(queue, playbackPositionUs, formats, evaluation);
+      if (fastStartPending && queue.isEmpty()) {
+        // Start from the lowest bandwidth format to minimize time-to-first-frame.
+        evaluation.format = formats[formats.length - 1];
+      }
     }
     Format selectedFormat = evaluation.format;
     out.queueSize = evaluation.queueSize;
@@ -440,6 +576,11 @@ public class DashChunkSource implements ChunkSource {
           selectedRepresentation, extractorWrapper, dataSource, evaluation.trigger);
       lastChunkWasInitialization = true;
       out.chunk = initializationChunk;
+      if (fastStartPending && queue.isEmpty() && segmentIndex != null) {
+        // The segment index is known from the manifest, so we can request the first media segment
+        // whilst the initialization chunk is loading.
+        maybeStartPrefetch(representationHolder, getStartSegmentNum(segmentIndex, seekPositionUs));
+      }
       return;
     }
 
@@ -459,24 +600,10 @@ public class DashChunkSource implements ChunkSource {
       }
     }
     if (queue.isEmpty()) {
+      segmentNum = getStartSegmentNum(segmentIndex, seekPositionUs);
       if (currentManifest.dynamic) {
-        seekRangeValues = seekRange.getCurrentBoundsUs(seekRangeValues);
-        if (startAtLiveEdge) {
-          // We want live streams to start at the live edge instead of the beginning of the
-          // manifest
-          startAtLiveEdge = false;
-          seekPositionUs = seekRangeValues[1];
-        } else {
-          seekPositionUs = Math.max(seekPositionUs, seekRangeValues[0]);
-          seekPositionUs = Math.min(seekPositionUs, seekRangeValues[1]);
-        }
-      }
-      segmentNum = segmentIndex.getSegmentNum(seekPositionUs);
-
-      // if the index is unbounded then the result of getSegmentNum isn't clamped to ensure that
-      // it doesn't exceed the last available segment. Clamp it here.
-      if (indexUnbounded) {
-        segmentNum = Math.min(segmentNum, lastAvailableSegmentNum);
+        // We only want live streams to start at the live edge the first time.
+        startAtLiveEdge = false;
       }
     } else {
       MediaChunk previous = queue.get(out.queueSize - 1);
@@ -507,9 +634,31 @@ public class DashChunkSource implements ChunkSource {
       return;
     }
 
+    byte[] prefetchedData = null;
+    int prefetchedLength = 0;
+    if (prefetchChunk != null) {
+      if (prefetchChunk.format.equals(selectedFormat) && prefetchChunk.segmentNum == segmentNum) {
+        if (!prefetchChunk.loaded && !prefetchChunk.failed) {
+          // Wait for the prefetch to complete rather than requesting the same data twice.
+          return;
+        }
+        if (prefetchChunk.loaded) {
+          prefetchedData = prefetchChunk.data;
+          prefetchedLength = prefetchChunk.length;
+        }
+      } else if (prefetchLoader.isLoading()) {
+        prefetchLoader.cancelLoading();
+      }
+      prefetchChunk = null;
+    }
+
     Chunk nextMediaChunk = newMediaChunk(representationHolder, dataSource, segmentNum,
-        evaluation.trigger);
+        evaluation.trigger, prefetchedData, prefetchedLength);
     lastChunkWasInitialization = false;
+    if (fastStartPending) {
+      fastStartPending = false;
+      firstSegmentPrefetched = prefetchedData != null;
+    }
     out.chunk = nextMediaChunk;
   }
 
@@ -521,6 +670,9 @@ public class DashChunkSource implements ChunkSource {
 
   @Override
   public void onChunkLoadCompleted(Chunk chunk) {
+    if (startupTimingsPending) {
+      maybeNotifyStartupTimings(chunk);
+    }
     if (chunk instanceof InitializationChunk) {
       InitializationChunk initializationChunk = (InitializationChunk) chunk;
       String formatId = initializationChunk.format.id;
@@ -547,6 +699,73 @@ public class DashChunkSource implements ChunkSource {
     // Do nothing.
   }
 
+  // FragmentedMp4Extractor.EventMessageListener implementation.
+
+  @Override
+  public void onEventMessage(String schemeIdUri, String value, long id, byte[] messageData) {
+    // Messages are typically repeated in each segment until the manifest has been updated, so we
+    // ignore repetitions of the last message received.
+    if (MANIFEST_EVENT_SCHEME_ID_URI.equals(schemeIdUri) && id != lastManifestEventId) {
+      lastManifestEventId = id;
+      manifestRefreshSignaled = true;
+    }
+  }
+
+  private void maybeNotifyStartupTimings(Chunk chunk) {
+    long nowMs = systemClock.elapsedRealtime();
+    if (chunk instanceof InitializationChunk) {
+      if (initializationLoadedTimestampMs == -1) {
+        initializationLoadedTimestampMs = nowMs;
+      }
+    } else if (chunk instanceof MediaChunk) {
+      startupTimingsPending = false;
+      long manifestLoadedMs = manifestFetcher != null ? manifestFetcher.getManifestLoadTimestamp()
+          : -1;
+      notifyStartupTimings(manifestLoadedMs, enabledTimestampMs, initializationLoadedTimestampMs,
+          nowMs, firstSegmentPrefetched);
+    }
+  }
+
+  /**
+   * Gets the number of the segment from which loading should start when the queue is empty.
+   */
+  private int getStartSegmentNum(DashSegmentIndex segmentIndex, long seekPositionUs) {
+    if (currentManifest.dynamic) {
+      seekRangeValues = seekRange.getCurrentBoundsUs(seekRangeValues);
+      if (startAtLiveEdge) {
+        // We want live streams to start at the live edge instead of the beginning of the
+        // manifest
+        seekPositionUs = seekRangeValues[1];
+      } else {
+        seekPositionUs = Math.max(seekPositionUs, seekRangeValues[0]);
+        seekPositionUs = Math.min(seekPositionUs, seekRangeValues[1]);
+      }
+    }
+    int segmentNum = segmentIndex.getSegmentNum(seekPositionUs);
+    // if the index is unbounded then the result of getSegmentNum isn't clamped to ensure that
+    // it doesn't exceed the last available segment. Clamp it here.
+    if (segmentIndex.getLastSegmentNum() == DashSegmentIndex.INDEX_UNBOUNDED) {
+      segmentNum = Math.min(segmentNum, lastAvailableSegmentNum);
+    }
+    return segmentNum;
+  }
+
+  private void maybeStartPrefetch(RepresentationHolder representationHolder, int segmentNum) {
+    if (prefetchChunk != null || segmentNum < firstAvailableSegmentNum
+        || segmentNum > lastAvailableSegmentNum) {
+      return;
+    }
+    if (prefetchLoader == null) {
+      prefetchLoader = new Loader("Loader:DashPrefetch");
+    }
+    RangedUri segmentUri = representationHolder.segmentIndex.getSegmentUrl(segmentNum);
+    DataSpec dataSpec = new DataSpec(segmentUri.getUri(), segmentUri.start, segmentUri.length,
+        representationHolder.representation.getCacheKey());
+    prefetchChunk = new PrefetchChunk(prefetchDataSource, dataSpec,
+        representationHolder.representation.format, segmentNum);
+    prefetchLoader.startLoading(prefetchChunk, prefetchChunk);
+  }
+
   private void updateAvailableSegmentBounds(DashSegmentIndex segmentIndex, long nowUs) {
     int indexFirstAvailableSegmentNum = segmentIndex.getFirstSegmentNum();
     int indexLastAvailableSegmentNum = segmentIndex.getLastSegmentNum();
@@ -624,7 +843,7 @@ public class DashChunkSource implements ChunkSource {
   }
 
   private Chunk newMediaChunk(RepresentationHolder representationHolder, DataSource dataSource,
-      int segmentNum, int trigger) {
+      int segmentNum, int trigger, byte[] prefetchedData, int prefetchedLength) {
     Representation representation = representationHolder.representation;
     DashSegmentIndex segmentIndex = representationHolder.segmentIndex;
 
@@ -636,8 +855,16 @@ public class DashChunkSource implements ChunkSource {
         && segmentNum == segmentIndex.getLastSegmentNum();
 
     RangedUri segmentUri = segmentIndex.getSegmentUrl(segmentNum);
-    DataSpec dataSpec = new DataSpec(segmentUri.getUri(), segmentUri.start, segmentUri.length,
-        representation.getCacheKey());
+    DataSpec dataSpec;
+    if (prefetchedData != null) {
+      // The segment has already been loaded. Read it from memory.
+      dataSource = new ByteArrayDataSource(prefetchedData);
+      dataSpec = new DataSpec(segmentUri.getUri(), 0, prefetchedLength,
+          representation.getCacheKey());
+    } else {
+      dataSpec = new DataSpec(segmentUri.getUri(), segmentUri.start, segmentUri.length,
+          representation.getCacheKey());
+    }
 
     long sampleOffsetUs = representation.periodStartMs * 1000
         - representation.presentationTimeOffsetUs;
@@ -728,6 +955,66 @@ public class DashChunkSource implements ChunkSource {
     }
   }
 
+  private void notifyStartupTimings(final long manifestLoadedMs, final long enabledMs,
+      final long initializationLoadedMs, final long firstSegmentLoadedMs,
+      final boolean firstSegmentPrefetched) {
+    if (eventHandler != null && eventListener instanceof StartupTimingsListener) {
+      final StartupTimingsListener listener = (StartupTimingsListener) eventListener;
+      eventHandler.post(new Runnable() {
+        @Override
+        public void run() {
+          listener.onStartupTimings(manifestLoadedMs, enabledMs, initializationLoadedMs,
+              firstSegmentLoadedMs, firstSegmentPrefetched);
+        }
+      });
+    }
+  }
+
+  /**
+   * Loads the first media segment into memory, concurrently with the initialization chunk.
+   */
+  private static final class PrefetchChunk extends DataChunk implements Loader.Callback {
+
+    public final int segmentNum;
+
+    public byte[] data;
+    public int length;
+    public boolean loaded;
+    public boolean failed;
+
+    public PrefetchChunk(DataSource dataSource, DataSpec dataSpec, Format format,
+        int segmentNum) {
+      super(dataSource, dataSpec, Chunk.TYPE_MEDIA, Chunk.TRIGGER_INITIAL, format, null);
+      this.segmentNum = segmentNum;
+    }
+
+    @Override
+    protected void consume(byte[] data, int limit) {
+      this.data = data;
+      this.length = limit;
+    }
+
+    // Loader.Callback implementation.
+
+    @Override
+    public void onLoadCompleted(Loadable loadable) {
+      loaded = length > 0;
+      failed = !loaded;
+    }
+
+    @Override
+    public void onLoadCanceled(Loadable loadable) {
+      failed = true;
+    }
+
+    @Override
+    public void onLoadError(Loadable loadable, IOException e) {
+      // The segment will be requested again through the regular data source.
+      failed = true;
+    }
+
+  }
+
   private static class RepresentationHolder {
 
     public final Representation representation;
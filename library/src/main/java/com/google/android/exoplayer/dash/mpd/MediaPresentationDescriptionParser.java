@@ -479,9 +479,15 @@ public class MediaPresentationDescriptionParser extends DefaultHandler
         startNumber, duration, timeline, initializationTemplate, mediaTemplate, baseUrl);
   }
 
+  /**
+   * Parses a SegmentTimeline element.
+   * <p>
+   * Repeated S elements are stored as runs in a {@link SegmentTimeline}, rather than being
+   * expanded into one {@link SegmentTimelineElement} per segment.
+   */
   protected List<SegmentTimelineElement> parseSegmentTimeline(XmlPullParser xpp)
       throws XmlPullParserException, IOException {
-    List<SegmentTimelineElement> segmentTimeline = new ArrayList<>();
+    SegmentTimeline segmentTimeline = new SegmentTimeline();
     long elapsedTime = 0;
     do {
       xpp.next();
@@ -489,15 +495,24 @@ public class MediaPresentationDescriptionParser extends DefaultHandler
         elapsedTime = parseLong(xpp, "t", elapsedTime);
         long duration = parseLong(xpp, "d");
         int count = 1 + parseInt(xpp, "r", 0);
-        for (int i = 0; i < count; i++) {
-          segmentTimeline.add(buildSegmentTimelineElement(elapsedTime, duration));
-          elapsedTime += duration;
-        }
+        SegmentTimelineElement element = buildSegmentTimelineElement(elapsedTime, duration);
+        segmentTimeline.append(element.startTime, element.duration, count);
+        elapsedTime += duration * Math.max(count, 0);
       }
     } while (!isEndTag(xpp, "SegmentTimeline"));
     return segmentTimeline;
   }
 
+  /**
+   * Builds the first segment of the run of segments described by an S element.
+   * <p>
+   * The start time and duration of the returned element are used for the whole run, which is
+   * stored in a {@link SegmentTimeline} rather than as individual elements. Hence this method is
+   * invoked once per S element, rather than once per segment.
+   *
+   * @deprecated Override {@link #parseSegmentTimeline(XmlPullParser)} instead.
+   */
+  @Deprecated
   protected SegmentTimelineElement buildSegmentTimelineElement(long elapsedTime, long duration) {
     return new SegmentTimelineElement(elapsedTime, duration);
   }
@@ -257,6 +257,21 @@ public abstract class Representation implements FormatWrapper {
       return this;
     }
 
+    /**
+     * Appends segments defined by a refreshed version of this representation to the end of this
+     * one, so that this representation can continue to be used as the segment index.
+     *
+     * @param refreshed The corresponding representation from a refreshed manifest.
+     * @return True if the segments were appended. False if the refreshed representation cannot be
+     *     merged into this one, in which case this representation is left unchanged.
+     * @see MultiSegmentBase#appendSegments(MultiSegmentBase)
+     */
+    public boolean appendSegments(Representation refreshed) {
+      return refreshed instanceof MultiSegmentRepresentation
+          && refreshed.periodStartMs == periodStartMs
+          && segmentBase.appendSegments(((MultiSegmentRepresentation) refreshed).segmentBase);
+    }
+
     // DashSegmentIndex implementation.
 
     @Override
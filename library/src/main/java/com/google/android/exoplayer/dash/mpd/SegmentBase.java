@@ -113,9 +113,12 @@ public abstract class SegmentBase {
   public abstract static class MultiSegmentBase extends SegmentBase {
 
     /* package */ final long periodDurationMs;
-    /* package */ final int startNumber;
     /* package */ final long duration;
-    /* package */ final List<SegmentTimelineElement> segmentTimeline;
+
+    // Not final, since segments that have left the live window are removed when a refreshed element
+    // is appended.
+    /* package */ int startNumber;
+    /* package */ SegmentTimeline segmentTimeline;
 
     /**
      * @param initialization A {@link RangedUri} corresponding to initialization data, if such data
@@ -130,7 +133,7 @@ public abstract class SegmentBase {
      *     {@code segmentTimeline} is non-null then this parameter is ignored.
      * @param segmentTimeline A segment timeline corresponding to the segments. If null, then
      *     segments are assumed to be of fixed duration as specified by the {@code duration}
-     *     parameter.
+     *     parameter. If not already a {@link SegmentTimeline}, the elements are copied into one.
      */
     public MultiSegmentBase(RangedUri initialization, long timescale, long presentationTimeOffset,
         long periodDurationMs, int startNumber, long duration,
@@ -139,7 +142,7 @@ public abstract class SegmentBase {
       this.periodDurationMs = periodDurationMs;
       this.startNumber = startNumber;
       this.duration = duration;
-      this.segmentTimeline = segmentTimeline;
+      this.segmentTimeline = SegmentTimeline.copyOf(segmentTimeline);
     }
 
     /**
@@ -179,7 +182,7 @@ public abstract class SegmentBase {
      */
     public final long getSegmentDurationUs(int sequenceNumber) {
       if (segmentTimeline != null) {
-        long duration = segmentTimeline.get(sequenceNumber - startNumber).duration;
+        long duration = segmentTimeline.getDuration(sequenceNumber - startNumber);
         return (duration * C.MICROS_PER_SECOND) / timescale;
       } else {
         return sequenceNumber == getLastSegmentNum()
@@ -194,7 +197,7 @@ public abstract class SegmentBase {
     public final long getSegmentTimeUs(int sequenceNumber) {
       long unscaledSegmentTime;
       if (segmentTimeline != null) {
-        unscaledSegmentTime = segmentTimeline.get(sequenceNumber - startNumber).startTime
+        unscaledSegmentTime = segmentTimeline.getStartTime(sequenceNumber - startNumber)
             - presentationTimeOffset;
       } else {
         unscaledSegmentTime = (sequenceNumber - startNumber) * duration;
@@ -229,6 +232,21 @@ public abstract class SegmentBase {
       return segmentTimeline != null;
     }
 
+    /**
+     * Appends segments defined by a refreshed version of this element to the end of this one.
+     * <p>
+     * Segments in the refreshed element that overlap with those already defined are ignored.
+     * Segments that precede the first segment in the refreshed element have left the live window,
+     * and are removed. The sequence numbers of the remaining segments remain valid.
+     *
+     * @param refreshed The refreshed element.
+     * @return True if the segments were appended. False if the refreshed element cannot be merged
+     *     into this one, in which case this element is left unchanged.
+     */
+    public boolean appendSegments(MultiSegmentBase refreshed) {
+      return false;
+    }
+
   }
 
   /**
@@ -289,6 +307,8 @@ public abstract class SegmentBase {
 
     private final String baseUrl;
 
+    private boolean ownsSegmentTimeline;
+
     /**
      * @param initialization A {@link RangedUri} corresponding to initialization data, if such data
      *     exists. The value of this parameter is ignored if {@code initializationTemplate} is
@@ -321,6 +341,50 @@ public abstract class SegmentBase {
       this.baseUrl = baseUrl;
     }
 
+    @Override
+    public boolean appendSegments(MultiSegmentBase refreshed) {
+      if (!(refreshed instanceof SegmentTemplate) || segmentTimeline == null
+          || segmentTimeline.isEmpty() || refreshed.segmentTimeline == null
+          || timescale != refreshed.timescale
+          || presentationTimeOffset != refreshed.presentationTimeOffset
+          || !Util.areEqual(baseUrl, ((SegmentTemplate) refreshed).baseUrl)) {
+        return false;
+      }
+      SegmentTimeline refreshedTimeline = refreshed.segmentTimeline;
+      long endTime = segmentTimeline.getEndTime();
+      int firstNewIndex = refreshedTimeline.getSegmentIndex(endTime);
+      if (firstNewIndex == -1) {
+        // There's a gap between the end of this timeline and the start of the refreshed one.
+        return false;
+      }
+      if (refreshedTimeline.getStartTime(firstNewIndex) < endTime) {
+        firstNewIndex++;
+      }
+      if (mediaTemplate.containsNumber()
+          && refreshed.startNumber + firstNewIndex != startNumber + segmentTimeline.size()) {
+        // The refreshed segment numbers are inconsistent with ours.
+        return false;
+      }
+      if (!ownsSegmentTimeline) {
+        // The timeline may have been inherited from an enclosing element, in which case it's shared
+        // with other representations. Append to a copy.
+        SegmentTimeline timelineCopy = new SegmentTimeline();
+        timelineCopy.append(segmentTimeline, 0);
+        segmentTimeline = timelineCopy;
+        ownsSegmentTimeline = true;
+      }
+      segmentTimeline.append(refreshedTimeline, firstNewIndex);
+      // Remove segments that have left the live window, so that the timeline doesn't grow without
+      // bound over the course of a long live stream.
+      int removedSegmentCount =
+          segmentTimeline.getSegmentIndex(refreshedTimeline.getStartTime(0));
+      if (removedSegmentCount > 0) {
+        segmentTimeline.removeSegmentsBefore(removedSegmentCount);
+        startNumber += removedSegmentCount;
+      }
+      return true;
+    }
+
     @Override
     public RangedUri getInitialization(Representation representation) {
       if (initializationTemplate != null) {
@@ -336,7 +400,7 @@ public abstract class SegmentBase {
     public RangedUri getSegmentUrl(Representation representation, int sequenceNumber) {
       long time = 0;
       if (segmentTimeline != null) {
-        time = segmentTimeline.get(sequenceNumber - startNumber).startTime;
+        time = segmentTimeline.getStartTime(sequenceNumber - startNumber);
       } else {
         time = (sequenceNumber - startNumber) * duration;
       }
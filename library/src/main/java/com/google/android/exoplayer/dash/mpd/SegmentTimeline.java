@@ -0,0 +1,242 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer.dash.mpd;
+
+import com.google.android.exoplayer.dash.mpd.SegmentBase.SegmentTimelineElement;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A compact representation of a SegmentTimeline manifest element.
+ * <p>
+ * Consecutive segments of equal duration are stored as a single run of primitive values, so the
+ * memory required is proportional to the number of S elements in the manifest rather than to the
+ * number of segments they describe. The timeline can be queried without being expanded.
+ * <p>
+ * For compatibility the timeline is also a read-only {@link List} of
+ * {@link SegmentTimelineElement}s. Elements returned by {@link #get(int)} are created on demand.
+ */
+public final class SegmentTimeline extends AbstractList<SegmentTimelineElement> {
+
+  private static final int INITIAL_CAPACITY = 8;
+
+  private long[] runStartTimes;
+  private long[] runDurations;
+  private int[] runFirstIndices;
+  private int runCount;
+  private int segmentCount;
+
+  public SegmentTimeline() {
+    runStartTimes = new long[INITIAL_CAPACITY];
+    runDurations = new long[INITIAL_CAPACITY];
+    runFirstIndices = new int[INITIAL_CAPACITY];
+  }
+
+  /**
+   * Creates a {@link SegmentTimeline} containing the specified elements.
+   *
+   * @param elements The elements. If already a {@link SegmentTimeline}, it is returned directly.
+   * @return The timeline, or null if {@code elements} is null.
+   */
+  public static SegmentTimeline copyOf(List<SegmentTimelineElement> elements) {
+    if (elements == null || elements instanceof SegmentTimeline) {
+      return (SegmentTimeline) elements;
+    }
+    SegmentTimeline timeline = new SegmentTimeline();
+    for (int i = 0; i < elements.size(); i++) {
+      SegmentTimelineElement element = elements.get(i);
+      timeline.append(element.startTime, element.duration, 1);
+    }
+    return timeline;
+  }
+
+  /**
+   * Appends segments to the end of the timeline.
+   * <p>
+   * If the segments directly follow the last segment in the timeline and have the same duration,
+   * the last run is extended rather than a new run being added.
+   *
+   * @param startTime The start time of the first segment being appended, in the timescale of the
+   *     enclosing element.
+   * @param duration The duration of each segment, in the timescale of the enclosing element.
+   * @param count The number of segments to append.
+   */
+  public void append(long startTime, long duration, int count) {
+    if (count <= 0) {
+      return;
+    }
+    if (runCount > 0) {
+      int lastRun = runCount - 1;
+      long lastRunEndTime = runStartTimes[lastRun]
+          + (segmentCount - runFirstIndices[lastRun]) * runDurations[lastRun];
+      if (runDurations[lastRun] == duration && lastRunEndTime == startTime) {
+        segmentCount += count;
+        return;
+      }
+    }
+    if (runCount == runStartTimes.length) {
+      int newCapacity = runCount * 2;
+      runStartTimes = Arrays.copyOf(runStartTimes, newCapacity);
+      runDurations = Arrays.copyOf(runDurations, newCapacity);
+      runFirstIndices = Arrays.copyOf(runFirstIndices, newCapacity);
+    }
+    runStartTimes[runCount] = startTime;
+    runDurations[runCount] = duration;
+    runFirstIndices[runCount] = segmentCount;
+    runCount++;
+    segmentCount += count;
+  }
+
+  /**
+   * Appends segments from another timeline to the end of this one.
+   *
+   * @param other The timeline from which to append segments.
+   * @param fromIndex The index in {@code other} of the first segment to append. All subsequent
+   *     segments in {@code other} are also appended.
+   */
+  public void append(SegmentTimeline other, int fromIndex) {
+    if (fromIndex >= other.segmentCount) {
+      return;
+    }
+    for (int run = other.getRunIndex(fromIndex); run < other.runCount; run++) {
+      int runFirstIndex = Math.max(fromIndex, other.runFirstIndices[run]);
+      int runEndIndex = run == other.runCount - 1 ? other.segmentCount
+          : other.runFirstIndices[run + 1];
+      long duration = other.runDurations[run];
+      long startTime = other.runStartTimes[run]
+          + (runFirstIndex - other.runFirstIndices[run]) * duration;
+      append(startTime, duration, runEndIndex - runFirstIndex);
+    }
+  }
+
+  /**
+   * Removes the segments that precede the specified index. The indices of the remaining segments
+   * are reduced accordingly.
+   *
+   * @param index The index of the first segment to retain.
+   */
+  public void removeSegmentsBefore(int index) {
+    if (index <= 0) {
+      return;
+    } else if (index >= segmentCount) {
+      runCount = 0;
+      segmentCount = 0;
+      return;
+    }
+    int firstRun = getRunIndex(index);
+    long firstStartTime = runStartTimes[firstRun]
+        + (index - runFirstIndices[firstRun]) * runDurations[firstRun];
+    runCount -= firstRun;
+    System.arraycopy(runStartTimes, firstRun, runStartTimes, 0, runCount);
+    System.arraycopy(runDurations, firstRun, runDurations, 0, runCount);
+    System.arraycopy(runFirstIndices, firstRun, runFirstIndices, 0, runCount);
+    // The first retained run may have been partially removed.
+    runStartTimes[0] = firstStartTime;
+    runFirstIndices[0] = 0;
+    for (int run = 1; run < runCount; run++) {
+      runFirstIndices[run] -= index;
+    }
+    segmentCount -= index;
+  }
+
+  /**
+   * Returns the number of runs of equal duration segments held by the timeline.
+   */
+  public int getRunCount() {
+    return runCount;
+  }
+
+  /**
+   * Returns the start time of the segment at the specified index, in the timescale of the
+   * enclosing element.
+   *
+   * @param index The index of the segment.
+   * @return The start time of the segment.
+   */
+  public long getStartTime(int index) {
+    int run = getRunIndex(index);
+    return runStartTimes[run] + (index - runFirstIndices[run]) * runDurations[run];
+  }
+
+  /**
+   * Returns the duration of the segment at the specified index, in the timescale of the enclosing
+   * element.
+   *
+   * @param index The index of the segment.
+   * @return The duration of the segment.
+   */
+  public long getDuration(int index) {
+    return runDurations[getRunIndex(index)];
+  }
+
+  /**
+   * Returns the end time of the last segment in the timeline, in the timescale of the enclosing
+   * element, or 0 if the timeline is empty.
+   */
+  public long getEndTime() {
+    if (runCount == 0) {
+      return 0;
+    }
+    int lastRun = runCount - 1;
+    return runStartTimes[lastRun]
+        + (segmentCount - runFirstIndices[lastRun]) * runDurations[lastRun];
+  }
+
+  /**
+   * Returns the index of the last segment whose start time is less than or equal to the
+   * specified time.
+   *
+   * @param time The time, in the timescale of the enclosing element.
+   * @return The index of the segment, or -1 if the time precedes the first segment.
+   */
+  public int getSegmentIndex(long time) {
+    if (runCount == 0 || time < runStartTimes[0]) {
+      return -1;
+    }
+    int run = Arrays.binarySearch(runStartTimes, 0, runCount, time);
+    if (run < 0) {
+      run = -run - 2;
+    }
+    int runSegmentCount = (run == runCount - 1 ? segmentCount : runFirstIndices[run + 1])
+        - runFirstIndices[run];
+    long runDuration = runDurations[run];
+    long offsetInRun = runDuration == 0 ? 0 : (time - runStartTimes[run]) / runDuration;
+    return runFirstIndices[run] + (int) Math.min(offsetInRun, runSegmentCount - 1);
+  }
+
+  // List implementation.
+
+  @Override
+  public int size() {
+    return segmentCount;
+  }
+
+  @Override
+  public SegmentTimelineElement get(int index) {
+    return new SegmentTimelineElement(getStartTime(index), getDuration(index));
+  }
+
+  private int getRunIndex(int index) {
+    if (index < 0 || index >= segmentCount) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", size: " + segmentCount);
+    }
+    int run = Arrays.binarySearch(runFirstIndices, 0, runCount, index);
+    return run >= 0 ? run : -run - 2;
+  }
+
+}
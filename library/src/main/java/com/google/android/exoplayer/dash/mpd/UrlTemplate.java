@@ -98,6 +98,18 @@ public final class UrlTemplate {
     return builder.toString();
   }
 
+  /**
+   * Returns whether the template contains a $Number$ identifier.
+   */
+  public boolean containsNumber() {
+    for (int i = 0; i < identifierCount; i++) {
+      if (identifiers[i] == NUMBER_ID) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   /**
    * Parses {@code template}, placing the decomposed components into the provided arrays.
    * <p>
@@ -20,18 +20,29 @@ import com.google.android.exoplayer.upstream.DataSource;
 
 import java.io.EOFException;
 import java.io.IOException;
+import java.util.Arrays;
 
 /**
  * An {@link ExtractorInput} that wraps a {@link DataSource}.
  */
 public final class DefaultExtractorInput implements ExtractorInput {
 
+  /**
+   * The size of the peek buffer when it is first allocated, and the size to which it is reduced
+   * once peeked data has been consumed.
+   */
+  private static final int PEEK_BUFFER_DEFAULT_SIZE = 8 * 1024;
+
   private static final byte[] SCRATCH_SPACE = new byte[4096];
 
   private final DataSource dataSource;
 
   private long position;
   private long length;
+  private byte[] peekBuffer;
+  private int peekBufferPosition;
+  private int peekBufferLength;
+  private long dataSourceReadTimeNs;
 
   /**
    * @param dataSource The wrapped {@link DataSource}.
@@ -46,12 +57,12 @@ public final class DefaultExtractorInput implements ExtractorInput {
 
   @Override
   public int read(byte[] target, int offset, int length) throws IOException, InterruptedException {
-    if (Thread.interrupted()) {
-      throw new InterruptedException();
-    }
-    int bytesRead = dataSource.read(target, offset, length);
-    if (bytesRead == C.RESULT_END_OF_INPUT) {
-      return C.RESULT_END_OF_INPUT;
+    int bytesRead = readFromPeekBuffer(target, offset, length);
+    if (bytesRead == 0) {
+      bytesRead = readFromDataSource(target, offset, length, 0, true);
+      if (bytesRead == C.RESULT_END_OF_INPUT) {
+        return C.RESULT_END_OF_INPUT;
+      }
     }
     position += bytesRead;
     return bytesRead;
@@ -60,20 +71,12 @@ public final class DefaultExtractorInput implements ExtractorInput {
   @Override
   public boolean readFully(byte[] target, int offset, int length, boolean allowEndOfInput)
       throws IOException, InterruptedException {
-    int remaining = length;
-    while (remaining > 0) {
-      if (Thread.interrupted()) {
-        throw new InterruptedException();
-      }
-      int bytesRead = dataSource.read(target, offset, remaining);
+    int bytesRead = readFromPeekBuffer(target, offset, length);
+    while (bytesRead < length) {
+      bytesRead = readFromDataSource(target, offset, length, bytesRead, allowEndOfInput);
       if (bytesRead == C.RESULT_END_OF_INPUT) {
-        if (allowEndOfInput && remaining == length) {
-          return false;
-        }
-        throw new EOFException();
+        return false;
       }
-      offset += bytesRead;
-      remaining -= bytesRead;
     }
     position += length;
     return true;
@@ -87,20 +90,65 @@ public final class DefaultExtractorInput implements ExtractorInput {
 
   @Override
   public void skipFully(int length) throws IOException, InterruptedException {
-    int remaining = length;
-    while (remaining > 0) {
-      if (Thread.interrupted()) {
-        throw new InterruptedException();
-      }
-      int bytesRead = dataSource.read(SCRATCH_SPACE, 0, Math.min(SCRATCH_SPACE.length, remaining));
-      if (bytesRead == C.RESULT_END_OF_INPUT) {
-        throw new EOFException();
-      }
-      remaining -= bytesRead;
+    int bytesSkipped = Math.min(peekBufferLength, length);
+    consumePeekBuffer(bytesSkipped);
+    while (bytesSkipped < length) {
+      int bytesRead = readFromDataSource(SCRATCH_SPACE, 0,
+          Math.min(SCRATCH_SPACE.length, length - bytesSkipped), 0, false);
+      bytesSkipped += bytesRead;
     }
     position += length;
   }
 
+  @Override
+  public boolean peekFully(byte[] target, int offset, int length, boolean allowEndOfInput)
+      throws IOException, InterruptedException {
+    if (!advancePeekPosition(length, allowEndOfInput)) {
+      return false;
+    }
+    System.arraycopy(peekBuffer, peekBufferPosition - length, target, offset, length);
+    return true;
+  }
+
+  @Override
+  public void peekFully(byte[] target, int offset, int length)
+      throws IOException, InterruptedException {
+    peekFully(target, offset, length, false);
+  }
+
+  @Override
+  public boolean advancePeekPosition(int length, boolean allowEndOfInput)
+      throws IOException, InterruptedException {
+    ensureSpaceForPeek(length);
+    int bytesPeeked = Math.min(peekBufferLength - peekBufferPosition, length);
+    while (bytesPeeked < length) {
+      bytesPeeked = readFromDataSource(peekBuffer, peekBufferPosition, length, bytesPeeked,
+          allowEndOfInput);
+      if (bytesPeeked == C.RESULT_END_OF_INPUT) {
+        return false;
+      }
+      // Retain the data as it's read, so that none is lost if a subsequent read fails.
+      peekBufferLength = Math.max(peekBufferLength, peekBufferPosition + bytesPeeked);
+    }
+    peekBufferPosition += length;
+    return true;
+  }
+
+  @Override
+  public void advancePeekPosition(int length) throws IOException, InterruptedException {
+    advancePeekPosition(length, false);
+  }
+
+  @Override
+  public void resetPeekPosition() {
+    peekBufferPosition = 0;
+  }
+
+  @Override
+  public long getPeekPosition() {
+    return position + peekBufferPosition;
+  }
+
   @Override
   public long getPosition() {
     return position;
@@ -111,4 +159,91 @@ public final class DefaultExtractorInput implements ExtractorInput {
     return length;
   }
 
+  /**
+   * Returns the total time spent reading from the wrapped {@link DataSource}, in nanoseconds.
+   */
+  /* package */ long getDataSourceReadTimeNs() {
+    return dataSourceReadTimeNs;
+  }
+
+  /**
+   * Ensures the peek buffer has space to peek {@code length} bytes from the peek position.
+   */
+  private void ensureSpaceForPeek(int length) {
+    int requiredLength = peekBufferPosition + length;
+    if (peekBuffer == null) {
+      peekBuffer = new byte[Math.max(PEEK_BUFFER_DEFAULT_SIZE, requiredLength)];
+    } else if (requiredLength > peekBuffer.length) {
+      peekBuffer = Arrays.copyOf(peekBuffer, Math.max(peekBuffer.length * 2, requiredLength));
+    }
+  }
+
+  /**
+   * Reads from the peek buffer, consuming the data that is read.
+   *
+   * @param target A target array into which data should be written.
+   * @param offset The offset into the target array at which to write.
+   * @param length The maximum number of bytes to read.
+   * @return The number of bytes read.
+   */
+  private int readFromPeekBuffer(byte[] target, int offset, int length) {
+    int bytesRead = Math.min(peekBufferLength, length);
+    if (bytesRead > 0) {
+      System.arraycopy(peekBuffer, 0, target, offset, bytesRead);
+      consumePeekBuffer(bytesRead);
+    }
+    return bytesRead;
+  }
+
+  /**
+   * Discards {@code length} bytes from the start of the peek buffer, and resets the peek position.
+   * Once all of the peeked data is consumed, an enlarged buffer is released so that peeking a large
+   * amount of data does not retain memory for the lifetime of the input.
+   */
+  private void consumePeekBuffer(int length) {
+    peekBufferPosition = 0;
+    if (length == 0) {
+      return;
+    }
+    peekBufferLength -= length;
+    if (peekBufferLength > 0) {
+      System.arraycopy(peekBuffer, length, peekBuffer, 0, peekBufferLength);
+    } else if (peekBuffer.length > PEEK_BUFFER_DEFAULT_SIZE) {
+      peekBuffer = null;
+    }
+  }
+
+  /**
+   * Reads from the data source, starting at {@code offset + bytesAlreadyRead}.
+   *
+   * @param target A target array into which data should be written.
+   * @param offset The offset into the target array at which the read started.
+   * @param length The total number of bytes to read.
+   * @param bytesAlreadyRead The number of bytes that have already been read.
+   * @param allowEndOfInput True if encountering the end of the input having read no data is
+   *     allowed, and should result in {@link C#RESULT_END_OF_INPUT} being returned.
+   * @return The total number of bytes read, including {@code bytesAlreadyRead}, or
+   *     {@link C#RESULT_END_OF_INPUT}.
+   * @throws EOFException If the end of input was encountered and the read was partially satisfied,
+   *     or {@code allowEndOfInput} is false.
+   * @throws IOException If an error occurs reading from the data source.
+   * @throws InterruptedException If the thread has been interrupted.
+   */
+  private int readFromDataSource(byte[] target, int offset, int length, int bytesAlreadyRead,
+      boolean allowEndOfInput) throws IOException, InterruptedException {
+    if (Thread.interrupted()) {
+      throw new InterruptedException();
+    }
+    long readStartTimeNs = System.nanoTime();
+    int bytesRead = dataSource.read(target, offset + bytesAlreadyRead, length - bytesAlreadyRead);
+    dataSourceReadTimeNs += System.nanoTime() - readStartTimeNs;
+    if (bytesRead == C.RESULT_END_OF_INPUT) {
+      if (bytesAlreadyRead == 0 && allowEndOfInput) {
+        return C.RESULT_END_OF_INPUT;
+      }
+      throw new EOFException();
+    }
+    return bytesAlreadyRead + bytesRead;
+  }
+
 }
@@ -253,4 +253,17 @@ public class DefaultTrackOutput implements TrackOutput {
         size, encryptionKey);
   }
 
+  @Override
+  public void sampleMetadata(int sampleCount, long[] timesUs, int[] flags, int[] sizes, int offset,
+      byte[] encryptionKey) {
+    long largestTimestampUs = largestParsedTimestampUs;
+    long position = rollingBuffer.getWritePosition() - offset;
+    for (int i = 0; i < sampleCount; i++) {
+      largestTimestampUs = Math.max(largestTimestampUs, timesUs[i]);
+      position -= sizes[i];
+    }
+    largestParsedTimestampUs = largestTimestampUs;
+    rollingBuffer.commitSamples(sampleCount, timesUs, flags, position, sizes, encryptionKey);
+  }
+
 }
@@ -42,6 +42,24 @@ public interface Extractor {
    */
   public static final int RESULT_END_OF_INPUT = C.RESULT_END_OF_INPUT;
 
+  /**
+   * Returns whether this extractor can extract samples from the {@link ExtractorInput}, which must
+   * provide data from the start of the stream.
+   * <p>
+   * Implementations inspect the input using {@link ExtractorInput#peekFully(byte[], int, int)} and
+   * {@link ExtractorInput#advancePeekPosition(int)}, and must not read or skip data. They should
+   * peek only as much data as they need to recognize the format, typically a few kilobytes. The
+   * caller is responsible for resetting the peek position afterwards.
+   * <p>
+   * This method may be called before {@link #init(ExtractorOutput)}.
+   *
+   * @param input The {@link ExtractorInput} from which data should be peeked.
+   * @return True if this extractor can read the input. False otherwise.
+   * @throws IOException If an error occurred reading from the input.
+   * @throws InterruptedException If the thread was interrupted.
+   */
+  boolean sniff(ExtractorInput input) throws IOException, InterruptedException;
+
   /**
    * Initializes the extractor with an {@link ExtractorOutput}.
    *
@@ -31,12 +31,16 @@ import com.google.android.exoplayer.upstream.DefaultAllocator;
 import com.google.android.exoplayer.upstream.Loader;
 import com.google.android.exoplayer.upstream.Loader.Loadable;
 import com.google.android.exoplayer.util.Assertions;
+import com.google.android.exoplayer.util.Clock;
+import com.google.android.exoplayer.util.MessageLoop;
+import com.google.android.exoplayer.util.MessageLoopUtil;
+import com.google.android.exoplayer.util.MetricsRegistry;
 
 import android.net.Uri;
-import android.os.SystemClock;
-import android.util.SparseArray;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A {@link SampleSource} that extracts sample data using an {@link Extractor}
@@ -55,16 +59,23 @@ public class ExtractorSampleSource implements SampleSource, SampleSourceReader,
   public static final int DEFAULT_MIN_LOADABLE_RETRY_COUNT_LIVE = 6;
 
   private static final int MIN_RETRY_COUNT_DEFAULT_FOR_MEDIA = -1;
+  /**
+   * When reading from multiple data sources, the maximum number of bytes that may be skipped in an
+   * open connection to reach a requested position, rather than opening a new connection.
+   */
+  private static final int MAX_INPUT_SKIP_BYTES = 256 * 1024;
   private static final int NO_RESET_PENDING = -1;
 
-  private final Extractor extractor;
+  private final ExtractorHolder extractorHolder;
+  private final ExtractorWorkerPool workerPool;
   private final Allocator allocator;
   private final int requestedBufferSize;
-  private final SparseArray<InternalTrackOutput> sampleQueues;
+  /** The sample queues of the tracks, ordered by track id. */
+  private final ArrayList<InternalTrackOutput> sampleQueues;
   private final int minLoadableRetryCount;
   private final boolean frameAccurateSeeking;
   private final Uri uri;
-  private final DataSource dataSource;
+  private final DataSource[] dataSources;
 
   private volatile boolean tracksBuilt;
   private volatile SeekMap seekMap;
@@ -88,6 +99,7 @@ public class ExtractorSampleSource implements SampleSource, SampleSourceReader,
   private long sampleTimeOffsetUs;
 
   private Loader loader;
+  private Clock clock;
   private ExtractingLoadable loadable;
   private IOException currentLoadableException;
   // TODO: Set this back to 0 in the correct place (some place indicative of making progress).
@@ -95,7 +107,8 @@ public class ExtractorSampleSource implements SampleSource, SampleSourceReader,
   private long currentLoadableExceptionTimestamp;
   private boolean loadingFinished;
 
-  private int extractedSampleCount;
+  // Incremented by the loading thread, or by the worker threads if there's a worker pool.
+  private final AtomicInteger extractedSampleCount;
   private int extractedSampleCountAtStartOfLoad;
 
   /**
@@ -153,16 +166,101 @@ public class ExtractorSampleSource implements SampleSource, SampleSourceReader,
    */
   public ExtractorSampleSource(Uri uri, DataSource dataSource, Extractor extractor,
       Allocator allocator, int requestedBufferSize, int minLoadableRetryCount) {
+    this(uri, new DataSource[] {dataSource}, extractor, allocator, requestedBufferSize,
+        minLoadableRetryCount);
+  }
+
+  /**
+   * @param uri The {@link Uri} of the media stream.
+   * @param dataSources Data sources to read the media stream. If more than one is provided then
+   *     each keeps its own connection open, and when the extractor requests data from a position
+   *     that is a short distance ahead of an open connection, that connection is used rather than
+   *     a new one being opened. Combined with an extractor that reads tracks in timestamp order
+   *     (e.g. an {@link com.google.android.exoplayer.extractor.mp4.Mp4Extractor} created with
+   *     {@code FLAG_READ_SAMPLES_IN_TIMESTAMP_ORDER}), this allows poorly interleaved media to be
+   *     read through one sequential connection per track.
+   * @param extractor An {@link Extractor} to extract the media stream.
+   * @param allocator An {@link Allocator} from which to obtain memory allocations.
+   * @param requestedBufferSize The requested total buffer size for storing sample data, in bytes.
+   *     The actual allocated size may exceed the value passed in if the implementation requires it.
+   * @param minLoadableRetryCount The minimum number of times that the sample source will retry
+   *     if a loading error occurs.
+   */
+  public ExtractorSampleSource(Uri uri, DataSource[] dataSources, Extractor extractor,
+      Allocator allocator, int requestedBufferSize, int minLoadableRetryCount) {
+    this(uri, dataSources, allocator, requestedBufferSize, minLoadableRetryCount, extractor);
+  }
+
+  /**
+   * @param uri The {@link Uri} of the media stream.
+   * @param dataSource A data source to read the media stream.
+   * @param allocator An {@link Allocator} from which to obtain memory allocations.
+   * @param requestedBufferSize The requested total buffer size for storing sample data, in bytes.
+   *     The actual allocated size may exceed the value passed in if the implementation requires it.
+   * @param extractors {@link Extractor}s to extract the media stream, in order of decreasing
+   *     priority. If more than one is provided, the first one that sniffs the start of the stream
+   *     successfully is used. See {@link ExtractorSelector}.
+   */
+  public ExtractorSampleSource(Uri uri, DataSource dataSource, Allocator allocator,
+      int requestedBufferSize, Extractor... extractors) {
+    this(uri, new DataSource[] {dataSource}, allocator, requestedBufferSize,
+        MIN_RETRY_COUNT_DEFAULT_FOR_MEDIA, extractors);
+  }
+
+  /**
+   * @param uri The {@link Uri} of the media stream.
+   * @param dataSources Data sources to read the media stream. See
+   *     {@link #ExtractorSampleSource(Uri, DataSource[], Extractor, Allocator, int, int)}.
+   * @param allocator An {@link Allocator} from which to obtain memory allocations.
+   * @param requestedBufferSize The requested total buffer size for storing sample data, in bytes.
+   *     The actual allocated size may exceed the value passed in if the implementation requires it.
+   * @param minLoadableRetryCount The minimum number of times that the sample source will retry
+   *     if a loading error occurs.
+   * @param extractors {@link Extractor}s to extract the media stream, in order of decreasing
+   *     priority. If more than one is provided, the first one that sniffs the start of the stream
+   *     successfully is used. See {@link ExtractorSelector}.
+   */
+  public ExtractorSampleSource(Uri uri, DataSource[] dataSources, Allocator allocator,
+      int requestedBufferSize, int minLoadableRetryCount, Extractor... extractors) {
+    this(uri, dataSources, allocator, requestedBufferSize, minLoadableRetryCount, null,
+        extractors);
+  }
+
+  /**
+   * @param uri The {@link Uri} of the media stream. May be null if the data sources don't use the
+   *     {@link DataSpec#uri} of the requests made to them.
+   * @param dataSources Data sources to read the media stream. See
+   *     {@link #ExtractorSampleSource(Uri, DataSource[], Extractor, Allocator, int, int)}.
+   * @param allocator An {@link Allocator} from which to obtain memory allocations.
+   * @param requestedBufferSize The requested total buffer size for storing sample data, in bytes.
+   *     The actual allocated size may exceed the value passed in if the implementation requires it.
+   * @param minLoadableRetryCount The minimum number of times that the sample source will retry
+   *     if a loading error occurs.
+   * @param workerPool The {@link ExtractorWorkerPool} passed to the extractors, if any, to which
+   *     they offload the parsing of elementary streams. The source waits for the pool to become
+   *     idle at the end of each load, so that every sample that was demultiplexed has been written
+   *     to its track before the load completes or is canceled. The source releases the pool when
+   *     it is released. May be null.
+   * @param extractors {@link Extractor}s to extract the media stream, in order of decreasing
+   *     priority. If more than one is provided, the first one that sniffs the start of the stream
+   *     successfully is used. See {@link ExtractorSelector}.
+   */
+  public ExtractorSampleSource(Uri uri, DataSource[] dataSources, Allocator allocator,
+      int requestedBufferSize, int minLoadableRetryCount, ExtractorWorkerPool workerPool,
+      Extractor... extractors) {
+    Assertions.checkArgument(dataSources.length > 0);
+    Assertions.checkArgument(extractors.length > 0);
     this.uri = uri;
-    this.dataSource = dataSource;
-    this.extractor = extractor;
+    this.dataSources = dataSources;
     this.allocator = allocator;
     this.requestedBufferSize = requestedBufferSize;
     this.minLoadableRetryCount = minLoadableRetryCount;
-    sampleQueues = new SparseArray<>();
+    this.workerPool = workerPool;
+    sampleQueues = new ArrayList<>();
+    extractedSampleCount = new AtomicInteger();
     pendingResetPositionUs = NO_RESET_PENDING;
     frameAccurateSeeking = true;
-    extractor.init(this);
+    extractorHolder = new ExtractorHolder(extractors, this);
   }
 
   @Override
@@ -177,7 +275,10 @@ public class ExtractorSampleSource implements SampleSource, SampleSourceReader,
       return true;
     }
     if (loader == null) {
-      loader = new Loader("Loader:ExtractorSampleSource");
+      MessageLoop loop = MessageLoopUtil.myLoop();
+      Assertions.checkState(loop != null);
+      loader = new Loader("Loader:ExtractorSampleSource", loop);
+      clock = loop.getClock();
     }
 
     maybeStartLoading();
@@ -190,7 +291,7 @@ public class ExtractorSampleSource implements SampleSource, SampleSourceReader,
       trackInfos = new TrackInfo[trackCount];
       maxTrackDurationUs = C.UNKNOWN_TIME_US;
       for (int i = 0; i < trackCount; i++) {
-        MediaFormat format = sampleQueues.valueAt(i).getFormat();
+        MediaFormat format = sampleQueues.get(i).getFormat();
         trackInfos[i] = new TrackInfo(format.mimeType, format.durationUs);
         if (format.durationUs != C.UNKNOWN_TIME_US && format.durationUs > maxTrackDurationUs) {
           maxTrackDurationUs = format.durationUs;
@@ -258,7 +359,7 @@ public class ExtractorSampleSource implements SampleSource, SampleSourceReader,
     if (isPendingReset()) {
       return false;
     }
-    if (sampleQueues.valueAt(track).isEmpty()) {
+    if (sampleQueues.get(track).isEmpty()) {
       maybeThrowLoadableException();
       return false;
     }
@@ -280,7 +381,7 @@ public class ExtractorSampleSource implements SampleSource, SampleSourceReader,
       return NOTHING_READ;
     }
 
-    InternalTrackOutput sampleQueue = sampleQueues.valueAt(track);
+    InternalTrackOutput sampleQueue = sampleQueues.get(track);
     if (pendingMediaFormat[track]) {
       formatHolder.format = sampleQueue.getFormat();
       formatHolder.drmInitData = drmInitData;
@@ -327,7 +428,7 @@ public class ExtractorSampleSource implements SampleSource, SampleSourceReader,
     // If we're not pending a reset, see if we can seek within the sample queues.
     boolean seekInsideBuffer = !isPendingReset();
     for (int i = 0; seekInsideBuffer && i < sampleQueues.size(); i++) {
-      seekInsideBuffer &= sampleQueues.valueAt(i).skipToKeyframeBefore(positionUs);
+      seekInsideBuffer &= sampleQueues.get(i).skipToKeyframeBefore(positionUs);
     }
 
     // If we failed to seek within the sample queues, we need to restart.
@@ -351,7 +452,7 @@ public class ExtractorSampleSource implements SampleSource, SampleSourceReader,
       long largestParsedTimestampUs = Long.MIN_VALUE;
       for (int i = 0; i < sampleQueues.size(); i++) {
         largestParsedTimestampUs = Math.max(largestParsedTimestampUs,
-            sampleQueues.valueAt(i).getLargestParsedTimestampUs());
+            sampleQueues.get(i).getLargestParsedTimestampUs());
       }
       return largestParsedTimestampUs == Long.MIN_VALUE ? downstreamPositionUs
           : largestParsedTimestampUs;
@@ -364,6 +465,9 @@ public class ExtractorSampleSource implements SampleSource, SampleSourceReader,
     if (--remainingReleaseCount == 0 && loader != null) {
       loader.release();
       loader = null;
+      if (workerPool != null) {
+        workerPool.release();
+      }
     }
   }
 
@@ -387,9 +491,10 @@ public class ExtractorSampleSource implements SampleSource, SampleSourceReader,
   @Override
   public void onLoadError(Loadable ignored, IOException e) {
     currentLoadableException = e;
-    currentLoadableExceptionCount = extractedSampleCount > extractedSampleCountAtStartOfLoad ? 1
+    currentLoadableExceptionCount =
+        extractedSampleCount.get() > extractedSampleCountAtStartOfLoad ? 1
         : currentLoadableExceptionCount + 1;
-    currentLoadableExceptionTimestamp = SystemClock.elapsedRealtime();
+    currentLoadableExceptionTimestamp = clock.elapsedRealtime();
     maybeStartLoading();
   }
 
@@ -397,11 +502,16 @@ public class ExtractorSampleSource implements SampleSource, SampleSourceReader,
 
   @Override
   public TrackOutput track(int id) {
-    InternalTrackOutput sampleQueue = sampleQueues.get(id);
-    if (sampleQueue == null) {
-      sampleQueue = new InternalTrackOutput(allocator);
-      sampleQueues.put(id, sampleQueue);
+    int index = sampleQueues.size();
+    while (index > 0 && sampleQueues.get(index - 1).id >= id) {
+      InternalTrackOutput sampleQueue = sampleQueues.get(index - 1);
+      if (sampleQueue.id == id) {
+        return sampleQueue;
+      }
+      index--;
     }
+    InternalTrackOutput sampleQueue = new InternalTrackOutput(id, allocator);
+    sampleQueues.add(index, sampleQueue);
     return sampleQueue;
   }
 
@@ -440,7 +550,7 @@ public class ExtractorSampleSource implements SampleSource, SampleSourceReader,
 
     if (currentLoadableException != null) {
       Assertions.checkState(loadable != null);
-      long elapsedMillis = SystemClock.elapsedRealtime() - currentLoadableExceptionTimestamp;
+      long elapsedMillis = clock.elapsedRealtime() - currentLoadableExceptionTimestamp;
       if (elapsedMillis >= getRetryDelayMillis(currentLoadableExceptionCount)) {
         currentLoadableException = null;
         if (!prepared) {
@@ -448,7 +558,7 @@ public class ExtractorSampleSource implements SampleSource, SampleSourceReader,
           // we need to load from the start, as outlined below. Since we might be playing a live
           // stream, play it safe and load from the start.
           for (int i = 0; i < sampleQueues.size(); i++) {
-            sampleQueues.valueAt(i).clear();
+            sampleQueues.get(i).clear();
           }
           loadable = createLoadableFromStart();
         } else if (!seekMap.isSeekable()) {
@@ -457,7 +567,7 @@ public class ExtractorSampleSource implements SampleSource, SampleSourceReader,
           // there's no way to continue loading from where a previous load finished, and hence it's
           // necessary to load from the start whenever commencing a new load.
           for (int i = 0; i < sampleQueues.size(); i++) {
-            sampleQueues.valueAt(i).clear();
+            sampleQueues.get(i).clear();
           }
           loadable = createLoadableFromStart();
           // To avoid introducing a discontinuity, we shift the sample timestamps so that they will
@@ -468,7 +578,7 @@ public class ExtractorSampleSource implements SampleSource, SampleSourceReader,
           // We're playing a seekable on-demand stream. Resume the current loadable, which will
           // request data starting from the point it left off.
         }
-        extractedSampleCountAtStartOfLoad = extractedSampleCount;
+        extractedSampleCountAtStartOfLoad = extractedSampleCount.get();
         loader.startLoading(loadable, this);
       }
       return;
@@ -492,7 +602,7 @@ public class ExtractorSampleSource implements SampleSource, SampleSourceReader,
       loadable = createLoadableFromPositionUs(pendingResetPositionUs);
       pendingResetPositionUs = NO_RESET_PENDING;
     }
-    extractedSampleCountAtStartOfLoad = extractedSampleCount;
+    extractedSampleCountAtStartOfLoad = extractedSampleCount.get();
     loader.startLoading(loadable, this);
   }
 
@@ -514,17 +624,18 @@ public class ExtractorSampleSource implements SampleSource, SampleSourceReader,
   }
 
   private ExtractingLoadable createLoadableFromStart() {
-    return new ExtractingLoadable(uri, dataSource, extractor, allocator, requestedBufferSize, 0);
+    return new ExtractingLoadable(uri, dataSources, extractorHolder, workerPool, allocator,
+        requestedBufferSize, 0);
   }
 
   private ExtractingLoadable createLoadableFromPositionUs(long positionUs) {
-    return new ExtractingLoadable(uri, dataSource, extractor, allocator, requestedBufferSize,
-        seekMap.getPosition(positionUs));
+    return new ExtractingLoadable(uri, dataSources, extractorHolder, workerPool, allocator,
+        requestedBufferSize, seekMap.getPosition(positionUs));
   }
 
   private boolean haveFormatsForAllTracks() {
     for (int i = 0; i < sampleQueues.size(); i++) {
-      if (!sampleQueues.valueAt(i).hasFormat()) {
+      if (!sampleQueues.get(i).hasFormat()) {
         return false;
       }
     }
@@ -534,14 +645,14 @@ public class ExtractorSampleSource implements SampleSource, SampleSourceReader,
   private void discardSamplesForDisabledTracks(long timeUs) {
     for (int i = 0; i < trackEnabledStates.length; i++) {
       if (!trackEnabledStates[i]) {
-        sampleQueues.valueAt(i).discardUntil(timeUs);
+        sampleQueues.get(i).discardUntil(timeUs);
       }
     }
   }
 
   private void clearState() {
     for (int i = 0; i < sampleQueues.size(); i++) {
-      sampleQueues.valueAt(i).clear();
+      sampleQueues.get(i).clear();
     }
     loadable = null;
     currentLoadableException = null;
@@ -562,14 +673,85 @@ public class ExtractorSampleSource implements SampleSource, SampleSourceReader,
    */
   private class InternalTrackOutput extends DefaultTrackOutput {
 
-    public InternalTrackOutput(Allocator allocator) {
+    public final int id;
+
+    public InternalTrackOutput(int id, Allocator allocator) {
       super(allocator);
+      this.id = id;
     }
 
     @Override
     public void sampleMetadata(long timeUs, int flags, int size, int offset, byte[] encryptionKey) {
       super.sampleMetadata(timeUs, flags, size, offset, encryptionKey);
-      extractedSampleCount++;
+      extractedSampleCount.incrementAndGet();
+    }
+
+    @Override
+    public void sampleMetadata(int sampleCount, long[] timesUs, int[] flags, int[] sizes,
+        int offset, byte[] encryptionKey) {
+      super.sampleMetadata(sampleCount, timesUs, flags, sizes, offset, encryptionKey);
+      extractedSampleCount.addAndGet(sampleCount);
+    }
+
+  }
+
+  /**
+   * Holds the {@link Extractor} used to extract the media stream, selecting it from the candidates
+   * when the start of the stream is first loaded if there is more than one.
+   */
+  // Visible for testing.
+  /* package */ static final class ExtractorHolder {
+
+    private final Extractor[] extractors;
+    private final ExtractorOutput extractorOutput;
+
+    // Accessed only by the loading thread once the source has been constructed.
+    private Extractor extractor;
+    private MetricsRegistry.Histogram parseTimeHistogram;
+
+    public ExtractorHolder(Extractor[] extractors, ExtractorOutput extractorOutput) {
+      this.extractors = extractors;
+      this.extractorOutput = extractorOutput;
+      if (extractors.length == 1) {
+        setExtractor(extractors[0]);
+      }
+    }
+
+    /**
+     * Returns the selected extractor, selecting one first if necessary.
+     *
+     * @param input The {@link ExtractorInput} from which the stream is being loaded. If an
+     *     extractor has not yet been selected, this must be positioned at the start of the stream.
+     * @return The selected extractor.
+     * @throws IOException If an error occurs reading from the input, or if no extractor recognizes
+     *     the stream.
+     * @throws InterruptedException If the thread was interrupted.
+     */
+    public Extractor selectExtractor(ExtractorInput input)
+        throws IOException, InterruptedException {
+      if (extractor == null) {
+        setExtractor(ExtractorSelector.select(extractors, input));
+      }
+      return extractor;
+    }
+
+    /**
+     * Records the time the selected extractor spent parsing a run of input.
+     *
+     * @param bytesParsed The length of the input parsed.
+     * @param parseTimeNs The time spent parsing, excluding time spent reading from the data source.
+     */
+    public void recordParseTime(long bytesParsed, long parseTimeNs) {
+      if (bytesParsed > 0) {
+        parseTimeHistogram.record((long) (parseTimeNs / 1000d * (1 << 20) / bytesParsed));
+      }
+    }
+
+    private void setExtractor(Extractor extractor) {
+      extractor.init(extractorOutput);
+      this.extractor = extractor;
+      parseTimeHistogram = MetricsRegistry.getDefault().getHistogram(
+          "extractor." + extractor.getClass().getSimpleName() + ".parse_time_us_per_mb");
     }
 
   }
@@ -577,28 +759,37 @@ public class ExtractorSampleSource implements SampleSource, SampleSourceReader,
   /**
    * Loads the media stream and extracts sample data from it.
    */
-  private static class ExtractingLoadable implements Loadable {
+  // Visible for testing.
+  /* package */ static final class ExtractingLoadable implements Loadable {
 
     private final Uri uri;
-    private final DataSource dataSource;
-    private final Extractor extractor;
+    private final DataSource[] dataSources;
+    private final ExtractorHolder extractorHolder;
+    private final ExtractorWorkerPool workerPool;
     private final Allocator allocator;
     private final int requestedBufferSize;
     private final PositionHolder positionHolder;
+    private final DefaultExtractorInput[] inputs;
+    private final long[] inputLastUseCounts;
 
     private volatile boolean loadCanceled;
 
     private boolean pendingExtractorSeek;
-
-    public ExtractingLoadable(Uri uri, DataSource dataSource, Extractor extractor,
-        Allocator allocator, int requestedBufferSize, long position) {
-      this.uri = Assertions.checkNotNull(uri);
-      this.dataSource = Assertions.checkNotNull(dataSource);
-      this.extractor = Assertions.checkNotNull(extractor);
+    private long inputUseCount;
+
+    public ExtractingLoadable(Uri uri, DataSource[] dataSources, ExtractorHolder extractorHolder,
+        ExtractorWorkerPool workerPool, Allocator allocator, int requestedBufferSize,
+        long position) {
+      this.uri = uri;
+      this.dataSources = Assertions.checkNotNull(dataSources);
+      this.extractorHolder = Assertions.checkNotNull(extractorHolder);
+      this.workerPool = workerPool;
       this.allocator = Assertions.checkNotNull(allocator);
       this.requestedBufferSize = requestedBufferSize;
       positionHolder = new PositionHolder();
       positionHolder.position = position;
+      inputs = new DefaultExtractorInput[dataSources.length];
+      inputLastUseCounts = new long[dataSources.length];
       pendingExtractorSeek = true;
     }
 
@@ -614,34 +805,117 @@ public class ExtractorSampleSource implements SampleSource, SampleSourceReader,
 
     @Override
     public void load() throws IOException, InterruptedException {
-      if (pendingExtractorSeek) {
-        extractor.seek();
-        pendingExtractorSeek = false;
+      try {
+        int result = Extractor.RESULT_CONTINUE;
+        while (result == Extractor.RESULT_CONTINUE && !loadCanceled) {
+          DefaultExtractorInput input = getInput(positionHolder.position);
+          Extractor extractor = extractorHolder.selectExtractor(input);
+          if (pendingExtractorSeek) {
+            extractor.seek();
+            pendingExtractorSeek = false;
+          }
+          long startPosition = input.getPosition();
+          long startDataSourceReadTimeNs = input.getDataSourceReadTimeNs();
+          long readTimeNs = 0;
+          try {
+            while (result == Extractor.RESULT_CONTINUE && !loadCanceled) {
+              allocator.blockWhileTotalBytesAllocatedExceeds(requestedBufferSize);
+              long readStartTimeNs = System.nanoTime();
+              result = extractor.read(input, positionHolder);
+              readTimeNs += System.nanoTime() - readStartTimeNs;
+              // TODO: Implement throttling to stop us from buffering data too often.
+            }
+          } finally {
+            extractorHolder.recordParseTime(input.getPosition() - startPosition,
+                readTimeNs - (input.getDataSourceReadTimeNs() - startDataSourceReadTimeNs));
+            if (result == Extractor.RESULT_SEEK) {
+              // Leave the input open, in case it can be used for a later read.
+              result = Extractor.RESULT_CONTINUE;
+            } else {
+              positionHolder.position = input.getPosition();
+            }
+          }
+        }
+      } finally {
+        if (workerPool != null) {
+          // Samples demultiplexed during this load must be written before it's considered done.
+          workerPool.blockUntilIdle();
+        }
+        closeInputs();
       }
-      int result = Extractor.RESULT_CONTINUE;
-      while (result == Extractor.RESULT_CONTINUE && !loadCanceled) {
-        ExtractorInput input = null;
-        try {
-          long position = positionHolder.position;
-          long length = dataSource.open(new DataSpec(uri, position, C.LENGTH_UNBOUNDED, null));
-          if (length != C.LENGTH_UNBOUNDED) {
-            length += position;
+      if (workerPool != null) {
+        workerPool.maybeThrowError();
+      }
+    }
+
+    /**
+     * Returns an input positioned at {@code position}.
+     * <p>
+     * If there are multiple data sources and one of them is open a short distance before the
+     * position, it is skipped forward and used. Otherwise the least recently used data source is
+     * (re)opened at the position.
+     */
+    private DefaultExtractorInput getInput(long position)
+        throws IOException, InterruptedException {
+      int index = -1;
+      if (dataSources.length > 1) {
+        for (int i = 0; i < inputs.length && index == -1; i++) {
+          if (inputs[i] != null) {
+            long skipAmount = position - inputs[i].getPosition();
+            if (skipAmount >= 0 && skipAmount < MAX_INPUT_SKIP_BYTES) {
+              inputs[i].skipFully((int) skipAmount);
+              index = i;
+            }
           }
-          input = new DefaultExtractorInput(dataSource, position, length);
-          while (result == Extractor.RESULT_CONTINUE && !loadCanceled) {
-            allocator.blockWhileTotalBytesAllocatedExceeds(requestedBufferSize);
-            result = extractor.read(input, positionHolder);
-            // TODO: Implement throttling to stop us from buffering data too often.
+        }
+      }
+      if (index == -1) {
+        index = 0;
+        for (int i = 1; i < inputs.length; i++) {
+          if (inputLastUseCounts[i] < inputLastUseCounts[index]) {
+            index = i;
           }
-        } finally {
-          if (result == Extractor.RESULT_SEEK) {
-            result = Extractor.RESULT_CONTINUE;
-          } else if (input != null) {
-            positionHolder.position = input.getPosition();
+        }
+        closeInput(index);
+        // Mark the data source as in use before opening it, so that it's closed if opening fails.
+        inputLastUseCounts[index] = ++inputUseCount;
+        DataSource dataSource = dataSources[index];
+        long length = dataSource.open(new DataSpec(uri, position, C.LENGTH_UNBOUNDED, null));
+        if (length != C.LENGTH_UNBOUNDED) {
+          length += position;
+        }
+        inputs[index] = new DefaultExtractorInput(dataSource, position, length);
+      }
+      inputLastUseCounts[index] = ++inputUseCount;
+      return inputs[index];
+    }
+
+    /**
+     * Closes every open input. If closing any of them fails, the others are still closed and the
+     * first exception is thrown.
+     */
+    private void closeInputs() throws IOException {
+      IOException closeException = null;
+      for (int i = 0; i < dataSources.length; i++) {
+        try {
+          closeInput(i);
+        } catch (IOException e) {
+          if (closeException == null) {
+            closeException = e;
           }
-          dataSource.close();
         }
       }
+      if (closeException != null) {
+        throw closeException;
+      }
+    }
+
+    private void closeInput(int index) throws IOException {
+      if (inputLastUseCounts[index] != 0) {
+        inputs[index] = null;
+        inputLastUseCounts[index] = 0;
+        dataSources[index].close();
+      }
     }
 
   }
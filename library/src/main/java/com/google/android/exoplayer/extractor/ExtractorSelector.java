@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer.extractor;
+
+import com.google.android.exoplayer.ParserException;
+
+import java.io.EOFException;
+import java.io.IOException;
+
+/**
+ * Selects the {@link Extractor} for a stream from a number of candidates, by asking each of them
+ * in turn to sniff the start of the stream.
+ * <p>
+ * Sniffing only peeks data, which the {@link ExtractorInput} retains. The selected extractor then
+ * reads the stream from its start without the peeked data being requested again.
+ */
+public final class ExtractorSelector {
+
+  /**
+   * Thrown if none of the candidate extractors recognizes the stream.
+   */
+  public static final class UnrecognizedInputFormatException extends ParserException {
+
+    public UnrecognizedInputFormatException(Extractor[] extractors) {
+      super("None of the available extractors (" + getExtractorNames(extractors)
+          + ") could read the stream.");
+    }
+
+    private static String getExtractorNames(Extractor[] extractors) {
+      StringBuilder names = new StringBuilder();
+      for (int i = 0; i < extractors.length; i++) {
+        if (i > 0) {
+          names.append(", ");
+        }
+        names.append(extractors[i].getClass().getSimpleName());
+      }
+      return names.toString();
+    }
+
+  }
+
+  private ExtractorSelector() {}
+
+  /**
+   * Returns the first of {@code extractors} that recognizes the stream provided by {@code input}.
+   * <p>
+   * The input must be positioned at the start of the stream. Its read position is not modified,
+   * and its peek position is reset before returning.
+   *
+   * @param extractors The candidate extractors, in order of priority.
+   * @param input The {@link ExtractorInput} providing the stream.
+   * @return The selected extractor.
+   * @throws UnrecognizedInputFormatException If none of the extractors recognizes the stream.
+   * @throws IOException If an error occurs reading from the input.
+   * @throws InterruptedException If the thread was interrupted.
+   */
+  public static Extractor select(Extractor[] extractors, ExtractorInput input)
+      throws IOException, InterruptedException {
+    for (Extractor extractor : extractors) {
+      try {
+        if (extractor.sniff(input)) {
+          return extractor;
+        }
+      } catch (EOFException e) {
+        // The stream ended before the extractor could recognize it.
+      } finally {
+        input.resetPeekPosition();
+      }
+    }
+    throw new UnrecognizedInputFormatException(extractors);
+  }
+
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer.extractor;
+
+import com.google.android.exoplayer.util.Assertions;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * A pool of worker threads to which an {@link Extractor} can offload the parsing of elementary
+ * streams, so that the loading thread only has to read and demultiplex the container.
+ * <p>
+ * The extractor is responsible for ensuring that the work it submits for any one track is executed
+ * serially and in order. The host of the extractor (e.g. {@link ExtractorSampleSource}) calls
+ * {@link #blockUntilIdle()} whenever it needs all of the extracted samples to have been written
+ * to their {@link TrackOutput}s, for example before a load completes or is canceled.
+ */
+public final class ExtractorWorkerPool {
+
+  private static final String THREAD_NAME = "ExtractorWorker";
+
+  private final ExecutorService executorService;
+
+  private int pendingTaskCount;
+  private RuntimeException workerException;
+
+  /**
+   * @param threadCount The number of worker threads.
+   */
+  public ExtractorWorkerPool(int threadCount) {
+    Assertions.checkArgument(threadCount > 0);
+    executorService = Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        return new Thread(r, THREAD_NAME);
+      }
+    });
+  }
+
+  /**
+   * Executes a task on one of the worker threads.
+   * <p>
+   * Tasks may execute concurrently with one another. If a task throws, the exception is rethrown
+   * to the loading thread by the next call to {@link #maybeThrowError()}.
+   *
+   * @param task The task to execute.
+   */
+  public void execute(final Runnable task) {
+    synchronized (this) {
+      pendingTaskCount++;
+    }
+    executorService.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          task.run();
+        } catch (RuntimeException e) {
+          onTaskFailed(e);
+        } finally {
+          onTaskFinished();
+        }
+      }
+    });
+  }
+
+  /**
+   * Blocks until all tasks passed to {@link #execute(Runnable)} have finished executing.
+   * <p>
+   * The wait is not interruptible, since it's used to leave the track outputs in a consistent state
+   * when a load is canceled. If the calling thread is interrupted whilst waiting, its interrupted
+   * status is restored before returning.
+   */
+  public synchronized void blockUntilIdle() {
+    boolean interrupted = false;
+    while (pendingTaskCount > 0) {
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Rethrows the first exception thrown by a task since the previous call, if any.
+   * <p>
+   * The exception is cleared once it's been rethrown, so that the pool can be used for subsequent
+   * loads.
+   *
+   * @throws RuntimeException The first exception thrown by a task.
+   */
+  public synchronized void maybeThrowError() {
+    if (workerException != null) {
+      RuntimeException exception = workerException;
+      workerException = null;
+      throw exception;
+    }
+  }
+
+  /**
+   * Releases the pool. Tasks that are already executing are allowed to finish.
+   */
+  public void release() {
+    executorService.shutdown();
+  }
+
+  private synchronized void onTaskFailed(RuntimeException e) {
+    if (workerException == null) {
+      workerException = e;
+    }
+  }
+
+  private synchronized void onTaskFinished() {
+    if (--pendingTaskCount == 0) {
+      notifyAll();
+    }
+  }
+
+}
@@ -21,6 +21,7 @@ import com.google.android.exoplayer.upstream.Allocation;
 import com.google.android.exoplayer.upstream.Allocator;
 import com.google.android.exoplayer.upstream.DataSource;
 import com.google.android.exoplayer.util.Assertions;
+import com.google.android.exoplayer.util.MetricsRegistry;
 import com.google.android.exoplayer.util.ParsableByteArray;
 
 import java.io.IOException;
@@ -34,6 +35,11 @@ import java.util.concurrent.LinkedBlockingDeque;
 
   private static final int INITIAL_SCRATCH_SIZE = 32;
 
+  private static final MetricsRegistry.Histogram QUEUE_DEPTH_SAMPLES_HISTOGRAM =
+      MetricsRegistry.getDefault().getHistogram("sample_queue.depth_samples");
+  private static final MetricsRegistry.Histogram QUEUE_DEPTH_BYTES_HISTOGRAM =
+      MetricsRegistry.getDefault().getHistogram("sample_queue.depth_bytes");
+
   private final Allocator allocator;
   private final int allocationLength;
 
@@ -420,7 +426,32 @@ import java.util.concurrent.LinkedBlockingDeque;
    */
   public void commitSample(long sampleTimeUs, int flags, long position, int size,
       byte[] encryptionKey) {
-    infoQueue.commitSample(sampleTimeUs, flags, position, size, encryptionKey);
+    int queueSize = infoQueue.commitSample(sampleTimeUs, flags, position, size, encryptionKey);
+    recordQueueDepth(queueSize);
+  }
+
+  /**
+   * Indicates the end points for a run of samples whose data is contiguous in the rolling buffer,
+   * making them available for consumption.
+   *
+   * @param sampleCount The number of samples in the run.
+   * @param sampleTimesUs The sample timestamps.
+   * @param flags Flags that accompany the samples. See {@link SampleHolder#flags}.
+   * @param position The position of the first sample's data in the rolling buffer.
+   * @param sizes The sizes of the samples, in bytes.
+   * @param encryptionKey The encryption key associated with the samples, or null.
+   */
+  public void commitSamples(int sampleCount, long[] sampleTimesUs, int[] flags, long position,
+      int[] sizes, byte[] encryptionKey) {
+    int queueSize = infoQueue.commitSamples(sampleCount, sampleTimesUs, flags, position, sizes,
+        encryptionKey);
+    recordQueueDepth(queueSize);
+  }
+
+  private void recordQueueDepth(int queueSize) {
+    QUEUE_DEPTH_SAMPLES_HISTOGRAM.record(queueSize);
+    // The buffered data is measured in whole allocations, which is how it occupies memory.
+    QUEUE_DEPTH_BYTES_HISTOGRAM.record((long) dataQueue.size() * allocationLength);
   }
 
   /**
@@ -603,7 +634,10 @@ import java.util.concurrent.LinkedBlockingDeque;
 
     // Called by the loading thread.
 
-    public synchronized void commitSample(long timeUs, int sampleFlags, long offset, int size,
+    /**
+     * Commits a sample, returning the number of samples in the queue.
+     */
+    public synchronized int commitSample(long timeUs, int sampleFlags, long offset, int size,
         byte[] encryptionKey) {
       timesUs[relativeWriteIndex] = timeUs;
       offsets[relativeWriteIndex] = offset;
@@ -613,34 +647,7 @@ import java.util.concurrent.LinkedBlockingDeque;
       // Increment the write index.
       queueSize++;
       if (queueSize == capacity) {
-        // Increase the capacity.
-        int newCapacity = capacity + SAMPLE_CAPACITY_INCREMENT;
-        long[] newOffsets = new long[newCapacity];
-        long[] newTimesUs = new long[newCapacity];
-        int[] newFlags = new int[newCapacity];
-        int[] newSizes = new int[newCapacity];
-        byte[][] newEncryptionKeys = new byte[newCapacity][];
-        int beforeWrap = capacity - relativeReadIndex;
-        System.arraycopy(offsets, relativeReadIndex, newOffsets, 0, beforeWrap);
-        System.arraycopy(timesUs, relativeReadIndex, newTimesUs, 0, beforeWrap);
-        System.arraycopy(flags, relativeReadIndex, newFlags, 0, beforeWrap);
-        System.arraycopy(sizes, relativeReadIndex, newSizes, 0, beforeWrap);
-        System.arraycopy(encryptionKeys, relativeReadIndex, newEncryptionKeys, 0, beforeWrap);
-        int afterWrap = relativeReadIndex;
-        System.arraycopy(offsets, 0, newOffsets, beforeWrap, afterWrap);
-        System.arraycopy(timesUs, 0, newTimesUs, beforeWrap, afterWrap);
-        System.arraycopy(flags, 0, newFlags, beforeWrap, afterWrap);
-        System.arraycopy(sizes, 0, newSizes, beforeWrap, afterWrap);
-        System.arraycopy(encryptionKeys, 0, newEncryptionKeys, beforeWrap, afterWrap);
-        offsets = newOffsets;
-        timesUs = newTimesUs;
-        flags = newFlags;
-        sizes = newSizes;
-        encryptionKeys = newEncryptionKeys;
-        relativeReadIndex = 0;
-        relativeWriteIndex = capacity;
-        queueSize = capacity;
-        capacity = newCapacity;
+        increaseCapacity(capacity + SAMPLE_CAPACITY_INCREMENT);
       } else {
         relativeWriteIndex++;
         if (relativeWriteIndex == capacity) {
@@ -648,6 +655,66 @@ import java.util.concurrent.LinkedBlockingDeque;
           relativeWriteIndex = 0;
         }
       }
+      return queueSize;
+    }
+
+    /**
+     * Commits a run of samples, returning the number of samples in the queue.
+     */
+    public synchronized int commitSamples(int sampleCount, long[] sampleTimesUs,
+        int[] sampleFlags, long offset, int[] sampleSizes, byte[] encryptionKey) {
+      if (queueSize + sampleCount >= capacity) {
+        // Increase the capacity once for the whole run, keeping it a multiple of the increment.
+        int requiredIncrease = queueSize + sampleCount - capacity + 1;
+        increaseCapacity(capacity + SAMPLE_CAPACITY_INCREMENT
+            * ((requiredIncrease + SAMPLE_CAPACITY_INCREMENT - 1) / SAMPLE_CAPACITY_INCREMENT));
+      }
+      for (int i = 0; i < sampleCount; i++) {
+        timesUs[relativeWriteIndex] = sampleTimesUs[i];
+        offsets[relativeWriteIndex] = offset;
+        sizes[relativeWriteIndex] = sampleSizes[i];
+        flags[relativeWriteIndex] = sampleFlags[i];
+        encryptionKeys[relativeWriteIndex] = encryptionKey;
+        offset += sampleSizes[i];
+        relativeWriteIndex++;
+        if (relativeWriteIndex == capacity) {
+          // Wrap around.
+          relativeWriteIndex = 0;
+        }
+      }
+      queueSize += sampleCount;
+      return queueSize;
+    }
+
+    /**
+     * Copies the queued samples into new arrays of the specified capacity, starting at index 0.
+     */
+    private void increaseCapacity(int newCapacity) {
+      long[] newOffsets = new long[newCapacity];
+      long[] newTimesUs = new long[newCapacity];
+      int[] newFlags = new int[newCapacity];
+      int[] newSizes = new int[newCapacity];
+      byte[][] newEncryptionKeys = new byte[newCapacity][];
+      int beforeWrap = Math.min(queueSize, capacity - relativeReadIndex);
+      System.arraycopy(offsets, relativeReadIndex, newOffsets, 0, beforeWrap);
+      System.arraycopy(timesUs, relativeReadIndex, newTimesUs, 0, beforeWrap);
+      System.arraycopy(flags, relativeReadIndex, newFlags, 0, beforeWrap);
+      System.arraycopy(sizes, relativeReadIndex, newSizes, 0, beforeWrap);
+      System.arraycopy(encryptionKeys, relativeReadIndex, newEncryptionKeys, 0, beforeWrap);
+      int afterWrap = queueSize - beforeWrap;
+      System.arraycopy(offsets, 0, newOffsets, beforeWrap, afterWrap);
+      System.arraycopy(timesUs, 0, newTimesUs, beforeWrap, afterWrap);
+      System.arraycopy(flags, 0, newFlags, beforeWrap, afterWrap);
+      System.arraycopy(sizes, 0, newSizes, beforeWrap, afterWrap);
+      System.arraycopy(encryptionKeys, 0, newEncryptionKeys, beforeWrap, afterWrap);
+      offsets = newOffsets;
+      timesUs = newTimesUs;
+      flags = newFlags;
+      sizes = newSizes;
+      encryptionKeys = newEncryptionKeys;
+      relativeReadIndex = 0;
+      relativeWriteIndex = queueSize;
+      capacity = newCapacity;
     }
 
   }
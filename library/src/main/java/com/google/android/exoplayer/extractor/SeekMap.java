@@ -20,6 +20,23 @@ package com.google.android.exoplayer.extractor;
  */
 public interface SeekMap {
 
+  /**
+   * A {@link SeekMap} for streams that do not support seeking.
+   */
+  SeekMap UNSEEKABLE = new SeekMap() {
+
+    @Override
+    public boolean isSeekable() {
+      return false;
+    }
+
+    @Override
+    public long getPosition(long timeUs) {
+      return 0;
+    }
+
+  };
+
   /**
    * Whether or not the seeking is supported.
    * <p>
@@ -68,4 +68,24 @@ public interface TrackOutput {
    */
   void sampleMetadata(long timeUs, int flags, int size, int offset, byte[] encryptionKey);
 
+  /**
+   * Invoked when metadata associated with a run of samples has been extracted from the stream.
+   * <p>
+   * Equivalent to invoking {@link #sampleMetadata(long, int, int, int, byte[])} once for each
+   * sample in the run, but allows the output to commit all of the samples at once. The data of the
+   * samples must have been passed to the output contiguously and in order, so that the data of
+   * each sample immediately follows the data of the previous one.
+   *
+   * @param sampleCount The number of samples in the run.
+   * @param timesUs The media timestamps associated with the samples, in microseconds.
+   * @param flags Flags associated with the samples. See {@link SampleHolder#flags}.
+   * @param sizes The sizes of the sample data, in bytes.
+   * @param offset The number of bytes that have been passed to
+   *     {@link #sampleData(ExtractorInput, int)} or {@link #sampleData(ParsableByteArray, int)}
+   *     since the last byte belonging to the last sample in the run.
+   * @param encryptionKey The encryption key associated with the samples. May be null.
+   */
+  void sampleMetadata(int sampleCount, long[] timesUs, int[] flags, int[] sizes, int offset,
+      byte[] encryptionKey);
+
 }
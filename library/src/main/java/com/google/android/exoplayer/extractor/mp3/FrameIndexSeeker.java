@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer.extractor.mp3;
+
+/**
+ * MP3 seeker that records the position and timestamp of each frame as the stream is read, so that
+ * seeks within the region read so far land exactly on the frame containing the target time.
+ * Outside of that region, seeking is delegated to another seeker.
+ * <p>
+ * The index only covers the region that has been read contiguously from the first frame, because
+ * only the timestamps of frames in that region are known exactly. Frames are added by the loading
+ * thread while positions are looked up by the playback thread, so access is synchronized.
+ */
+/* package */ final class FrameIndexSeeker implements Mp3Extractor.Seeker {
+
+  private static final int INITIAL_CAPACITY = 1024;
+
+  private final Mp3Extractor.Seeker fallbackSeeker;
+
+  private long[] positions;
+  private long[] timesUs;
+  private int frameCount;
+  private long indexEndPosition;
+
+  /**
+   * @param fallbackSeeker The seeker to use for positions and times outside of the indexed region.
+   * @param firstFramePosition The position (byte offset) of the first audio frame in the stream.
+   */
+  public FrameIndexSeeker(Mp3Extractor.Seeker fallbackSeeker, long firstFramePosition) {
+    this.fallbackSeeker = fallbackSeeker;
+    positions = new long[INITIAL_CAPACITY];
+    timesUs = new long[INITIAL_CAPACITY];
+    indexEndPosition = firstFramePosition;
+  }
+
+  /**
+   * Adds a frame to the index if it immediately follows the indexed region.
+   * <p>
+   * A frame follows the indexed region if it starts where the last indexed frame ends, or if the
+   * previous frame was read from within the indexed region, in which case any bytes that were
+   * skipped to resynchronize between the two frames are included in the region.
+   *
+   * @param position The position (byte offset) of the frame's header.
+   * @param timeUs The timestamp of the frame, in microseconds.
+   * @param frameSize The size of the frame, in bytes.
+   * @param followsIndexedFrame Whether the frame was read directly after a frame for which this
+   *     method returned true, without seeking in between.
+   * @return Whether the frame lies within the indexed region. If true, {@code timeUs} is exact.
+   */
+  public synchronized boolean maybeAddFrame(long position, long timeUs, int frameSize,
+      boolean followsIndexedFrame) {
+    if (position < indexEndPosition) {
+      return followsIndexedFrame || getFrameIndex(position) != -1;
+    }
+    if (!followsIndexedFrame && position != indexEndPosition) {
+      return false;
+    }
+    if (frameCount == positions.length) {
+      int newCapacity = positions.length * 2;
+      long[] newPositions = new long[newCapacity];
+      long[] newTimesUs = new long[newCapacity];
+      System.arraycopy(positions, 0, newPositions, 0, frameCount);
+      System.arraycopy(timesUs, 0, newTimesUs, 0, frameCount);
+      positions = newPositions;
+      timesUs = newTimesUs;
+    }
+    positions[frameCount] = position;
+    timesUs[frameCount] = timeUs;
+    frameCount++;
+    indexEndPosition = position + frameSize;
+    return true;
+  }
+
+  @Override
+  public boolean isSeekable() {
+    return fallbackSeeker.isSeekable();
+  }
+
+  @Override
+  public synchronized long getPosition(long timeUs) {
+    if (frameCount > 0 && timeUs < getIndexEndTimeUs()) {
+      int index = binarySearchFloor(timesUs, frameCount, timeUs);
+      return positions[Math.max(index, 0)];
+    }
+    // The target lies beyond the indexed region, so there's no point seeking to a position inside
+    // it, even if the fallback estimate falls there.
+    return Math.max(fallbackSeeker.getPosition(timeUs), indexEndPosition);
+  }
+
+  @Override
+  public synchronized long getTimeUs(long position) {
+    int index = getFrameIndex(position);
+    return index != -1 ? timesUs[index] : fallbackSeeker.getTimeUs(position);
+  }
+
+  @Override
+  public long getDurationUs() {
+    return fallbackSeeker.getDurationUs();
+  }
+
+  /**
+   * Returns the time at which the last indexed frame ends, estimated from the spacing of the last
+   * two indexed frames.
+   */
+  private long getIndexEndTimeUs() {
+    long lastTimeUs = timesUs[frameCount - 1];
+    return frameCount == 1 ? lastTimeUs
+        : lastTimeUs + (lastTimeUs - timesUs[frameCount - 2]);
+  }
+
+  /**
+   * Returns the index of the indexed frame whose header is at {@code position}, or -1 if there is
+   * no such frame.
+   */
+  private int getFrameIndex(long position) {
+    int index = binarySearchFloor(positions, frameCount, position);
+    return index != -1 && positions[index] == position ? index : -1;
+  }
+
+  /**
+   * Returns the index of the largest of the first {@code size} elements of {@code values} that is
+   * less than or equal to {@code value}, or -1 if there is no such element.
+   */
+  private static int binarySearchFloor(long[] values, int size, long value) {
+    int low = 0;
+    int high = size - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      if (values[mid] <= value) {
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return high;
+  }
+
+}
@@ -36,8 +36,25 @@ import java.io.IOException;
  */
 public final class Mp3Extractor implements Extractor {
 
+  /**
+   * Flag to record the position and timestamp of each frame as the stream is read. Seeks to times
+   * within the region of the stream that has been read from the start then land exactly on the
+   * frame containing the target time, rather than on a position estimated from the stream's
+   * seeking metadata or bitrate.
+   */
+  public static final int FLAG_ENABLE_FRAME_INDEX_SEEKING = 1;
+
   /** The maximum number of bytes to search when synchronizing, before giving up. */
   private static final int MAX_BYTES_TO_SEARCH = 128 * 1024;
+  /** The maximum number of bytes to search when sniffing, excluding any ID3 header. */
+  private static final int MAX_SNIFF_BYTES = 4 * 1024;
+  /**
+   * The maximum length of an ID3 tag that may be skipped when sniffing. Skipping a tag requires it
+   * to be peeked, so longer tags cause sniffing to fail rather than buffering the whole tag.
+   */
+  private static final int MAX_SNIFF_ID3_TAG_LENGTH = 4 * 1024 * 1024;
+  /** The size of an ID3 tag header, which starts with {@link #ID3_TAG}. */
+  private static final int ID3_HEADER_SIZE = 10;
 
   /** Mask that includes the audio header values that must match between frames. */
   private static final int HEADER_MASK = 0xFFFE0C00;
@@ -46,6 +63,7 @@ public final class Mp3Extractor implements Extractor {
   private static final int INFO_HEADER = Util.getIntegerCodeForString("Info");
   private static final int VBRI_HEADER = Util.getIntegerCodeForString("VBRI");
 
+  private final boolean enableFrameIndexSeeking;
   private final BufferingInput inputBuffer;
   private final ParsableByteArray scratch;
   private final MpegAudioHeader synchronizedHeader;
@@ -57,17 +75,78 @@ public final class Mp3Extractor implements Extractor {
   private int synchronizedHeaderData;
 
   private Seeker seeker;
+  private FrameIndexSeeker frameIndexSeeker;
+  private boolean frameIndexed;
   private long basisTimeUs;
   private int samplesRead;
   private int sampleBytesRemaining;
 
   /** Constructs a new {@link Mp3Extractor}. */
   public Mp3Extractor() {
+    this(0);
+  }
+
+  /**
+   * Constructs a new {@link Mp3Extractor}.
+   *
+   * @param flags Flags that control the extractor's behavior. May be zero or
+   *     {@link #FLAG_ENABLE_FRAME_INDEX_SEEKING}.
+   */
+  public Mp3Extractor(int flags) {
+    enableFrameIndexSeeking = (flags & FLAG_ENABLE_FRAME_INDEX_SEEKING) != 0;
     inputBuffer = new BufferingInput(MpegAudioHeader.MAX_FRAME_SIZE_BYTES * 3);
     scratch = new ParsableByteArray(4);
     synchronizedHeader = new MpegAudioHeader();
   }
 
+  @Override
+  public boolean sniff(ExtractorInput input) throws IOException, InterruptedException {
+    ParsableByteArray scratch = new ParsableByteArray(ID3_HEADER_SIZE);
+
+    // Skip any ID3 header at the start of the file.
+    int startPosition = 0;
+    input.peekFully(scratch.data, 0, ID3_HEADER_SIZE);
+    if (scratch.readUnsignedInt24() == ID3_TAG) {
+      int id3TagLength = getId3TagLength(scratch.data, 6);
+      if (id3TagLength > MAX_SNIFF_ID3_TAG_LENGTH) {
+        return false;
+      }
+      startPosition = ID3_HEADER_SIZE + id3TagLength;
+    }
+    input.resetPeekPosition();
+    input.advancePeekPosition(startPosition);
+
+    // Try to find four consecutive valid MPEG audio frames, as when synchronizing.
+    int searchedBytes = 0;
+    int validFrameCount = 0;
+    int candidateSynchronizedHeaderData = 0;
+    while (true) {
+      input.peekFully(scratch.data, 0, 4);
+      scratch.setPosition(0);
+      int headerData = scratch.readInt();
+      int frameSize;
+      if ((candidateSynchronizedHeaderData != 0
+          && (headerData & HEADER_MASK) != (candidateSynchronizedHeaderData & HEADER_MASK))
+          || (frameSize = MpegAudioHeader.getFrameSize(headerData)) == -1) {
+        validFrameCount = 0;
+        candidateSynchronizedHeaderData = 0;
+        if (++searchedBytes == MAX_SNIFF_BYTES) {
+          return false;
+        }
+        input.resetPeekPosition();
+        input.advancePeekPosition(startPosition + searchedBytes);
+      } else {
+        if (validFrameCount == 0) {
+          candidateSynchronizedHeaderData = headerData;
+        }
+        if (++validFrameCount == 4) {
+          return true;
+        }
+        input.advancePeekPosition(frameSize - 4);
+      }
+    }
+  }
+
   @Override
   public void init(ExtractorOutput extractorOutput) {
     this.extractorOutput = extractorOutput;
@@ -81,6 +160,7 @@ public final class Mp3Extractor implements Extractor {
     samplesRead = 0;
     basisTimeUs = -1;
     sampleBytesRemaining = 0;
+    frameIndexed = false;
     inputBuffer.reset();
   }
 
@@ -101,13 +181,18 @@ public final class Mp3Extractor implements Extractor {
       if (headerPosition == RESULT_END_OF_INPUT) {
         return RESULT_END_OF_INPUT;
       }
+      long framePosition = getPosition(extractorInput, inputBuffer);
       if (basisTimeUs == -1) {
-        basisTimeUs = seeker.getTimeUs(getPosition(extractorInput, inputBuffer));
+        basisTimeUs = seeker.getTimeUs(framePosition);
       }
       sampleBytesRemaining = synchronizedHeader.frameSize;
+      if (frameIndexSeeker != null) {
+        frameIndexed = frameIndexSeeker.maybeAddFrame(framePosition, getSampleTimeUs(),
+            synchronizedHeader.frameSize, frameIndexed);
+      }
     }
 
-    long timeUs = basisTimeUs + (samplesRead * 1000000L / synchronizedHeader.sampleRate);
+    long timeUs = getSampleTimeUs();
 
     // Start by draining any buffered bytes, then read directly from the extractor input.
     sampleBytesRemaining -= inputBuffer.drainToOutput(trackOutput, sampleBytesRemaining);
@@ -127,6 +212,11 @@ public final class Mp3Extractor implements Extractor {
     return RESULT_CONTINUE;
   }
 
+  /** Returns the timestamp of the frame being read, in microseconds. */
+  private long getSampleTimeUs() {
+    return basisTimeUs + (samplesRead * 1000000L / synchronizedHeader.sampleRate);
+  }
+
   /** Attempts to read an MPEG audio header at the current offset, resynchronizing if necessary. */
   private long maybeResynchronize(ExtractorInput extractorInput)
       throws IOException, InterruptedException {
@@ -182,9 +272,7 @@ public final class Mp3Extractor implements Extractor {
       if (scratch.readUnsignedInt24() == ID3_TAG) {
         extractorInput.skipFully(3);
         extractorInput.readFully(scratch.data, 0, 4);
-        int headerLength = ((scratch.data[0] & 0x7F) << 21) | ((scratch.data[1] & 0x7F) << 14)
-            | ((scratch.data[2] & 0x7F) << 7) | (scratch.data[3] & 0x7F);
-        extractorInput.skipFully(headerLength);
+        extractorInput.skipFully(getId3TagLength(scratch.data, 0));
         inputBuffer.reset();
         startPosition = getPosition(extractorInput, inputBuffer);
       } else {
@@ -243,6 +331,10 @@ public final class Mp3Extractor implements Extractor {
     synchronizedHeaderData = candidateSynchronizedHeaderData;
     if (seeker == null) {
       setupSeeker(extractorInput, headerPosition);
+      if (enableFrameIndexSeeking) {
+        frameIndexSeeker = new FrameIndexSeeker(seeker, getPosition(extractorInput, inputBuffer));
+        seeker = frameIndexSeeker;
+      }
       extractorOutput.seekMap(seeker);
       trackOutput.format(MediaFormat.createAudioFormat(synchronizedHeader.mimeType,
           MpegAudioHeader.MAX_FRAME_SIZE_BYTES, seeker.getDurationUs(), synchronizedHeader.channels,
@@ -339,6 +431,15 @@ public final class Mp3Extractor implements Extractor {
     return false;
   }
 
+  /**
+   * Returns the length of an ID3 tag excluding its header, given the four synchsafe size bytes at
+   * {@code offset} in {@code data}.
+   */
+  private static int getId3TagLength(byte[] data, int offset) {
+    return ((data[offset] & 0x7F) << 21) | ((data[offset + 1] & 0x7F) << 14)
+        | ((data[offset + 2] & 0x7F) << 7) | (data[offset + 3] & 0x7F);
+  }
+
   /** Returns the reading position of {@code bufferingInput} relative to the extractor's stream. */
   private static long getPosition(ExtractorInput extractorInput, BufferingInput bufferingInput) {
     return extractorInput.getPosition() - bufferingInput.getAvailableByteCount();
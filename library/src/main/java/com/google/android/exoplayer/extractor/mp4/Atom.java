@@ -52,6 +52,10 @@ import java.util.List;
   public static final int TYPE_trex = Util.getIntegerCodeForString("trex");
   public static final int TYPE_trun = Util.getIntegerCodeForString("trun");
   public static final int TYPE_sidx = Util.getIntegerCodeForString("sidx");
+  public static final int TYPE_emsg = Util.getIntegerCodeForString("emsg");
+  public static final int TYPE_mfra = Util.getIntegerCodeForString("mfra");
+  public static final int TYPE_tfra = Util.getIntegerCodeForString("tfra");
+  public static final int TYPE_mfro = Util.getIntegerCodeForString("mfro");
   public static final int TYPE_moov = Util.getIntegerCodeForString("moov");
   public static final int TYPE_mvhd = Util.getIntegerCodeForString("mvhd");
   public static final int TYPE_trak = Util.getIntegerCodeForString("trak");
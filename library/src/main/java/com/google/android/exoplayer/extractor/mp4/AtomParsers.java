@@ -108,7 +108,7 @@ import java.util.List;
     long[] timestamps = new long[sampleCount];
     int[] flags = new int[sampleCount];
     if (sampleCount == 0) {
-      return new TrackSampleTable(offsets, sizes, timestamps, flags);
+      return new ExpandedTrackSampleTable(offsets, sizes, timestamps, flags);
     }
 
     // Prepare to read chunk offsets.
@@ -243,7 +243,47 @@ import java.util.List;
     Assertions.checkArgument(remainingSamplesInChunk == 0);
     Assertions.checkArgument(remainingTimestampDeltaChanges == 0);
     Assertions.checkArgument(remainingTimestampOffsetChanges == 0);
-    return new TrackSampleTable(offsets, sizes, timestamps, flags);
+    return new ExpandedTrackSampleTable(offsets, sizes, timestamps, flags);
+  }
+
+  /**
+   * Parses an stbl atom (defined in 14496-12) into a sample table that retains the compact form of
+   * the atom data, rather than expanding the properties of every sample.
+   *
+   * @param track Track to which this sample table corresponds.
+   * @param stblAtom stbl (sample table) atom to parse.
+   * @param sampleSizes Sample sizes that have already been read from the stsz atom, or null if they
+   *     should be read from the stsz atom data.
+   * @return Sample table described by the stbl atom.
+   */
+  public static TrackSampleTable parseCompactStbl(Track track, Atom.ContainerAtom stblAtom,
+      PackedSampleSizes sampleSizes) {
+    ParsableByteArray stsz = stblAtom.getLeafAtomOfType(Atom.TYPE_stsz).data;
+    stsz.setPosition(Atom.FULL_HEADER_SIZE);
+    int fixedSampleSize = stsz.readUnsignedIntToInt();
+    int sampleCount = stsz.readUnsignedIntToInt();
+    if (sampleCount == 0) {
+      return new ExpandedTrackSampleTable(new long[0], new int[0], new long[0], new int[0]);
+    }
+    if (fixedSampleSize == 0 && sampleSizes == null) {
+      sampleSizes = new PackedSampleSizes(sampleCount);
+      for (int i = 0; i < sampleCount; i++) {
+        sampleSizes.add(stsz.readUnsignedIntToInt());
+      }
+    }
+
+    Atom.LeafAtom chunkOffsetsAtom = stblAtom.getLeafAtomOfType(Atom.TYPE_stco);
+    if (chunkOffsetsAtom == null) {
+      chunkOffsetsAtom = stblAtom.getLeafAtomOfType(Atom.TYPE_co64);
+    }
+    ParsableByteArray stsc = stblAtom.getLeafAtomOfType(Atom.TYPE_stsc).data;
+    ParsableByteArray stts = stblAtom.getLeafAtomOfType(Atom.TYPE_stts).data;
+    Atom.LeafAtom cttsAtom = stblAtom.getLeafAtomOfType(Atom.TYPE_ctts);
+    Atom.LeafAtom stssAtom = stblAtom.getLeafAtomOfType(Atom.TYPE_stss);
+    return new CompactTrackSampleTable(sampleCount, track.timescale, fixedSampleSize,
+        fixedSampleSize == 0 ? sampleSizes : null, chunkOffsetsAtom.data,
+        chunkOffsetsAtom.type == Atom.TYPE_co64, stsc, stts,
+        cttsAtom != null ? cttsAtom.data : null, stssAtom != null ? stssAtom.data : null);
   }
 
   /**
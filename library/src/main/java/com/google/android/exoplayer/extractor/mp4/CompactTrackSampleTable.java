@@ -0,0 +1,425 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer.extractor.mp4;
+
+import com.google.android.exoplayer.C;
+import com.google.android.exoplayer.util.Assertions;
+import com.google.android.exoplayer.util.ParsableByteArray;
+import com.google.android.exoplayer.util.Util;
+
+import java.util.Arrays;
+
+/**
+ * Sample table that keeps the run-length encoded form of the sample table atoms, resolving the
+ * properties of individual samples on demand.
+ * <p>
+ * Sample sizes are held in a {@link PackedSampleSizes}, chunk offsets are read directly from the
+ * stco/co64 atom data, and timestamps, composition offsets and chunk layouts are held as runs. The
+ * memory required is therefore a small fraction of that required by
+ * {@link ExpandedTrackSampleTable}, which makes it suitable for long files. Sequential access
+ * through a {@link Cursor} takes constant time per sample, and positioning a cursor or finding a
+ * synchronization sample takes logarithmic time.
+ */
+/* package */ final class CompactTrackSampleTable extends TrackSampleTable {
+
+  private final long timescale;
+
+  // Sample sizes, if the sample size is not fixed.
+  private final int fixedSampleSize;
+  private final PackedSampleSizes sampleSizes;
+
+  // Chunk offsets, read from the stco or co64 atom data.
+  private final byte[] chunkOffsets;
+  private final boolean chunkOffsetsAre64Bit;
+
+  // Runs of chunks containing the same number of samples, from the stsc atom.
+  private final int chunkRunCount;
+  private final int[] chunkRunFirstChunks;
+  private final int[] chunkRunFirstSamples;
+  private final int[] chunkRunSamplesPerChunk;
+
+  // Runs of samples having the same duration, from the stts atom.
+  private final int durationRunCount;
+  private final int[] durationRunFirstSamples;
+  private final long[] durationRunFirstDecodeTimes;
+  private final int[] durationRunDurations;
+
+  // Runs of samples having the same composition time offset, from the ctts atom, if present.
+  private final int offsetRunCount;
+  private final int[] offsetRunFirstSamples;
+  private final int[] offsetRunOffsets;
+
+  // Indices of synchronization samples, from the stss atom. Null if every sample is a sync sample.
+  private final int[] syncSamples;
+
+  /**
+   * @param sampleCount The number of samples, which must be greater than zero.
+   * @param timescale The timescale of the track.
+   * @param fixedSampleSize The size of every sample, or zero if samples sizes are not fixed.
+   * @param sampleSizes The sample sizes if {@code fixedSampleSize} is zero. Null otherwise.
+   * @param chunkOffsets The stco or co64 atom data.
+   * @param chunkOffsetsAre64Bit Whether {@code chunkOffsets} is co64 atom data.
+   * @param stsc The stsc atom data.
+   * @param stts The stts atom data.
+   * @param ctts The ctts atom data, or null if the track has no ctts atom.
+   * @param stss The stss atom data, or null if the track has no stss atom.
+   */
+  public CompactTrackSampleTable(int sampleCount, long timescale, int fixedSampleSize,
+      PackedSampleSizes sampleSizes, ParsableByteArray chunkOffsets, boolean chunkOffsetsAre64Bit,
+      ParsableByteArray stsc, ParsableByteArray stts, ParsableByteArray ctts,
+      ParsableByteArray stss) {
+    super(sampleCount);
+    Assertions.checkArgument(sampleCount > 0);
+    this.timescale = timescale;
+
+    this.fixedSampleSize = fixedSampleSize;
+    this.sampleSizes = sampleSizes;
+    Assertions.checkArgument(fixedSampleSize != 0 || sampleSizes.size() == sampleCount);
+
+    // Entries are byte offsets of chunks.
+    chunkOffsets.setPosition(Atom.FULL_HEADER_SIZE);
+    int chunkCount = chunkOffsets.readUnsignedIntToInt();
+    Assertions.checkArgument(chunkOffsets.limit()
+        >= Atom.FULL_HEADER_SIZE + 4 + (chunkOffsetsAre64Bit ? 8 : 4) * chunkCount);
+    this.chunkOffsets = chunkOffsets.data;
+    this.chunkOffsetsAre64Bit = chunkOffsetsAre64Bit;
+
+    // Entries are (chunk number, number of samples per chunk, sample description index).
+    stsc.setPosition(Atom.FULL_HEADER_SIZE);
+    int entryCount = stsc.readUnsignedIntToInt();
+    chunkRunFirstChunks = new int[entryCount];
+    chunkRunFirstSamples = new int[entryCount];
+    chunkRunSamplesPerChunk = new int[entryCount];
+    int runCount = 0;
+    int runFirstSample = 0;
+    for (int i = 0; i < entryCount; i++) {
+      int firstChunk = stsc.readUnsignedIntToInt() - 1;
+      int samplesPerChunk = stsc.readUnsignedIntToInt();
+      stsc.skipBytes(4); // Skip the sample description index.
+      if (i == 0) {
+        Assertions.checkState(firstChunk == 0, "stsc first chunk must be 1");
+      } else {
+        Assertions.checkArgument(firstChunk > chunkRunFirstChunks[runCount - 1]);
+      }
+      if (firstChunk >= chunkCount) {
+        break;
+      }
+      Assertions.checkArgument(samplesPerChunk > 0);
+      if (runCount > 0) {
+        runFirstSample += (firstChunk - chunkRunFirstChunks[runCount - 1])
+            * chunkRunSamplesPerChunk[runCount - 1];
+      }
+      chunkRunFirstChunks[runCount] = firstChunk;
+      chunkRunFirstSamples[runCount] = runFirstSample;
+      chunkRunSamplesPerChunk[runCount] = samplesPerChunk;
+      runCount++;
+    }
+    Assertions.checkArgument(runCount > 0);
+    chunkRunCount = runCount;
+    Assertions.checkArgument(runFirstSample + (chunkCount - chunkRunFirstChunks[runCount - 1])
+        * chunkRunSamplesPerChunk[runCount - 1] == sampleCount);
+
+    // Entries are (number of samples, timestamp delta between those samples).
+    stts.setPosition(Atom.FULL_HEADER_SIZE);
+    entryCount = stts.readUnsignedIntToInt();
+    durationRunFirstSamples = new int[entryCount];
+    durationRunFirstDecodeTimes = new long[entryCount];
+    durationRunDurations = new int[entryCount];
+    runCount = 0;
+    int samples = 0;
+    long decodeTime = 0;
+    for (int i = 0; i < entryCount; i++) {
+      int count = stts.readUnsignedIntToInt();
+      int duration = stts.readUnsignedIntToInt();
+      if (count == 0) {
+        continue;
+      }
+      if (runCount == 0 || durationRunDurations[runCount - 1] != duration) {
+        durationRunFirstSamples[runCount] = samples;
+        durationRunFirstDecodeTimes[runCount] = decodeTime;
+        durationRunDurations[runCount] = duration;
+        runCount++;
+      }
+      samples += count;
+      decodeTime += (long) count * duration;
+    }
+    durationRunCount = runCount;
+    Assertions.checkArgument(samples == sampleCount);
+
+    // Entries are (number of samples, timestamp offset).
+    if (ctts != null) {
+      ctts.setPosition(Atom.FULL_HEADER_SIZE);
+      entryCount = ctts.readUnsignedIntToInt();
+      offsetRunFirstSamples = new int[entryCount];
+      offsetRunOffsets = new int[entryCount];
+      runCount = 0;
+      samples = 0;
+      for (int i = 0; i < entryCount; i++) {
+        int count = ctts.readUnsignedIntToInt();
+        // Read a signed offset even for version 0 ctts boxes (see AtomParsers.parseStbl).
+        int offset = ctts.readInt();
+        if (count == 0) {
+          continue;
+        }
+        if (runCount == 0 || offsetRunOffsets[runCount - 1] != offset) {
+          offsetRunFirstSamples[runCount] = samples;
+          offsetRunOffsets[runCount] = offset;
+          runCount++;
+        }
+        samples += count;
+      }
+      offsetRunCount = runCount;
+    } else {
+      offsetRunFirstSamples = null;
+      offsetRunOffsets = null;
+      offsetRunCount = 0;
+    }
+
+    // Entries are the indices of samples that are synchronization samples.
+    if (stss != null) {
+      stss.setPosition(Atom.FULL_HEADER_SIZE);
+      entryCount = stss.readUnsignedIntToInt();
+      syncSamples = new int[entryCount];
+      for (int i = 0; i < entryCount; i++) {
+        syncSamples[i] = stss.readUnsignedIntToInt() - 1;
+      }
+    } else {
+      syncSamples = null;
+    }
+  }
+
+  @Override
+  public Cursor newCursor() {
+    Cursor cursor = new CompactCursor();
+    cursor.seekTo(0);
+    return cursor;
+  }
+
+  @Override
+  public int getIndexOfEarlierOrEqualSynchronizationSample(long timeUs) {
+    int lastDecodedSampleIndex = getIndexOfLastSampleDecodedAtOrBefore(timeUs);
+    if (lastDecodedSampleIndex == NO_SAMPLE) {
+      return NO_SAMPLE;
+    }
+    for (int i = getSyncSampleIndexFloor(lastDecodedSampleIndex); i >= 0; i--) {
+      int sampleIndex = getSyncSample(i);
+      if (getTimestampUs(sampleIndex) <= timeUs) {
+        return sampleIndex;
+      }
+    }
+    return NO_SAMPLE;
+  }
+
+  @Override
+  public int getIndexOfLaterOrEqualSynchronizationSample(long timeUs) {
+    int lastDecodedSampleIndex = getIndexOfLastSampleDecodedAtOrBefore(timeUs);
+    int i = getSyncSampleIndexCeil(Math.max(0, lastDecodedSampleIndex));
+    // Samples decoded before the time may still be presented after it.
+    while (i > 0 && getTimestampUs(getSyncSample(i - 1)) >= timeUs) {
+      i--;
+    }
+    int syncSampleCount = getSyncSampleCount();
+    for (; i < syncSampleCount; i++) {
+      int sampleIndex = getSyncSample(i);
+      if (getTimestampUs(sampleIndex) >= timeUs) {
+        return sampleIndex;
+      }
+    }
+    return NO_SAMPLE;
+  }
+
+  /**
+   * Returns the index of the last sample whose decoding timestamp is at or before {@code timeUs},
+   * or {@link #NO_SAMPLE} if there is no such sample.
+   */
+  private int getIndexOfLastSampleDecodedAtOrBefore(long timeUs) {
+    int low = 0;
+    int high = sampleCount - 1;
+    int result = NO_SAMPLE;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      if (scaleTime(getDecodeTime(mid)) <= timeUs) {
+        result = mid;
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return result;
+  }
+
+  private int getSyncSampleCount() {
+    return syncSamples == null ? sampleCount : syncSamples.length;
+  }
+
+  private int getSyncSample(int syncSampleIndex) {
+    return syncSamples == null ? syncSampleIndex : syncSamples[syncSampleIndex];
+  }
+
+  /** Returns the index of the last sync sample at or before the sample at {@code index}. */
+  private int getSyncSampleIndexFloor(int index) {
+    if (syncSamples == null) {
+      return index;
+    }
+    int syncSampleIndex = Arrays.binarySearch(syncSamples, index);
+    return syncSampleIndex >= 0 ? syncSampleIndex : -syncSampleIndex - 2;
+  }
+
+  /** Returns the index of the first sync sample at or after the sample at {@code index}. */
+  private int getSyncSampleIndexCeil(int index) {
+    if (syncSamples == null) {
+      return index;
+    }
+    int syncSampleIndex = Arrays.binarySearch(syncSamples, index);
+    return syncSampleIndex >= 0 ? syncSampleIndex : -syncSampleIndex - 1;
+  }
+
+  private long getTimestampUs(int index) {
+    long timestamp = getDecodeTime(index);
+    if (offsetRunCount > 0) {
+      timestamp += offsetRunOffsets[getRunIndex(offsetRunFirstSamples, offsetRunCount, index)];
+    }
+    return scaleTime(timestamp);
+  }
+
+  private long getDecodeTime(int index) {
+    int run = getRunIndex(durationRunFirstSamples, durationRunCount, index);
+    return durationRunFirstDecodeTimes[run]
+        + (long) (index - durationRunFirstSamples[run]) * durationRunDurations[run];
+  }
+
+  private int getSampleSize(int index) {
+    return fixedSampleSize != 0 ? fixedSampleSize : sampleSizes.get(index);
+  }
+
+  private long getChunkOffset(int chunkIndex) {
+    if (chunkOffsetsAre64Bit) {
+      int position = Atom.FULL_HEADER_SIZE + 4 + 8 * chunkIndex;
+      return ((long) readInt(chunkOffsets, position) << 32)
+          | (readInt(chunkOffsets, position + 4) & 0xFFFFFFFFL);
+    }
+    return readInt(chunkOffsets, Atom.FULL_HEADER_SIZE + 4 + 4 * chunkIndex) & 0xFFFFFFFFL;
+  }
+
+  private long scaleTime(long time) {
+    return Util.scaleLargeTimestamp(time, C.MICROS_PER_SECOND, timescale);
+  }
+
+  private static int getRunIndex(int[] runFirstSamples, int runCount, int index) {
+    int run = Arrays.binarySearch(runFirstSamples, 0, runCount, index);
+    return run >= 0 ? run : -run - 2;
+  }
+
+  private static int readInt(byte[] data, int position) {
+    return (data[position] & 0xFF) << 24
+        | (data[position + 1] & 0xFF) << 16
+        | (data[position + 2] & 0xFF) << 8
+        | (data[position + 3] & 0xFF);
+  }
+
+  private final class CompactCursor extends Cursor {
+
+    private int durationRun;
+    private long decodeTime;
+    private int offsetRun;
+    private int chunkRun;
+    private int chunkIndex;
+    private int remainingSamplesInChunk;
+    // The index in syncSamples of the first sync sample at or after the current sample.
+    private int nextSyncSampleIndex;
+
+    @Override
+    public void seekTo(int index) {
+      this.index = index;
+      if (index >= sampleCount) {
+        return;
+      }
+      durationRun = getRunIndex(durationRunFirstSamples, durationRunCount, index);
+      decodeTime = getDecodeTime(index);
+      if (offsetRunCount > 0) {
+        offsetRun = getRunIndex(offsetRunFirstSamples, offsetRunCount, index);
+      }
+
+      chunkRun = getRunIndex(chunkRunFirstSamples, chunkRunCount, index);
+      int samplesPerChunk = chunkRunSamplesPerChunk[chunkRun];
+      int indexInRun = index - chunkRunFirstSamples[chunkRun];
+      int indexInChunk = indexInRun % samplesPerChunk;
+      chunkIndex = chunkRunFirstChunks[chunkRun] + indexInRun / samplesPerChunk;
+      remainingSamplesInChunk = samplesPerChunk - indexInChunk;
+      offset = getChunkOffset(chunkIndex);
+      if (fixedSampleSize != 0) {
+        offset += (long) indexInChunk * fixedSampleSize;
+      } else {
+        for (int i = index - indexInChunk; i < index; i++) {
+          offset += getSampleSize(i);
+        }
+      }
+
+      if (syncSamples != null) {
+        nextSyncSampleIndex = getSyncSampleIndexCeil(index);
+      }
+      updateSample();
+    }
+
+    @Override
+    public void advance() {
+      index++;
+      if (index >= sampleCount) {
+        return;
+      }
+      decodeTime += durationRunDurations[durationRun];
+      if (durationRun + 1 < durationRunCount && durationRunFirstSamples[durationRun + 1] == index) {
+        durationRun++;
+      }
+      if (offsetRun + 1 < offsetRunCount && offsetRunFirstSamples[offsetRun + 1] == index) {
+        offsetRun++;
+      }
+
+      remainingSamplesInChunk--;
+      if (remainingSamplesInChunk == 0) {
+        chunkIndex++;
+        if (chunkRun + 1 < chunkRunCount && chunkRunFirstChunks[chunkRun + 1] == chunkIndex) {
+          chunkRun++;
+        }
+        remainingSamplesInChunk = chunkRunSamplesPerChunk[chunkRun];
+        offset = getChunkOffset(chunkIndex);
+      } else {
+        // The next sample follows the current one.
+        offset += size;
+      }
+
+      if (syncSamples != null && nextSyncSampleIndex < syncSamples.length
+          && syncSamples[nextSyncSampleIndex] < index) {
+        nextSyncSampleIndex++;
+      }
+      updateSample();
+    }
+
+    private void updateSample() {
+      size = getSampleSize(index);
+      long timestamp = decodeTime;
+      if (offsetRunCount > 0) {
+        timestamp += offsetRunOffsets[offsetRun];
+      }
+      timestampUs = scaleTime(timestamp);
+      boolean isSyncSample = syncSamples == null || (nextSyncSampleIndex < syncSamples.length
+          && syncSamples[nextSyncSampleIndex] == index);
+      flags = isSyncSample ? C.SAMPLE_FLAG_SYNC : 0;
+    }
+
+  }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer.extractor.mp4;
+
+import com.google.android.exoplayer.C;
+import com.google.android.exoplayer.util.Assertions;
+import com.google.android.exoplayer.util.Util;
+
+/** Sample table that holds the properties of every sample in arrays. */
+/* package */ final class ExpandedTrackSampleTable extends TrackSampleTable {
+
+  /** Sample offsets in bytes. */
+  public final long[] offsets;
+  /** Sample sizes in bytes. */
+  public final int[] sizes;
+  /** Sample timestamps in microseconds. */
+  public final long[] timestampsUs;
+  /** Sample flags. */
+  public final int[] flags;
+
+  ExpandedTrackSampleTable(
+      long[] offsets, int[] sizes, long[] timestampsUs, int[] flags) {
+    super(offsets.length);
+    Assertions.checkArgument(sizes.length == timestampsUs.length);
+    Assertions.checkArgument(offsets.length == timestampsUs.length);
+    Assertions.checkArgument(flags.length == timestampsUs.length);
+
+    this.offsets = offsets;
+    this.sizes = sizes;
+    this.timestampsUs = timestampsUs;
+    this.flags = flags;
+  }
+
+  @Override
+  public Cursor newCursor() {
+    Cursor cursor = new ExpandedCursor();
+    cursor.seekTo(0);
+    return cursor;
+  }
+
+  @Override
+  public int getIndexOfEarlierOrEqualSynchronizationSample(long timeUs) {
+    int startIndex = Util.binarySearchFloor(timestampsUs, timeUs, true, false);
+    for (int i = startIndex; i >= 0; i--) {
+      if (timestampsUs[i] <= timeUs && (flags[i] & C.SAMPLE_FLAG_SYNC) != 0) {
+        return i;
+      }
+    }
+    return NO_SAMPLE;
+  }
+
+  @Override
+  public int getIndexOfLaterOrEqualSynchronizationSample(long timeUs) {
+    int startIndex = Util.binarySearchCeil(timestampsUs, timeUs, true, false);
+    for (int i = startIndex; i < timestampsUs.length; i++) {
+      if (timestampsUs[i] >= timeUs && (flags[i] & C.SAMPLE_FLAG_SYNC) != 0) {
+        return i;
+      }
+    }
+    return NO_SAMPLE;
+  }
+
+  private final class ExpandedCursor extends Cursor {
+
+    @Override
+    public void seekTo(int index) {
+      this.index = index;
+      if (index < sampleCount) {
+        offset = offsets[index];
+        size = sizes[index];
+        timestampUs = timestampsUs[index];
+        flags = ExpandedTrackSampleTable.this.flags[index];
+      }
+    }
+
+    @Override
+    public void advance() {
+      seekTo(index + 1);
+    }
+
+  }
+
+}
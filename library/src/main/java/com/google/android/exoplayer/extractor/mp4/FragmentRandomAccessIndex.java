@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer.extractor.mp4;
+
+import com.google.android.exoplayer.extractor.SeekMap;
+import com.google.android.exoplayer.util.Util;
+
+/**
+ * A {@link SeekMap} built from the track fragment random access (tfra) atoms in an mfra atom.
+ * <p>
+ * Each tfra atom lists the times of synchronization samples in a track, together with the
+ * positions of the moof atoms that contain them. A seek position is mapped to the earliest of the
+ * positions at which each track has a synchronization sample at or before the position.
+ */
+/* package */ final class FragmentRandomAccessIndex implements SeekMap {
+
+  private final long[][] timesUs;
+  private final long[][] moofPositions;
+
+  /**
+   * @param timesUs For each track, the times of the synchronization samples in microseconds, in
+   *     ascending order.
+   * @param moofPositions For each track, the positions of the moof atoms containing the
+   *     corresponding synchronization samples.
+   */
+  public FragmentRandomAccessIndex(long[][] timesUs, long[][] moofPositions) {
+    this.timesUs = timesUs;
+    this.moofPositions = moofPositions;
+  }
+
+  // SeekMap implementation.
+
+  @Override
+  public boolean isSeekable() {
+    return true;
+  }
+
+  @Override
+  public long getPosition(long timeUs) {
+    long position = Long.MAX_VALUE;
+    for (int i = 0; i < timesUs.length; i++) {
+      int index = Util.binarySearchFloor(timesUs[i], timeUs, true, true);
+      position = Math.min(position, moofPositions[i][index]);
+    }
+    return position;
+  }
+
+}
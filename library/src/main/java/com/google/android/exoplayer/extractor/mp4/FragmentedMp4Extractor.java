@@ -16,12 +16,14 @@
 package com.google.android.exoplayer.extractor.mp4;
 
 import com.google.android.exoplayer.C;
+import com.google.android.exoplayer.ParserException;
 import com.google.android.exoplayer.drm.DrmInitData;
 import com.google.android.exoplayer.extractor.ChunkIndex;
 import com.google.android.exoplayer.extractor.Extractor;
 import com.google.android.exoplayer.extractor.ExtractorInput;
 import com.google.android.exoplayer.extractor.ExtractorOutput;
 import com.google.android.exoplayer.extractor.PositionHolder;
+import com.google.android.exoplayer.extractor.SeekMap;
 import com.google.android.exoplayer.extractor.TrackOutput;
 import com.google.android.exoplayer.extractor.mp4.Atom.ContainerAtom;
 import com.google.android.exoplayer.extractor.mp4.Atom.LeafAtom;
@@ -31,7 +33,10 @@ import com.google.android.exoplayer.util.NalUnitUtil;
 import com.google.android.exoplayer.util.ParsableByteArray;
 import com.google.android.exoplayer.util.Util;
 
+import android.util.SparseArray;
+
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Stack;
@@ -39,10 +44,30 @@ import java.util.Stack;
 /**
  * Facilitates the extraction of data from the fragmented mp4 container format.
  * <p>
- * This implementation only supports de-muxed (i.e. single track) streams.
+ * Muxed streams are supported. The samples of each fragment are output in the order in which
+ * their data appears in the stream.
  */
 public final class FragmentedMp4Extractor implements Extractor {
 
+  /**
+   * Interface definition for a callback to be notified of event messages (emsg atoms) in the
+   * stream.
+   */
+  public interface EventMessageListener {
+
+    /**
+     * Invoked when an event message is parsed. Invoked on the thread that is reading from the
+     * extractor.
+     *
+     * @param schemeIdUri The uri identifying the scheme of the message.
+     * @param value The value of the message within its scheme.
+     * @param id The id of the message. Messages with equal scheme, value and id are equivalent.
+     * @param messageData The body of the message.
+     */
+    public void onEventMessage(String schemeIdUri, String value, long id, byte[] messageData);
+
+  }
+
   /**
    * Flag to work around an issue in some video streams where every frame is marked as a sync frame.
    * The workaround overrides the sync frame flags in the stream, forcing them to false except for
@@ -51,18 +76,41 @@ public final class FragmentedMp4Extractor implements Extractor {
    * This flag does nothing if the stream is not a video stream.
    */
   public static final int WORKAROUND_EVERY_VIDEO_FRAME_IS_SYNC_FRAME = 1;
+  /**
+   * Flag to read a seek index from the mfra atom at the end of the stream, if the length of the
+   * stream is known and it does not contain a sidx atom before its first fragment. The mfra atom is
+   * read after the moov atom, by seeking to the end of the stream and back.
+   * <p>
+   * If no seek index is found, the stream is output as unseekable. This flag should only be used
+   * when the whole stream is read by a single extractor, for example by an
+   * {@link com.google.android.exoplayer.extractor.ExtractorSampleSource}.
+   */
+  public static final int FLAG_SEEK_USING_MFRA = 2;
 
   private static final byte[] PIFF_SAMPLE_ENCRYPTION_BOX_EXTENDED_TYPE =
       new byte[] {-94, 57, 79, 82, 90, -101, 79, 20, -94, 68, 108, 66, 124, 100, -115, -12};
 
+  /** The size of an mfro atom, which holds the size of the enclosing mfra atom. */
+  private static final int MFRO_SIZE = Atom.FULL_HEADER_SIZE + 4;
+
+  /**
+   * The maximum total size of a run of samples that is read and committed to a track output at
+   * once. A run always contains at least one sample, and so may exceed this size.
+   */
+  private static final int MAX_SAMPLE_RUN_SIZE = 64 * 1024;
+
   // Parser states
   private static final int STATE_READING_ATOM_HEADER = 0;
   private static final int STATE_READING_ATOM_PAYLOAD = 1;
   private static final int STATE_READING_ENCRYPTION_DATA = 2;
   private static final int STATE_READING_SAMPLE_START = 3;
   private static final int STATE_READING_SAMPLE_CONTINUE = 4;
+  private static final int STATE_READING_MFRO = 5;
+  private static final int STATE_READING_MFRA = 6;
+  private static final int STATE_READING_SAMPLE_RUN = 7;
 
-  private final int workaroundFlags;
+  private final int flags;
+  private final EventMessageListener eventMessageListener;
 
   // Temporary arrays.
   private final ParsableByteArray nalStartCode;
@@ -73,70 +121,108 @@ public final class FragmentedMp4Extractor implements Extractor {
   private final ParsableByteArray atomHeader;
   private final byte[] extendedTypeScratch;
   private final Stack<ContainerAtom> containerAtoms;
-  private final TrackFragment fragmentRun;
 
   private int parserState;
   private int rootAtomBytesRead;
   private int atomType;
   private int atomSize;
   private ParsableByteArray atomData;
+  private long moofPosition;
+  private long endOfMdatPosition;
 
-  private int sampleIndex;
+  private TrackBundle currentTrackBundle;
   private int sampleSize;
   private int sampleBytesWritten;
   private int sampleCurrentNalBytesRemaining;
 
-  // Data parsed from moov atom.
-  private Track track;
-  private DefaultSampleValues extendsDefaults;
+  // Sample run state.
+  private final ParsableByteArray sampleRunData;
+  private int sampleRunLength;
+  private long[] sampleRunTimesUs;
+  private int[] sampleRunFlags;
+  private int[] sampleRunSizes;
+
+  // Seek index state.
+  private boolean haveOutputSeekMap;
+  private long seekIndexResumePosition;
+  private long mfraPosition;
+
+  // Data parsed from moov atom, or sideloaded, keyed by track id.
+  private final SparseArray<TrackBundle> trackBundles;
+  private Track sideloadedTrack;
 
   // Extractor outputs.
   private ExtractorOutput extractorOutput;
-  private TrackOutput trackOutput;
 
   public FragmentedMp4Extractor() {
     this(0);
   }
 
   /**
-   * @param workaroundFlags Flags to allow parsing of faulty streams.
-   *     {@link #WORKAROUND_EVERY_VIDEO_FRAME_IS_SYNC_FRAME} is currently the only flag defined.
+   * @param flags Flags that control the extractor's behavior. Zero or more of
+   *     {@link #WORKAROUND_EVERY_VIDEO_FRAME_IS_SYNC_FRAME} and {@link #FLAG_SEEK_USING_MFRA}.
+   */
+  public FragmentedMp4Extractor(int flags) {
+    this(flags, null);
+  }
+
+  /**
+   * @param flags Flags that control the extractor's behavior. Zero or more of
+   *     {@link #WORKAROUND_EVERY_VIDEO_FRAME_IS_SYNC_FRAME} and {@link #FLAG_SEEK_USING_MFRA}.
+   * @param eventMessageListener A listener to be notified of event messages in the stream. May be
+   *     null.
    */
-  public FragmentedMp4Extractor(int workaroundFlags) {
-    this.workaroundFlags = workaroundFlags;
-    atomHeader = new ParsableByteArray(Atom.HEADER_SIZE);
+  public FragmentedMp4Extractor(int flags, EventMessageListener eventMessageListener) {
+    this.flags = flags;
+    this.eventMessageListener = eventMessageListener;
+    atomHeader = new ParsableByteArray(MFRO_SIZE);
     nalStartCode = new ParsableByteArray(NalUnitUtil.NAL_START_CODE);
     nalLength = new ParsableByteArray(4);
     encryptionSignalByte = new ParsableByteArray(1);
+    sampleRunData = new ParsableByteArray();
+    sampleRunTimesUs = new long[0];
+    sampleRunFlags = new int[0];
+    sampleRunSizes = new int[0];
     extendedTypeScratch = new byte[16];
     containerAtoms = new Stack<>();
-    fragmentRun = new TrackFragment();
+    trackBundles = new SparseArray<>();
     parserState = STATE_READING_ATOM_HEADER;
   }
 
   /**
    * Sideloads track information into the extractor.
    * <p>
-   * Should be called before {@link #read(ExtractorInput, PositionHolder)} in the case that the
-   * extractor will not receive a moov atom in the input data, from which track information would
-   * normally be parsed.
+   * Should be called before {@link #init(ExtractorOutput)} in the case that the extractor will not
+   * receive a moov atom in the input data, from which track information would normally be parsed.
+   * Every track fragment in the input is then assumed to belong to the sideloaded track.
    *
    * @param track The track to sideload.
    */
   public void setTrack(Track track) {
-    this.extendsDefaults = new DefaultSampleValues(0, 0, 0, 0);
-    this.track = track;
+    sideloadedTrack = track;
+  }
+
+  @Override
+  public boolean sniff(ExtractorInput input) throws IOException, InterruptedException {
+    return Sniffer.sniffFragmented(input);
   }
 
   @Override
   public void init(ExtractorOutput output) {
     extractorOutput = output;
-    trackOutput = output.track(0);
-    extractorOutput.endTracks();
+    if (sideloadedTrack != null) {
+      TrackBundle trackBundle = new TrackBundle(output.track(0));
+      trackBundle.init(sideloadedTrack, new DefaultSampleValues(0, 0, 0, 0));
+      trackBundles.put(sideloadedTrack.id, trackBundle);
+      extractorOutput.endTracks();
+    }
   }
 
   @Override
   public void seek() {
+    for (int i = 0; i < trackBundles.size(); i++) {
+      trackBundles.valueAt(i).reset();
+    }
     containerAtoms.clear();
     rootAtomBytesRead = 0;
     parserState = STATE_READING_ATOM_HEADER;
@@ -158,6 +244,15 @@ public final class FragmentedMp4Extractor implements Extractor {
         case STATE_READING_ENCRYPTION_DATA:
           readEncryptionData(input);
           break;
+        case STATE_READING_MFRO:
+          readMfro(input, seekPosition);
+          return RESULT_SEEK;
+        case STATE_READING_MFRA:
+          readMfra(input, seekPosition);
+          return RESULT_SEEK;
+        case STATE_READING_SAMPLE_RUN:
+          readSampleRun(input);
+          return RESULT_CONTINUE;
         default:
           if (readSample(input)) {
             return RESULT_CONTINUE;
@@ -177,9 +272,13 @@ public final class FragmentedMp4Extractor implements Extractor {
     atomType = atomHeader.readInt();
 
     if (atomType == Atom.TYPE_mdat) {
-      if (fragmentRun.sampleEncryptionDataNeedsFill) {
+      // An atom size of zero indicates that the mdat atom extends to the end of the stream.
+      endOfMdatPosition = atomSize == 0 ? C.LENGTH_UNBOUNDED
+          : input.getPosition() + atomSize - Atom.HEADER_SIZE;
+      if (haveEncryptionDataToFill()) {
         parserState = STATE_READING_ENCRYPTION_DATA;
       } else {
+        onSampleDataStart(input.getPosition());
         parserState = STATE_READING_SAMPLE_START;
       }
       return true;
@@ -188,6 +287,9 @@ public final class FragmentedMp4Extractor implements Extractor {
     if (shouldParseAtom(atomType)) {
       if (shouldParseContainerAtom(atomType)) {
         parserState = STATE_READING_ATOM_HEADER;
+        if (atomType == Atom.TYPE_moof && containerAtoms.isEmpty()) {
+          moofPosition = input.getPosition() - Atom.HEADER_SIZE;
+        }
         containerAtoms.add(new ContainerAtom(atomType,
             rootAtomBytesRead + atomSize - Atom.HEADER_SIZE));
       } else {
@@ -213,27 +315,30 @@ public final class FragmentedMp4Extractor implements Extractor {
       input.skipFully(payloadLength);
       rootAtomBytesRead += payloadLength;
     }
+    parserState = STATE_READING_ATOM_HEADER;
     while (!containerAtoms.isEmpty() && containerAtoms.peek().endByteOffset == rootAtomBytesRead) {
-      onContainerAtomRead(containerAtoms.pop());
+      onContainerAtomRead(containerAtoms.pop(), input);
     }
     if (containerAtoms.isEmpty()) {
       rootAtomBytesRead = 0;
     }
-    parserState = STATE_READING_ATOM_HEADER;
   }
 
   private void onLeafAtomRead(LeafAtom leaf, long inputPosition) {
     if (!containerAtoms.isEmpty()) {
       containerAtoms.peek().add(leaf);
     } else if (leaf.type == Atom.TYPE_sidx) {
-      ChunkIndex segmentIndex = parseSidx(leaf.data, inputPosition);
-      extractorOutput.seekMap(segmentIndex);
+      if ((flags & FLAG_SEEK_USING_MFRA) == 0 || !haveOutputSeekMap) {
+        outputSeekMap(parseSidx(leaf.data, inputPosition));
+      }
+    } else if (leaf.type == Atom.TYPE_emsg && eventMessageListener != null) {
+      parseEmsg(leaf.data, eventMessageListener);
     }
   }
 
-  private void onContainerAtomRead(ContainerAtom container) {
+  private void onContainerAtomRead(ContainerAtom container, ExtractorInput input) {
     if (container.type == Atom.TYPE_moov) {
-      onMoovContainerAtomRead(container);
+      onMoovContainerAtomRead(container, input);
     } else if (container.type == Atom.TYPE_moof) {
       onMoofContainerAtomRead(container);
     } else if (!containerAtoms.isEmpty()) {
@@ -241,7 +346,7 @@ public final class FragmentedMp4Extractor implements Extractor {
     }
   }
 
-  private void onMoovContainerAtomRead(ContainerAtom moov) {
+  private void onMoovContainerAtomRead(ContainerAtom moov, ExtractorInput input) {
     List<Atom.LeafAtom> moovChildren = moov.leafChildren;
     int moovChildrenSize = moovChildren.size();
 
@@ -260,18 +365,119 @@ public final class FragmentedMp4Extractor implements Extractor {
       extractorOutput.drmInitData(drmInitData);
     }
 
-    ContainerAtom mvex = moov.getContainerAtomOfType(Atom.TYPE_mvex);
-    extendsDefaults = parseTrex(mvex.getLeafAtomOfType(Atom.TYPE_trex).data);
-    track = AtomParsers.parseTrak(moov.getContainerAtomOfType(Atom.TYPE_trak),
-        moov.getLeafAtomOfType(Atom.TYPE_mvhd));
-    Assertions.checkState(track != null);
-    trackOutput.format(track.mediaFormat);
+    if (trackBundles.size() != 0) {
+      // The tracks are already known, either because they were sideloaded or because the moov atom
+      // has been read before.
+      return;
+    }
+
+    // Read the default sample values for each track.
+    SparseArray<DefaultSampleValues> defaultSampleValuesArray = new SparseArray<>();
+    List<LeafAtom> mvexChildren = moov.getContainerAtomOfType(Atom.TYPE_mvex).leafChildren;
+    for (int i = 0; i < mvexChildren.size(); i++) {
+      LeafAtom atom = mvexChildren.get(i);
+      if (atom.type == Atom.TYPE_trex) {
+        atom.data.setPosition(Atom.FULL_HEADER_SIZE);
+        int trackId = atom.data.readInt();
+        defaultSampleValuesArray.put(trackId, parseTrex(atom.data));
+      }
+    }
+
+    for (int i = 0; i < moov.containerChildren.size(); i++) {
+      ContainerAtom atom = moov.containerChildren.get(i);
+      if (atom.type != Atom.TYPE_trak) {
+        continue;
+      }
+      Track track = AtomParsers.parseTrak(atom, moov.getLeafAtomOfType(Atom.TYPE_mvhd));
+      if (track == null) {
+        continue;
+      }
+      DefaultSampleValues defaultSampleValues = defaultSampleValuesArray.get(track.id);
+      if (defaultSampleValues == null) {
+        defaultSampleValues = new DefaultSampleValues(0, 0, 0, 0);
+      }
+      TrackBundle trackBundle = new TrackBundle(extractorOutput.track(i));
+      trackBundle.init(track, defaultSampleValues);
+      trackBundle.output.format(track.mediaFormat);
+      trackBundles.put(track.id, trackBundle);
+    }
+    Assertions.checkState(trackBundles.size() != 0);
+    extractorOutput.endTracks();
+
+    if ((flags & FLAG_SEEK_USING_MFRA) != 0 && !haveOutputSeekMap) {
+      if (input.getLength() != C.LENGTH_UNBOUNDED
+          && input.getLength() - MFRO_SIZE >= input.getPosition()) {
+        // Read the seek index from the end of the stream, then continue from the current position.
+        seekIndexResumePosition = input.getPosition();
+        parserState = STATE_READING_MFRO;
+      } else {
+        outputSeekMap(SeekMap.UNSEEKABLE);
+      }
+    }
   }
 
   private void onMoofContainerAtomRead(ContainerAtom moof) {
-    fragmentRun.reset();
-    parseMoof(track, extendsDefaults, moof, fragmentRun, workaroundFlags, extendedTypeScratch);
-    sampleIndex = 0;
+    if ((flags & FLAG_SEEK_USING_MFRA) != 0 && !haveOutputSeekMap) {
+      // The stream doesn't have an mfra or sidx atom before its first fragment.
+      outputSeekMap(SeekMap.UNSEEKABLE);
+    }
+    for (int i = 0; i < trackBundles.size(); i++) {
+      trackBundles.valueAt(i).reset();
+    }
+    parseMoof(trackBundles, moofPosition, moof, flags, extendedTypeScratch);
+  }
+
+  private void outputSeekMap(SeekMap seekMap) {
+    extractorOutput.seekMap(seekMap);
+    haveOutputSeekMap = true;
+  }
+
+  /**
+   * Reads the mfro atom at the end of the stream, which holds the size of the mfra atom. The
+   * position of the mfra atom, or the position from which to continue reading the stream if there
+   * isn't one, is set in {@code seekPosition}.
+   */
+  private void readMfro(ExtractorInput input, PositionHolder seekPosition)
+      throws IOException, InterruptedException {
+    long mfroPosition = input.getLength() - MFRO_SIZE;
+    if (input.getPosition() != mfroPosition) {
+      seekPosition.position = mfroPosition;
+      return;
+    }
+    input.readFully(atomHeader.data, 0, MFRO_SIZE);
+    atomHeader.setPosition(0);
+    int size = atomHeader.readInt();
+    int type = atomHeader.readInt();
+    atomHeader.skipBytes(4);
+    long mfraSize = atomHeader.readUnsignedInt();
+    if (size == MFRO_SIZE && type == Atom.TYPE_mfro && mfraSize >= Atom.HEADER_SIZE + MFRO_SIZE
+        && mfraSize <= input.getLength() - seekIndexResumePosition) {
+      mfraPosition = input.getLength() - mfraSize;
+      parserState = STATE_READING_MFRA;
+      seekPosition.position = mfraPosition;
+    } else {
+      outputSeekMap(SeekMap.UNSEEKABLE);
+      parserState = STATE_READING_ATOM_HEADER;
+      seekPosition.position = seekIndexResumePosition;
+    }
+  }
+
+  /**
+   * Reads the mfra atom at the end of the stream and outputs the seek index that it defines. The
+   * position from which to continue reading the stream is set in {@code seekPosition}.
+   */
+  private void readMfra(ExtractorInput input, PositionHolder seekPosition)
+      throws IOException, InterruptedException {
+    if (input.getPosition() != mfraPosition) {
+      seekPosition.position = mfraPosition;
+      return;
+    }
+    ParsableByteArray mfra = new ParsableByteArray((int) (input.getLength() - mfraPosition));
+    input.readFully(mfra.data, 0, mfra.limit());
+    SeekMap seekIndex = parseMfra(trackBundles, mfra);
+    outputSeekMap(seekIndex != null ? seekIndex : SeekMap.UNSEEKABLE);
+    parserState = STATE_READING_ATOM_HEADER;
+    seekPosition.position = seekIndexResumePosition;
   }
 
   /**
@@ -287,26 +493,39 @@ public final class FragmentedMp4Extractor implements Extractor {
         defaultSampleSize, defaultSampleFlags);
   }
 
-  private static void parseMoof(Track track, DefaultSampleValues extendsDefaults,
-      ContainerAtom moof, TrackFragment out, int workaroundFlags, byte[] extendedTypeScratch) {
-    parseTraf(track, extendsDefaults, moof.getContainerAtomOfType(Atom.TYPE_traf),
-        out, workaroundFlags, extendedTypeScratch);
+  private static void parseMoof(SparseArray<TrackBundle> trackBundles, long moofPosition,
+      ContainerAtom moof, int flags, byte[] extendedTypeScratch) {
+    int moofContainerChildrenSize = moof.containerChildren.size();
+    for (int i = 0; i < moofContainerChildrenSize; i++) {
+      ContainerAtom child = moof.containerChildren.get(i);
+      if (child.type == Atom.TYPE_traf) {
+        parseTraf(trackBundles, moofPosition, child, flags, extendedTypeScratch);
+      }
+    }
   }
 
   /**
    * Parses a traf atom (defined in 14496-12).
    */
-  private static void parseTraf(Track track, DefaultSampleValues extendsDefaults,
-      ContainerAtom traf, TrackFragment out, int workaroundFlags, byte[] extendedTypeScratch) {
+  private static void parseTraf(SparseArray<TrackBundle> trackBundles, long moofPosition,
+      ContainerAtom traf, int flags, byte[] extendedTypeScratch) {
+    LeafAtom tfhd = traf.getLeafAtomOfType(Atom.TYPE_tfhd);
+    TrackBundle trackBundle = getTrackBundle(trackBundles, parseTfhdTrackId(tfhd.data));
+    if (trackBundle == null) {
+      return;
+    }
+    Track track = trackBundle.track;
+    TrackFragment out = trackBundle.fragment;
+
     LeafAtom tfdtAtom = traf.getLeafAtomOfType(Atom.TYPE_tfdt);
     long decodeTime = tfdtAtom == null ? 0 : parseTfdt(traf.getLeafAtomOfType(Atom.TYPE_tfdt).data);
 
-    LeafAtom tfhd = traf.getLeafAtomOfType(Atom.TYPE_tfhd);
-    DefaultSampleValues fragmentHeader = parseTfhd(extendsDefaults, tfhd.data);
+    DefaultSampleValues fragmentHeader = parseTfhd(trackBundle.defaultSampleValues, tfhd.data,
+        out);
     out.sampleDescriptionIndex = fragmentHeader.sampleDescriptionIndex;
 
     LeafAtom trun = traf.getLeafAtomOfType(Atom.TYPE_trun);
-    parseTrun(track, fragmentHeader, decodeTime, workaroundFlags, trun.data, out);
+    parseTrun(track, fragmentHeader, decodeTime, moofPosition, flags, trun.data, out);
 
     LeafAtom saiz = traf.getLeafAtomOfType(Atom.TYPE_saiz);
     if (saiz != null) {
@@ -361,21 +580,44 @@ public final class FragmentedMp4Extractor implements Extractor {
     out.initEncryptionData(totalSize);
   }
 
+  /**
+   * Returns the track id from a tfhd atom (defined in 14496-12).
+   */
+  private static int parseTfhdTrackId(ParsableByteArray tfhd) {
+    tfhd.setPosition(Atom.FULL_HEADER_SIZE);
+    return tfhd.readInt();
+  }
+
+  /**
+   * Returns the {@link TrackBundle} for the specified track id, or null if the track is unknown. If
+   * there is only one track then it is returned regardless of the id, since the ids in sideloaded
+   * tracks and in the fragments of de-muxed streams are not always consistent.
+   */
+  private static TrackBundle getTrackBundle(SparseArray<TrackBundle> trackBundles, int trackId) {
+    if (trackBundles.size() == 1) {
+      return trackBundles.valueAt(0);
+    }
+    return trackBundles.get(trackId);
+  }
+
   /**
    * Parses a tfhd atom (defined in 14496-12).
+   * <p>
+   * If the atom defines a base data offset then the {@link TrackFragment#dataPosition} of
+   * {@code out} is set to it.
    *
    * @param extendsDefaults Default sample values from the trex atom.
    * @return The parsed default sample values.
    */
   private static DefaultSampleValues parseTfhd(DefaultSampleValues extendsDefaults,
-      ParsableByteArray tfhd) {
+      ParsableByteArray tfhd, TrackFragment out) {
     tfhd.setPosition(Atom.HEADER_SIZE);
     int fullAtom = tfhd.readInt();
     int flags = Atom.parseFullAtomFlags(fullAtom);
 
     tfhd.skipBytes(4); // trackId
     if ((flags & 0x01 /* base_data_offset_present */) != 0) {
-      tfhd.skipBytes(8);
+      out.dataPosition = tfhd.readUnsignedLongToLong();
     }
 
     int defaultSampleDescriptionIndex =
@@ -410,18 +652,25 @@ public final class FragmentedMp4Extractor implements Extractor {
    * @param track The corresponding track.
    * @param defaultSampleValues Default sample values.
    * @param decodeTime The decode time.
+   * @param moofPosition The position of the enclosing moof atom.
    * @param trun The trun atom to parse.
    * @param out The {@TrackFragment} into which parsed data should be placed.
    */
   private static void parseTrun(Track track, DefaultSampleValues defaultSampleValues,
-      long decodeTime, int workaroundFlags, ParsableByteArray trun, TrackFragment out) {
+      long decodeTime, long moofPosition, int workaroundFlags, ParsableByteArray trun,
+      TrackFragment out) {
     trun.setPosition(Atom.HEADER_SIZE);
     int fullAtom = trun.readInt();
     int flags = Atom.parseFullAtomFlags(fullAtom);
 
     int sampleCount = trun.readUnsignedIntToInt();
     if ((flags & 0x01 /* data_offset_present */) != 0) {
-      trun.skipBytes(4);
+      // The data offset is relative to the base data offset if one is defined, and otherwise to the
+      // start of the moof atom (which is correct for the first traf in the moof, and for all trafs
+      // if the tfhd sets default-base-is-moof).
+      long baseDataPosition = out.dataPosition != TrackFragment.POSITION_UNKNOWN
+          ? out.dataPosition : moofPosition;
+      out.dataPosition = baseDataPosition + trun.readInt();
     }
 
     boolean firstSampleFlagsPresent = (flags & 0x04 /* first_sample_flags_present */) != 0;
@@ -514,6 +763,21 @@ public final class FragmentedMp4Extractor implements Extractor {
     out.fillEncryptionData(senc);
   }
 
+  /**
+   * Parses an emsg atom (defined in 23009-1), passing its contents to the listener.
+   */
+  private static void parseEmsg(ParsableByteArray atom, EventMessageListener listener) {
+    atom.setPosition(Atom.FULL_HEADER_SIZE);
+    String schemeIdUri = atom.readNullTerminatedString();
+    String value = atom.readNullTerminatedString();
+    // Skip timescale, presentation_time_delta and event_duration.
+    atom.skipBytes(12);
+    long id = atom.readUnsignedInt();
+    byte[] messageData = new byte[atom.bytesLeft()];
+    atom.readBytes(messageData, 0, messageData.length);
+    listener.onEventMessage(schemeIdUri, value, id, messageData);
+  }
+
   /**
    * Parses a sidx atom (defined in 14496-12).
    */
@@ -570,16 +834,123 @@ public final class FragmentedMp4Extractor implements Extractor {
     return new ChunkIndex(sizes, offsets, durationsUs, timesUs);
   }
 
+  /**
+   * Parses an mfra atom (defined in 14496-12), returning a {@link SeekMap} built from the tfra
+   * atoms that it contains, or null if it doesn't contain any entries for known tracks.
+   */
+  private static SeekMap parseMfra(SparseArray<TrackBundle> trackBundles,
+      ParsableByteArray mfra) {
+    if (mfra.readInt() != mfra.limit() || mfra.readInt() != Atom.TYPE_mfra) {
+      return null;
+    }
+    List<long[]> timesUs = new ArrayList<>();
+    List<long[]> moofPositions = new ArrayList<>();
+    while (mfra.bytesLeft() >= Atom.HEADER_SIZE) {
+      int atomPosition = mfra.getPosition();
+      int atomSize = mfra.readInt();
+      int atomType = mfra.readInt();
+      if (atomSize < Atom.HEADER_SIZE || atomSize - Atom.HEADER_SIZE > mfra.bytesLeft()) {
+        break;
+      }
+      if (atomType == Atom.TYPE_tfra) {
+        mfra.setPosition(atomPosition + Atom.HEADER_SIZE);
+        int version = Atom.parseFullAtomVersion(mfra.readInt());
+        TrackBundle trackBundle = getTrackBundle(trackBundles, mfra.readInt());
+        int lengthSizes = mfra.readInt();
+        int entryCount = mfra.readUnsignedIntToInt();
+        if (trackBundle != null && entryCount > 0) {
+          // Skip the traf, trun and sample numbers, whose lengths are defined by lengthSizes.
+          int numberBytes = ((lengthSizes >> 4) & 0x03) + ((lengthSizes >> 2) & 0x03)
+              + (lengthSizes & 0x03) + 3;
+          long timescale = trackBundle.track.timescale;
+          long[] trackTimesUs = new long[entryCount];
+          long[] trackMoofPositions = new long[entryCount];
+          for (int i = 0; i < entryCount; i++) {
+            long time = version == 1 ? mfra.readUnsignedLongToLong() : mfra.readUnsignedInt();
+            trackTimesUs[i] = Util.scaleLargeTimestamp(time, C.MICROS_PER_SECOND, timescale);
+            trackMoofPositions[i] =
+                version == 1 ? mfra.readUnsignedLongToLong() : mfra.readUnsignedInt();
+            mfra.skipBytes(numberBytes);
+          }
+          timesUs.add(trackTimesUs);
+          moofPositions.add(trackMoofPositions);
+        }
+      }
+      mfra.setPosition(atomPosition + atomSize);
+    }
+    if (timesUs.isEmpty()) {
+      return null;
+    }
+    return new FragmentRandomAccessIndex(timesUs.toArray(new long[timesUs.size()][]),
+        moofPositions.toArray(new long[moofPositions.size()][]));
+  }
+
+  private boolean haveEncryptionDataToFill() {
+    for (int i = 0; i < trackBundles.size(); i++) {
+      if (trackBundles.valueAt(i).fragment.sampleEncryptionDataNeedsFill) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   private void readEncryptionData(ExtractorInput input) throws IOException, InterruptedException {
-    fragmentRun.fillEncryptionData(input);
+    // The encryption data of each fragment that needs it is assumed to be at the start of the mdat
+    // atom, in track order.
+    for (int i = 0; i < trackBundles.size(); i++) {
+      TrackFragment fragment = trackBundles.valueAt(i).fragment;
+      if (fragment.sampleEncryptionDataNeedsFill) {
+        fragment.fillEncryptionData(input);
+      }
+    }
+    onSampleDataStart(input.getPosition());
     parserState = STATE_READING_SAMPLE_START;
   }
 
+  /**
+   * Sets the position of the next sample of each track, given the position at which sample data
+   * starts in the current mdat atom. The data of fragments that don't define their data position
+   * is assumed to start at this position, in track order.
+   */
+  private void onSampleDataStart(long position) {
+    for (int i = 0; i < trackBundles.size(); i++) {
+      TrackBundle trackBundle = trackBundles.valueAt(i);
+      TrackFragment fragment = trackBundle.fragment;
+      if (fragment.dataPosition != TrackFragment.POSITION_UNKNOWN) {
+        trackBundle.nextSamplePosition = fragment.dataPosition;
+      } else {
+        trackBundle.nextSamplePosition = position;
+        for (int j = 0; j < fragment.length; j++) {
+          position += fragment.sampleSizeTable[j];
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the {@link TrackBundle} whose next sample in the current mdat atom has the earliest
+   * position, or null if no samples remain.
+   */
+  private TrackBundle getNextTrackBundle() {
+    TrackBundle nextTrackBundle = null;
+    long nextSamplePosition = Long.MAX_VALUE;
+    for (int i = 0; i < trackBundles.size(); i++) {
+      TrackBundle trackBundle = trackBundles.valueAt(i);
+      if (trackBundle.currentSampleIndex < trackBundle.fragment.length
+          && trackBundle.nextSamplePosition < nextSamplePosition) {
+        nextTrackBundle = trackBundle;
+        nextSamplePosition = trackBundle.nextSamplePosition;
+      }
+    }
+    return nextTrackBundle;
+  }
+
   /**
    * Attempts to extract the next sample in the current mdat atom.
    * <p>
-   * If there are no more samples in the current mdat atom then the parser state is transitioned
-   * to {@link #STATE_READING_ATOM_HEADER} and {@code false} is returned.
+   * If there are no more samples in the current mdat atom then any remaining data in the atom is
+   * skipped, the parser state is transitioned to {@link #STATE_READING_ATOM_HEADER} and
+   * {@code false} is returned.
    * <p>
    * It is possible for a sample to be extracted in part in the case that an exception is thrown. In
    * this case the method can be called again to extract the remainder of the sample.
@@ -590,16 +961,34 @@ public final class FragmentedMp4Extractor implements Extractor {
    * @throws InterruptedException If the thread is interrupted.
    */
   private boolean readSample(ExtractorInput input) throws IOException, InterruptedException {
-    if (sampleIndex >= fragmentRun.length) {
-      // We've run out of samples in the current mdat atom.
-      parserState = STATE_READING_ATOM_HEADER;
-      return false;
-    }
-
     if (parserState == STATE_READING_SAMPLE_START) {
-      sampleSize = fragmentRun.sampleSizeTable[sampleIndex];
-      if (fragmentRun.definesEncryptionData) {
-        sampleBytesWritten = appendSampleEncryptionData(fragmentRun.sampleEncryptionData);
+      TrackBundle trackBundle = getNextTrackBundle();
+      if (trackBundle == null) {
+        // We've run out of samples in the current mdat atom.
+        long bytesToSkip = endOfMdatPosition - input.getPosition();
+        if (endOfMdatPosition != C.LENGTH_UNBOUNDED && bytesToSkip > 0) {
+          input.skipFully((int) bytesToSkip);
+        }
+        parserState = STATE_READING_ATOM_HEADER;
+        return false;
+      }
+      long bytesToSkip = trackBundle.nextSamplePosition - input.getPosition();
+      if (bytesToSkip < 0) {
+        throw new ParserException("Offset to sample data was negative.");
+      }
+      input.skipFully((int) bytesToSkip);
+      currentTrackBundle = trackBundle;
+      TrackFragment fragment = trackBundle.fragment;
+      if (!fragment.definesEncryptionData && (trackBundle.track.nalUnitLengthFieldLength == -1
+          || trackBundle.track.nalUnitLengthFieldLength == 4)) {
+        startSampleRun(trackBundle);
+        parserState = STATE_READING_SAMPLE_RUN;
+        readSampleRun(input);
+        return true;
+      }
+      sampleSize = fragment.sampleSizeTable[trackBundle.currentSampleIndex];
+      if (fragment.definesEncryptionData) {
+        sampleBytesWritten = appendSampleEncryptionData(trackBundle);
         sampleSize += sampleBytesWritten;
       } else {
         sampleBytesWritten = 0;
@@ -608,6 +997,11 @@ public final class FragmentedMp4Extractor implements Extractor {
       parserState = STATE_READING_SAMPLE_CONTINUE;
     }
 
+    TrackBundle trackBundle = currentTrackBundle;
+    Track track = trackBundle.track;
+    TrackFragment fragment = trackBundle.fragment;
+    TrackOutput trackOutput = trackBundle.output;
+    int sampleIndex = trackBundle.currentSampleIndex;
     if (track.nalUnitLengthFieldLength != -1) {
       // Zero the top three bytes of the array that we'll use to parse nal unit lengths, in case
       // they're only 1 or 2 bytes long.
@@ -645,23 +1039,110 @@ public final class FragmentedMp4Extractor implements Extractor {
       }
     }
 
-    long sampleTimeUs = fragmentRun.getSamplePresentationTime(sampleIndex) * 1000L;
-    int sampleFlags = (fragmentRun.definesEncryptionData ? C.SAMPLE_FLAG_ENCRYPTED : 0)
-        | (fragmentRun.sampleIsSyncFrameTable[sampleIndex] ? C.SAMPLE_FLAG_SYNC : 0);
-    byte[] encryptionKey = fragmentRun.definesEncryptionData
-        ? track.sampleDescriptionEncryptionBoxes[fragmentRun.sampleDescriptionIndex].keyId : null;
+    long sampleTimeUs = fragment.getSamplePresentationTime(sampleIndex) * 1000L;
+    int sampleFlags = (fragment.definesEncryptionData ? C.SAMPLE_FLAG_ENCRYPTED : 0)
+        | (fragment.sampleIsSyncFrameTable[sampleIndex] ? C.SAMPLE_FLAG_SYNC : 0);
+    byte[] encryptionKey = fragment.definesEncryptionData
+        ? track.sampleDescriptionEncryptionBoxes[fragment.sampleDescriptionIndex].keyId : null;
     trackOutput.sampleMetadata(sampleTimeUs, sampleFlags, sampleSize, 0, encryptionKey);
 
-    sampleIndex++;
+    trackBundle.nextSamplePosition += fragment.sampleSizeTable[sampleIndex];
+    trackBundle.currentSampleIndex++;
     parserState = STATE_READING_SAMPLE_START;
     return true;
   }
 
-  private int appendSampleEncryptionData(ParsableByteArray sampleEncryptionData) {
+  /**
+   * Starts a run of samples from the current fragment of {@code trackBundle}, consisting of the
+   * samples from its current sample onward, up to a total size of {@link #MAX_SAMPLE_RUN_SIZE}.
+   * <p>
+   * The samples of a track fragment run are contiguous, and so the run can be read and output in
+   * one pass.
+   */
+  private void startSampleRun(TrackBundle trackBundle) {
+    TrackFragment fragment = trackBundle.fragment;
+    int firstSampleIndex = trackBundle.currentSampleIndex;
+    int runLength = 0;
+    int runSize = 0;
+    do {
+      runSize += fragment.sampleSizeTable[firstSampleIndex + runLength++];
+    } while (firstSampleIndex + runLength < fragment.length
+        && runSize + fragment.sampleSizeTable[firstSampleIndex + runLength]
+        <= MAX_SAMPLE_RUN_SIZE);
+    sampleRunLength = runLength;
+    sampleSize = runSize;
+    sampleBytesWritten = 0;
+  }
+
+  /**
+   * Reads the run of samples started by {@link #startSampleRun(TrackBundle)}, outputting its data
+   * and then the metadata of all of its samples at once.
+   * <p>
+   * It is possible for the run to be read in part in the case that an exception is thrown. In this
+   * case the method can be called again to read the remainder of the run.
+   *
+   * @param input The {@link ExtractorInput} from which to read data.
+   * @throws IOException If an error occurs reading from the input.
+   * @throws InterruptedException If the thread is interrupted.
+   */
+  private void readSampleRun(ExtractorInput input) throws IOException, InterruptedException {
+    TrackBundle trackBundle = currentTrackBundle;
+    TrackFragment fragment = trackBundle.fragment;
+    TrackOutput trackOutput = trackBundle.output;
+    int firstSampleIndex = trackBundle.currentSampleIndex;
+    if (trackBundle.track.nalUnitLengthFieldLength != -1) {
+      // The NAL unit lengths are 4 bytes long, and so can be replaced with start codes in place.
+      byte[] data = sampleRunData.capacity() < sampleSize ? new byte[sampleSize]
+          : sampleRunData.data;
+      sampleRunData.reset(data, sampleSize);
+      input.readFully(data, 0, sampleSize);
+      int position = 0;
+      while (position < sampleSize) {
+        int nalUnitLength = ((data[position] & 0xFF) << 24) | ((data[position + 1] & 0xFF) << 16)
+            | ((data[position + 2] & 0xFF) << 8) | (data[position + 3] & 0xFF);
+        if (nalUnitLength < 0) {
+          throw new ParserException("Top bit not zero: " + nalUnitLength);
+        }
+        System.arraycopy(NalUnitUtil.NAL_START_CODE, 0, data, position, 4);
+        position += 4 + nalUnitLength;
+      }
+      sampleRunData.setPosition(0);
+      trackOutput.sampleData(sampleRunData, sampleSize);
+    } else {
+      while (sampleBytesWritten < sampleSize) {
+        sampleBytesWritten += trackOutput.sampleData(input, sampleSize - sampleBytesWritten);
+      }
+    }
+
+    if (sampleRunTimesUs.length < sampleRunLength) {
+      int newLength = Math.max(sampleRunLength, 2 * sampleRunTimesUs.length);
+      sampleRunTimesUs = new long[newLength];
+      sampleRunFlags = new int[newLength];
+      sampleRunSizes = new int[newLength];
+    }
+    for (int i = 0; i < sampleRunLength; i++) {
+      int sampleIndex = firstSampleIndex + i;
+      sampleRunTimesUs[i] = fragment.getSamplePresentationTime(sampleIndex) * 1000L;
+      sampleRunFlags[i] = fragment.sampleIsSyncFrameTable[sampleIndex] ? C.SAMPLE_FLAG_SYNC : 0;
+      sampleRunSizes[i] = fragment.sampleSizeTable[sampleIndex];
+    }
+    trackOutput.sampleMetadata(sampleRunLength, sampleRunTimesUs, sampleRunFlags, sampleRunSizes,
+        0, null);
+
+    trackBundle.nextSamplePosition += sampleSize;
+    trackBundle.currentSampleIndex += sampleRunLength;
+    parserState = STATE_READING_SAMPLE_START;
+  }
+
+  private int appendSampleEncryptionData(TrackBundle trackBundle) {
+    TrackFragment fragment = trackBundle.fragment;
+    ParsableByteArray sampleEncryptionData = fragment.sampleEncryptionData;
     TrackEncryptionBox encryptionBox =
-        track.sampleDescriptionEncryptionBoxes[fragmentRun.sampleDescriptionIndex];
+        trackBundle.track.sampleDescriptionEncryptionBoxes[fragment.sampleDescriptionIndex];
     int vectorSize = encryptionBox.initializationVectorSize;
-    boolean subsampleEncryption = fragmentRun.sampleHasSubsampleEncryptionTable[sampleIndex];
+    boolean subsampleEncryption =
+        fragment.sampleHasSubsampleEncryptionTable[trackBundle.currentSampleIndex];
+    TrackOutput trackOutput = trackBundle.output;
 
     // Write the signal byte, containing the vector size and the subsample encryption flag.
     encryptionSignalByte.data[0] = (byte) (vectorSize | (subsampleEncryption ? 0x80 : 0));
@@ -692,7 +1173,7 @@ public final class FragmentedMp4Extractor implements Extractor {
         || atom == Atom.TYPE_trun || atom == Atom.TYPE_mvex || atom == Atom.TYPE_mdia
         || atom == Atom.TYPE_minf || atom == Atom.TYPE_stbl || atom == Atom.TYPE_pssh
         || atom == Atom.TYPE_saiz || atom == Atom.TYPE_uuid || atom == Atom.TYPE_senc
-        || atom == Atom.TYPE_pasp;
+        || atom == Atom.TYPE_pasp || atom == Atom.TYPE_emsg;
   }
 
   /** Returns whether the extractor should parse a container atom with type {@code atom}. */
@@ -702,4 +1183,35 @@ public final class FragmentedMp4Extractor implements Extractor {
         || atom == Atom.TYPE_moof || atom == Atom.TYPE_traf || atom == Atom.TYPE_mvex;
   }
 
+  /**
+   * Holds the state of a single track.
+   */
+  private static final class TrackBundle {
+
+    public final TrackFragment fragment;
+    public final TrackOutput output;
+
+    public Track track;
+    public DefaultSampleValues defaultSampleValues;
+    public int currentSampleIndex;
+    public long nextSamplePosition;
+
+    public TrackBundle(TrackOutput output) {
+      this.fragment = new TrackFragment();
+      this.output = output;
+    }
+
+    public void init(Track track, DefaultSampleValues defaultSampleValues) {
+      this.track = Assertions.checkNotNull(track);
+      this.defaultSampleValues = Assertions.checkNotNull(defaultSampleValues);
+      reset();
+    }
+
+    public void reset() {
+      fragment.reset();
+      currentSampleIndex = 0;
+    }
+
+  }
+
 }
@@ -15,6 +15,7 @@
  */
 package com.google.android.exoplayer.extractor.mp4;
 
+import com.google.android.exoplayer.C;
 import com.google.android.exoplayer.extractor.Extractor;
 import com.google.android.exoplayer.extractor.ExtractorInput;
 import com.google.android.exoplayer.extractor.ExtractorOutput;
@@ -26,8 +27,10 @@ import com.google.android.exoplayer.util.Assertions;
 import com.google.android.exoplayer.util.NalUnitUtil;
 import com.google.android.exoplayer.util.ParsableByteArray;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Stack;
 
@@ -36,6 +39,20 @@ import java.util.Stack;
  */
 public final class Mp4Extractor implements Extractor, SeekMap {
 
+  /**
+   * Flag to retain sample tables in their compact, run-length encoded form, resolving the
+   * properties of samples as they are needed. This greatly reduces the memory required for long
+   * files, at the cost of a small amount of additional work per sample.
+   */
+  public static final int FLAG_COMPACT_SAMPLE_TABLES = 1;
+  /**
+   * Flag to output samples in timestamp order across tracks, rather than in file order. This is
+   * intended for use with an {@link com.google.android.exoplayer.extractor.ExtractorSampleSource}
+   * that has a data source per track, so that poorly interleaved files are read through one
+   * sequential connection per track rather than by repeatedly reopening a single connection.
+   */
+  public static final int FLAG_READ_SAMPLES_IN_TIMESTAMP_ORDER = 2;
+
   // Parser states.
   private static final int STATE_READING_ATOM_HEADER = 0;
   private static final int STATE_READING_ATOM_PAYLOAD = 1;
@@ -47,12 +64,21 @@ public final class Mp4Extractor implements Extractor, SeekMap {
    */
   private static final int RELOAD_MINIMUM_SEEK_DISTANCE = 256 * 1024;
 
+  /** The size of the buffered part of a streamed stsz atom (the fixed sample size and count). */
+  private static final int STSZ_HEADER_SIZE = Atom.FULL_HEADER_SIZE + 8;
+  /** The size of the scratch buffer used when streaming sample sizes from an stsz atom. */
+  private static final int SAMPLE_SIZE_SCRATCH_SIZE = 4096;
+
+  private final int flags;
+
   // Temporary arrays.
   private final ParsableByteArray nalStartCode;
   private final ParsableByteArray nalLength;
 
   private final ParsableByteArray atomHeader;
   private final Stack<ContainerAtom> containerAtoms;
+  private final ParsableByteArray sampleSizeScratch;
+  private final HashMap<ContainerAtom, PackedSampleSizes> streamedSampleSizes;
 
   private int parserState;
   private long rootAtomBytesRead;
@@ -60,6 +86,8 @@ public final class Mp4Extractor implements Extractor, SeekMap {
   private long atomSize;
   private int atomBytesRead;
   private ParsableByteArray atomData;
+  private PackedSampleSizes atomSampleSizes;
+  private int sampleSizeScratchBytes;
 
   private int sampleSize;
   private int sampleBytesWritten;
@@ -70,13 +98,29 @@ public final class Mp4Extractor implements Extractor, SeekMap {
   private Mp4Track[] tracks;
 
   public Mp4Extractor() {
+    this(0);
+  }
+
+  /**
+   * @param flags Flags that control the extractor's behavior. Zero or more of
+   *     {@link #FLAG_COMPACT_SAMPLE_TABLES} and {@link #FLAG_READ_SAMPLES_IN_TIMESTAMP_ORDER}.
+   */
+  public Mp4Extractor(int flags) {
+    this.flags = flags;
     atomHeader = new ParsableByteArray(Atom.LONG_HEADER_SIZE);
     containerAtoms = new Stack<>();
+    sampleSizeScratch = new ParsableByteArray(SAMPLE_SIZE_SCRATCH_SIZE);
+    streamedSampleSizes = new HashMap<>();
     nalStartCode = new ParsableByteArray(NalUnitUtil.NAL_START_CODE);
     nalLength = new ParsableByteArray(4);
     parserState = STATE_READING_ATOM_HEADER;
   }
 
+  @Override
+  public boolean sniff(ExtractorInput input) throws IOException, InterruptedException {
+    return Sniffer.sniffUnfragmented(input);
+  }
+
   @Override
   public void init(ExtractorOutput output) {
     extractorOutput = output;
@@ -126,9 +170,10 @@ public final class Mp4Extractor implements Extractor, SeekMap {
       if (sampleIndex == TrackSampleTable.NO_SAMPLE) {
         sampleIndex = sampleTable.getIndexOfLaterOrEqualSynchronizationSample(timeUs);
       }
-      tracks[trackIndex].sampleIndex = sampleIndex;
+      TrackSampleTable.Cursor cursor = tracks[trackIndex].cursor;
+      cursor.seekTo(sampleIndex);
 
-      long offset = sampleTable.offsets[tracks[trackIndex].sampleIndex];
+      long offset = cursor.offset;
       if (offset < earliestSamplePosition) {
         earliestSamplePosition = offset;
       }
@@ -168,7 +213,15 @@ public final class Mp4Extractor implements Extractor, SeekMap {
       parserState = STATE_READING_ATOM_HEADER;
     } else if (shouldParseLeafAtom(atomType)) {
       Assertions.checkState(atomSize < Integer.MAX_VALUE);
-      atomData = new ParsableByteArray((int) atomSize);
+      if (atomType == Atom.TYPE_stsz && (flags & FLAG_COMPACT_SAMPLE_TABLES) != 0) {
+        // Only the start of the atom is buffered. The sample sizes are streamed into a compact form
+        // as they are read.
+        atomData = new ParsableByteArray((int) Math.min(atomSize, STSZ_HEADER_SIZE));
+        atomSampleSizes = null;
+        sampleSizeScratchBytes = 0;
+      } else {
+        atomData = new ParsableByteArray((int) atomSize);
+      }
       System.arraycopy(atomHeader.data, 0, atomData.data, 0, Atom.HEADER_SIZE);
       parserState = STATE_READING_ATOM_PAYLOAD;
     } else {
@@ -183,24 +236,37 @@ public final class Mp4Extractor implements Extractor, SeekMap {
    * Processes the atom payload. If {@link #atomData} is null and the size is at or above the
    * threshold {@link #RELOAD_MINIMUM_SEEK_DISTANCE}, {@code true} is returned and the caller should
    * restart loading at the position in {@code positionHolder}. Otherwise, the atom is read/skipped.
+   * <p>
+   * Parsed atoms are read incrementally, so if reading fails part way through a large atom then it
+   * can be resumed from the current input position.
    */
   private boolean readAtomPayload(ExtractorInput input, PositionHolder positionHolder)
       throws IOException, InterruptedException {
-    parserState = STATE_READING_ATOM_HEADER;
-    rootAtomBytesRead += atomSize - atomBytesRead;
     long atomRemainingBytes = atomSize - atomBytesRead;
     boolean seekRequired = atomData == null
         && (atomSize >= RELOAD_MINIMUM_SEEK_DISTANCE || atomSize > Integer.MAX_VALUE);
     if (seekRequired) {
+      rootAtomBytesRead += atomRemainingBytes;
       positionHolder.position = rootAtomBytesRead;
     } else if (atomData != null) {
-      input.readFully(atomData.data, atomBytesRead, (int) atomRemainingBytes);
+      while (atomBytesRead < atomSize) {
+        int bytesRead = atomBytesRead < atomData.limit()
+            ? input.read(atomData.data, atomBytesRead, atomData.limit() - atomBytesRead)
+            : readSampleSizes(input);
+        if (bytesRead == C.RESULT_END_OF_INPUT) {
+          throw new EOFException();
+        }
+        atomBytesRead += bytesRead;
+        rootAtomBytesRead += bytesRead;
+      }
       if (!containerAtoms.isEmpty()) {
         containerAtoms.peek().add(new Atom.LeafAtom(atomType, atomData));
       }
     } else {
       input.skipFully((int) atomRemainingBytes);
+      rootAtomBytesRead += atomRemainingBytes;
     }
+    parserState = STATE_READING_ATOM_HEADER;
 
     while (!containerAtoms.isEmpty() && containerAtoms.peek().endByteOffset == rootAtomBytesRead) {
       Atom.ContainerAtom containerAtom = containerAtoms.pop();
@@ -214,6 +280,41 @@ public final class Mp4Extractor implements Extractor, SeekMap {
     return seekRequired;
   }
 
+  /**
+   * Reads sample sizes from the payload of an stsz atom whose start has been buffered in
+   * {@link #atomData}, adding them to {@link #atomSampleSizes}.
+   *
+   * @return The number of bytes read, or {@link C#RESULT_END_OF_INPUT}.
+   */
+  private int readSampleSizes(ExtractorInput input) throws IOException, InterruptedException {
+    if (atomSampleSizes == null) {
+      atomData.setPosition(Atom.FULL_HEADER_SIZE);
+      int fixedSampleSize = atomData.readUnsignedIntToInt();
+      int sampleCount = atomData.readUnsignedIntToInt();
+      atomSampleSizes = new PackedSampleSizes(fixedSampleSize == 0 ? sampleCount : 0);
+      if (!containerAtoms.isEmpty()) {
+        streamedSampleSizes.put(containerAtoms.peek(), atomSampleSizes);
+      }
+    }
+    byte[] scratch = sampleSizeScratch.data;
+    int bytesToRead = (int) Math.min(scratch.length - sampleSizeScratchBytes,
+        atomSize - atomBytesRead);
+    int bytesRead = input.read(scratch, sampleSizeScratchBytes, bytesToRead);
+    if (bytesRead == C.RESULT_END_OF_INPUT) {
+      return C.RESULT_END_OF_INPUT;
+    }
+    sampleSizeScratchBytes += bytesRead;
+    sampleSizeScratch.setPosition(0);
+    while (sampleSizeScratchBytes - sampleSizeScratch.getPosition() >= 4) {
+      atomSampleSizes.add(sampleSizeScratch.readUnsignedIntToInt());
+    }
+    // Keep any partially read entry for the next read.
+    int partialEntryBytes = sampleSizeScratchBytes - sampleSizeScratch.getPosition();
+    System.arraycopy(scratch, sampleSizeScratch.getPosition(), scratch, 0, partialEntryBytes);
+    sampleSizeScratchBytes = partialEntryBytes;
+    return bytesRead;
+  }
+
   /** Updates the stored track metadata to reflect the contents of the specified moov atom. */
   private void processMoovAtom(ContainerAtom moov) {
     List<Mp4Track> tracks = new ArrayList<>();
@@ -232,7 +333,9 @@ public final class Mp4Extractor implements Extractor, SeekMap {
 
       Atom.ContainerAtom stblAtom = atom.getContainerAtomOfType(Atom.TYPE_mdia)
           .getContainerAtomOfType(Atom.TYPE_minf).getContainerAtomOfType(Atom.TYPE_stbl);
-      TrackSampleTable trackSampleTable = AtomParsers.parseStbl(track, stblAtom);
+      TrackSampleTable trackSampleTable = (flags & FLAG_COMPACT_SAMPLE_TABLES) != 0
+          ? AtomParsers.parseCompactStbl(track, stblAtom, streamedSampleSizes.get(stblAtom))
+          : AtomParsers.parseStbl(track, stblAtom);
       if (trackSampleTable.sampleCount == 0) {
         continue;
       }
@@ -241,11 +344,12 @@ public final class Mp4Extractor implements Extractor, SeekMap {
       mp4Track.trackOutput.format(track.mediaFormat);
       tracks.add(mp4Track);
 
-      long firstSampleOffset = trackSampleTable.offsets[0];
+      long firstSampleOffset = mp4Track.cursor.offset;
       if (firstSampleOffset < earliestSampleOffset) {
         earliestSampleOffset = firstSampleOffset;
       }
     }
+    streamedSampleSizes.clear();
     this.tracks = tracks.toArray(new Mp4Track[0]);
     extractorOutput.endTracks();
     extractorOutput.seekMap(this);
@@ -275,15 +379,15 @@ public final class Mp4Extractor implements Extractor, SeekMap {
       return RESULT_END_OF_INPUT;
     }
     Mp4Track track = tracks[trackIndex];
-    int sampleIndex = track.sampleIndex;
-    long position = track.sampleTable.offsets[sampleIndex];
+    TrackSampleTable.Cursor cursor = track.cursor;
+    long position = cursor.offset;
     long skipAmount = position - input.getPosition() + sampleBytesWritten;
     if (skipAmount < 0 || skipAmount >= RELOAD_MINIMUM_SEEK_DISTANCE) {
       positionHolder.position = position;
       return RESULT_SEEK;
     }
     input.skipFully((int) skipAmount);
-    sampleSize = track.sampleTable.sizes[sampleIndex];
+    sampleSize = cursor.size;
     if (track.track.nalUnitLengthFieldLength != -1) {
       // Zero the top three bytes of the array that we'll use to parse nal unit lengths, in case
       // they're only 1 or 2 bytes long.
@@ -321,9 +425,8 @@ public final class Mp4Extractor implements Extractor, SeekMap {
         sampleCurrentNalBytesRemaining -= writtenBytes;
       }
     }
-    track.trackOutput.sampleMetadata(track.sampleTable.timestampsUs[sampleIndex],
-        track.sampleTable.flags[sampleIndex], sampleSize, 0, null);
-    track.sampleIndex++;
+    track.trackOutput.sampleMetadata(cursor.timestampUs, cursor.flags, sampleSize, 0, null);
+    cursor.advance();
     sampleBytesWritten = 0;
     sampleCurrentNalBytesRemaining = 0;
     return RESULT_CONTINUE;
@@ -331,21 +434,23 @@ public final class Mp4Extractor implements Extractor, SeekMap {
 
   /**
    * Returns the index of the track that contains the earliest current sample, or
-   * {@link TrackSampleTable#NO_SAMPLE} if no samples remain.
+   * {@link TrackSampleTable#NO_SAMPLE} if no samples remain. Samples are ordered by offset, or by
+   * timestamp if {@link #FLAG_READ_SAMPLES_IN_TIMESTAMP_ORDER} is set.
    */
   private int getTrackIndexOfEarliestCurrentSample() {
+    boolean timestampOrder = (flags & FLAG_READ_SAMPLES_IN_TIMESTAMP_ORDER) != 0;
     int earliestSampleTrackIndex = TrackSampleTable.NO_SAMPLE;
-    long earliestSampleOffset = Long.MAX_VALUE;
+    long earliestSampleKey = Long.MAX_VALUE;
     for (int trackIndex = 0; trackIndex < tracks.length; trackIndex++) {
       Mp4Track track = tracks[trackIndex];
-      int sampleIndex = track.sampleIndex;
-      if (sampleIndex == track.sampleTable.sampleCount) {
+      TrackSampleTable.Cursor cursor = track.cursor;
+      if (cursor.index == track.sampleTable.sampleCount) {
         continue;
       }
 
-      long trackSampleOffset = track.sampleTable.offsets[sampleIndex];
-      if (trackSampleOffset < earliestSampleOffset) {
-        earliestSampleOffset = trackSampleOffset;
+      long trackSampleKey = timestampOrder ? cursor.timestampUs : cursor.offset;
+      if (trackSampleKey < earliestSampleKey) {
+        earliestSampleKey = trackSampleKey;
         earliestSampleTrackIndex = trackIndex;
       }
     }
@@ -374,13 +479,13 @@ public final class Mp4Extractor implements Extractor, SeekMap {
     public final Track track;
     public final TrackSampleTable sampleTable;
     public final TrackOutput trackOutput;
-
-    public int sampleIndex;
+    public final TrackSampleTable.Cursor cursor;
 
     public Mp4Track(Track track, TrackSampleTable sampleTable, TrackOutput trackOutput) {
       this.track = track;
       this.sampleTable = sampleTable;
       this.trackOutput = trackOutput;
+      cursor = sampleTable.newCursor();
     }
 
   }
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer.extractor.mp4;
+
+import com.google.android.exoplayer.util.Assertions;
+
+import java.util.Arrays;
+
+/**
+ * A growable array of sample sizes, in which every size is stored using the number of bytes
+ * required by the largest size added so far.
+ * <p>
+ * Sample sizes are typically smaller than 64 KB, so this usually requires half of the memory of
+ * the entries in an stsz atom.
+ */
+/* package */ final class PackedSampleSizes {
+
+  private byte[] data;
+  private int bytesPerSize;
+  private int size;
+
+  /**
+   * @param expectedSize The expected number of sample sizes, used to size the initial allocation.
+   */
+  public PackedSampleSizes(int expectedSize) {
+    bytesPerSize = 1;
+    data = new byte[Math.max(expectedSize, 1)];
+  }
+
+  /**
+   * Appends a sample size.
+   *
+   * @param sampleSize The size of the sample in bytes.
+   */
+  public void add(int sampleSize) {
+    Assertions.checkArgument(sampleSize >= 0);
+    int requiredBytesPerSize = getRequiredBytesPerSize(sampleSize);
+    if (requiredBytesPerSize > bytesPerSize) {
+      repack(requiredBytesPerSize);
+    }
+    int position = size * bytesPerSize;
+    if (position + bytesPerSize > data.length) {
+      data = Arrays.copyOf(data, Math.max(data.length * 2, position + bytesPerSize));
+    }
+    for (int shift = (bytesPerSize - 1) * 8; shift >= 0; shift -= 8) {
+      data[position++] = (byte) (sampleSize >> shift);
+    }
+    size++;
+  }
+
+  /**
+   * Returns the sample size at the specified index.
+   *
+   * @param index The index of the sample.
+   * @return The size of the sample in bytes.
+   */
+  public int get(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+    }
+    return get(data, bytesPerSize, index);
+  }
+
+  /**
+   * Returns the number of sample sizes.
+   */
+  public int size() {
+    return size;
+  }
+
+  private void repack(int newBytesPerSize) {
+    byte[] newData = new byte[Math.max(data.length / bytesPerSize, size + 1) * newBytesPerSize];
+    for (int i = 0; i < size; i++) {
+      int value = get(data, bytesPerSize, i);
+      int position = i * newBytesPerSize;
+      for (int shift = (newBytesPerSize - 1) * 8; shift >= 0; shift -= 8) {
+        newData[position++] = (byte) (value >> shift);
+      }
+    }
+    data = newData;
+    bytesPerSize = newBytesPerSize;
+  }
+
+  private static int get(byte[] data, int bytesPerSize, int index) {
+    int position = index * bytesPerSize;
+    int value = 0;
+    for (int i = 0; i < bytesPerSize; i++) {
+      value = (value << 8) | (data[position + i] & 0xFF);
+    }
+    return value;
+  }
+
+  private static int getRequiredBytesPerSize(int sampleSize) {
+    if (sampleSize < (1 << 8)) {
+      return 1;
+    } else if (sampleSize < (1 << 16)) {
+      return 2;
+    } else if (sampleSize < (1 << 24)) {
+      return 3;
+    }
+    return 4;
+  }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer.extractor.mp4;
+
+import com.google.android.exoplayer.C;
+import com.google.android.exoplayer.extractor.ExtractorInput;
+import com.google.android.exoplayer.util.ParsableByteArray;
+
+import java.io.IOException;
+
+/**
+ * Provides methods that peek data from an {@link ExtractorInput} and return whether the input
+ * appears to be in MP4 format.
+ */
+/* package */ final class Sniffer {
+
+  /** The maximum number of bytes to peek when sniffing. */
+  private static final int SEARCH_LENGTH = 4 * 1024;
+
+  /**
+   * Returns whether data peeked from the current position in {@code input} is consistent with the
+   * input being a fragmented MP4 file.
+   *
+   * @param input The extractor input from which to peek data. The peek position will be modified.
+   * @return True if the input appears to be in the fragmented MP4 format. False otherwise.
+   * @throws IOException If an error occurs reading from the input.
+   * @throws InterruptedException If the thread has been interrupted.
+   */
+  public static boolean sniffFragmented(ExtractorInput input)
+      throws IOException, InterruptedException {
+    return sniffInternal(input, true);
+  }
+
+  /**
+   * Returns whether data peeked from the current position in {@code input} is consistent with the
+   * input being an unfragmented MP4 file.
+   *
+   * @param input The extractor input from which to peek data. The peek position will be modified.
+   * @return True if the input appears to be in the unfragmented MP4 format. False otherwise.
+   * @throws IOException If an error occurs reading from the input.
+   * @throws InterruptedException If the thread has been interrupted.
+   */
+  public static boolean sniffUnfragmented(ExtractorInput input)
+      throws IOException, InterruptedException {
+    return sniffInternal(input, false);
+  }
+
+  /**
+   * Walks the atom headers at the start of the input, descending into moov, until a moof or mvex
+   * atom is found, an atom extends beyond {@link #SEARCH_LENGTH} or the input ends.
+   */
+  private static boolean sniffInternal(ExtractorInput input, boolean fragmented)
+      throws IOException, InterruptedException {
+    long inputLength = input.getLength();
+    int bytesToSearch = (int) (inputLength == C.LENGTH_UNBOUNDED || inputLength > SEARCH_LENGTH
+        ? SEARCH_LENGTH : inputLength);
+
+    ParsableByteArray buffer = new ParsableByteArray(Atom.LONG_HEADER_SIZE);
+    int bytesSearched = 0;
+    boolean foundFileStructure = false;
+    boolean isFragmented = false;
+    while (bytesSearched < bytesToSearch) {
+      int headerSize = Atom.HEADER_SIZE;
+      if (!input.peekFully(buffer.data, 0, headerSize, true)) {
+        break;
+      }
+      buffer.setPosition(0);
+      long atomSize = buffer.readUnsignedInt();
+      int atomType = buffer.readInt();
+      if (atomSize == 1) {
+        headerSize = Atom.LONG_HEADER_SIZE;
+        input.peekFully(buffer.data, Atom.HEADER_SIZE, Atom.LONG_HEADER_SIZE - Atom.HEADER_SIZE);
+        atomSize = buffer.readUnsignedLongToLong();
+      }
+      if (atomSize != 0 && atomSize < headerSize) {
+        // The atom is too small to contain its own header, so this isn't an MP4 file.
+        return false;
+      }
+      bytesSearched += headerSize;
+
+      if (atomType == Atom.TYPE_moov) {
+        // Descend into the moov atom to look for an mvex atom.
+        foundFileStructure = true;
+        continue;
+      }
+      if (atomType == Atom.TYPE_moof || atomType == Atom.TYPE_mvex) {
+        isFragmented = true;
+        break;
+      }
+      if (atomType == Atom.TYPE_ftyp) {
+        foundFileStructure = true;
+      }
+
+      // An atom size of zero means the atom extends to the end of the file.
+      if (atomSize == 0 || bytesSearched + atomSize - headerSize >= bytesToSearch) {
+        break;
+      }
+      int atomDataSize = (int) (atomSize - headerSize);
+      bytesSearched += atomDataSize;
+      if (atomDataSize > 0) {
+        input.advancePeekPosition(atomDataSize);
+      }
+    }
+    return foundFileStructure && fragmented == isFragmented;
+  }
+
+  private Sniffer() {
+    // Prevent instantiation.
+  }
+
+}
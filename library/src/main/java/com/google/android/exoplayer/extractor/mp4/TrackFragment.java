@@ -25,8 +25,20 @@ import java.io.IOException;
  */
 /* package */ final class TrackFragment {
 
+  /**
+   * Value of {@link #dataPosition} if the position of the sample data is not defined by the
+   * fragment.
+   */
+  public static final long POSITION_UNKNOWN = -1;
+
   public int sampleDescriptionIndex;
 
+  /**
+   * The position (byte offset) of the first sample's data in the stream, or
+   * {@link #POSITION_UNKNOWN} if the data immediately follows any encryption data at the start of
+   * the next mdat atom.
+   */
+  public long dataPosition;
   /**
    * The number of samples contained by the fragment.
    */
@@ -74,11 +86,13 @@ import java.io.IOException;
   /**
    * Resets the fragment.
    * <p>
-   * The {@link #length} is set to 0, and both {@link #definesEncryptionData} and
+   * The {@link #length} is set to 0, the {@link #dataPosition} is set to
+   * {@link #POSITION_UNKNOWN}, and both {@link #definesEncryptionData} and
    * {@link #sampleEncryptionDataNeedsFill} is set to false.
    */
   public void reset() {
     length = 0;
+    dataPosition = POSITION_UNKNOWN;
     definesEncryptionData = false;
     sampleEncryptionDataNeedsFill = false;
   }
@@ -15,40 +15,29 @@
  */
 package com.google.android.exoplayer.extractor.mp4;
 
-import com.google.android.exoplayer.C;
-import com.google.android.exoplayer.util.Assertions;
-import com.google.android.exoplayer.util.Util;
-
-/** Sample table for a track in an MP4 file. */
-/* package */ final class TrackSampleTable {
+/**
+ * Sample table for a track in an MP4 file.
+ * <p>
+ * Sample properties are accessed through a {@link Cursor}, which supports efficient sequential
+ * access and positioning at arbitrary samples.
+ */
+/* package */ abstract class TrackSampleTable {
 
   /** Sample index when no sample is available. */
   public static final int NO_SAMPLE = -1;
 
   /** Number of samples. */
   public final int sampleCount;
-  /** Sample offsets in bytes. */
-  public final long[] offsets;
-  /** Sample sizes in bytes. */
-  public final int[] sizes;
-  /** Sample timestamps in microseconds. */
-  public final long[] timestampsUs;
-  /** Sample flags. */
-  public final int[] flags;
 
-  TrackSampleTable(
-      long[] offsets, int[] sizes, long[] timestampsUs, int[] flags) {
-    Assertions.checkArgument(sizes.length == timestampsUs.length);
-    Assertions.checkArgument(offsets.length == timestampsUs.length);
-    Assertions.checkArgument(flags.length == timestampsUs.length);
-
-    this.offsets = offsets;
-    this.sizes = sizes;
-    this.timestampsUs = timestampsUs;
-    this.flags = flags;
-    sampleCount = offsets.length;
+  protected TrackSampleTable(int sampleCount) {
+    this.sampleCount = sampleCount;
   }
 
+  /**
+   * Returns a new cursor positioned at the first sample in the table.
+   */
+  public abstract Cursor newCursor();
+
   /**
    * Returns the sample index of the closest synchronization sample at or before the given
    * timestamp, if one is available.
@@ -56,15 +45,7 @@ import com.google.android.exoplayer.util.Util;
    * @param timeUs Timestamp adjacent to which to find a synchronization sample.
    * @return Index of the synchronization sample, or {@link #NO_SAMPLE} if none.
    */
-  public int getIndexOfEarlierOrEqualSynchronizationSample(long timeUs) {
-    int startIndex = Util.binarySearchFloor(timestampsUs, timeUs, true, false);
-    for (int i = startIndex; i >= 0; i--) {
-      if (timestampsUs[i] <= timeUs && (flags[i] & C.SAMPLE_FLAG_SYNC) != 0) {
-        return i;
-      }
-    }
-    return NO_SAMPLE;
-  }
+  public abstract int getIndexOfEarlierOrEqualSynchronizationSample(long timeUs);
 
   /**
    * Returns the sample index of the closest synchronization sample at or after the given timestamp,
@@ -73,14 +54,39 @@ import com.google.android.exoplayer.util.Util;
    * @param timeUs Timestamp adjacent to which to find a synchronization sample.
    * @return index Index of the synchronization sample, or {@link #NO_SAMPLE} if none.
    */
-  public int getIndexOfLaterOrEqualSynchronizationSample(long timeUs) {
-    int startIndex = Util.binarySearchCeil(timestampsUs, timeUs, true, false);
-    for (int i = startIndex; i < timestampsUs.length; i++) {
-      if (timestampsUs[i] >= timeUs && (flags[i] & C.SAMPLE_FLAG_SYNC) != 0) {
-        return i;
-      }
-    }
-    return NO_SAMPLE;
+  public abstract int getIndexOfLaterOrEqualSynchronizationSample(long timeUs);
+
+  /**
+   * Holds the properties of the sample at the current position in a {@link TrackSampleTable}.
+   * <p>
+   * The properties are undefined if {@link #index} is equal to the number of samples in the table.
+   */
+  public abstract static class Cursor {
+
+    /** The index of the current sample. */
+    public int index;
+    /** The offset of the current sample in bytes. */
+    public long offset;
+    /** The size of the current sample in bytes. */
+    public int size;
+    /** The timestamp of the current sample in microseconds. */
+    public long timestampUs;
+    /** The flags of the current sample. */
+    public int flags;
+
+    /**
+     * Moves the cursor to the sample at the specified index.
+     *
+     * @param index The index of the sample, which may be equal to the number of samples in the
+     *     table to indicate that no samples remain.
+     */
+    public abstract void seekTo(int index);
+
+    /**
+     * Moves the cursor to the next sample.
+     */
+    public abstract void advance();
+
   }
 
 }
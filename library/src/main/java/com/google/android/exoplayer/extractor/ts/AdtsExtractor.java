@@ -21,6 +21,7 @@ import com.google.android.exoplayer.extractor.ExtractorOutput;
 import com.google.android.exoplayer.extractor.PositionHolder;
 import com.google.android.exoplayer.extractor.SeekMap;
 import com.google.android.exoplayer.util.ParsableByteArray;
+import com.google.android.exoplayer.util.Util;
 
 import java.io.IOException;
 
@@ -31,6 +32,19 @@ import java.io.IOException;
 public class AdtsExtractor implements Extractor, SeekMap {
 
   private static final int MAX_PACKET_SIZE = 200;
+  /** The maximum number of bytes to search for ADTS frames when sniffing. */
+  private static final int MAX_SNIFF_BYTES = 8 * 1024;
+  /** The number of consecutive ADTS frames that must be found when sniffing. */
+  private static final int SNIFF_FRAME_COUNT = 4;
+  /**
+   * The maximum length of an ID3 tag that may be skipped when sniffing. Skipping a tag requires it
+   * to be peeked, so longer tags cause sniffing to fail rather than buffering the whole tag.
+   */
+  private static final int MAX_SNIFF_ID3_TAG_LENGTH = 4 * 1024 * 1024;
+  private static final int ID3_TAG = Util.getIntegerCodeForString("ID3");
+  private static final int ID3_HEADER_SIZE = 10;
+  /** The size of an ADTS frame header without a CRC, which is the smallest valid frame size. */
+  private static final int ADTS_HEADER_SIZE = 7;
 
   private final long firstSampleTimestampUs;
   private final ParsableByteArray packetBuffer;
@@ -49,6 +63,51 @@ public class AdtsExtractor implements Extractor, SeekMap {
     firstPacket = true;
   }
 
+  @Override
+  public boolean sniff(ExtractorInput input) throws IOException, InterruptedException {
+    ParsableByteArray scratch = new ParsableByteArray(ID3_HEADER_SIZE);
+
+    // Skip any ID3 header at the start of the file.
+    int startPosition = 0;
+    input.peekFully(scratch.data, 0, ID3_HEADER_SIZE);
+    if (scratch.readUnsignedInt24() == ID3_TAG) {
+      byte[] data = scratch.data;
+      int id3TagLength = ((data[6] & 0x7F) << 21) | ((data[7] & 0x7F) << 14)
+          | ((data[8] & 0x7F) << 7) | (data[9] & 0x7F);
+      if (id3TagLength > MAX_SNIFF_ID3_TAG_LENGTH) {
+        return false;
+      }
+      startPosition = ID3_HEADER_SIZE + id3TagLength;
+    }
+    input.resetPeekPosition();
+    input.advancePeekPosition(startPosition);
+
+    // Try to find consecutive ADTS frames, each starting with a sync word and layer 0.
+    int searchedBytes = 0;
+    int validFrameCount = 0;
+    while (true) {
+      input.peekFully(scratch.data, 0, ADTS_HEADER_SIZE);
+      scratch.setPosition(0);
+      int syncBytes = scratch.readUnsignedShort();
+      byte[] data = scratch.data;
+      int frameSize = ((data[3] & 0x03) << 11) | ((data[4] & 0xFF) << 3)
+          | ((data[5] & 0xE0) >> 5);
+      if ((syncBytes & 0xFFF6) != 0xFFF0 || frameSize < ADTS_HEADER_SIZE) {
+        validFrameCount = 0;
+        if (++searchedBytes == MAX_SNIFF_BYTES) {
+          return false;
+        }
+        input.resetPeekPosition();
+        input.advancePeekPosition(startPosition + searchedBytes);
+      } else {
+        if (++validFrameCount == SNIFF_FRAME_COUNT) {
+          return true;
+        }
+        input.advancePeekPosition(frameSize - ADTS_HEADER_SIZE);
+      }
+    }
+  }
+
   @Override
   public void init(ExtractorOutput output) {
     adtsReader = new AdtsReader(output.track(0));
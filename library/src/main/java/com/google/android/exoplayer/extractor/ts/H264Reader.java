@@ -171,7 +171,10 @@ import java.util.List;
       sps.startNalUnit(nalUnitType);
       pps.startNalUnit(nalUnitType);
     }
-    sei.startNalUnit(nalUnitType);
+    if (seiReader.isEnabled()) {
+      // Don't copy and unescape SEI NAL units that won't be read.
+      sei.startNalUnit(nalUnitType);
+    }
   }
 
   private void feedNalUnitTargetBuffersData(byte[] dataArray, int offset, int limit) {
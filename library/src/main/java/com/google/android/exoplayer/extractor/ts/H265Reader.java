@@ -163,8 +163,11 @@ import java.util.Collections;
       sps.startNalUnit(nalUnitType);
       pps.startNalUnit(nalUnitType);
     }
-    prefixSei.startNalUnit(nalUnitType);
-    suffixSei.startNalUnit(nalUnitType);
+    if (seiReader.isEnabled()) {
+      // Don't copy and unescape SEI NAL units that won't be read.
+      prefixSei.startNalUnit(nalUnitType);
+      suffixSei.startNalUnit(nalUnitType);
+    }
   }
 
   private void feedNalUnitTargetBuffersData(byte[] dataArray, int offset, int limit) {
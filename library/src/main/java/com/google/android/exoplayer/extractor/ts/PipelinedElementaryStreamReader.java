@@ -0,0 +1,261 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer.extractor.ts;
+
+import com.google.android.exoplayer.extractor.ExtractorWorkerPool;
+import com.google.android.exoplayer.util.ParsableByteArray;
+
+import java.util.ArrayDeque;
+
+/**
+ * Wraps an {@link ElementaryStreamReader} so that the payload passed to it is parsed on an
+ * {@link ExtractorWorkerPool}, rather than on the loading thread.
+ * <p>
+ * Payload data is copied into batches, which are handed to the pool each time a PES packet
+ * finishes or a batch fills up. Batches are parsed by the wrapped reader one at a time and in the
+ * order in which they were filled, so samples are still written to the reader's output in order.
+ * The number of batches is bounded, so the loading thread blocks if the pool falls behind.
+ */
+/* package */ final class PipelinedElementaryStreamReader extends ElementaryStreamReader {
+
+  private static final int BATCH_DATA_SIZE = 32 * 1024;
+  private static final int BATCH_MAX_EVENTS = 256;
+  private static final int MAX_BATCH_COUNT = 8;
+
+  private final ElementaryStreamReader reader;
+  private final ExtractorWorkerPool workerPool;
+  private final Runnable parseTask;
+
+  // Accessed by both the loading thread and the worker threads. Guarded by this.
+  private final ArrayDeque<Batch> pendingBatches;
+  private final ArrayDeque<Batch> freeBatches;
+  private int batchCount;
+  private boolean parseTaskScheduled;
+
+  // Accessed only by the loading thread.
+  private Batch currentBatch;
+
+  /**
+   * @param reader The reader to wrap.
+   * @param workerPool The pool on which {@code reader} should parse its payload.
+   */
+  public PipelinedElementaryStreamReader(ElementaryStreamReader reader,
+      ExtractorWorkerPool workerPool) {
+    super(reader.output);
+    this.reader = reader;
+    this.workerPool = workerPool;
+    pendingBatches = new ArrayDeque<>();
+    freeBatches = new ArrayDeque<>();
+    parseTask = new Runnable() {
+      @Override
+      public void run() {
+        parsePendingBatches();
+      }
+    };
+  }
+
+  /**
+   * Hands any partially filled batch to the pool. Called when the end of the input is reached.
+   */
+  public void flush() {
+    if (currentBatch != null && currentBatch.eventCount > 0) {
+      submitCurrentBatch();
+    }
+  }
+
+  @Override
+  public void seek() {
+    // Wait for any batches that have already been handed over, then discard the partial batch.
+    workerPool.blockUntilIdle();
+    if (currentBatch != null) {
+      recycleBatch(currentBatch);
+      currentBatch = null;
+    }
+    reader.seek();
+  }
+
+  @Override
+  public void consume(ParsableByteArray data, long pesTimeUs, boolean startOfPacket) {
+    while (data.bytesLeft() > 0) {
+      if (currentBatch == null) {
+        currentBatch = obtainBatch();
+      } else if (currentBatch.isFull()) {
+        submitCurrentBatch();
+        currentBatch = obtainBatch();
+      }
+      currentBatch.appendConsume(data, pesTimeUs, startOfPacket);
+      startOfPacket = false;
+    }
+  }
+
+  @Override
+  public void packetFinished() {
+    if (currentBatch == null) {
+      currentBatch = obtainBatch();
+    } else if (currentBatch.eventCount == BATCH_MAX_EVENTS) {
+      submitCurrentBatch();
+      currentBatch = obtainBatch();
+    }
+    currentBatch.appendPacketFinished();
+    submitCurrentBatch();
+  }
+
+  private void submitCurrentBatch() {
+    synchronized (this) {
+      pendingBatches.add(currentBatch);
+      currentBatch = null;
+      if (parseTaskScheduled) {
+        return;
+      }
+      parseTaskScheduled = true;
+    }
+    workerPool.execute(parseTask);
+  }
+
+  /**
+   * Returns a free batch, blocking until one is recycled if the maximum number of batches exist.
+   * The wait is not interruptible, since batches are always recycled once they've been parsed.
+   */
+  private synchronized Batch obtainBatch() {
+    if (freeBatches.isEmpty() && batchCount < MAX_BATCH_COUNT) {
+      batchCount++;
+      return new Batch();
+    }
+    boolean interrupted = false;
+    while (freeBatches.isEmpty()) {
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    return freeBatches.remove();
+  }
+
+  private synchronized void recycleBatch(Batch batch) {
+    batch.clear();
+    freeBatches.add(batch);
+    notifyAll();
+  }
+
+  /**
+   * Parses pending batches until there are none left. Called on a worker thread.
+   */
+  private void parsePendingBatches() {
+    while (true) {
+      Batch batch;
+      synchronized (this) {
+        batch = pendingBatches.poll();
+        if (batch == null) {
+          parseTaskScheduled = false;
+          return;
+        }
+      }
+      try {
+        batch.parse(reader);
+      } catch (RuntimeException e) {
+        // Discard the remaining batches, so that the loading thread isn't left waiting for them.
+        synchronized (this) {
+          recycleBatch(batch);
+          while (!pendingBatches.isEmpty()) {
+            recycleBatch(pendingBatches.remove());
+          }
+          parseTaskScheduled = false;
+        }
+        throw e;
+      }
+      recycleBatch(batch);
+    }
+  }
+
+  /**
+   * A sequence of calls to be made to the wrapped reader, together with the payload data that
+   * they consume.
+   */
+  private static final class Batch {
+
+    private static final int EVENT_CONSUME = 0;
+    private static final int EVENT_CONSUME_START_OF_PACKET = 1;
+    private static final int EVENT_PACKET_FINISHED = 2;
+
+    private final byte[] data;
+    private final int[] eventTypes;
+    private final int[] eventDataEnds;
+    private final long[] eventTimesUs;
+    private final ParsableByteArray payload;
+
+    private int dataLength;
+    private int eventCount;
+
+    public Batch() {
+      data = new byte[BATCH_DATA_SIZE];
+      eventTypes = new int[BATCH_MAX_EVENTS];
+      eventDataEnds = new int[BATCH_MAX_EVENTS];
+      eventTimesUs = new long[BATCH_MAX_EVENTS];
+      payload = new ParsableByteArray();
+    }
+
+    public boolean isFull() {
+      return dataLength == BATCH_DATA_SIZE || eventCount == BATCH_MAX_EVENTS;
+    }
+
+    /**
+     * Copies as much of {@code source} as will fit into the batch, and records a consume event.
+     */
+    public void appendConsume(ParsableByteArray source, long timeUs, boolean startOfPacket) {
+      int length = Math.min(source.bytesLeft(), BATCH_DATA_SIZE - dataLength);
+      source.readBytes(data, dataLength, length);
+      dataLength += length;
+      eventTypes[eventCount] = startOfPacket ? EVENT_CONSUME_START_OF_PACKET : EVENT_CONSUME;
+      eventDataEnds[eventCount] = dataLength;
+      eventTimesUs[eventCount] = timeUs;
+      eventCount++;
+    }
+
+    public void appendPacketFinished() {
+      eventTypes[eventCount] = EVENT_PACKET_FINISHED;
+      eventDataEnds[eventCount] = dataLength;
+      eventCount++;
+    }
+
+    /**
+     * Makes the recorded calls to {@code reader}.
+     */
+    public void parse(ElementaryStreamReader reader) {
+      int dataStart = 0;
+      for (int i = 0; i < eventCount; i++) {
+        if (eventTypes[i] == EVENT_PACKET_FINISHED) {
+          reader.packetFinished();
+        } else {
+          payload.reset(data, eventDataEnds[i]);
+          payload.setPosition(dataStart);
+          reader.consume(payload, eventTimesUs[i], eventTypes[i] == EVENT_CONSUME_START_OF_PACKET);
+        }
+        dataStart = eventDataEnds[i];
+      }
+    }
+
+    public void clear() {
+      dataLength = 0;
+      eventCount = 0;
+    }
+
+  }
+
+}
@@ -22,6 +22,8 @@ import com.google.android.exoplayer.text.eia608.Eia608Parser;
 import com.google.android.exoplayer.util.MimeTypes;
 import com.google.android.exoplayer.util.ParsableByteArray;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+
 /**
  * Parses a SEI data from H.264 frames and extracts samples with closed captions data.
  *
@@ -30,11 +32,26 @@ import com.google.android.exoplayer.util.ParsableByteArray;
  */
 /* package */ class SeiReader extends ElementaryStreamReader {
 
-  public SeiReader(TrackOutput output) {
+  private final AtomicBoolean enabled;
+
+  /**
+   * @param output The output to which closed caption samples are written.
+   * @param enabled Whether SEI messages should be read. The readers of video streams skip SEI NAL
+   *     units altogether whilst this is false. May be changed from any thread.
+   */
+  public SeiReader(TrackOutput output, AtomicBoolean enabled) {
     super(output);
+    this.enabled = enabled;
     output.format(MediaFormat.createTextFormat(MimeTypes.APPLICATION_EIA608));
   }
 
+  /**
+   * Returns whether SEI messages should be read.
+   */
+  public boolean isEnabled() {
+    return enabled.get();
+  }
+
   @Override
   public void seek() {
     // Do nothing.
@@ -20,6 +20,7 @@ import com.google.android.exoplayer.audio.AudioCapabilities;
 import com.google.android.exoplayer.extractor.Extractor;
 import com.google.android.exoplayer.extractor.ExtractorInput;
 import com.google.android.exoplayer.extractor.ExtractorOutput;
+import com.google.android.exoplayer.extractor.ExtractorWorkerPool;
 import com.google.android.exoplayer.extractor.PositionHolder;
 import com.google.android.exoplayer.extractor.SeekMap;
 import com.google.android.exoplayer.util.ParsableBitArray;
@@ -30,6 +31,8 @@ import android.util.SparseArray;
 import android.util.SparseBooleanArray;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Facilitates the extraction of data from the MPEG-2 TS container format.
@@ -40,6 +43,8 @@ public final class TsExtractor implements Extractor, SeekMap {
 
   private static final int TS_PACKET_SIZE = 188;
   private static final int TS_SYNC_BYTE = 0x47; // First byte of each TS packet.
+  /** The number of consecutive packets that must start with a sync byte when sniffing. */
+  private static final int SNIFF_TS_PACKET_COUNT = 5;
   private static final int TS_PAT_PID = 0;
 
   private static final int TS_STREAM_TYPE_MPA = 0x03;
@@ -58,6 +63,9 @@ public final class TsExtractor implements Extractor, SeekMap {
   private final ParsableBitArray tsScratch;
   private final boolean idrKeyframesOnly;
   private final long firstSampleTimestampUs;
+  private final ExtractorWorkerPool workerPool;
+  private final ArrayList<PipelinedElementaryStreamReader> pipelinedReaders;
+  private final AtomicBoolean captionsEnabled;
   /* package */ final SparseBooleanArray streamTypes;
   /* package */ final SparseBooleanArray allowedPassthroughStreamTypes;
   /* package */ final SparseArray<TsPayloadReader> tsPayloadReaders; // Indexed by pid
@@ -67,6 +75,7 @@ public final class TsExtractor implements Extractor, SeekMap {
   private long timestampOffsetUs;
   private long lastPts;
   /* package */ Id3Reader id3Reader;
+  private ElementaryStreamReader id3PayloadReader;
 
   public TsExtractor() {
     this(0);
@@ -82,8 +91,27 @@ public final class TsExtractor implements Extractor, SeekMap {
 
   public TsExtractor(long firstSampleTimestampUs, AudioCapabilities audioCapabilities,
       boolean idrKeyframesOnly) {
+    this(firstSampleTimestampUs, audioCapabilities, idrKeyframesOnly, null);
+  }
+
+  /**
+   * @param firstSampleTimestampUs The timestamp to which the first sample should be adjusted.
+   * @param audioCapabilities The audio capabilities of the device, used to determine which
+   *     passthrough audio streams are read. May be null.
+   * @param idrKeyframesOnly Whether only IDR frames should be marked as keyframes in H.264 streams.
+   * @param workerPool A pool on which elementary streams are parsed, leaving only reading and
+   *     demultiplexing of TS packets on the loading thread. If null, everything is parsed on the
+   *     loading thread. If non-null, the host must call
+   *     {@link ExtractorWorkerPool#blockUntilIdle()} at the end of each load, as
+   *     {@code ExtractorSampleSource} does when passed the same pool.
+   */
+  public TsExtractor(long firstSampleTimestampUs, AudioCapabilities audioCapabilities,
+      boolean idrKeyframesOnly, ExtractorWorkerPool workerPool) {
     this.firstSampleTimestampUs = firstSampleTimestampUs;
     this.idrKeyframesOnly = idrKeyframesOnly;
+    this.workerPool = workerPool;
+    pipelinedReaders = new ArrayList<>();
+    captionsEnabled = new AtomicBoolean(true);
     tsScratch = new ParsableBitArray(new byte[3]);
     tsPacketBuffer = new ParsableByteArray(TS_PACKET_SIZE);
     streamTypes = new SparseBooleanArray();
@@ -93,8 +121,35 @@ public final class TsExtractor implements Extractor, SeekMap {
     lastPts = Long.MIN_VALUE;
   }
 
+  /**
+   * Sets whether EIA-608 closed captions are read from the SEI NAL units of video streams.
+   * <p>
+   * Reading them requires every SEI NAL unit to be copied and unescaped, which is wasted work if
+   * the captions aren't being displayed. Whilst captions are disabled the closed caption track is
+   * still output, but no samples are written to it. Captions are enabled by default. May be called
+   * from any thread, and takes effect from the next SEI NAL unit.
+   *
+   * @param enabled Whether closed captions should be read.
+   */
+  public void setCaptionsEnabled(boolean enabled) {
+    captionsEnabled.set(enabled);
+  }
+
   // Extractor implementation.
 
+  @Override
+  public boolean sniff(ExtractorInput input) throws IOException, InterruptedException {
+    byte[] scratch = new byte[1];
+    for (int i = 0; i < SNIFF_TS_PACKET_COUNT; i++) {
+      input.peekFully(scratch, 0, 1);
+      if ((scratch[0] & 0xFF) != TS_SYNC_BYTE) {
+        return false;
+      }
+      input.advancePeekPosition(TS_PACKET_SIZE - 1);
+    }
+    return true;
+  }
+
   @Override
   public void init(ExtractorOutput output) {
     this.output = output;
@@ -113,7 +168,18 @@ public final class TsExtractor implements Extractor, SeekMap {
   @Override
   public int read(ExtractorInput input, PositionHolder seekPosition)
       throws IOException, InterruptedException {
+    if (workerPool != null) {
+      workerPool.maybeThrowError();
+    }
     if (!input.readFully(tsPacketBuffer.data, 0, TS_PACKET_SIZE, true)) {
+      if (workerPool != null) {
+        // Parse the remaining payload, as would have happened without the pool.
+        for (int i = 0; i < pipelinedReaders.size(); i++) {
+          pipelinedReaders.get(i).flush();
+        }
+        workerPool.blockUntilIdle();
+        workerPool.maybeThrowError();
+      }
       return RESULT_END_OF_INPUT;
     }
 
@@ -194,6 +260,20 @@ public final class TsExtractor implements Extractor, SeekMap {
     return timeUs + timestampOffsetUs;
   }
 
+  /**
+   * Returns {@code reader} wrapped so that it parses on {@link #workerPool}, or {@code reader} if
+   * there's no pool.
+   */
+  private ElementaryStreamReader maybePipeline(ElementaryStreamReader reader) {
+    if (workerPool == null) {
+      return reader;
+    }
+    PipelinedElementaryStreamReader pipelinedReader =
+        new PipelinedElementaryStreamReader(reader, workerPool);
+    pipelinedReaders.add(pipelinedReader);
+    return pipelinedReader;
+  }
+
   /**
    * Returns a sparse boolean array of stream types that can be played back based on
    * {@code audioCapabilities}.
@@ -330,6 +410,7 @@ public final class TsExtractor implements Extractor, SeekMap {
         // Setup an ID3 track regardless of whether there's a corresponding entry, in case one
         // appears intermittently during playback. See b/20261500.
         id3Reader = new Id3Reader(output.track(TS_STREAM_TYPE_ID3));
+        id3PayloadReader = maybePipeline(id3Reader);
       }
 
       int entriesSize = sectionLength - 9 /* Size of the rest of the fields before descriptors */
@@ -371,18 +452,22 @@ public final class TsExtractor implements Extractor, SeekMap {
             break;
           case TS_STREAM_TYPE_H264:
             pesPayloadReader = new H264Reader(output.track(TS_STREAM_TYPE_H264),
-                new SeiReader(output.track(TS_STREAM_TYPE_EIA608)), idrKeyframesOnly);
+                new SeiReader(output.track(TS_STREAM_TYPE_EIA608), captionsEnabled),
+                idrKeyframesOnly);
             break;
           case TS_STREAM_TYPE_H265:
             pesPayloadReader = new H265Reader(output.track(TS_STREAM_TYPE_H265),
-                new SeiReader(output.track(TS_STREAM_TYPE_EIA608)));
+                new SeiReader(output.track(TS_STREAM_TYPE_EIA608), captionsEnabled));
             break;
           case TS_STREAM_TYPE_ID3:
-            pesPayloadReader = id3Reader;
+            pesPayloadReader = id3PayloadReader;
             break;
         }
 
         if (pesPayloadReader != null) {
+          if (pesPayloadReader != id3PayloadReader) {
+            pesPayloadReader = maybePipeline(pesPayloadReader);
+          }
           streamTypes.put(streamType, true);
           tsPayloadReaders.put(elementaryPid, new PesReader(pesPayloadReader));
         }
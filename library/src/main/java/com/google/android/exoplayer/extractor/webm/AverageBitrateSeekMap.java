@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer.extractor.webm;
+
+import com.google.android.exoplayer.C;
+import com.google.android.exoplayer.extractor.SeekMap;
+import com.google.android.exoplayer.util.Util;
+
+/**
+ * A {@link SeekMap} that estimates positions assuming that media data is spread evenly over a
+ * range of the stream, for use when no Cues have been read.
+ * <p>
+ * The estimated positions are not Cluster boundaries, so the extractor must search forward for
+ * the next Cluster after seeking to one of them.
+ */
+/* package */ final class AverageBitrateSeekMap implements SeekMap {
+
+  private final long dataStartPosition;
+  private final long dataEndPosition;
+  private final long durationUs;
+
+  /**
+   * @param dataStartPosition The position of the first Cluster.
+   * @param dataEndPosition The position at which the last Cluster ends, or
+   *     {@link C#LENGTH_UNBOUNDED} if unknown.
+   * @param durationUs The duration of the segment, or {@link C#UNKNOWN_TIME_US} if unknown.
+   */
+  public AverageBitrateSeekMap(long dataStartPosition, long dataEndPosition, long durationUs) {
+    this.dataStartPosition = dataStartPosition;
+    this.dataEndPosition = dataEndPosition;
+    this.durationUs = durationUs;
+  }
+
+  @Override
+  public boolean isSeekable() {
+    return dataEndPosition != C.LENGTH_UNBOUNDED && dataEndPosition > dataStartPosition
+        && durationUs != C.UNKNOWN_TIME_US && durationUs > 0;
+  }
+
+  @Override
+  public long getPosition(long timeUs) {
+    if (!isSeekable()) {
+      return 0;
+    }
+    timeUs = Math.max(0, Math.min(timeUs, durationUs));
+    return dataStartPosition
+        + Util.scaleLargeTimestamp(timeUs, dataEndPosition - dataStartPosition, durationUs);
+  }
+
+}
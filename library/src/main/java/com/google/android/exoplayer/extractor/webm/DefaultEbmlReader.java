@@ -21,7 +21,6 @@ import com.google.android.exoplayer.util.Assertions;
 
 import java.io.IOException;
 import java.nio.charset.Charset;
-import java.util.Stack;
 
 /**
  * Default implementation of {@link EbmlReader}.
@@ -36,15 +35,34 @@ import java.util.Stack;
   private static final int VALID_FLOAT32_ELEMENT_SIZE_BYTES = 4;
   private static final int VALID_FLOAT64_ELEMENT_SIZE_BYTES = 8;
 
+  /**
+   * The initial capacity of {@link #masterElementsStack}. Matroska files rarely nest master
+   * elements more deeply than this.
+   */
+  private static final int INITIAL_MASTER_ELEMENTS_STACK_CAPACITY = 8;
+
+  private static final Charset UTF8 = Charset.forName(C.UTF8_NAME);
+
   private final byte[] scratch = new byte[8];
-  private final Stack<MasterElement> masterElementsStack = new Stack<>();
   private final VarintReader varintReader = new VarintReader();
 
+  private MasterElement[] masterElementsStack;
+  private int masterElementsStackSize;
+  private byte[] bytesElementBuffer;
+
   private EbmlReaderOutput output;
   private int elementState;
   private int elementId;
   private long elementContentSize;
 
+  public DefaultEbmlReader() {
+    masterElementsStack = new MasterElement[INITIAL_MASTER_ELEMENTS_STACK_CAPACITY];
+    for (int i = 0; i < masterElementsStack.length; i++) {
+      masterElementsStack[i] = new MasterElement();
+    }
+    bytesElementBuffer = new byte[0];
+  }
+
   @Override
   public void init(EbmlReaderOutput eventHandler) {
     this.output = eventHandler;
@@ -53,7 +71,7 @@ import java.util.Stack;
   @Override
   public void reset() {
     elementState = ELEMENT_STATE_READ_ID;
-    masterElementsStack.clear();
+    masterElementsStackSize = 0;
     varintReader.reset();
   }
 
@@ -61,9 +79,9 @@ import java.util.Stack;
   public boolean read(ExtractorInput input) throws IOException, InterruptedException {
     Assertions.checkState(output != null);
     while (true) {
-      if (!masterElementsStack.isEmpty()
-          && input.getPosition() >= masterElementsStack.peek().elementEndPosition) {
-        output.endMasterElement(masterElementsStack.pop().elementId);
+      if (masterElementsStackSize > 0 && input.getPosition()
+          >= masterElementsStack[masterElementsStackSize - 1].elementEndPosition) {
+        output.endMasterElement(masterElementsStack[--masterElementsStackSize].elementId);
         return true;
       }
 
@@ -87,7 +105,7 @@ import java.util.Stack;
         case TYPE_MASTER:
           long elementContentPosition = input.getPosition();
           long elementEndPosition = elementContentPosition + elementContentSize;
-          masterElementsStack.add(new MasterElement(elementId, elementEndPosition));
+          pushMasterElement(elementId, elementEndPosition);
           output.startMasterElement(elementId, elementContentPosition, elementContentSize);
           elementState = ELEMENT_STATE_READ_ID;
           return true;
@@ -117,6 +135,15 @@ import java.util.Stack;
           output.binaryElement(elementId, (int) elementContentSize, input);
           elementState = ELEMENT_STATE_READ_ID;
           return true;
+        case TYPE_BYTES:
+          if (elementContentSize > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Bytes element size: " + elementContentSize);
+          }
+          int bytesElementSize = (int) elementContentSize;
+          readBytes(input, bytesElementSize);
+          output.bytesElement(elementId, bytesElementBuffer, 0, bytesElementSize);
+          elementState = ELEMENT_STATE_READ_ID;
+          return true;
         case TYPE_UNKNOWN:
           input.skipFully((int) elementContentSize);
           elementState = ELEMENT_STATE_READ_ID;
@@ -127,6 +154,27 @@ import java.util.Stack;
     }
   }
 
+  /**
+   * Pushes a master element onto {@link #masterElementsStack}, reusing a previously allocated
+   * {@link MasterElement} where possible.
+   *
+   * @param elementId The ID of the master element.
+   * @param elementEndPosition The position at which the master element ends.
+   */
+  private void pushMasterElement(int elementId, long elementEndPosition) {
+    if (masterElementsStackSize == masterElementsStack.length) {
+      MasterElement[] newStack = new MasterElement[masterElementsStack.length * 2];
+      System.arraycopy(masterElementsStack, 0, newStack, 0, masterElementsStackSize);
+      for (int i = masterElementsStackSize; i < newStack.length; i++) {
+        newStack[i] = new MasterElement();
+      }
+      masterElementsStack = newStack;
+    }
+    MasterElement masterElement = masterElementsStack[masterElementsStackSize++];
+    masterElement.elementId = elementId;
+    masterElement.elementEndPosition = elementEndPosition;
+  }
+
   /**
    * Reads and returns an integer of length {@code byteLength} from the {@link ExtractorInput}.
    *
@@ -180,22 +228,35 @@ import java.util.Stack;
       throws IOException, InterruptedException {
     byte[] stringBytes = new byte[byteLength];
     input.readFully(stringBytes, 0, byteLength);
-    return new String(stringBytes, Charset.forName(C.UTF8_NAME));
+    return new String(stringBytes, UTF8);
+  }
+
+  /**
+   * Reads {@code byteLength} bytes from the {@link ExtractorInput} into
+   * {@link #bytesElementBuffer}, growing the buffer if necessary.
+   *
+   * @param input The {@link ExtractorInput} from which to read.
+   * @param byteLength The number of bytes to read.
+   * @throws IOException If an error occurs reading from the input.
+   * @throws InterruptedException If the thread is interrupted.
+   */
+  private void readBytes(ExtractorInput input, int byteLength)
+      throws IOException, InterruptedException {
+    if (bytesElementBuffer.length < byteLength) {
+      bytesElementBuffer = new byte[byteLength];
+    }
+    input.readFully(bytesElementBuffer, 0, byteLength);
   }
 
   /**
    * Used in {@link #masterElementsStack} to track when the current master element ends, so that
-   * {@link EbmlReaderOutput#endMasterElement(int)} can be called.
+   * {@link EbmlReaderOutput#endMasterElement(int)} can be called. Instances are reused as elements
+   * are pushed and popped.
    */
   private static final class MasterElement {
 
-    private final int elementId;
-    private final long elementEndPosition;
-
-    private MasterElement(int elementId, long elementEndPosition) {
-      this.elementId = elementId;
-      this.elementEndPosition = elementEndPosition;
-    }
+    private int elementId;
+    private long elementEndPosition;
 
   }
 
@@ -53,6 +53,11 @@ import java.io.IOException;
    * Type for IEEE floating point value elements of either 4 or 8 bytes.
    */
   public static final int TYPE_FLOAT = 5;
+  /**
+   * Type for string or binary elements whose content should be read by the reader and delivered
+   * as a view onto a buffer that the reader reuses, without copying.
+   */
+  public static final int TYPE_BYTES = 6;
 
   /**
    * Initializes the extractor with an {@link EbmlReaderOutput}.
@@ -106,4 +106,18 @@ import java.io.IOException;
   void binaryElement(int id, int contentsSize, ExtractorInput input)
       throws ParserException, IOException, InterruptedException;
 
+  /**
+   * Called when an element of type {@link EbmlReader#TYPE_BYTES} is encountered.
+   * <p>
+   * The data array is owned by the reader and is only valid for the duration of the call.
+   * Implementations that need to retain the content must copy it.
+   *
+   * @param id The element ID.
+   * @param data An array containing the element's content.
+   * @param offset The offset of the element's content in {@code data}.
+   * @param length The length of the element's content.
+   * @throws ParserException If a parsing error occurs.
+   */
+  void bytesElement(int id, byte[] data, int offset, int length) throws ParserException;
+
 }
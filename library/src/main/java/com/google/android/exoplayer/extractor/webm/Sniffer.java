@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer.extractor.webm;
+
+import com.google.android.exoplayer.C;
+import com.google.android.exoplayer.extractor.ExtractorInput;
+
+import java.io.IOException;
+
+/**
+ * Provides a method that peeks data from an {@link ExtractorInput} and returns whether the input
+ * appears to be in Matroska or WebM format.
+ */
+/* package */ final class Sniffer {
+
+  /** The maximum number of bytes to search for the EBML header. */
+  private static final int SEARCH_LENGTH = 1024;
+  private static final int ID_EBML = 0x1A45DFA3;
+  private static final int ID_SEGMENT = 0x18538067;
+  /** Marker returned by {@link #peekUnsignedVarint(ExtractorInput, byte[])} for invalid data. */
+  private static final long INVALID_VARINT = Long.MIN_VALUE;
+
+  /**
+   * Returns whether data peeked from the current position in {@code input} starts with an EBML
+   * header element that is followed by a Segment element.
+   *
+   * @param input The extractor input from which to peek data. The peek position will be modified.
+   * @return True if the input appears to be in Matroska or WebM format. False otherwise.
+   * @throws IOException If an error occurs reading from the input.
+   * @throws InterruptedException If the thread has been interrupted.
+   */
+  public static boolean sniff(ExtractorInput input) throws IOException, InterruptedException {
+    byte[] scratch = new byte[8];
+    long inputLength = input.getLength();
+    int bytesToSearch = (int) (inputLength == C.LENGTH_UNBOUNDED || inputLength > SEARCH_LENGTH
+        ? SEARCH_LENGTH : inputLength);
+
+    // Search for the EBML header element ID, which should be at the start of the input.
+    if (!input.peekFully(scratch, 0, 4, true)) {
+      return false;
+    }
+    long tag = readUnsignedInt(scratch);
+    int bytesSearched = 4;
+    while (tag != ID_EBML) {
+      if (++bytesSearched > bytesToSearch || !input.peekFully(scratch, 0, 1, true)) {
+        return false;
+      }
+      tag = ((tag << 8) & 0xFFFFFFFFL) | (scratch[0] & 0xFF);
+    }
+
+    // Skip the header's content, which must fit within the search length.
+    long headerSize = peekUnsignedVarint(input, scratch);
+    if (headerSize == INVALID_VARINT || headerSize > SEARCH_LENGTH) {
+      return false;
+    }
+    if (inputLength != C.LENGTH_UNBOUNDED
+        && input.getPeekPosition() + headerSize + 4 > inputLength) {
+      return false;
+    }
+    input.advancePeekPosition((int) headerSize);
+
+    // The header must be followed by a Segment element.
+    input.peekFully(scratch, 0, 4);
+    return readUnsignedInt(scratch) == ID_SEGMENT;
+  }
+
+  /**
+   * Peeks an EBML variable-length integer, removing its length mask.
+   *
+   * @return The value, or {@link #INVALID_VARINT} if the first byte does not specify a length.
+   */
+  private static long peekUnsignedVarint(ExtractorInput input, byte[] scratch)
+      throws IOException, InterruptedException {
+    input.peekFully(scratch, 0, 1);
+    int firstByte = scratch[0] & 0xFF;
+    if (firstByte == 0) {
+      return INVALID_VARINT;
+    }
+    int length = Integer.numberOfLeadingZeros(firstByte) - 23;
+    long value = firstByte & (0xFF >> length);
+    if (length > 1) {
+      input.peekFully(scratch, 1, length - 1);
+      for (int i = 1; i < length; i++) {
+        value = (value << 8) | (scratch[i] & 0xFF);
+      }
+    }
+    return value;
+  }
+
+  private static long readUnsignedInt(byte[] data) {
+    return ((data[0] & 0xFFL) << 24) | ((data[1] & 0xFFL) << 16) | ((data[2] & 0xFFL) << 8)
+        | (data[3] & 0xFFL);
+  }
+
+  private Sniffer() {
+    // Prevent instantiation.
+  }
+
+}
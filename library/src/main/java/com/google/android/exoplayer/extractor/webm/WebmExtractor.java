@@ -24,6 +24,7 @@ import com.google.android.exoplayer.extractor.Extractor;
 import com.google.android.exoplayer.extractor.ExtractorInput;
 import com.google.android.exoplayer.extractor.ExtractorOutput;
 import com.google.android.exoplayer.extractor.PositionHolder;
+import com.google.android.exoplayer.extractor.SeekMap;
 import com.google.android.exoplayer.extractor.TrackOutput;
 import com.google.android.exoplayer.util.Assertions;
 import com.google.android.exoplayer.util.LongArray;
@@ -35,6 +36,7 @@ import android.util.Pair;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -52,6 +54,23 @@ import java.util.concurrent.TimeUnit;
  */
 public final class WebmExtractor implements Extractor {
 
+  /**
+   * Flag to start extracting media from the first Cluster without first reading Cues that are
+   * located after it.
+   * <p>
+   * Until the Cues have been read, a {@link SeekMap} that estimates positions from the average
+   * bitrate of the segment is output, and the extractor searches forward for the next Cluster
+   * after each seek. The Cues are read in full at the start of the second Cluster, by seeking to
+   * them and back once, and are then output as a {@link ChunkIndex}. If the extractor is used by an
+   * {@link com.google.android.exoplayer.extractor.ExtractorSampleSource} with more than one
+   * {@link com.google.android.exoplayer.upstream.DataSource}, the Cues are read through a separate
+   * connection to the media.
+   * <p>
+   * This flag requires that the extractor is able to request seeks, and so must not be set when
+   * extracting media from chunks.
+   */
+  public static final int FLAG_READ_CUES_LAZILY = 1;
+
   private static final int BLOCK_STATE_START = 0;
   private static final int BLOCK_STATE_HEADER = 1;
   private static final int BLOCK_STATE_DATA = 2;
@@ -60,8 +79,8 @@ public final class WebmExtractor implements Extractor {
   private static final int CUES_STATE_BUILDING = 1;
   private static final int CUES_STATE_BUILT = 2;
 
-  private static final String DOC_TYPE_WEBM = "webm";
-  private static final String DOC_TYPE_MATROSKA = "matroska";
+  private static final byte[] DOC_TYPE_WEBM = {'w', 'e', 'b', 'm'};
+  private static final byte[] DOC_TYPE_MATROSKA = {'m', 'a', 't', 'r', 'o', 's', 'k', 'a'};
   private static final String CODEC_ID_VP8 = "V_VP8";
   private static final String CODEC_ID_VP9 = "V_VP9";
   private static final String CODEC_ID_H264 = "V_MPEG4/ISO/AVC";
@@ -136,6 +155,8 @@ public final class WebmExtractor implements Extractor {
 
   private final EbmlReader reader;
   private final VarintReader varintReader;
+  private final boolean readCuesLazily;
+  private final EbmlReader cuesReader;
 
   // Temporary arrays.
   private final ParsableByteArray nalStartCode;
@@ -170,12 +191,24 @@ public final class WebmExtractor implements Extractor {
   private LongArray cueClusterPositions;
   private boolean seenClusterPositionForCurrentCuePoint;
 
+  // Lazy cue reading state.
+  private long lastReadPosition;
+  private long firstClusterPosition = UNKNOWN;
+  private long positionAfterReadingCues = UNKNOWN;
+  private boolean readCuesPending;
+  private boolean readingCues;
+  private boolean syncToCluster;
+  private final byte[] clusterSyncScratch;
+
   // Block reading state.
   private int blockState;
   private long blockTimeUs;
   private int blockLacingSampleIndex;
   private int blockLacingSampleCount;
   private int[] blockLacingSampleSizes;
+  private long[] blockLacingSampleTimesUs;
+  private int[] blockLacingSampleFlags;
+  private int[] blockLacingSampleBytesWritten;
   private int blockTrackNumber;
   private int blockTrackNumberLength;
   private int blockFlags;
@@ -193,12 +226,32 @@ public final class WebmExtractor implements Extractor {
   private ExtractorOutput extractorOutput;
 
   public WebmExtractor() {
-    this(new DefaultEbmlReader());
+    this(0);
+  }
+
+  /**
+   * @param flags Flags that control the extractor's behavior. Zero or
+   *     {@link #FLAG_READ_CUES_LAZILY}.
+   */
+  public WebmExtractor(int flags) {
+    this(new DefaultEbmlReader(), flags);
   }
 
   /* package */ WebmExtractor(EbmlReader reader) {
+    this(reader, 0);
+  }
+
+  /* package */ WebmExtractor(EbmlReader reader, int flags) {
     this.reader = reader;
     this.reader.init(new InnerEbmlReaderOutput());
+    readCuesLazily = (flags & FLAG_READ_CUES_LAZILY) != 0;
+    if (readCuesLazily) {
+      cuesReader = new DefaultEbmlReader();
+      cuesReader.init(new InnerEbmlReaderOutput());
+    } else {
+      cuesReader = null;
+    }
+    clusterSyncScratch = new byte[8];
     varintReader = new VarintReader();
     scratch = new ParsableByteArray(4);
     vorbisNumPageSamples = new ParsableByteArray(ByteBuffer.allocate(4).putInt(-1).array());
@@ -208,6 +261,11 @@ public final class WebmExtractor implements Extractor {
     sampleStrippedBytes = new ParsableByteArray();
   }
 
+  @Override
+  public boolean sniff(ExtractorInput input) throws IOException, InterruptedException {
+    return Sniffer.sniff(input);
+  }
+
   @Override
   public void init(ExtractorOutput output) {
     extractorOutput = output;
@@ -220,14 +278,34 @@ public final class WebmExtractor implements Extractor {
     reader.reset();
     varintReader.reset();
     resetSample();
+    if (readCuesLazily) {
+      // If the Cues were being read then they're read again from the start of the next Cluster.
+      readingCues = false;
+      readCuesPending = false;
+      // The input may not start at a Cluster boundary if it's positioned using an estimate.
+      syncToCluster = firstClusterPosition != UNKNOWN && cuesState != CUES_STATE_BUILT;
+    }
   }
 
   @Override
   public int read(ExtractorInput input, PositionHolder seekPosition) throws IOException,
       InterruptedException {
     sampleRead = false;
+    if (readingCues) {
+      readCues(input);
+      readingCues = false;
+      seekPosition.position = positionAfterReadingCues;
+      return Extractor.RESULT_SEEK;
+    }
+    if (syncToCluster) {
+      if (!skipToNextCluster(input)) {
+        return Extractor.RESULT_END_OF_INPUT;
+      }
+      syncToCluster = false;
+    }
     boolean continueReading = true;
     while (continueReading && !sampleRead) {
+      lastReadPosition = input.getPosition();
       continueReading = reader.read(input);
       if (continueReading && maybeSeekForCues(seekPosition, input.getPosition())) {
         return Extractor.RESULT_SEEK;
@@ -280,9 +358,10 @@ public final class WebmExtractor implements Extractor {
       case ID_CUE_CLUSTER_POSITION:
       case ID_REFERENCE_BLOCK:
         return EbmlReader.TYPE_UNSIGNED_INT;
-      case ID_DOC_TYPE:
       case ID_CODEC_ID:
         return EbmlReader.TYPE_STRING;
+      case ID_DOC_TYPE:
+        return EbmlReader.TYPE_BYTES;
       case ID_SEEK_ID:
       case ID_CONTENT_COMPRESSION_SETTINGS:
       case ID_CONTENT_ENCRYPTION_KEY_ID:
@@ -320,9 +399,11 @@ public final class WebmExtractor implements Extractor {
         seenClusterPositionForCurrentCuePoint = false;
         return;
       case ID_CLUSTER:
-        // If we encounter a Cluster before building Cues, then we should try to build cues first
-        // before parsing the Cluster.
-        if (cuesState == CUES_STATE_NOT_BUILT && cuesContentPosition != UNKNOWN) {
+        if (readCuesLazily) {
+          onLazyCuesClusterStart();
+        } else if (cuesState == CUES_STATE_NOT_BUILT && cuesContentPosition != UNKNOWN) {
+          // If we encounter a Cluster before building Cues, then we should try to build cues first
+          // before parsing the Cluster.
           seekForCues = true;
         }
         return;
@@ -539,16 +620,26 @@ public final class WebmExtractor implements Extractor {
   }
 
   /* package */ void stringElement(int id, String value) throws ParserException {
+    switch (id) {
+      case ID_CODEC_ID:
+        trackFormat.codecId = value;
+        return;
+      default:
+        return;
+    }
+  }
+
+  /* package */ void bytesElement(int id, byte[] data, int offset, int length)
+      throws ParserException {
     switch (id) {
       case ID_DOC_TYPE:
         // Validate that DocType is supported.
-        if (!DOC_TYPE_WEBM.equals(value) && !DOC_TYPE_MATROSKA.equals(value)) {
-          throw new ParserException("DocType " + value + " not supported");
+        if (!bytesEqual(DOC_TYPE_WEBM, data, offset, length)
+            && !bytesEqual(DOC_TYPE_MATROSKA, data, offset, length)) {
+          throw new ParserException("DocType " + new String(data, offset, length,
+              Charset.forName(C.UTF8_NAME)) + " not supported");
         }
         return;
-      case ID_CODEC_ID:
-        trackFormat.codecId = value;
-        return;
       default:
         return;
     }
@@ -700,16 +791,33 @@ public final class WebmExtractor implements Extractor {
           blockLacingSampleIndex = 0;
         }
 
-        if (id == ID_SIMPLE_BLOCK) {
+        if (id == ID_SIMPLE_BLOCK && blockLacingSampleCount == 1) {
           // For SimpleBlock, we have metadata for each sample here.
+          writeSampleData(input, trackOutput, sampleTrackFormat, blockLacingSampleSizes[0]);
+          outputSampleMetadata(trackOutput, blockTimeUs);
+          blockState = BLOCK_STATE_START;
+        } else if (id == ID_SIMPLE_BLOCK) {
+          // The samples of a laced SimpleBlock are contiguous, so we write all of their data and
+          // then output their metadata at once.
+          blockLacingSampleTimesUs =
+              ensureArrayCapacity(blockLacingSampleTimesUs, blockLacingSampleCount);
+          blockLacingSampleFlags =
+              ensureArrayCapacity(blockLacingSampleFlags, blockLacingSampleCount);
+          blockLacingSampleBytesWritten =
+              ensureArrayCapacity(blockLacingSampleBytesWritten, blockLacingSampleCount);
           while (blockLacingSampleIndex < blockLacingSampleCount) {
             writeSampleData(input, trackOutput, sampleTrackFormat,
                 blockLacingSampleSizes[blockLacingSampleIndex]);
-            long sampleTimeUs = this.blockTimeUs
+            blockLacingSampleTimesUs[blockLacingSampleIndex] = blockTimeUs
                 + (blockLacingSampleIndex * sampleTrackFormat.defaultSampleDurationNs) / 1000;
-            outputSampleMetadata(trackOutput, sampleTimeUs);
+            blockLacingSampleFlags[blockLacingSampleIndex] = blockFlags;
+            blockLacingSampleBytesWritten[blockLacingSampleIndex] = sampleBytesWritten;
+            resetSample();
             blockLacingSampleIndex++;
           }
+          trackOutput.sampleMetadata(blockLacingSampleCount, blockLacingSampleTimesUs,
+              blockLacingSampleFlags, blockLacingSampleBytesWritten, 0, blockEncryptionKeyId);
+          sampleRead = true;
           blockState = BLOCK_STATE_START;
         } else {
           // For Block, we send the metadata at the end of the BlockGroup element since we'll know
@@ -903,13 +1011,22 @@ public final class WebmExtractor implements Extractor {
   /**
    * Updates the position of the holder to Cues element's position if the extractor configuration
    * permits use of master seek entry. After building Cues sets the holder's position back to where
-   * it was before.
+   * it was before. If {@link #FLAG_READ_CUES_LAZILY} is set, the position is instead updated to the
+   * Cues element's position when they're due to be read.
    *
    * @param seekPosition The holder whose position will be updated.
    * @param currentPosition Current position of the input.
    * @return true if the seek position was updated, false otherwise.
    */
   private boolean maybeSeekForCues(PositionHolder seekPosition, long currentPosition) {
+    if (readCuesPending) {
+      cuesReader.reset();
+      positionAfterReadingCues = currentPosition;
+      seekPosition.position = cuesContentPosition;
+      readCuesPending = false;
+      readingCues = true;
+      return true;
+    }
     if (seekForCues) {
       seekPositionAfterBuildingCues = currentPosition;
       seekPosition.position = cuesContentPosition;
@@ -927,6 +1044,116 @@ public final class WebmExtractor implements Extractor {
     return false;
   }
 
+  /**
+   * Invoked at the start of each Cluster if {@link #FLAG_READ_CUES_LAZILY} is set. If the Cues have
+   * not been built, an {@link AverageBitrateSeekMap} is output at the first Cluster, and the Cues
+   * are read at the next Cluster.
+   */
+  private void onLazyCuesClusterStart() {
+    if (cuesState == CUES_STATE_BUILT) {
+      return;
+    }
+    if (firstClusterPosition == UNKNOWN) {
+      firstClusterPosition = lastReadPosition;
+      long dataEndPosition;
+      if (cuesContentPosition > firstClusterPosition) {
+        dataEndPosition = cuesContentPosition;
+      } else if (segmentContentSize != UNKNOWN) {
+        dataEndPosition = segmentContentPosition + segmentContentSize;
+      } else {
+        dataEndPosition = C.LENGTH_UNBOUNDED;
+      }
+      extractorOutput.seekMap(
+          new AverageBitrateSeekMap(firstClusterPosition, dataEndPosition, durationUs));
+    } else if (cuesContentPosition != UNKNOWN) {
+      readCuesPending = true;
+    }
+  }
+
+  /**
+   * Reads the Cues using {@link #cuesReader}, and builds and outputs them.
+   * <p>
+   * The Cues are read in one go, rather than a slice at a time, because each seek to and from the
+   * Cues reopens the connection to the media if the extractor is reading through a single
+   * {@link com.google.android.exoplayer.upstream.DataSource}.
+   */
+  private void readCues(ExtractorInput input) throws IOException, InterruptedException {
+    while (cuesState != CUES_STATE_BUILT) {
+      if (!cuesReader.read(input)) {
+        throw new ParserException("Unexpected end of input reading Cues");
+      }
+    }
+  }
+
+  /**
+   * Skips forward to the start of the next Cluster, reading its header and Timecode so that the
+   * reader can continue from the Cluster's remaining children.
+   * <p>
+   * A Cluster is identified by its ID followed by a valid size and a Timecode element, so that it
+   * is unlikely to be matched by chance within sample data.
+   *
+   * @param input The {@link ExtractorInput} from which to read.
+   * @return False if the end of the input was reached before finding a Cluster. True otherwise.
+   * @throws IOException If an error occurs reading from the input.
+   * @throws InterruptedException If the thread is interrupted.
+   */
+  private boolean skipToNextCluster(ExtractorInput input)
+      throws IOException, InterruptedException {
+    byte[] data = clusterSyncScratch;
+    int lastFourBytes = 0;
+    while (true) {
+      if (!input.readFully(data, 0, 1, true)) {
+        return false;
+      }
+      lastFourBytes = (lastFourBytes << 8) | (data[0] & 0xFF);
+      if (lastFourBytes != ID_CLUSTER) {
+        continue;
+      }
+      lastFourBytes = 0;
+      if (readClusterSyncVarint(input) == UNKNOWN) {
+        continue;
+      }
+      if (!input.readFully(data, 0, 1, true)) {
+        return false;
+      }
+      if ((data[0] & 0xFF) != ID_TIME_CODE) {
+        continue;
+      }
+      long timecodeSize = readClusterSyncVarint(input);
+      if (timecodeSize < 1 || timecodeSize > 8) {
+        continue;
+      }
+      input.readFully(data, 0, (int) timecodeSize);
+      long timecode = 0;
+      for (int i = 0; i < timecodeSize; i++) {
+        timecode = (timecode << 8) | (data[i] & 0xFF);
+      }
+      clusterTimecodeUs = scaleTimecodeToUs(timecode);
+      return true;
+    }
+  }
+
+  /**
+   * Reads an EBML variable-length integer for {@link #skipToNextCluster(ExtractorInput)}, returning
+   * {@link #UNKNOWN} rather than failing if it has no valid length mask.
+   */
+  private long readClusterSyncVarint(ExtractorInput input)
+      throws IOException, InterruptedException {
+    byte[] data = clusterSyncScratch;
+    input.readFully(data, 0, 1);
+    int firstByte = data[0] & 0xFF;
+    if (firstByte == 0) {
+      return UNKNOWN;
+    }
+    int length = Integer.numberOfLeadingZeros(firstByte) - 23;
+    input.readFully(data, 1, length - 1);
+    long value = firstByte & (0xFF >> length);
+    for (int i = 1; i < length; i++) {
+      value = (value << 8) | (data[i] & 0xFF);
+    }
+    return value;
+  }
+
   private long scaleTimecodeToUs(long unscaledTimecode) {
     return TimeUnit.NANOSECONDS.toMicros(unscaledTimecode * timecodeScale);
   }
@@ -942,6 +1169,22 @@ public final class WebmExtractor implements Extractor {
         || CODEC_ID_AC3.equals(codecId);
   }
 
+  /**
+   * Returns whether {@code length} bytes of {@code data} starting at {@code offset} are equal to
+   * {@code expected}.
+   */
+  private static boolean bytesEqual(byte[] expected, byte[] data, int offset, int length) {
+    if (expected.length != length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (expected[i] != data[offset + i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   /**
    * Returns an array that can store (at least) {@code length} elements, which will be either a new
    * array or {@code array} if it's not null and large enough.
@@ -957,6 +1200,17 @@ public final class WebmExtractor implements Extractor {
     }
   }
 
+  private static long[] ensureArrayCapacity(long[] array, int length) {
+    if (array == null) {
+      return new long[length];
+    } else if (array.length >= length) {
+      return array;
+    } else {
+      // Double the size to avoid allocating constantly if the required length increases gradually.
+      return new long[Math.max(array.length * 2, length)];
+    }
+  }
+
   /**
    * Passes events through to the outer {@link WebmExtractor}.
    */
@@ -999,6 +1253,12 @@ public final class WebmExtractor implements Extractor {
       WebmExtractor.this.binaryElement(id, contentsSize, input);
     }
 
+    @Override
+    public void bytesElement(int id, byte[] data, int offset, int length)
+        throws ParserException {
+      WebmExtractor.this.bytesElement(id, data, offset, length);
+    }
+
   }
 
   private static final class TrackFormat {
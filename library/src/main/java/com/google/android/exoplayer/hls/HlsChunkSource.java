@@ -113,6 +113,7 @@ public class HlsChunkSource {
 
   private static final String TAG = "HlsChunkSource";
   private static final String AAC_FILE_EXTENSION = ".aac";
+  private static final String TS_FILE_EXTENSION = ".ts";
   private static final float BANDWIDTH_FRACTION = 0.8f;
 
   private final DataSource dataSource;
@@ -355,10 +356,18 @@ public class HlsChunkSource {
     HlsExtractorWrapper extractorWrapper;
     if (previousTsChunk == null || segment.discontinuity || !format.equals(previousTsChunk.format)
         || liveDiscontinuity) {
-      Extractor extractor = chunkUri.getLastPathSegment().endsWith(AAC_FILE_EXTENSION)
-          ? new AdtsExtractor(startTimeUs)
-          : new TsExtractor(startTimeUs, audioCapabilities);
-      extractorWrapper = new HlsExtractorWrapper(trigger, format, startTimeUs, extractor,
+      String lastPathSegment = chunkUri.getLastPathSegment();
+      Extractor[] extractors;
+      if (lastPathSegment.endsWith(AAC_FILE_EXTENSION)) {
+        extractors = new Extractor[] {new AdtsExtractor(startTimeUs)};
+      } else if (lastPathSegment.endsWith(TS_FILE_EXTENSION)) {
+        extractors = new Extractor[] {new TsExtractor(startTimeUs, audioCapabilities)};
+      } else {
+        // The extension doesn't identify the container, so sniff the start of the chunk.
+        extractors = new Extractor[] {new TsExtractor(startTimeUs, audioCapabilities),
+            new AdtsExtractor(startTimeUs)};
+      }
+      extractorWrapper = new HlsExtractorWrapper(trigger, format, startTimeUs, extractors,
           switchingVariantSpliced);
     } else {
       extractorWrapper = previousTsChunk.extractorWrapper;
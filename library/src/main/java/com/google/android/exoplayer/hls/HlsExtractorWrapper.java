@@ -23,8 +23,10 @@ import com.google.android.exoplayer.extractor.DefaultTrackOutput;
 import com.google.android.exoplayer.extractor.Extractor;
 import com.google.android.exoplayer.extractor.ExtractorInput;
 import com.google.android.exoplayer.extractor.ExtractorOutput;
+import com.google.android.exoplayer.extractor.ExtractorSelector;
 import com.google.android.exoplayer.extractor.SeekMap;
 import com.google.android.exoplayer.extractor.TrackOutput;
+import com.google.android.exoplayer.extractor.ts.TsExtractor;
 import com.google.android.exoplayer.upstream.Allocator;
 import com.google.android.exoplayer.util.Assertions;
 
@@ -41,11 +43,13 @@ public final class HlsExtractorWrapper implements ExtractorOutput {
   public final Format format;
   public final long startTimeUs;
 
-  private final Extractor extractor;
+  private final Extractor[] extractors;
   private final SparseArray<DefaultTrackOutput> sampleQueues;
   private final boolean shouldSpliceIn;
 
   private Allocator allocator;
+  // Accessed only by the loading thread once the wrapper has been initialized.
+  private Extractor extractor;
 
   private volatile boolean tracksBuilt;
 
@@ -55,14 +59,44 @@ public final class HlsExtractorWrapper implements ExtractorOutput {
 
   public HlsExtractorWrapper(int trigger, Format format, long startTimeUs, Extractor extractor,
       boolean shouldSpliceIn) {
+    this(trigger, format, startTimeUs, new Extractor[] {extractor}, shouldSpliceIn);
+  }
+
+  /**
+   * @param trigger The reason for the chunks being loaded.
+   * @param format The format of the chunks being loaded.
+   * @param startTimeUs The start time of the first chunk.
+   * @param extractors Candidate extractors, in order of decreasing priority. If more than one is
+   *     provided, the first one that sniffs the start of the first chunk successfully is used.
+   * @param shouldSpliceIn Whether the samples should be spliced in from the previous wrapper.
+   */
+  public HlsExtractorWrapper(int trigger, Format format, long startTimeUs, Extractor[] extractors,
+      boolean shouldSpliceIn) {
+    Assertions.checkArgument(extractors.length > 0);
     this.trigger = trigger;
     this.format = format;
     this.startTimeUs = startTimeUs;
-    this.extractor = extractor;
+    this.extractors = extractors;
     this.shouldSpliceIn = shouldSpliceIn;
     sampleQueues = new SparseArray<>();
   }
 
+  /**
+   * Sets whether closed captions are read by the candidate extractors that support them.
+   * <p>
+   * May be called at any time.
+   *
+   * @param enabled Whether closed captions should be read.
+   * @see TsExtractor#setCaptionsEnabled(boolean)
+   */
+  public void setCaptionsEnabled(boolean enabled) {
+    for (Extractor candidate : extractors) {
+      if (candidate instanceof TsExtractor) {
+        ((TsExtractor) candidate).setCaptionsEnabled(enabled);
+      }
+    }
+  }
+
   /**
    * Initializes the wrapper for use.
    *
@@ -70,7 +104,10 @@ public final class HlsExtractorWrapper implements ExtractorOutput {
    */
   public void init(Allocator allocator) {
     this.allocator = allocator;
-    extractor.init(this);
+    if (extractors.length == 1) {
+      extractor = extractors[0];
+      extractor.init(this);
+    }
   }
 
   /**
@@ -222,6 +259,12 @@ public final class HlsExtractorWrapper implements ExtractorOutput {
    * @throws InterruptedException If the thread was interrupted.
    */
   public int read(ExtractorInput input) throws IOException, InterruptedException {
+    if (extractor == null) {
+      // Select the extractor from the start of the first chunk.
+      Extractor selectedExtractor = ExtractorSelector.select(extractors, input);
+      selectedExtractor.init(this);
+      extractor = selectedExtractor;
+    }
     int result = extractor.read(input, null);
     Assertions.checkState(result != Extractor.RESULT_SEEK);
     return result;
@@ -30,6 +30,7 @@ import com.google.android.exoplayer.chunk.Format;
 import com.google.android.exoplayer.upstream.Loader;
 import com.google.android.exoplayer.upstream.Loader.Loadable;
 import com.google.android.exoplayer.util.Assertions;
+import com.google.android.exoplayer.util.MimeTypes;
 
 import android.os.Handler;
 import android.os.SystemClock;
@@ -71,6 +72,7 @@ public class HlsSampleSource implements SampleSource, SampleSourceReader, Loader
   private int trackCount;
   private int enabledTrackCount;
   private boolean[] trackEnabledStates;
+  private boolean captionsEnabled;
   private boolean[] pendingDiscontinuities;
   private TrackInfo[] trackInfos;
   private MediaFormat[] downstreamMediaFormats;
@@ -184,6 +186,7 @@ public class HlsSampleSource implements SampleSource, SampleSourceReader, Loader
     Assertions.checkState(!trackEnabledStates[track]);
     enabledTrackCount++;
     trackEnabledStates[track] = true;
+    updateCaptionsEnabled();
     downstreamMediaFormats[track] = null;
     downstreamFormat = null;
     if (!loadControlRegistered) {
@@ -202,6 +205,7 @@ public class HlsSampleSource implements SampleSource, SampleSourceReader, Loader
     Assertions.checkState(trackEnabledStates[track]);
     enabledTrackCount--;
     trackEnabledStates[track] = false;
+    updateCaptionsEnabled();
     if (enabledTrackCount == 0) {
       downstreamPositionUs = Long.MIN_VALUE;
       if (loadControlRegistered) {
@@ -443,6 +447,23 @@ public class HlsSampleSource implements SampleSource, SampleSourceReader, Loader
     }
   }
 
+  /**
+   * Enables reading of closed captions by the extractors if and only if a closed caption track is
+   * enabled. Captions are read until the source is prepared, so that the caption track is exposed.
+   */
+  private void updateCaptionsEnabled() {
+    boolean captionsEnabled = false;
+    for (int i = 0; i < trackCount; i++) {
+      if (trackEnabledStates[i] && MimeTypes.APPLICATION_EIA608.equals(trackInfos[i].mimeType)) {
+        captionsEnabled = true;
+      }
+    }
+    this.captionsEnabled = captionsEnabled;
+    for (HlsExtractorWrapper extractor : extractors) {
+      extractor.setCaptionsEnabled(captionsEnabled);
+    }
+  }
+
   private boolean haveSamplesForEnabledTracks(HlsExtractorWrapper extractor) {
     if (!extractor.isPrepared()) {
       return false;
@@ -526,6 +547,9 @@ public class HlsSampleSource implements SampleSource, SampleSourceReader, Loader
       }
       HlsExtractorWrapper extractorWrapper = tsChunk.extractorWrapper;
       if (extractors.isEmpty() || extractors.getLast() != extractorWrapper) {
+        if (prepared) {
+          extractorWrapper.setCaptionsEnabled(captionsEnabled);
+        }
         extractorWrapper.init(loadControl.getAllocator());
         extractors.addLast(extractorWrapper);
       }
@@ -24,6 +24,7 @@ import com.google.android.exoplayer.util.Util;
 
 import android.net.Uri;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
 
@@ -174,14 +175,32 @@ public class SmoothStreamingManifest {
     private final String baseUri;
     private final String chunkTemplate;
 
-    private final List<Long> chunkStartTimes;
+    private final long[] chunkStartTimes;
     private final long[] chunkStartTimesUs;
+    private final int chunkOffset;
     private final long lastChunkDurationUs;
 
     public StreamElement(String baseUri, String chunkTemplate, int type, String subType,
         long timescale, String name, int qualityLevels, int maxWidth, int maxHeight,
         int displayWidth, int displayHeight, String language, TrackElement[] tracks,
         List<Long> chunkStartTimes, long lastChunkDuration) {
+      this(baseUri, chunkTemplate, type, subType, timescale, name, qualityLevels, maxWidth,
+          maxHeight, displayWidth, displayHeight, language, tracks, toArray(chunkStartTimes),
+          Util.scaleLargeTimestamps(chunkStartTimes, C.MICROS_PER_SECOND, timescale), 0,
+          chunkStartTimes.size(), lastChunkDuration);
+    }
+
+    /**
+     * Constructs an element whose chunk start times are held in a range of the specified arrays.
+     * <p>
+     * The arrays may be shared with other elements, and may be written to outside of the range
+     * used by this element. The range itself must not be modified.
+     */
+    /* package */ StreamElement(String baseUri, String chunkTemplate, int type, String subType,
+        long timescale, String name, int qualityLevels, int maxWidth, int maxHeight,
+        int displayWidth, int displayHeight, String language, TrackElement[] tracks,
+        long[] chunkStartTimes, long[] chunkStartTimesUs, int chunkOffset, int chunkCount,
+        long lastChunkDuration) {
       this.baseUri = baseUri;
       this.chunkTemplate = chunkTemplate;
       this.type = type;
@@ -195,12 +214,12 @@ public class SmoothStreamingManifest {
       this.displayHeight = displayHeight;
       this.language = language;
       this.tracks = tracks;
-      this.chunkCount = chunkStartTimes.size();
       this.chunkStartTimes = chunkStartTimes;
+      this.chunkStartTimesUs = chunkStartTimesUs;
+      this.chunkOffset = chunkOffset;
+      this.chunkCount = chunkCount;
       lastChunkDurationUs =
           Util.scaleLargeTimestamp(lastChunkDuration, C.MICROS_PER_SECOND, timescale);
-      chunkStartTimesUs =
-          Util.scaleLargeTimestamps(chunkStartTimes, C.MICROS_PER_SECOND, timescale);
     }
 
     /**
@@ -210,7 +229,13 @@ public class SmoothStreamingManifest {
      * @return The index of the corresponding chunk.
      */
     public int getChunkIndex(long timeUs) {
-      return Util.binarySearchFloor(chunkStartTimesUs, timeUs, true, true);
+      int index = Arrays.binarySearch(chunkStartTimesUs, chunkOffset, chunkOffset + chunkCount,
+          timeUs);
+      if (index < 0) {
+        // The time falls between two chunks, or outside of the element. Use the earlier chunk.
+        index = -(index + 2);
+      }
+      return Math.max(0, index - chunkOffset);
     }
 
     /**
@@ -220,7 +245,7 @@ public class SmoothStreamingManifest {
      * @return The start time of the chunk, in microseconds.
      */
     public long getStartTimeUs(int chunkIndex) {
-      return chunkStartTimesUs[chunkIndex];
+      return chunkStartTimesUs[chunkOffset + chunkIndex];
     }
 
     /**
@@ -231,7 +256,7 @@ public class SmoothStreamingManifest {
      */
     public long getChunkDurationUs(int chunkIndex) {
       return (chunkIndex == chunkCount - 1) ? lastChunkDurationUs
-          : chunkStartTimesUs[chunkIndex + 1] - chunkStartTimesUs[chunkIndex];
+          : getStartTimeUs(chunkIndex + 1) - getStartTimeUs(chunkIndex);
     }
 
     /**
@@ -244,13 +269,22 @@ public class SmoothStreamingManifest {
     public Uri buildRequestUri(int track, int chunkIndex) {
       Assertions.checkState(tracks != null);
       Assertions.checkState(chunkStartTimes != null);
-      Assertions.checkState(chunkIndex < chunkStartTimes.size());
+      Assertions.checkState(chunkIndex < chunkCount);
       String chunkUrl = chunkTemplate
           .replace(URL_PLACEHOLDER_BITRATE, Integer.toString(tracks[track].format.bitrate))
-          .replace(URL_PLACEHOLDER_START_TIME, chunkStartTimes.get(chunkIndex).toString());
+          .replace(URL_PLACEHOLDER_START_TIME,
+              Long.toString(chunkStartTimes[chunkOffset + chunkIndex]));
       return UriUtil.resolveToUri(baseUri, chunkUrl);
     }
 
+    private static long[] toArray(List<Long> values) {
+      long[] array = new long[values.size()];
+      for (int i = 0; i < array.length; i++) {
+        array[i] = values.get(i);
+      }
+      return array;
+    }
+
   }
 
 }
@@ -15,6 +15,7 @@
  */
 package com.google.android.exoplayer.smoothstreaming;
 
+import com.google.android.exoplayer.C;
 import com.google.android.exoplayer.ParserException;
 import com.google.android.exoplayer.extractor.mp4.PsshAtomUtil;
 import com.google.android.exoplayer.smoothstreaming.SmoothStreamingManifest.ProtectionElement;
@@ -24,6 +25,7 @@ import com.google.android.exoplayer.upstream.UriLoadable;
 import com.google.android.exoplayer.util.Assertions;
 import com.google.android.exoplayer.util.CodecSpecificDataUtil;
 import com.google.android.exoplayer.util.MimeTypes;
+import com.google.android.exoplayer.util.Util;
 
 import android.util.Base64;
 import android.util.Pair;
@@ -35,12 +37,18 @@ import org.xmlpull.v1.XmlPullParserFactory;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.UUID;
 
 /**
  * Parses SmoothStreaming client manifests.
+ * <p>
+ * Chunk start times are parsed into primitive arrays. When an instance is used to parse successive
+ * refreshes of a live manifest, each refreshed {@link StreamElement} shares the chunk start time
+ * arrays of the corresponding element in the previous manifest, with only the newly available
+ * chunks being appended.
  *
  * @see <a href="http://msdn.microsoft.com/en-us/library/ee673436(v=vs.90).aspx">
  * IIS Smooth Streaming Client Manifest Format</a>
@@ -48,8 +56,10 @@ import java.util.UUID;
 public class SmoothStreamingManifestParser implements UriLoadable.Parser<SmoothStreamingManifest> {
 
   private final XmlPullParserFactory xmlParserFactory;
+  private final ArrayList<ChunkStartTimes> chunkStartTimes;
 
   public SmoothStreamingManifestParser() {
+    chunkStartTimes = new ArrayList<>();
     try {
       xmlParserFactory = XmlPullParserFactory.newInstance();
     } catch (XmlPullParserException e) {
@@ -58,13 +68,13 @@ public class SmoothStreamingManifestParser implements UriLoadable.Parser<SmoothS
   }
 
   @Override
-  public SmoothStreamingManifest parse(String connectionUrl, InputStream inputStream)
+  public synchronized SmoothStreamingManifest parse(String connectionUrl, InputStream inputStream)
       throws IOException, ParserException {
     try {
       XmlPullParser xmlParser = xmlParserFactory.newPullParser();
       xmlParser.setInput(inputStream, null);
       SmoothStreamMediaParser smoothStreamMediaParser =
-          new SmoothStreamMediaParser(null, connectionUrl);
+          new SmoothStreamMediaParser(null, connectionUrl, chunkStartTimes);
       return (SmoothStreamingManifest) smoothStreamMediaParser.parse(xmlParser);
     } catch (XmlPullParserException e) {
       throw new ParserException(e);
@@ -162,7 +172,8 @@ public class SmoothStreamingManifestParser implements UriLoadable.Parser<SmoothS
       } else if (ProtectionElementParser.TAG.equals(name)) {
         return new ProtectionElementParser(parent, baseUri);
       } else if (StreamElementParser.TAG.equals(name)) {
-        return new StreamElementParser(parent, baseUri);
+        return new StreamElementParser(parent, baseUri,
+            ((SmoothStreamMediaParser) parent).nextChunkStartTimes());
       }
       return null;
     }
@@ -340,13 +351,30 @@ public class SmoothStreamingManifestParser implements UriLoadable.Parser<SmoothS
     private ProtectionElement protectionElement;
     private List<StreamElement> streamElements;
 
-    public SmoothStreamMediaParser(ElementParser parent, String baseUri) {
+    private final List<ChunkStartTimes> chunkStartTimes;
+    private int streamElementParserCount;
+
+    public SmoothStreamMediaParser(ElementParser parent, String baseUri,
+        List<ChunkStartTimes> chunkStartTimes) {
       super(parent, baseUri, TAG);
+      this.chunkStartTimes = chunkStartTimes;
       lookAheadCount = -1;
       protectionElement = null;
       streamElements = new LinkedList<>();
     }
 
+    /**
+     * Returns the {@link ChunkStartTimes} for the next stream element to be parsed, which were
+     * also used for the stream element at the same position in the previously parsed manifest.
+     */
+    public ChunkStartTimes nextChunkStartTimes() {
+      int index = streamElementParserCount++;
+      if (index == chunkStartTimes.size()) {
+        chunkStartTimes.add(new ChunkStartTimes());
+      }
+      return chunkStartTimes.get(index);
+    }
+
     @Override
     public void parseStartTag(XmlPullParser parser) throws ParserException {
       majorVersion = parseRequiredInt(parser, KEY_MAJOR_VERSION);
@@ -455,6 +483,7 @@ public class SmoothStreamingManifestParser implements UriLoadable.Parser<SmoothS
 
     private final String baseUri;
     private final List<TrackElement> tracks;
+    private final ChunkStartTimes chunkStartTimes;
 
     private int type;
     private String subType;
@@ -467,13 +496,14 @@ public class SmoothStreamingManifestParser implements UriLoadable.Parser<SmoothS
     private int displayWidth;
     private int displayHeight;
     private String language;
-    private ArrayList<Long> startTimes;
 
     private long lastChunkDuration;
 
-    public StreamElementParser(ElementParser parent, String baseUri) {
+    public StreamElementParser(ElementParser parent, String baseUri,
+        ChunkStartTimes chunkStartTimes) {
       super(parent, baseUri, TAG);
       this.baseUri = baseUri;
+      this.chunkStartTimes = chunkStartTimes;
       tracks = new LinkedList<>();
     }
 
@@ -492,7 +522,7 @@ public class SmoothStreamingManifestParser implements UriLoadable.Parser<SmoothS
     }
 
     private void parseStreamFragmentStartTag(XmlPullParser parser) throws ParserException {
-      int chunkIndex = startTimes.size();
+      int chunkIndex = chunkStartTimes.parsedCount;
       long startTime = parseLong(parser, KEY_FRAGMENT_START_TIME, -1L);
       if (startTime == -1L) {
         if (chunkIndex == 0) {
@@ -500,24 +530,19 @@ public class SmoothStreamingManifestParser implements UriLoadable.Parser<SmoothS
           startTime = 0;
         } else if (lastChunkDuration != -1L) {
           // Infer the start time from the previous chunk's start time and duration.
-          startTime = startTimes.get(chunkIndex - 1) + lastChunkDuration;
+          startTime = chunkStartTimes.parsed[chunkIndex - 1] + lastChunkDuration;
         } else {
           // We don't have the start time, and we're unable to infer it.
           throw new ParserException("Unable to infer start time");
         }
       }
-      chunkIndex++;
-      startTimes.add(startTime);
       lastChunkDuration = parseLong(parser, KEY_FRAGMENT_DURATION, -1L);
       // Handle repeated chunks.
       long repeatCount = parseLong(parser, KEY_FRAGMENT_REPEAT_COUNT, 1L);
       if (repeatCount > 1 && lastChunkDuration == -1L) {
         throw new ParserException("Repeated chunk with unspecified duration");
       }
-      for (int i = 1; i < repeatCount; i++) {
-        chunkIndex++;
-        startTimes.add(startTime + (lastChunkDuration * i));
-      }
+      chunkStartTimes.addParsed(startTime, lastChunkDuration, (int) Math.max(repeatCount, 1));
     }
 
     private void parseStreamElementStartTag(XmlPullParser parser) throws ParserException {
@@ -540,7 +565,7 @@ public class SmoothStreamingManifestParser implements UriLoadable.Parser<SmoothS
       if (timescale == -1) {
         timescale = (Long) getNormalizedAttribute(KEY_TIME_SCALE);
       }
-      startTimes = new ArrayList<>();
+      chunkStartTimes.parsedCount = 0;
     }
 
     private int parseType(XmlPullParser parser) throws ParserException {
@@ -570,9 +595,138 @@ public class SmoothStreamingManifestParser implements UriLoadable.Parser<SmoothS
     public Object build() {
       TrackElement[] trackElements = new TrackElement[tracks.size()];
       tracks.toArray(trackElements);
+      chunkStartTimes.commit(type, url, timescale);
       return new StreamElement(baseUri, url, type, subType, timescale, name, qualityLevels,
-          maxWidth, maxHeight, displayWidth, displayHeight, language, trackElements, startTimes,
-          lastChunkDuration);
+          maxWidth, maxHeight, displayWidth, displayHeight, language, trackElements,
+          chunkStartTimes.startTimes, chunkStartTimes.startTimesUs, chunkStartTimes.offset,
+          chunkStartTimes.length - chunkStartTimes.offset, lastChunkDuration);
+    }
+
+  }
+
+  /**
+   * Holds the chunk start times of a stream element across successive parses.
+   * <p>
+   * Each parse fills {@link #parsed} and then calls {@link #commit(int, String, long)}. If the
+   * parsed start times continue on from those committed by the previous parse, then only the new
+   * chunks are appended to {@link #startTimes} and {@link #startTimesUs}, and the resulting range
+   * {@code [offset, length)} shares the arrays of the previous one. Since elements only read from
+   * their own ranges, appending beyond the end of the previous range does not affect them. The
+   * arrays are replaced when they need to grow, at which point chunks that have left the window are
+   * discarded.
+   */
+  private static final class ChunkStartTimes {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    public long[] parsed;
+    public int parsedCount;
+
+    public long[] startTimes;
+    public long[] startTimesUs;
+    public int offset;
+    public int length;
+
+    private int type;
+    private String url;
+    private long timescale;
+
+    public ChunkStartTimes() {
+      parsed = new long[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Adds parsed chunks of equal duration.
+     *
+     * @param startTime The start time of the first chunk.
+     * @param duration The duration of each chunk. Ignored if {@code count} is 1.
+     * @param count The number of chunks.
+     */
+    public void addParsed(long startTime, long duration, int count) {
+      if (parsedCount + count > parsed.length) {
+        parsed = Arrays.copyOf(parsed, Math.max(parsed.length * 2, parsedCount + count));
+      }
+      for (int i = 0; i < count; i++) {
+        parsed[parsedCount++] = startTime + duration * i;
+      }
+    }
+
+    /**
+     * Commits the parsed start times, appending them to those previously committed if possible.
+     *
+     * @param type The type of the stream element.
+     * @param url The chunk url template of the stream element.
+     * @param timescale The timescale of the stream element.
+     */
+    public void commit(int type, String url, long timescale) {
+      if (startTimes != null && type == this.type && timescale == this.timescale
+          && url.equals(this.url)) {
+        int overlap = getOverlap();
+        if (overlap != -1) {
+          append(overlap);
+          return;
+        }
+      }
+      this.type = type;
+      this.url = url;
+      this.timescale = timescale;
+      startTimes = Arrays.copyOf(parsed, parsedCount);
+      startTimesUs = Arrays.copyOf(parsed, parsedCount);
+      Util.scaleLargeTimestampsInPlace(startTimesUs, C.MICROS_PER_SECOND, timescale);
+      offset = 0;
+      length = parsedCount;
+    }
+
+    /**
+     * Returns the number of parsed chunks at the start of {@link #parsed} that are identical to
+     * those at the end of the committed range, or -1 if the parsed chunks do not continue on from
+     * the committed range.
+     */
+    private int getOverlap() {
+      if (parsedCount == 0) {
+        return -1;
+      } else if (offset == length || parsed[0] > startTimes[length - 1]) {
+        // The parsed chunks directly follow the committed range.
+        return 0;
+      }
+      int firstIndex = Arrays.binarySearch(startTimes, offset, length, parsed[0]);
+      if (firstIndex < 0) {
+        return -1;
+      }
+      int overlap = length - firstIndex;
+      if (overlap > parsedCount) {
+        return -1;
+      }
+      for (int i = 0; i < overlap; i++) {
+        if (startTimes[firstIndex + i] != parsed[i]) {
+          return -1;
+        }
+      }
+      return overlap;
+    }
+
+    private void append(int overlap) {
+      int newOffset = length - overlap;
+      int newChunkCount = parsedCount - overlap;
+      if (length + newChunkCount > startTimes.length) {
+        // Grow the arrays, discarding chunks that precede the new range.
+        int capacity = Math.max(INITIAL_CAPACITY, parsedCount * 2);
+        long[] newStartTimes = new long[capacity];
+        long[] newStartTimesUs = new long[capacity];
+        System.arraycopy(startTimes, newOffset, newStartTimes, 0, overlap);
+        System.arraycopy(startTimesUs, newOffset, newStartTimesUs, 0, overlap);
+        startTimes = newStartTimes;
+        startTimesUs = newStartTimesUs;
+        newOffset = 0;
+        length = overlap;
+      }
+      for (int i = overlap; i < parsedCount; i++) {
+        startTimes[length] = parsed[i];
+        startTimesUs[length] =
+            Util.scaleLargeTimestamp(parsed[i], C.MICROS_PER_SECOND, timescale);
+        length++;
+      }
+      offset = newOffset;
     }
 
   }
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer.text;
+
+import com.google.android.exoplayer.text.CuePainter.CueLayout;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A bounded cache of the layouts with which a {@link SubtitleLayout} draws {@link Cue}s.
+ * <p>
+ * Laying out text is expensive, and the view draws on the UI thread. Layouts are cached by cue
+ * identity, so a cue is laid out once for as long as it's displayed, even if the other cues being
+ * displayed with it change. A {@link TextTrackRenderer} to which the cache is passed, by sending it
+ * {@link TextTrackRenderer#MSG_SET_LAYOUT_CACHE}, lays out the cues of upcoming events on its
+ * parsing thread, so that they're usually cached by the time they're displayed.
+ * <p>
+ * A layout depends on the style, font scale and bounds of the view as well as on the cue. The cache
+ * holds layouts for the values with which the view last drew, and is cleared when they change. No
+ * layouts are prepared ahead of time until the view has drawn once.
+ */
+public final class CueLayoutCache {
+
+  /**
+   * Lays out cues.
+   */
+  /* package */ interface Layouter {
+
+    /**
+     * Lays out a cue. See {@link CuePainter#layout(Cue, CaptionStyleCompat, float, int, int, int,
+     * int)}.
+     */
+    CueLayout layout(Cue cue, CaptionStyleCompat style, float fontScale, int cueBoxLeft,
+        int cueBoxTop, int cueBoxRight, int cueBoxBottom);
+
+  }
+
+  /**
+   * The maximum number of layouts held.
+   */
+  // Visible for testing.
+  /* package */ static final int MAX_SIZE = 32;
+
+  private final Layouter layouter;
+  private final LinkedHashMap<Cue, CueLayout> layouts;
+
+  private CaptionStyleCompat style;
+  private float fontScale;
+  private int left;
+  private int top;
+  private int right;
+  private int bottom;
+  private int generation;
+
+  /* package */ CueLayoutCache(Layouter layouter) {
+    this.layouter = layouter;
+    // Cue doesn't override equals or hashCode, so the map is keyed by cue identity. Access order
+    // makes the eldest entry the least recently used.
+    layouts = new LinkedHashMap<Cue, CueLayout>(MAX_SIZE, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Cue, CueLayout> eldest) {
+        return size() > MAX_SIZE;
+      }
+    };
+  }
+
+  /**
+   * Sets the values with which the view is drawing, clearing the cache if they've changed.
+   *
+   * @param style The style.
+   * @param fontScale The font scale.
+   * @param left The left position of the cue box.
+   * @param top The top position of the cue box.
+   * @param right The right position of the cue box.
+   * @param bottom The bottom position of the cue box.
+   */
+  /* package */ synchronized void setConfiguration(CaptionStyleCompat style, float fontScale,
+      int left, int top, int right, int bottom) {
+    if (this.style == style && this.fontScale == fontScale && this.left == left && this.top == top
+        && this.right == right && this.bottom == bottom) {
+      return;
+    }
+    this.style = style;
+    this.fontScale = fontScale;
+    this.left = left;
+    this.top = top;
+    this.right = right;
+    this.bottom = bottom;
+    generation++;
+    layouts.clear();
+  }
+
+  /**
+   * Returns the layout of a cue for the current configuration, laying it out if it isn't cached.
+   * <p>
+   * Must only be called after {@link #setConfiguration(CaptionStyleCompat, float, int, int, int,
+   * int)}.
+   *
+   * @param cue The cue.
+   * @return The layout.
+   */
+  /* package */ CueLayout getLayout(Cue cue) {
+    CaptionStyleCompat style;
+    float fontScale;
+    int left;
+    int top;
+    int right;
+    int bottom;
+    int generation;
+    synchronized (this) {
+      CueLayout layout = layouts.get(cue);
+      if (layout != null) {
+        return layout;
+      }
+      style = this.style;
+      fontScale = this.fontScale;
+      left = this.left;
+      top = this.top;
+      right = this.right;
+      bottom = this.bottom;
+      generation = this.generation;
+    }
+    // Lay out the cue without holding the lock, so that the thread drawing isn't blocked whilst
+    // another thread lays out a different cue.
+    CueLayout layout = layouter.layout(cue, style, fontScale, left, top, right, bottom);
+    synchronized (this) {
+      if (generation == this.generation) {
+        layouts.put(cue, layout);
+      }
+    }
+    return layout;
+  }
+
+  /**
+   * Lays out any of the specified cues that aren't cached, if the view has drawn.
+   * <p>
+   * May be called on any thread.
+   *
+   * @param cues The cues.
+   */
+  /* package */ void prepare(List<Cue> cues) {
+    synchronized (this) {
+      if (style == null) {
+        return;
+      }
+    }
+    for (int i = 0; i < cues.size(); i++) {
+      getLayout(cues.get(i));
+    }
+  }
+
+}
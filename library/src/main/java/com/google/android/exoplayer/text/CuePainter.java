@@ -15,8 +15,6 @@
  */
 package com.google.android.exoplayer.text;
 
-import com.google.android.exoplayer.util.Util;
-
 import android.content.Context;
 import android.content.res.Resources;
 import android.content.res.TypedArray;
@@ -34,12 +32,50 @@ import android.util.DisplayMetrics;
 import android.util.Log;
 
 /**
- * Draws {@link Cue}s.
+ * Lays out and draws {@link Cue}s.
+ * <p>
+ * {@link #layout(Cue, CaptionStyleCompat, float, int, int, int, int)} may be called on any thread.
+ * {@link #draw(CueLayout, CaptionStyleCompat, Canvas)} must only be called on the thread that
+ * draws.
  */
-/* package */ final class CuePainter {
+/* package */ final class CuePainter implements CueLayoutCache.Layouter {
+
+  /**
+   * The layout of a cue's text, and its position within the view.
+   */
+  public static final class CueLayout {
+
+    /**
+     * The layout of the text, or null if there is nothing to draw.
+     */
+    public final StaticLayout textLayout;
+    /**
+     * The left position of the text.
+     */
+    public final int textLeft;
+    /**
+     * The top position of the text.
+     */
+    public final int textTop;
+    /**
+     * The horizontal padding around the text.
+     */
+    public final int textPaddingX;
+
+    // Visible for testing.
+    /* package */ CueLayout(StaticLayout textLayout, int textLeft, int textTop, int textPaddingX) {
+      this.textLayout = textLayout;
+      this.textLeft = textLeft;
+      this.textTop = textTop;
+      this.textPaddingX = textPaddingX;
+    }
+
+  }
 
   private static final String TAG = "CuePainter";
 
+  private static final CueLayout EMPTY_LAYOUT = new CueLayout(null, 0, 0, 0);
+
   /**
    * Ratio of inner padding to font size.
    */
@@ -70,29 +106,8 @@ import android.util.Log;
   private final float spacingMult;
   private final float spacingAdd;
 
-  private final TextPaint textPaint;
   private final Paint paint;
 
-  // Previous input variables.
-  private CharSequence cueText;
-  private int cuePosition;
-  private Alignment cueAlignment;
-  private int foregroundColor;
-  private int backgroundColor;
-  private int windowColor;
-  private int edgeColor;
-  private int edgeType;
-  private int parentLeft;
-  private int parentTop;
-  private int parentRight;
-  private int parentBottom;
-
-  // Derived drawing variables.
-  private StaticLayout textLayout;
-  private int textLeft;
-  private int textTop;
-  private int textPaddingX;
-
   public CuePainter(Context context) {
     int[] viewAttr = {android.R.attr.lineSpacingExtra, android.R.attr.lineSpacingMultiplier};
     TypedArray styledAttributes = context.obtainStyledAttributes(null, viewAttr, 0, 0);
@@ -108,85 +123,52 @@ import android.util.Log;
     shadowRadius = twoDpInPx;
     shadowOffset = twoDpInPx;
 
-    textPaint = new TextPaint();
-    textPaint.setAntiAlias(true);
-    textPaint.setSubpixelText(true);
-
     paint = new Paint();
     paint.setAntiAlias(true);
     paint.setStyle(Style.FILL);
   }
 
   /**
-   * Draws the provided {@link Cue} into a canvas with the specified styling.
-   * <p>
-   * A call to this method is able to use cached results of calculations made during the previous
-   * call, and so an instance of this class is able to optimize repeated calls to this method in
-   * which the same parameters are passed.
+   * Lays out the provided {@link Cue} with the specified styling.
    *
-   * @param cue The cue to draw.
+   * @param cue The cue to lay out.
    * @param style The style to use when drawing the cue text.
    * @param fontScale The font scale.
-   * @param canvas The canvas into which to draw.
    * @param cueBoxLeft The left position of the enclosing cue box.
    * @param cueBoxTop The top position of the enclosing cue box.
    * @param cueBoxRight The right position of the enclosing cue box.
    * @param cueBoxBottom The bottom position of the enclosing cue box.
+   * @return The layout.
    */
-  public void draw(Cue cue, CaptionStyleCompat style, float fontScale, Canvas canvas,
-      int cueBoxLeft, int cueBoxTop, int cueBoxRight, int cueBoxBottom) {
+  @Override
+  public CueLayout layout(Cue cue, CaptionStyleCompat style, float fontScale, int cueBoxLeft,
+      int cueBoxTop, int cueBoxRight, int cueBoxBottom) {
     if (TextUtils.isEmpty(cue.text)) {
       // Nothing to draw;
-      return;
+      return EMPTY_LAYOUT;
     }
 
-    if (TextUtils.equals(cueText, cue.text)
-        && cuePosition == cue.position
-        && Util.areEqual(cueAlignment, cue.alignment)
-        && foregroundColor == style.foregroundColor
-        && backgroundColor == style.backgroundColor
-        && windowColor == style.windowColor
-        && edgeType == style.edgeType
-        && edgeColor == style.edgeColor
-        && Util.areEqual(textPaint.getTypeface(), style.typeface)
-        && parentLeft == cueBoxLeft
-        && parentTop == cueBoxTop
-        && parentRight == cueBoxRight
-        && parentBottom == cueBoxBottom) {
-      // We can use the cached layout.
-      drawLayout(canvas);
-      return;
-    }
+    int parentWidth = cueBoxRight - cueBoxLeft;
+    int parentHeight = cueBoxBottom - cueBoxTop;
 
-    cueText = cue.text;
-    cuePosition = cue.position;
-    cueAlignment = cue.alignment;
-    foregroundColor = style.foregroundColor;
-    backgroundColor = style.backgroundColor;
-    windowColor = style.windowColor;
-    edgeType = style.edgeType;
-    edgeColor = style.edgeColor;
+    // Each layout has its own paint, since a layout draws with the paint it was created with and
+    // may be created on a different thread to the one that draws it.
+    TextPaint textPaint = new TextPaint();
+    textPaint.setAntiAlias(true);
+    textPaint.setSubpixelText(true);
     textPaint.setTypeface(style.typeface);
-    parentLeft = cueBoxLeft;
-    parentTop = cueBoxTop;
-    parentRight = cueBoxRight;
-    parentBottom = cueBoxBottom;
-
-    int parentWidth = parentRight - parentLeft;
-    int parentHeight = parentBottom - parentTop;
-
     float textSize = LINE_HEIGHT_FRACTION * parentHeight * fontScale;
     textPaint.setTextSize(textSize);
     int textPaddingX = (int) (textSize * INNER_PADDING_RATIO + 0.5f);
     int availableWidth = parentWidth - textPaddingX * 2;
     if (availableWidth <= 0) {
       Log.w(TAG, "Skipped drawing subtitle cue (insufficient space)");
-      return;
+      return EMPTY_LAYOUT;
     }
 
-    Alignment layoutAlignment = cueAlignment == null ? Alignment.ALIGN_CENTER : cueAlignment;
-    textLayout = new StaticLayout(cueText, textPaint, availableWidth, layoutAlignment, spacingMult,
-        spacingAdd, true);
+    Alignment layoutAlignment = cue.alignment == null ? Alignment.ALIGN_CENTER : cue.alignment;
+    StaticLayout textLayout = new StaticLayout(cue.text, textPaint, availableWidth,
+        layoutAlignment, spacingMult, spacingAdd, true);
 
     int textHeight = textLayout.getHeight();
     int textWidth = 0;
@@ -198,62 +180,65 @@ import android.util.Log;
 
     int textLeft = (parentWidth - textWidth) / 2;
     int textRight = textLeft + textWidth;
-    int textTop = parentBottom - textHeight
+    int textTop = cueBoxBottom - textHeight
         - (int) (parentHeight * DEFAULT_BOTTOM_PADDING_FRACTION);
     int textBottom = textTop + textHeight;
 
     if (cue.position != Cue.UNSET_VALUE) {
       if (cue.alignment == Alignment.ALIGN_OPPOSITE) {
-        textRight = (parentWidth * cue.position) / 100 + parentLeft;
-        textLeft = Math.max(textRight - textWidth, parentLeft);
+        textRight = (parentWidth * cue.position) / 100 + cueBoxLeft;
+        textLeft = Math.max(textRight - textWidth, cueBoxLeft);
       } else {
-        textLeft = (parentWidth * cue.position) / 100 + parentLeft;
-        textRight = Math.min(textLeft + textWidth, parentRight);
+        textLeft = (parentWidth * cue.position) / 100 + cueBoxLeft;
+        textRight = Math.min(textLeft + textWidth, cueBoxRight);
       }
     }
     if (cue.line != Cue.UNSET_VALUE) {
-      textTop = (parentHeight * cue.line) / 100 + parentTop;
+      textTop = (parentHeight * cue.line) / 100 + cueBoxTop;
       textBottom = textTop + textHeight;
-      if (textBottom > parentBottom) {
-        textTop = parentBottom - textHeight;
-        textBottom = parentBottom;
+      if (textBottom > cueBoxBottom) {
+        textTop = cueBoxBottom - textHeight;
+        textBottom = cueBoxBottom;
       }
     }
     textWidth = textRight - textLeft;
 
-    // Update the derived drawing variables.
-    this.textLayout = new StaticLayout(cueText, textPaint, textWidth, layoutAlignment, spacingMult,
+    textLayout = new StaticLayout(cue.text, textPaint, textWidth, layoutAlignment, spacingMult,
         spacingAdd, true);
-    this.textLeft = textLeft;
-    this.textTop = textTop;
-    this.textPaddingX = textPaddingX;
-
-    drawLayout(canvas);
+    return new CueLayout(textLayout, textLeft, textTop, textPaddingX);
   }
 
   /**
-   * Draws {@link #textLayout} into the provided canvas.
+   * Draws a {@link CueLayout} into a canvas with the specified styling.
    *
+   * @param cueLayout The layout to draw, which must have been created with the same style.
+   * @param style The style to use when drawing the cue text.
    * @param canvas The canvas into which to draw.
    */
-  private void drawLayout(Canvas canvas) {
-    final StaticLayout layout = textLayout;
+  public void draw(CueLayout cueLayout, CaptionStyleCompat style, Canvas canvas) {
+    final StaticLayout layout = cueLayout.textLayout;
     if (layout == null) {
       // Nothing to draw.
       return;
     }
 
+    int textPaddingX = cueLayout.textPaddingX;
+    int foregroundColor = style.foregroundColor;
+    int edgeType = style.edgeType;
+    int edgeColor = style.edgeColor;
+    TextPaint textPaint = layout.getPaint();
+
     int saveCount = canvas.save();
-    canvas.translate(textLeft, textTop);
+    canvas.translate(cueLayout.textLeft, cueLayout.textTop);
 
-    if (Color.alpha(windowColor) > 0) {
-      paint.setColor(windowColor);
+    if (Color.alpha(style.windowColor) > 0) {
+      paint.setColor(style.windowColor);
       canvas.drawRect(-textPaddingX, 0, layout.getWidth() + textPaddingX, layout.getHeight(),
           paint);
     }
 
-    if (Color.alpha(backgroundColor) > 0) {
-      paint.setColor(backgroundColor);
+    if (Color.alpha(style.backgroundColor) > 0) {
+      paint.setColor(style.backgroundColor);
       float previousBottom = layout.getLineTop(0);
       int lineCount = layout.getLineCount();
       for (int i = 0; i < lineCount; i++) {
@@ -20,15 +20,18 @@ import android.graphics.Canvas;
 import android.util.AttributeSet;
 import android.view.View;
 
-import java.util.ArrayList;
 import java.util.List;
 
 /**
  * A view for rendering rich-formatted captions.
+ * <p>
+ * Cues are laid out through a {@link CueLayoutCache}, which can be passed to a
+ * {@link TextTrackRenderer} so that cues are laid out before they're displayed.
  */
 public final class SubtitleLayout extends View {
 
-  private final List<CuePainter> painters;
+  private final CuePainter painter;
+  private final CueLayoutCache layoutCache;
 
   private List<Cue> cues;
   private float fontScale;
@@ -40,11 +43,19 @@ public final class SubtitleLayout extends View {
 
   public SubtitleLayout(Context context, AttributeSet attrs) {
     super(context, attrs);
-    painters = new ArrayList<>();
+    painter = new CuePainter(context);
+    layoutCache = new CueLayoutCache(painter);
     fontScale = 1;
     style = CaptionStyleCompat.DEFAULT;
   }
 
+  /**
+   * Returns the cache of the layouts with which the view draws cues.
+   */
+  public CueLayoutCache getLayoutCache() {
+    return layoutCache;
+  }
+
   /**
    * Sets the cues to be displayed by the view.
    *
@@ -55,11 +66,6 @@ public final class SubtitleLayout extends View {
       return;
     }
     this.cues = cues;
-    // Ensure we have sufficient painters.
-    int cueCount = (cues == null) ? 0 : cues.size();
-    while (painters.size() < cueCount) {
-      painters.add(new CuePainter(getContext()));
-    }
     // Invalidate to trigger drawing.
     invalidate();
   }
@@ -94,10 +100,10 @@ public final class SubtitleLayout extends View {
 
   @Override
   public void dispatchDraw(Canvas canvas) {
+    layoutCache.setConfiguration(style, fontScale, getLeft(), getTop(), getRight(), getBottom());
     int cueCount = (cues == null) ? 0 : cues.size();
     for (int i = 0; i < cueCount; i++) {
-      painters.get(i).draw(cues.get(i), style, fontScale, canvas, getLeft(), getTop(), getRight(),
-          getBottom());
+      painter.draw(layoutCache.getLayout(cues.get(i)), style, canvas);
     }
   }
 
@@ -26,6 +26,7 @@ import android.os.Message;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.List;
 
 /**
  * Wraps a {@link SubtitleParser}, exposing an interface similar to {@link MediaCodec} for
@@ -33,6 +34,9 @@ import java.io.InputStream;
  */
 public class SubtitleParserHelper implements Handler.Callback {
 
+  private static final int MSG_PARSE = 0;
+  private static final int MSG_PREPARE_LAYOUTS = 1;
+
   private final SubtitleParser parser;
 
   private final Handler handler;
@@ -40,6 +44,7 @@ public class SubtitleParserHelper implements Handler.Callback {
   private boolean parsing;
   private Subtitle result;
   private IOException error;
+  private CueLayoutCache layoutCache;
 
   /**
    * @param looper The {@link Looper} associated with the thread on which parsing should occur.
@@ -55,6 +60,7 @@ public class SubtitleParserHelper implements Handler.Callback {
    * Flushes the helper, canceling the current parsing operation, if there is one.
    */
   public synchronized void flush() {
+    handler.removeMessages(MSG_PREPARE_LAYOUTS);
     sampleHolder = new SampleHolder(SampleHolder.BUFFER_REPLACEMENT_MODE_NORMAL);
     parsing = false;
     result = null;
@@ -94,7 +100,26 @@ public class SubtitleParserHelper implements Handler.Callback {
     parsing = true;
     result = null;
     error = null;
-    handler.obtainMessage(0, sampleHolder).sendToTarget();
+    handler.obtainMessage(MSG_PARSE, sampleHolder).sendToTarget();
+  }
+
+  /**
+   * Sets the cache into which {@link #prepareLayouts(List)} lays out cues.
+   *
+   * @param layoutCache The cache, or null.
+   */
+  public synchronized void setLayoutCache(CueLayoutCache layoutCache) {
+    this.layoutCache = layoutCache;
+  }
+
+  /**
+   * Lays out cues on the parsing thread, so that they're cached in the layout cache before they're
+   * displayed. Does nothing if no layout cache is set.
+   *
+   * @param cues The cues.
+   */
+  public void prepareLayouts(List<Cue> cues) {
+    handler.obtainMessage(MSG_PREPARE_LAYOUTS, cues).sendToTarget();
   }
 
   /**
@@ -118,8 +143,20 @@ public class SubtitleParserHelper implements Handler.Callback {
     }
   }
 
+  @SuppressWarnings("unchecked")
   @Override
   public boolean handleMessage(Message msg) {
+    if (msg.what == MSG_PREPARE_LAYOUTS) {
+      CueLayoutCache layoutCache;
+      synchronized (this) {
+        layoutCache = this.layoutCache;
+      }
+      if (layoutCache != null) {
+        layoutCache.prepare((List<Cue>) msg.obj);
+      }
+      return true;
+    }
+
     Subtitle result;
     IOException error;
     SampleHolder holder = (SampleHolder) msg.obj;
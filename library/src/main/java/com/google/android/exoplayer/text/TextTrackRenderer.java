@@ -41,8 +41,22 @@ import java.util.List;
 @TargetApi(16)
 public class TextTrackRenderer extends TrackRenderer implements Callback {
 
+  /**
+   * The type of a message that can be passed to an instance of this class via
+   * {@link com.google.android.exoplayer.ExoPlayer#sendMessage} or
+   * {@link com.google.android.exoplayer.ExoPlayer#blockingSendMessage}. The message object should
+   * be the {@link CueLayoutCache} of the {@link SubtitleLayout} displaying the cues, or null. The
+   * renderer then lays out the cues of upcoming events on its parsing thread.
+   */
+  public static final int MSG_SET_LAYOUT_CACHE = 1;
+
   private static final int MSG_UPDATE_OVERLAY = 0;
 
+  /**
+   * The number of upcoming events whose cues are laid out ahead of time.
+   */
+  private static final int LAYOUT_LOOKAHEAD_EVENT_COUNT = 4;
+
   private final Handler textRendererHandler;
   private final TextRenderer textRenderer;
   private final SampleSourceReader source;
@@ -59,6 +73,7 @@ public class TextTrackRenderer extends TrackRenderer implements Callback {
   private SubtitleParserHelper parserHelper;
   private HandlerThread parserThread;
   private int nextSubtitleEventIndex;
+  private CueLayoutCache layoutCache;
 
   /**
    * @param source A source from which samples containing subtitle data can be read.
@@ -109,6 +124,7 @@ public class TextTrackRenderer extends TrackRenderer implements Callback {
     parserThread = new HandlerThread("textParser");
     parserThread.start();
     parserHelper = new SubtitleParserHelper(parserThread.getLooper(), subtitleParsers[parserIndex]);
+    parserHelper.setLayoutCache(layoutCache);
     seekToInternal();
   }
 
@@ -140,6 +156,12 @@ public class TextTrackRenderer extends TrackRenderer implements Callback {
       } catch (IOException e) {
         throw new ExoPlaybackException(e);
       }
+      if (nextSubtitle != null) {
+        // Lay out the cues displayed from the current position onwards, which will be the first
+        // displayed if playback reaches the subtitle.
+        int eventIndex = nextSubtitle.getNextEventTimeIndex(positionUs);
+        maybePrepareLayouts(nextSubtitle, eventIndex > 0 ? eventIndex - 1 : eventIndex);
+      }
     }
 
     boolean textRendererNeedsUpdate = false;
@@ -164,6 +186,10 @@ public class TextTrackRenderer extends TrackRenderer implements Callback {
       textRendererNeedsUpdate = true;
     }
 
+    if (textRendererNeedsUpdate) {
+      maybePrepareLayouts(subtitle, nextSubtitleEventIndex);
+    }
+
     if (textRendererNeedsUpdate && getState() == TrackRenderer.STATE_STARTED) {
       // textRendererNeedsUpdate is set and we're playing. Update the renderer.
       updateTextRenderer(subtitle.getCues(positionUs));
@@ -186,6 +212,18 @@ public class TextTrackRenderer extends TrackRenderer implements Callback {
     }
   }
 
+  @Override
+  public void handleMessage(int messageType, Object message) throws ExoPlaybackException {
+    if (messageType == MSG_SET_LAYOUT_CACHE) {
+      layoutCache = (CueLayoutCache) message;
+      if (parserHelper != null) {
+        parserHelper.setLayoutCache(layoutCache);
+      }
+    } else {
+      super.handleMessage(messageType, message);
+    }
+  }
+
   @Override
   protected void onDisabled() {
     subtitle = null;
@@ -231,6 +269,21 @@ public class TextTrackRenderer extends TrackRenderer implements Callback {
         : (subtitle.getEventTime(nextSubtitleEventIndex));
   }
 
+  /**
+   * Lays out the cues of the specified event and those that follow it on the parsing thread, if a
+   * layout cache is set. Cues that are already cached are skipped by the parsing thread.
+   */
+  private void maybePrepareLayouts(Subtitle subtitle, int eventIndex) {
+    if (layoutCache == null || eventIndex == -1) {
+      return;
+    }
+    int eventIndexLimit = Math.min(eventIndex + LAYOUT_LOOKAHEAD_EVENT_COUNT,
+        subtitle.getEventTimeCount());
+    for (int i = eventIndex; i < eventIndexLimit; i++) {
+      parserHelper.prepareLayouts(subtitle.getCues(subtitle.getEventTime(i)));
+    }
+  }
+
   private void updateTextRenderer(List<Cue> cues) {
     if (textRendererHandler != null) {
       textRendererHandler.obtainMessage(MSG_UPDATE_OVERLAY, cues).sendToTarget();
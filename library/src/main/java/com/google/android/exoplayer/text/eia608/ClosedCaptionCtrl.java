@@ -15,7 +15,19 @@
  */
 package com.google.android.exoplayer.text.eia608;
 
-/* package */ final class ClosedCaptionCtrl extends ClosedCaption {
+/**
+ * Control codes, and the packing of captions into ints.
+ * <p>
+ * Each caption parsed by {@link Eia608Parser} is packed into an int, so that captions can be
+ * queued without allocating objects. A character is packed as its UTF-16 code unit. A control code
+ * is packed with {@link #FLAG_CTRL} set, and its two bytes in the low 16 bits.
+ */
+/* package */ final class ClosedCaptionCtrl {
+
+  /**
+   * Set in a packed caption that is a control code, rather than a character.
+   */
+  public static final int FLAG_CTRL = 1 << 16;
 
   /**
    * The receipt of the {@link #RESUME_CAPTION_LOADING} command initiates pop-on style captioning.
@@ -69,28 +81,37 @@ package com.google.android.exoplayer.text.eia608;
   public static final byte TAB_OFFSET_CHAN_1 = 0x17;
   public static final byte TAB_OFFSET_CHAN_2 = 0x1F;
 
-  public final byte cc1;
-  public final byte cc2;
+  private ClosedCaptionCtrl() {}
+
+  public static int pack(byte cc1, byte cc2) {
+    return FLAG_CTRL | (cc1 << 8) | cc2;
+  }
+
+  public static boolean isCtrl(int packedCaption) {
+    return (packedCaption & FLAG_CTRL) != 0;
+  }
+
+  public static byte getCc1(int packedCaption) {
+    return (byte) (packedCaption >> 8);
+  }
 
-  protected ClosedCaptionCtrl(byte cc1, byte cc2) {
-    super(ClosedCaption.TYPE_CTRL);
-    this.cc1 = cc1;
-    this.cc2 = cc2;
+  public static byte getCc2(int packedCaption) {
+    return (byte) packedCaption;
   }
 
-  public boolean isMidRowCode() {
+  public static boolean isMidRowCode(byte cc1, byte cc2) {
     return (cc1 == MID_ROW_CHAN_1 || cc1 == MID_ROW_CHAN_2) && (cc2 >= 0x20 && cc2 <= 0x2F);
   }
 
-  public boolean isMiscCode() {
+  public static boolean isMiscCode(byte cc1, byte cc2) {
     return (cc1 == MISC_CHAN_1 || cc1 == MISC_CHAN_2) && (cc2 >= 0x20 && cc2 <= 0x2F);
   }
 
-  public boolean isTabOffsetCode() {
+  public static boolean isTabOffsetCode(byte cc1, byte cc2) {
     return (cc1 == TAB_OFFSET_CHAN_1 || cc1 == TAB_OFFSET_CHAN_2) && (cc2 >= 0x21 && cc2 <= 0x23);
   }
 
-  public boolean isPreambleAddressCode() {
+  public static boolean isPreambleAddressCode(byte cc1, byte cc2) {
     return (cc1 >= 0x10 && cc1 <= 0x1F) && (cc2 >= 0x40 && cc2 <= 0x7F);
   }
 
@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer.text.eia608;
+
+import com.google.android.exoplayer.util.Assertions;
+
+import java.util.Arrays;
+
+/**
+ * A queue of the packed captions parsed from samples, ordered by sample time.
+ * <p>
+ * Captions are packed as described in {@link ClosedCaptionCtrl}. Each sample occupies a slot of
+ * {@link #MAX_CAPTIONS_PER_SAMPLE} ints in a single array, and slots are reused once their samples
+ * are removed, so the queue doesn't allocate once it has grown to the number of samples that are
+ * pending. The order of the slots is held in a ring buffer of slot indices. Samples are mostly
+ * added in order, so each is inserted by searching back from the end of the ring. Samples with
+ * equal times are removed in the order in which they were added.
+ */
+/* package */ final class ClosedCaptionQueue {
+
+  /**
+   * The maximum number of packed captions parsed from a sample. A sample holds at most 31 caption
+   * byte pairs, each of which is parsed into at most two captions.
+   */
+  public static final int MAX_CAPTIONS_PER_SAMPLE = 62;
+
+  private static final int INITIAL_CAPACITY = 32;
+
+  private int capacity;
+  private long[] timesUs;
+  private boolean[] decodeOnly;
+  private int[] captionCounts;
+  private int[] captions;
+  private int[] freeSlots;
+  private int freeSlotCount;
+  // A ring buffer of slot indices, ordered by sample time.
+  private int[] slotOrder;
+  private int head;
+  private int size;
+
+  public ClosedCaptionQueue() {
+    capacity = INITIAL_CAPACITY;
+    timesUs = new long[capacity];
+    decodeOnly = new boolean[capacity];
+    captionCounts = new int[capacity];
+    captions = new int[capacity * MAX_CAPTIONS_PER_SAMPLE];
+    freeSlots = new int[capacity];
+    slotOrder = new int[capacity];
+    clear();
+  }
+
+  /**
+   * Adds the captions parsed from a sample.
+   *
+   * @param timeUs The time of the sample.
+   * @param isDecodeOnly Whether the sample is decode only.
+   * @param sampleCaptions An array holding the packed captions.
+   * @param captionCount The number of packed captions. Must be in the range
+   *     {@code [1, MAX_CAPTIONS_PER_SAMPLE]}.
+   */
+  public void add(long timeUs, boolean isDecodeOnly, int[] sampleCaptions, int captionCount) {
+    Assertions.checkArgument(captionCount > 0 && captionCount <= MAX_CAPTIONS_PER_SAMPLE);
+    if (size == capacity) {
+      grow();
+    }
+    int slot = freeSlots[--freeSlotCount];
+    timesUs[slot] = timeUs;
+    decodeOnly[slot] = isDecodeOnly;
+    captionCounts[slot] = captionCount;
+    System.arraycopy(sampleCaptions, 0, captions, slot * MAX_CAPTIONS_PER_SAMPLE, captionCount);
+    int index = size;
+    while (index > 0) {
+      int previousSlot = slotOrder[(head + index - 1) % capacity];
+      if (timesUs[previousSlot] <= timeUs) {
+        break;
+      }
+      slotOrder[(head + index) % capacity] = previousSlot;
+      index--;
+    }
+    slotOrder[(head + index) % capacity] = slot;
+    size++;
+  }
+
+  /**
+   * Returns whether the queue is empty.
+   */
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Returns the time of the first sample. Must not be called if the queue is empty.
+   */
+  public long getFirstTimeUs() {
+    return timesUs[slotOrder[head]];
+  }
+
+  /**
+   * Returns whether the first sample is decode only. Must not be called if the queue is empty.
+   */
+  public boolean isFirstDecodeOnly() {
+    return decodeOnly[slotOrder[head]];
+  }
+
+  /**
+   * Returns the number of packed captions in the first sample. Must not be called if the queue is
+   * empty.
+   */
+  public int getFirstCaptionCount() {
+    return captionCounts[slotOrder[head]];
+  }
+
+  /**
+   * Returns a packed caption of the first sample. Must not be called if the queue is empty.
+   *
+   * @param index The index of the caption, which must be less than
+   *     {@link #getFirstCaptionCount()}.
+   * @return The packed caption.
+   */
+  public int getFirstCaption(int index) {
+    return captions[slotOrder[head] * MAX_CAPTIONS_PER_SAMPLE + index];
+  }
+
+  /**
+   * Removes the first sample. Must not be called if the queue is empty.
+   */
+  public void removeFirst() {
+    freeSlots[freeSlotCount++] = slotOrder[head];
+    head = (head + 1) % capacity;
+    size--;
+  }
+
+  /**
+   * Removes all samples.
+   */
+  public void clear() {
+    for (int i = 0; i < capacity; i++) {
+      freeSlots[i] = capacity - 1 - i;
+    }
+    freeSlotCount = capacity;
+    head = 0;
+    size = 0;
+  }
+
+  /**
+   * Doubles the capacity of the queue. Must only be called when the queue is full.
+   */
+  private void grow() {
+    int newCapacity = capacity * 2;
+    int[] newSlotOrder = new int[newCapacity];
+    for (int i = 0; i < size; i++) {
+      newSlotOrder[i] = slotOrder[(head + i) % capacity];
+    }
+    slotOrder = newSlotOrder;
+    head = 0;
+    timesUs = Arrays.copyOf(timesUs, newCapacity);
+    decodeOnly = Arrays.copyOf(decodeOnly, newCapacity);
+    captionCounts = Arrays.copyOf(captionCounts, newCapacity);
+    captions = Arrays.copyOf(captions, newCapacity * MAX_CAPTIONS_PER_SAMPLE);
+    // Every existing slot is in use, so only the new slots are free.
+    freeSlots = new int[newCapacity];
+    freeSlotCount = 0;
+    for (int slot = newCapacity - 1; slot >= capacity; slot--) {
+      freeSlots[freeSlotCount++] = slot;
+    }
+    capacity = newCapacity;
+  }
+
+}
@@ -20,8 +20,6 @@ import com.google.android.exoplayer.util.MimeTypes;
 import com.google.android.exoplayer.util.ParsableBitArray;
 import com.google.android.exoplayer.util.ParsableByteArray;
 
-import java.util.ArrayList;
-
 /**
  * Facilitates the extraction and parsing of EIA-608 (a.k.a. "line 21 captions" and "CEA-608")
  * Closed Captions from the SEI data block from H.264.
@@ -34,6 +32,9 @@ public class Eia608Parser {
   private static final int USER_ID = 0x47413934; // "GA94"
   private static final int USER_DATA_TYPE_CODE = 0x3;
 
+  private static final int BACKSPACE = ClosedCaptionCtrl.pack((byte) 0x14,
+      ClosedCaptionCtrl.BACKSPACE);
+
   // Basic North American 608 CC char set, mostly ASCII. Indexed by (char-0x20).
   private static final int[] BASIC_CHARACTER_SET = new int[] {
     0x20, 0x21, 0x22, 0x23, 0x24, 0x25, 0x26, 0x27,     //   ! " # $ % & '
@@ -103,26 +104,29 @@ public class Eia608Parser {
   };
 
   private final ParsableBitArray seiBuffer;
-  private final StringBuilder stringBuilder;
-  private final ArrayList<ClosedCaption> captions;
 
   /* package */ Eia608Parser() {
     seiBuffer = new ParsableBitArray();
-    stringBuilder = new StringBuilder();
-    captions = new ArrayList<>();
   }
 
   /* package */ boolean canParse(String mimeType) {
     return mimeType.equals(MimeTypes.APPLICATION_EIA608);
   }
 
-  /* package */ ClosedCaptionList parse(SampleHolder sampleHolder) {
+  /**
+   * Parses the captions in a sample, packing them as described in {@link ClosedCaptionCtrl}.
+   *
+   * @param sampleHolder The sample.
+   * @param captions An array of at least {@link ClosedCaptionQueue#MAX_CAPTIONS_PER_SAMPLE} ints,
+   *     into which the packed captions are written.
+   * @return The number of packed captions written.
+   */
+  /* package */ int parse(SampleHolder sampleHolder, int[] captions) {
     if (sampleHolder.size < 10) {
-      return null;
+      return 0;
     }
 
-    captions.clear();
-    stringBuilder.setLength(0);
+    int captionCount = 0;
     seiBuffer.reset(sampleHolder.data.array());
 
     // country_code (8) + provider_code (16) + user_identifier (32) + user_data_type_code (8) +
@@ -157,7 +161,7 @@ public class Eia608Parser {
       // ccData2 - P|0|1|1|X|X|X|X
       if ((ccData1 == 0x11 || ccData1 == 0x19)
           && ((ccData2 & 0x70) == 0x30)) {
-        stringBuilder.append(getSpecialChar(ccData2));
+        captions[captionCount++] = getSpecialChar(ccData2);
         continue;
       }
 
@@ -165,8 +169,9 @@ public class Eia608Parser {
       // ccData2 - P|0|1|X|X|X|X|X
       if ((ccData1 == 0x12 || ccData1 == 0x1A)
           && ((ccData2 & 0x60) == 0x20)) {
-        backspace(); // Remove standard equivalent of the special extended char.
-        stringBuilder.append(getExtendedEsFrChar(ccData2));
+        // Remove standard equivalent of the special extended char.
+        captions[captionCount++] = BACKSPACE;
+        captions[captionCount++] = getExtendedEsFrChar(ccData2);
         continue;
       }
 
@@ -174,33 +179,26 @@ public class Eia608Parser {
       // ccData2 - P|0|1|X|X|X|X|X
       if ((ccData1 == 0x13 || ccData1 == 0x1B)
           && ((ccData2 & 0x60) == 0x20)) {
-        backspace(); // Remove standard equivalent of the special extended char.
-        stringBuilder.append(getExtendedPtDeChar(ccData2));
+        // Remove standard equivalent of the special extended char.
+        captions[captionCount++] = BACKSPACE;
+        captions[captionCount++] = getExtendedPtDeChar(ccData2);
         continue;
       }
 
       // Control character.
       if (ccData1 < 0x20) {
-        addCtrl(ccData1, ccData2);
+        captions[captionCount++] = ClosedCaptionCtrl.pack(ccData1, ccData2);
         continue;
       }
 
       // Basic North American character set.
-      stringBuilder.append(getChar(ccData1));
+      captions[captionCount++] = getChar(ccData1);
       if (ccData2 >= 0x20) {
-        stringBuilder.append(getChar(ccData2));
+        captions[captionCount++] = getChar(ccData2);
       }
     }
 
-    addBufferedText();
-
-    if (captions.isEmpty()) {
-      return null;
-    }
-
-    ClosedCaption[] captionArray = new ClosedCaption[captions.size()];
-    captions.toArray(captionArray);
-    return new ClosedCaptionList(sampleHolder.timeUs, sampleHolder.isDecodeOnly(), captionArray);
+    return captionCount;
   }
 
   private static char getChar(byte ccData) {
@@ -223,22 +221,6 @@ public class Eia608Parser {
     return (char) SPECIAL_PT_DE_CHARACTER_SET[index];
   }
 
-  private void addBufferedText() {
-    if (stringBuilder.length() > 0) {
-      captions.add(new ClosedCaptionText(stringBuilder.toString()));
-      stringBuilder.setLength(0);
-    }
-  }
-
-  private void addCtrl(byte ccData1, byte ccData2) {
-    addBufferedText();
-    captions.add(new ClosedCaptionCtrl(ccData1, ccData2));
-  }
-
-  private void backspace() {
-    addCtrl((byte) 0x14, ClosedCaptionCtrl.BACKSPACE);
-  }
-
   /**
    * Inspects an sei message to determine whether it contains EIA-608.
    * <p>
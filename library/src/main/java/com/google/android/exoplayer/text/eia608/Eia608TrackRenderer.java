@@ -34,7 +34,6 @@ import android.os.Message;
 
 import java.io.IOException;
 import java.util.Collections;
-import java.util.TreeSet;
 
 /**
  * A {@link TrackRenderer} for EIA-608 closed captions in a media stream.
@@ -60,7 +59,8 @@ public class Eia608TrackRenderer extends TrackRenderer implements Callback {
   private final MediaFormatHolder formatHolder;
   private final SampleHolder sampleHolder;
   private final StringBuilder captionStringBuilder;
-  private final TreeSet<ClosedCaptionList> pendingCaptionLists;
+  private final int[] sampleCaptions;
+  private final ClosedCaptionQueue pendingCaptions;
 
   private int trackIndex;
   private boolean inputStreamEnded;
@@ -88,7 +88,8 @@ public class Eia608TrackRenderer extends TrackRenderer implements Callback {
     formatHolder = new MediaFormatHolder();
     sampleHolder = new SampleHolder(SampleHolder.BUFFER_REPLACEMENT_MODE_NORMAL);
     captionStringBuilder = new StringBuilder();
-    pendingCaptionLists = new TreeSet<>();
+    sampleCaptions = new int[ClosedCaptionQueue.MAX_CAPTIONS_PER_SAMPLE];
+    pendingCaptions = new ClosedCaptionQueue();
   }
 
   @Override
@@ -124,7 +125,7 @@ public class Eia608TrackRenderer extends TrackRenderer implements Callback {
 
   private void seekToInternal() {
     inputStreamEnded = false;
-    pendingCaptionLists.clear();
+    pendingCaptions.clear();
     clearPendingSample();
     captionRowCount = DEFAULT_CAPTIONS_ROW_COUNT;
     setCaptionMode(CC_MODE_UNKNOWN);
@@ -161,16 +162,17 @@ public class Eia608TrackRenderer extends TrackRenderer implements Callback {
       }
     }
 
-    while (!pendingCaptionLists.isEmpty()) {
-      if (pendingCaptionLists.first().timeUs > positionUs) {
-        // We're too early to render any of the pending caption lists.
+    while (!pendingCaptions.isEmpty()) {
+      if (pendingCaptions.getFirstTimeUs() > positionUs) {
+        // We're too early to render any of the pending captions.
         return;
       }
-      // Remove and consume the next caption list.
-      ClosedCaptionList nextCaptionList = pendingCaptionLists.pollFirst();
-      consumeCaptionList(nextCaptionList);
-      // Update the renderer, unless the caption list was marked for decoding only.
-      if (!nextCaptionList.decodeOnly) {
+      // Consume and remove the captions of the next sample.
+      boolean decodeOnly = pendingCaptions.isFirstDecodeOnly();
+      consumeFirstCaptions();
+      pendingCaptions.removeFirst();
+      // Update the renderer, unless the sample was marked for decoding only.
+      if (!decodeOnly) {
         invokeRenderer(caption);
       }
     }
@@ -238,30 +240,29 @@ public class Eia608TrackRenderer extends TrackRenderer implements Callback {
       // We're too early to parse the sample.
       return;
     }
-    ClosedCaptionList holder = eia608Parser.parse(sampleHolder);
+    long sampleTimeUs = sampleHolder.timeUs;
+    boolean sampleDecodeOnly = sampleHolder.isDecodeOnly();
+    int captionCount = eia608Parser.parse(sampleHolder, sampleCaptions);
     clearPendingSample();
-    if (holder != null) {
-      pendingCaptionLists.add(holder);
+    if (captionCount > 0) {
+      pendingCaptions.add(sampleTimeUs, sampleDecodeOnly, sampleCaptions, captionCount);
     }
   }
 
-  private void consumeCaptionList(ClosedCaptionList captionList) {
-    int captionBufferSize = captionList.captions.length;
-    if (captionBufferSize == 0) {
-      return;
-    }
-
-    for (int i = 0; i < captionBufferSize; i++) {
-      ClosedCaption caption = captionList.captions[i];
-      if (caption.type == ClosedCaption.TYPE_CTRL) {
-        ClosedCaptionCtrl captionCtrl = (ClosedCaptionCtrl) caption;
-        if (captionCtrl.isMiscCode()) {
-          handleMiscCode(captionCtrl);
-        } else if (captionCtrl.isPreambleAddressCode()) {
+  private void consumeFirstCaptions() {
+    int captionCount = pendingCaptions.getFirstCaptionCount();
+    for (int i = 0; i < captionCount; i++) {
+      int packedCaption = pendingCaptions.getFirstCaption(i);
+      if (ClosedCaptionCtrl.isCtrl(packedCaption)) {
+        byte cc1 = ClosedCaptionCtrl.getCc1(packedCaption);
+        byte cc2 = ClosedCaptionCtrl.getCc2(packedCaption);
+        if (ClosedCaptionCtrl.isMiscCode(cc1, cc2)) {
+          handleMiscCode(cc2);
+        } else if (ClosedCaptionCtrl.isPreambleAddressCode(cc1, cc2)) {
           handlePreambleAddressCode();
         }
       } else {
-        handleText((ClosedCaptionText) caption);
+        handleChar((char) packedCaption);
       }
     }
 
@@ -270,14 +271,14 @@ public class Eia608TrackRenderer extends TrackRenderer implements Callback {
     }
   }
 
-  private void handleText(ClosedCaptionText captionText) {
+  private void handleChar(char c) {
     if (captionMode != CC_MODE_UNKNOWN) {
-      captionStringBuilder.append(captionText.text);
+      captionStringBuilder.append(c);
     }
   }
 
-  private void handleMiscCode(ClosedCaptionCtrl captionCtrl) {
-    switch (captionCtrl.cc2) {
+  private void handleMiscCode(byte cc2) {
+    switch (cc2) {
       case ClosedCaptionCtrl.ROLL_UP_CAPTIONS_2_ROWS:
         captionRowCount = 2;
         setCaptionMode(CC_MODE_ROLL_UP);
@@ -302,7 +303,7 @@ public class Eia608TrackRenderer extends TrackRenderer implements Callback {
       return;
     }
 
-    switch (captionCtrl.cc2) {
+    switch (cc2) {
       case ClosedCaptionCtrl.ERASE_DISPLAYED_MEMORY:
         caption = null;
         if (captionMode == CC_MODE_ROLL_UP || captionMode == CC_MODE_PAINT_ON) {
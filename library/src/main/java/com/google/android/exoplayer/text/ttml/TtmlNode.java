@@ -15,6 +15,8 @@
  */
 package com.google.android.exoplayer.text.ttml;
 
+import com.google.android.exoplayer.util.IntervalTree;
+
 import android.text.SpannableStringBuilder;
 
 import java.util.ArrayList;
@@ -45,6 +47,12 @@ import java.util.TreeSet;
   public static final String TAG_SMPTE_DATA = "smpte:data";
   public static final String TAG_SMPTE_INFORMATION = "smpte:information";
 
+  /**
+   * The minimum number of children for which {@link #buildChildIndices()} indexes a node's
+   * children. Scanning fewer children is cheaper than querying an index.
+   */
+  private static final int MIN_INDEXED_CHILD_COUNT = 16;
+
   public final String tag;
   public final String text;
   public final boolean isTextNode;
@@ -52,6 +60,7 @@ import java.util.TreeSet;
   public final long endTimeUs;
 
   private List<TtmlNode> children;
+  private IntervalTree childIndex;
 
   public static TtmlNode buildTextNode(String text) {
     return new TtmlNode(null, applyTextElementSpacePolicy(text), UNDEFINED_TIME, UNDEFINED_TIME);
@@ -94,6 +103,41 @@ import java.util.TreeSet;
     return children == null ? 0 : children.size();
   }
 
+  /**
+   * Indexes the children of this node and its descendants by the times at which they're active,
+   * so that {@link #getText(long)} only visits the children that contribute to the text. Must be
+   * called after the tree is complete, if at all.
+   */
+  public void buildChildIndices() {
+    int childCount = getChildCount();
+    for (int i = 0; i < childCount; i++) {
+      children.get(i).buildChildIndices();
+    }
+    if (childCount < MIN_INDEXED_CHILD_COUNT) {
+      return;
+    }
+    long[] childStartTimesUs = new long[childCount];
+    long[] childEndTimesUs = new long[childCount];
+    for (int i = 0; i < childCount; i++) {
+      TtmlNode child = children.get(i);
+      if (child.isTextNode || TAG_BR.equals(child.tag)) {
+        // Text and line breaks are included whenever their parent is active.
+        childStartTimesUs[i] = Long.MIN_VALUE;
+        childEndTimesUs[i] = Long.MAX_VALUE;
+      } else if (TAG_METADATA.equals(child.tag)) {
+        // Metadata is never included, which an empty interval represents.
+        childStartTimesUs[i] = 0;
+        childEndTimesUs[i] = 0;
+      } else {
+        childStartTimesUs[i] = child.startTimeUs == UNDEFINED_TIME ? Long.MIN_VALUE
+            : child.startTimeUs;
+        childEndTimesUs[i] = child.endTimeUs == UNDEFINED_TIME ? Long.MAX_VALUE
+            : child.endTimeUs;
+      }
+    }
+    childIndex = new IntervalTree(childStartTimesUs, childEndTimesUs);
+  }
+
   public long[] getEventTimesUs() {
     TreeSet<Long> eventTimeSet = new TreeSet<>();
     getEventTimes(eventTimeSet, false);
@@ -183,8 +227,15 @@ import java.util.TreeSet;
       // Do nothing.
     } else if (isActive(timeUs)) {
       boolean isPNode = TAG_P.equals(tag);
-      for (int i = 0; i < getChildCount(); ++i) {
-        getChild(i).getText(timeUs, builder, descendsPNode || isPNode);
+      if (childIndex != null) {
+        int[] activeChildIndices = childIndex.getIntervalsContaining(timeUs);
+        for (int i = 0; i < activeChildIndices.length; i++) {
+          getChild(activeChildIndices[i]).getText(timeUs, builder, descendsPNode || isPNode);
+        }
+      } else {
+        for (int i = 0; i < getChildCount(); ++i) {
+          getChild(i).getText(timeUs, builder, descendsPNode || isPNode);
+        }
       }
       if (isPNode) {
         endParagraph(builder);
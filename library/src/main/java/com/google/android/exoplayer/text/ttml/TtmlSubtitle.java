@@ -24,17 +24,26 @@ import java.util.List;
 
 /**
  * A representation of a TTML subtitle.
+ * <p>
+ * The text that is active at a given time is built from the nodes of the document, whose children
+ * are indexed by time so that inactive nodes aren't visited. The list returned by
+ * {@link #getCues(long)} is cached for each interval between successive event times.
  */
 public final class TtmlSubtitle implements Subtitle {
 
   private final TtmlNode root;
   private final long startTimeUs;
   private final long[] eventTimesUs;
+  // The list at index i applies from the event at index i - 1 to the event at index i.
+  private final List<Cue>[] cueListsByEventIndex;
 
+  @SuppressWarnings("unchecked")
   public TtmlSubtitle(TtmlNode root, long startTimeUs) {
     this.root = root;
     this.startTimeUs = startTimeUs;
     this.eventTimesUs = root.getEventTimesUs();
+    root.buildChildIndices();
+    cueListsByEventIndex = new List[eventTimesUs.length + 1];
   }
 
   @Override
@@ -65,13 +74,20 @@ public final class TtmlSubtitle implements Subtitle {
 
   @Override
   public List<Cue> getCues(long timeUs) {
-    CharSequence cueText = root.getText(timeUs - startTimeUs);
-    if (cueText == null) {
-      return Collections.<Cue>emptyList();
-    } else {
-      Cue cue = new Cue(cueText);
-      return Collections.singletonList(cue);
+    // The text only changes at event times, which are distinct. Nodes without times may be active
+    // before the first event, so the interval before it has its own list.
+    int eventIndex = Util.binarySearchFloor(eventTimesUs, timeUs - startTimeUs, true, false);
+    List<Cue> cueList = cueListsByEventIndex[eventIndex + 1];
+    if (cueList == null) {
+      CharSequence cueText = root.getText(timeUs - startTimeUs);
+      if (cueText == null) {
+        cueList = Collections.<Cue>emptyList();
+      } else {
+        cueList = Collections.singletonList(new Cue(cueText));
+      }
+      cueListsByEventIndex[eventIndex + 1] = cueList;
     }
+    return cueList;
   }
 
 }
@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer.text.webvtt;
+
+/**
+ * Lexes WebVTT cue timing lines of the form {@code start --> end [settings]} directly from their
+ * UTF-8 encoded bytes, without allocating.
+ * <p>
+ * Timestamps have the form {@code [hh:]mm:ss.ttt}, where the hours component may have any number
+ * of digits.
+ */
+/* package */ final class WebvttCueTimingLexer {
+
+  /**
+   * The line was lexed successfully.
+   */
+  public static final int RESULT_OK = 0;
+  /**
+   * The line doesn't start with a valid timestamp.
+   */
+  public static final int RESULT_INVALID_START_TIME = 1;
+  /**
+   * The start timestamp isn't followed by {@code -->} and a valid timestamp.
+   */
+  public static final int RESULT_INVALID_END_TIME = 2;
+
+  private static final int MAX_HOURS_DIGITS = 9;
+
+  /**
+   * The start time of the cue, in microseconds. Valid if {@link #lex(byte[], int, int)} returned
+   * {@link #RESULT_OK}.
+   */
+  public long startTimeUs;
+  /**
+   * The end time of the cue, in microseconds. Valid if {@link #lex(byte[], int, int)} returned
+   * {@link #RESULT_OK}.
+   */
+  public long endTimeUs;
+  /**
+   * The position at which the cue settings start, which is the end of the line if there are none.
+   * Valid if {@link #lex(byte[], int, int)} returned {@link #RESULT_OK}.
+   */
+  public int settingsPosition;
+
+  private byte[] data;
+  private int position;
+  private int limit;
+  private int digitCount;
+
+  /**
+   * Returns whether a line contains {@code -->}, which distinguishes cue timing lines from cue
+   * identifiers.
+   *
+   * @param data The data containing the line.
+   * @param position The position of the start of the line.
+   * @param limit The position of the end of the line.
+   * @return Whether the line contains {@code -->}.
+   */
+  public static boolean containsArrow(byte[] data, int position, int limit) {
+    for (int i = position; i < limit - 2; i++) {
+      if (data[i] == '-' && data[i + 1] == '-' && data[i + 2] == '>') {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Lexes a cue timing line.
+   *
+   * @param data The data containing the line.
+   * @param position The position of the start of the line.
+   * @param limit The position of the end of the line, excluding the line terminator.
+   * @return One of the {@code RESULT_*} constants.
+   */
+  public int lex(byte[] data, int position, int limit) {
+    this.data = data;
+    this.position = position;
+    this.limit = limit;
+    skipWhitespace();
+    startTimeUs = lexTimestampUs();
+    if (startTimeUs == -1) {
+      return RESULT_INVALID_START_TIME;
+    }
+    skipWhitespace();
+    if (limit - this.position < 3 || data[this.position] != '-' || data[this.position + 1] != '-'
+        || data[this.position + 2] != '>') {
+      return RESULT_INVALID_END_TIME;
+    }
+    this.position += 3;
+    skipWhitespace();
+    endTimeUs = lexTimestampUs();
+    if (endTimeUs == -1) {
+      return RESULT_INVALID_END_TIME;
+    }
+    settingsPosition = this.position;
+    this.data = null;
+    return RESULT_OK;
+  }
+
+  /**
+   * Lexes a timestamp at the current position.
+   *
+   * @return The timestamp in microseconds, or -1 if there isn't a valid timestamp at the current
+   *     position.
+   */
+  private long lexTimestampUs() {
+    long hours = 0;
+    long minutes = lexDigits();
+    int firstDigitCount = digitCount;
+    if (firstDigitCount == 0 || firstDigitCount > MAX_HOURS_DIGITS || !skip(':')) {
+      return -1;
+    }
+    long seconds = lexDigits();
+    if (digitCount != 2) {
+      return -1;
+    }
+    if (skip(':')) {
+      // The first component was the hours.
+      hours = minutes;
+      minutes = seconds;
+      seconds = lexDigits();
+      if (digitCount != 2) {
+        return -1;
+      }
+    } else if (firstDigitCount != 2) {
+      // The first component was the minutes, which must have exactly two digits.
+      return -1;
+    }
+    if (minutes > 59 || seconds > 59 || !skip('.')) {
+      return -1;
+    }
+    long milliseconds = lexDigits();
+    if (digitCount != 3) {
+      return -1;
+    }
+    return (((hours * 60 + minutes) * 60 + seconds) * 1000 + milliseconds) * 1000;
+  }
+
+  private long lexDigits() {
+    long value = 0;
+    int start = position;
+    while (position < limit && data[position] >= '0' && data[position] <= '9') {
+      value = value * 10 + (data[position++] - '0');
+    }
+    digitCount = position - start;
+    return value;
+  }
+
+  private boolean skip(char c) {
+    if (position < limit && data[position] == c) {
+      position++;
+      return true;
+    }
+    return false;
+  }
+
+  private void skipWhitespace() {
+    while (position < limit && (data[position] == ' ' || data[position] == '\t')) {
+      position++;
+    }
+  }
+
+}
@@ -25,11 +25,11 @@ import android.text.Html;
 import android.text.Layout.Alignment;
 import android.util.Log;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -52,25 +52,34 @@ public class WebvttParser implements SubtitleParser {
   private static final Pattern WEBVTT_METADATA_HEADER =
       Pattern.compile(WEBVTT_METADATA_HEADER_STRING);
 
-  private static final String WEBVTT_CUE_IDENTIFIER_STRING = "^(?!.*(-->)).*$";
-  private static final Pattern WEBVTT_CUE_IDENTIFIER =
-      Pattern.compile(WEBVTT_CUE_IDENTIFIER_STRING);
-
-  private static final String WEBVTT_TIMESTAMP_STRING = "(\\d+:)?[0-5]\\d:[0-5]\\d\\.\\d{3}";
-  private static final Pattern WEBVTT_TIMESTAMP = Pattern.compile(WEBVTT_TIMESTAMP_STRING);
-
-  private static final String WEBVTT_CUE_SETTING_STRING = "\\S*:\\S*";
-  private static final Pattern WEBVTT_CUE_SETTING = Pattern.compile(WEBVTT_CUE_SETTING_STRING);
-
   private static final Pattern MEDIA_TIMESTAMP_OFFSET =
       Pattern.compile(C.WEBVTT_EXO_HEADER_OFFSET + "\\-?\\d+");
   private static final Pattern MEDIA_TIMESTAMP = Pattern.compile("MPEGTS:\\d+");
 
-  private static final String NON_NUMERIC_STRING = ".*[^0-9].*";
+  private static final Charset UTF8 = Charset.forName(C.UTF8_NAME);
+
+  private static final int INITIAL_DATA_SIZE = 4096;
+  /**
+   * The size above which the buffer holding the input is released once the input is parsed, so
+   * that an unusually large input doesn't determine the memory held by the parser.
+   */
+  private static final int MAX_RETAINED_DATA_SIZE = 64 * 1024;
 
   private final StringBuilder textBuilder;
+  private final WebvttCueTimingLexer timingLexer;
 
   private final boolean strictParsing;
+  private final boolean incremental;
+
+  // The input, which is read in full and reused between calls to parse.
+  private byte[] data;
+  private int dataLength;
+  private int dataPosition;
+  // The bounds of the current line, excluding its terminator.
+  private int lineStart;
+  private int lineEnd;
+
+  private WebvttSubtitle lastSubtitle;
 
   /**
    * Equivalent to {@code WebvttParser(false)}.
@@ -86,22 +95,67 @@ public class WebvttParser implements SubtitleParser {
    *     {@link ParserException} will still be thrown when this is not possible.
    */
   public WebvttParser(boolean strictParsing) {
+    this(strictParsing, false);
+  }
+
+  /**
+   * @param strictParsing If true, {@link #parse(InputStream, String, long)} will throw a
+   *     {@link ParserException} if the stream contains invalid data. If false, the parser will
+   *     make a best effort to ignore minor errors in the stream. Note however that a
+   *     {@link ParserException} will still be thrown when this is not possible.
+   * @param incremental If true, the parser is expected to parse successive segments of a stream
+   *     (e.g. live HLS or DASH subtitle segments), and each subtitle it returns also contains the
+   *     cues of the previous one that haven't ended by its start time, excluding any that the new
+   *     segment repeats. If false, each subtitle contains only the cues of the parsed input.
+   */
+  public WebvttParser(boolean strictParsing, boolean incremental) {
     this.strictParsing = strictParsing;
+    this.incremental = incremental;
     textBuilder = new StringBuilder();
+    timingLexer = new WebvttCueTimingLexer();
+    data = new byte[INITIAL_DATA_SIZE];
   }
 
   @Override
   public WebvttSubtitle parse(InputStream inputStream, String inputEncoding, long startTimeUs)
       throws IOException {
+    try {
+      readInput(inputStream);
+      return parseInput(startTimeUs);
+    } finally {
+      if (data.length > MAX_RETAINED_DATA_SIZE) {
+        data = new byte[INITIAL_DATA_SIZE];
+      }
+    }
+  }
+
+  @Override
+  public boolean canParse(String mimeType) {
+    return MimeTypes.TEXT_VTT.equals(mimeType);
+  }
+
+  protected long getAdjustedStartTime(long startTimeUs) {
+    return startTimeUs;
+  }
+
+  protected void handleNoncompliantLine(String line) throws ParserException {
+    if (strictParsing) {
+      throw new ParserException("Unexpected line: " + line);
+    }
+  }
+
+  /**
+   * Parses the input that was read into {@link #data}.
+   */
+  private WebvttSubtitle parseInput(long startTimeUs) throws IOException {
     ArrayList<WebvttCue> subtitles = new ArrayList<>();
     long mediaTimestampUs = startTimeUs;
     long mediaTimestampOffsetUs = 0;
 
-    BufferedReader webvttData = new BufferedReader(new InputStreamReader(inputStream, C.UTF8_NAME));
     String line;
 
     // file should start with "WEBVTT" on the first line or "EXO-HEADER"
-    line = webvttData.readLine();
+    line = readLine();
     if (line == null) {
       throw new ParserException("Expected WEBVTT or EXO-HEADER. Got null");
     }
@@ -114,7 +168,7 @@ public class WebvttParser implements SubtitleParser {
       }
 
       // read the next line, which should now be WEBVTT
-      line = webvttData.readLine();
+      line = readLine();
       if (line == null) {
         throw new ParserException("Expected WEBVTT. Got null");
       }
@@ -126,7 +180,7 @@ public class WebvttParser implements SubtitleParser {
 
     // parse the remainder of the header
     while (true) {
-      line = webvttData.readLine();
+      line = readLine();
       if (line == null) {
         // we reached EOF before finishing the header
         throw new ParserException("Expected an empty line after webvtt header");
@@ -154,13 +208,15 @@ public class WebvttParser implements SubtitleParser {
     }
 
     // process the cues and text
-    while ((line = webvttData.readLine()) != null) {
+    while (nextLine()) {
+      if (lineStart == lineEnd) {
+        // skip any additional blank lines between cues
+        continue;
+      }
 
-      // parse the cue identifier (if present) {
-      Matcher matcher = WEBVTT_CUE_IDENTIFIER.matcher(line);
-      if (matcher.find()) {
-        // ignore the identifier (we currently don't use it) and read the next line
-        line = webvttData.readLine();
+      // parse the cue identifier (if present)
+      if (!WebvttCueTimingLexer.containsArrow(data, lineStart, lineEnd) && !nextLine()) {
+        throw new ParserException("Expected cue timing after identifier");
       }
 
       long startTime = Cue.UNSET_VALUE;
@@ -172,38 +228,47 @@ public class WebvttParser implements SubtitleParser {
       int size = Cue.UNSET_VALUE;
 
       // parse the cue timestamps
-      matcher = WEBVTT_TIMESTAMP.matcher(line);
-
-      // parse start timestamp
-      if (!matcher.find()) {
-        throw new ParserException("Expected cue start time: " + line);
-      } else {
-        startTime = parseTimestampUs(matcher.group()) + mediaTimestampUs;
-      }
-
-      // parse end timestamp
-      String endTimeString;
-      if (!matcher.find()) {
-        throw new ParserException("Expected cue end time: " + line);
-      } else {
-        endTimeString = matcher.group();
-        endTime = parseTimestampUs(endTimeString) + mediaTimestampUs;
+      int lexResult = timingLexer.lex(data, lineStart, lineEnd);
+      if (lexResult == WebvttCueTimingLexer.RESULT_INVALID_START_TIME) {
+        throw new ParserException("Expected cue start time: " + getLine());
+      } else if (lexResult == WebvttCueTimingLexer.RESULT_INVALID_END_TIME) {
+        throw new ParserException("Expected cue end time: " + getLine());
       }
+      startTime = timingLexer.startTimeUs + mediaTimestampUs;
+      endTime = timingLexer.endTimeUs + mediaTimestampUs;
 
       // parse the (optional) cue setting list
-      line = line.substring(line.indexOf(endTimeString) + endTimeString.length());
-      matcher = WEBVTT_CUE_SETTING.matcher(line);
-      while (matcher.find()) {
-        String match = matcher.group();
-        String[] parts = match.split(":", 2);
-        String name = parts[0];
-        String value = parts[1];
+      int settingStart = timingLexer.settingsPosition;
+      while (true) {
+        while (settingStart < lineEnd && isWhitespace(data[settingStart])) {
+          settingStart++;
+        }
+        if (settingStart == lineEnd) {
+          break;
+        }
+        int settingEnd = settingStart;
+        int separatorPosition = -1;
+        while (settingEnd < lineEnd && !isWhitespace(data[settingEnd])) {
+          if (separatorPosition == -1 && data[settingEnd] == ':') {
+            separatorPosition = settingEnd;
+          }
+          settingEnd++;
+        }
+        if (separatorPosition == -1) {
+          // not a setting
+          settingStart = settingEnd;
+          continue;
+        }
+        String name = new String(data, settingStart, separatorPosition - settingStart, UTF8);
+        String value = new String(data, separatorPosition + 1, settingEnd - separatorPosition - 1,
+            UTF8);
+        settingStart = settingEnd;
 
         try {
           if ("line".equals(name)) {
             if (value.endsWith("%")) {
               lineNum = parseIntPercentage(value);
-            } else if (value.matches(NON_NUMERIC_STRING)) {
+            } else if (containsNonDigit(value)) {
               Log.w(TAG, "Invalid line value: " + value);
             } else {
               lineNum = Integer.parseInt(value);
@@ -237,11 +302,11 @@ public class WebvttParser implements SubtitleParser {
 
       // parse text
       textBuilder.setLength(0);
-      while (((line = webvttData.readLine()) != null) && (!line.isEmpty())) {
+      while (nextLine() && lineStart != lineEnd) {
         if (textBuilder.length() > 0) {
           textBuilder.append("<br>");
         }
-        textBuilder.append(line.trim());
+        textBuilder.append(getLine().trim());
       }
       text = Html.fromHtml(textBuilder.toString());
 
@@ -249,22 +314,17 @@ public class WebvttParser implements SubtitleParser {
       subtitles.add(cue);
     }
 
-    return new WebvttSubtitle(subtitles, mediaTimestampUs);
-  }
-
-  @Override
-  public boolean canParse(String mimeType) {
-    return MimeTypes.TEXT_VTT.equals(mimeType);
-  }
-
-  protected long getAdjustedStartTime(long startTimeUs) {
-    return startTimeUs;
-  }
-
-  protected void handleNoncompliantLine(String line) throws ParserException {
-    if (strictParsing) {
-      throw new ParserException("Unexpected line: " + line);
+    WebvttSubtitle subtitle;
+    if (incremental && lastSubtitle != null && lastSubtitle.getStartTime() <= mediaTimestampUs) {
+      subtitle = new WebvttSubtitle(lastSubtitle, subtitles, mediaTimestampUs);
+    } else {
+      // either incremental parsing is disabled, or this is the first segment or follows a seek
+      subtitle = new WebvttSubtitle(subtitles, mediaTimestampUs);
     }
+    if (incremental) {
+      lastSubtitle = subtitle;
+    }
+    return subtitle;
   }
 
   private static int parseIntPercentage(String s) throws NumberFormatException {
@@ -273,7 +333,7 @@ public class WebvttParser implements SubtitleParser {
     }
 
     s = s.substring(0, s.length() - 1);
-    if (s.matches(NON_NUMERIC_STRING)) {
+    if (containsNonDigit(s)) {
       throw new NumberFormatException(s + " contains an invalid character");
     }
 
@@ -284,17 +344,69 @@ public class WebvttParser implements SubtitleParser {
     return value;
   }
 
-  private static long parseTimestampUs(String s) throws NumberFormatException {
-    if (!s.matches(WEBVTT_TIMESTAMP_STRING)) {
-      throw new NumberFormatException("has invalid format");
+  /**
+   * Reads the whole of the input into {@link #data}.
+   */
+  private void readInput(InputStream inputStream) throws IOException {
+    dataLength = 0;
+    dataPosition = 0;
+    int bytesRead;
+    while ((bytesRead = inputStream.read(data, dataLength, data.length - dataLength)) != -1) {
+      dataLength += bytesRead;
+      if (dataLength == data.length) {
+        data = Arrays.copyOf(data, data.length * 2);
+      }
     }
+  }
 
-    String[] parts = s.split("\\.", 2);
-    long value = 0;
-    for (String group : parts[0].split(":")) {
-      value = value * 60 + Long.parseLong(group);
+  /**
+   * Advances to the next line of the input, which may be terminated by {@code \n}, {@code \r\n} or
+   * {@code \r}, or by the end of the input.
+   *
+   * @return Whether there was a next line.
+   */
+  private boolean nextLine() {
+    if (dataPosition == dataLength) {
+      return false;
+    }
+    lineStart = dataPosition;
+    while (dataPosition < dataLength && data[dataPosition] != '\n' && data[dataPosition] != '\r') {
+      dataPosition++;
+    }
+    lineEnd = dataPosition;
+    if (dataPosition < dataLength && data[dataPosition++] == '\r' && dataPosition < dataLength
+        && data[dataPosition] == '\n') {
+      dataPosition++;
+    }
+    return true;
+  }
+
+  /**
+   * Returns the current line.
+   */
+  private String getLine() {
+    return new String(data, lineStart, lineEnd - lineStart, UTF8);
+  }
+
+  /**
+   * Advances to the next line of the input and returns it, or returns null if there isn't one.
+   */
+  private String readLine() {
+    return nextLine() ? getLine() : null;
+  }
+
+  private static boolean isWhitespace(byte b) {
+    return b == ' ' || b == '\t' || b == '\f' || b == 0x0B;
+  }
+
+  private static boolean containsNonDigit(String s) {
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c < '0' || c > '9') {
+        return true;
+      }
     }
-    return (value * 1000 + Long.parseLong(parts[1])) * 1000;
+    return false;
   }
 
 }
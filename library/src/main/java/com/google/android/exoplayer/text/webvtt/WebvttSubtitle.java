@@ -18,9 +18,11 @@ package com.google.android.exoplayer.text.webvtt;
 import com.google.android.exoplayer.text.Cue;
 import com.google.android.exoplayer.text.Subtitle;
 import com.google.android.exoplayer.util.Assertions;
+import com.google.android.exoplayer.util.IntervalTree;
 import com.google.android.exoplayer.util.Util;
 
 import android.text.SpannableStringBuilder;
+import android.text.TextUtils;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -29,33 +31,56 @@ import java.util.List;
 
 /**
  * A representation of a WebVTT subtitle.
+ * <p>
+ * The cues that are active at a given time are found using an {@link IntervalTree}, and the list
+ * returned by {@link #getCues(long)} is cached for each interval between successive event times.
  */
 public class WebvttSubtitle implements Subtitle {
 
   private final List<WebvttCue> cues;
-  private final int numCues;
   private final long startTimeUs;
-  private final long[] cueTimesUs;
   private final long[] sortedCueTimesUs;
+  private final IntervalTree cueIndex;
+  private final List<Cue>[] cueListsByEventIndex;
 
   /**
    * @param cues A list of the cues in this subtitle.
    * @param startTimeUs The start time of the subtitle.
    */
+  @SuppressWarnings("unchecked")
   public WebvttSubtitle(List<WebvttCue> cues, long startTimeUs) {
     this.cues = cues;
     this.startTimeUs = startTimeUs;
 
-    numCues = cues.size();
-    cueTimesUs = new long[2 * numCues];
+    int numCues = cues.size();
+    long[] cueStartTimesUs = new long[numCues];
+    long[] cueEndTimesUs = new long[numCues];
+    sortedCueTimesUs = new long[2 * numCues];
     for (int cueIndex = 0; cueIndex < numCues; cueIndex++) {
       WebvttCue cue = cues.get(cueIndex);
-      int arrayIndex = cueIndex * 2;
-      cueTimesUs[arrayIndex] = cue.startTime;
-      cueTimesUs[arrayIndex + 1] = cue.endTime;
+      cueStartTimesUs[cueIndex] = cue.startTime;
+      cueEndTimesUs[cueIndex] = cue.endTime;
+      sortedCueTimesUs[cueIndex * 2] = cue.startTime;
+      sortedCueTimesUs[cueIndex * 2 + 1] = cue.endTime;
     }
-    sortedCueTimesUs = Arrays.copyOf(cueTimesUs, cueTimesUs.length);
     Arrays.sort(sortedCueTimesUs);
+    cueIndex = new IntervalTree(cueStartTimesUs, cueEndTimesUs);
+    cueListsByEventIndex = new List[sortedCueTimesUs.length];
+  }
+
+  /**
+   * Constructs a subtitle for a segment of a stream that follows the segment of {@code previous}.
+   * <p>
+   * The subtitle contains the cues of {@code previous} that haven't ended by {@code startTimeUs},
+   * followed by {@code cues}. Cues of {@code previous} that are repeated in {@code cues} (i.e. that
+   * have the same times and text) are only included once.
+   *
+   * @param previous The subtitle of the previous segment.
+   * @param cues A list of the cues in the new segment.
+   * @param startTimeUs The start time of the subtitle.
+   */
+  public WebvttSubtitle(WebvttSubtitle previous, List<WebvttCue> cues, long startTimeUs) {
+    this(appendCues(previous.cues, cues, startTimeUs), startTimeUs);
   }
 
   @Override
@@ -92,31 +117,71 @@ public class WebvttSubtitle implements Subtitle {
 
   @Override
   public List<Cue> getCues(long timeUs) {
-    ArrayList<Cue> list = null;
+    // The active cues only change at event times, so the list for the interval between the event
+    // at or before timeUs and the next event applies. Where event times are equal, any of their
+    // indices may be found, but the lists cached at those indices are the same.
+    int eventIndex = Util.binarySearchFloor(sortedCueTimesUs, timeUs, true, false);
+    if (eventIndex < 0) {
+      // No cues start before the first event.
+      return Collections.<Cue>emptyList();
+    }
+    List<Cue> cueList = cueListsByEventIndex[eventIndex];
+    if (cueList == null) {
+      cueList = buildCues(timeUs);
+      cueListsByEventIndex[eventIndex] = cueList;
+    }
+    return cueList;
+  }
+
+  private static List<WebvttCue> appendCues(List<WebvttCue> previousCues, List<WebvttCue> cues,
+      long startTimeUs) {
+    ArrayList<WebvttCue> appendedCues = new ArrayList<>(cues.size() + 1);
+    for (int i = 0; i < previousCues.size(); i++) {
+      WebvttCue previousCue = previousCues.get(i);
+      if (previousCue.endTime > startTimeUs && !containsRepeat(cues, previousCue)) {
+        appendedCues.add(previousCue);
+      }
+    }
+    appendedCues.addAll(cues);
+    return appendedCues;
+  }
+
+  private static boolean containsRepeat(List<WebvttCue> cues, WebvttCue cue) {
+    for (int i = 0; i < cues.size(); i++) {
+      WebvttCue other = cues.get(i);
+      if (other.startTime == cue.startTime && other.endTime == cue.endTime
+          && TextUtils.equals(other.text, cue.text)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private List<Cue> buildCues(long timeUs) {
+    int[] activeCueIndices = cueIndex.getIntervalsContaining(timeUs);
+    if (activeCueIndices.length == 0) {
+      return Collections.<Cue>emptyList();
+    }
+    ArrayList<Cue> list = new ArrayList<>();
     WebvttCue firstNormalCue = null;
     SpannableStringBuilder normalCueTextBuilder = null;
 
-    for (int i = 0; i < numCues; i++) {
-      if ((cueTimesUs[i * 2] <= timeUs) && (timeUs < cueTimesUs[i * 2 + 1])) {
-        if (list == null) {
-          list = new ArrayList<>();
-        }
-        WebvttCue cue = cues.get(i);
-        if (cue.isNormalCue()) {
-          // we want to merge all of the normal cues into a single cue to ensure they are drawn
-          // correctly (i.e. don't overlap) and to emulate roll-up, but only if there are multiple
-          // normal cues, otherwise we can just append the single normal cue
-          if (firstNormalCue == null) {
-            firstNormalCue = cue;
-          } else if (normalCueTextBuilder == null) {
-            normalCueTextBuilder = new SpannableStringBuilder();
-            normalCueTextBuilder.append(firstNormalCue.text).append("\n").append(cue.text);
-          } else {
-            normalCueTextBuilder.append("\n").append(cue.text);
-          }
+    for (int i = 0; i < activeCueIndices.length; i++) {
+      WebvttCue cue = cues.get(activeCueIndices[i]);
+      if (cue.isNormalCue()) {
+        // we want to merge all of the normal cues into a single cue to ensure they are drawn
+        // correctly (i.e. don't overlap) and to emulate roll-up, but only if there are multiple
+        // normal cues, otherwise we can just append the single normal cue
+        if (firstNormalCue == null) {
+          firstNormalCue = cue;
+        } else if (normalCueTextBuilder == null) {
+          normalCueTextBuilder = new SpannableStringBuilder();
+          normalCueTextBuilder.append(firstNormalCue.text).append("\n").append(cue.text);
         } else {
-          list.add(cue);
+          normalCueTextBuilder.append("\n").append(cue.text);
         }
+      } else {
+        list.add(cue);
       }
     }
     if (normalCueTextBuilder != null) {
@@ -127,11 +192,7 @@ public class WebvttSubtitle implements Subtitle {
       list.add(firstNormalCue);
     }
 
-    if (list != null) {
-      return list;
-    } else {
-      return Collections.<Cue>emptyList();
-    }
+    return Collections.unmodifiableList(list);
   }
 
 }
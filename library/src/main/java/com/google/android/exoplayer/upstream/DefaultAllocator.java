@@ -16,6 +16,7 @@
 package com.google.android.exoplayer.upstream;
 
 import com.google.android.exoplayer.util.Assertions;
+import com.google.android.exoplayer.util.MetricsRegistry;
 import com.google.android.exoplayer.util.Util;
 
 import java.util.Arrays;
@@ -27,6 +28,13 @@ public final class DefaultAllocator implements Allocator {
 
   private static final int AVAILABLE_EXTRA_CAPACITY = 100;
 
+  private static final MetricsRegistry.Counter ALLOCATED_BYTES_COUNTER =
+      MetricsRegistry.getDefault().getCounter("allocator.allocated_bytes");
+  private static final MetricsRegistry.Counter CREATED_BYTES_COUNTER =
+      MetricsRegistry.getDefault().getCounter("allocator.created_bytes");
+  private static final MetricsRegistry.Histogram BLOCKED_TIME_HISTOGRAM =
+      MetricsRegistry.getDefault().getHistogram("allocator.blocked_time_us");
+
   private final int individualAllocationSize;
   private final byte[] initialAllocationBlock;
 
@@ -77,7 +85,9 @@ public final class DefaultAllocator implements Allocator {
       availableAllocations[availableCount] = null;
     } else {
       allocation = new Allocation(new byte[individualAllocationSize], 0);
+      CREATED_BYTES_COUNTER.add(individualAllocationSize);
     }
+    ALLOCATED_BYTES_COUNTER.add(individualAllocationSize);
     return allocation;
   }
 
@@ -145,8 +155,16 @@ public final class DefaultAllocator implements Allocator {
   @Override
   public synchronized void blockWhileTotalBytesAllocatedExceeds(int limit)
       throws InterruptedException {
-    while (getTotalBytesAllocated() > limit) {
-      wait();
+    if (getTotalBytesAllocated() <= limit) {
+      return;
+    }
+    long blockStartTimeNs = System.nanoTime();
+    try {
+      while (getTotalBytesAllocated() > limit) {
+        wait();
+      }
+    } finally {
+      BLOCKED_TIME_HISTOGRAM.record((System.nanoTime() - blockStartTimeNs) / 1000);
     }
   }
 
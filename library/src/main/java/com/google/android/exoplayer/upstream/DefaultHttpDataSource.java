@@ -17,6 +17,7 @@ package com.google.android.exoplayer.upstream;
 
 import com.google.android.exoplayer.C;
 import com.google.android.exoplayer.util.Assertions;
+import com.google.android.exoplayer.util.MetricsRegistry;
 import com.google.android.exoplayer.util.Predicate;
 import com.google.android.exoplayer.util.Util;
 
@@ -62,6 +63,10 @@ public class DefaultHttpDataSource implements HttpDataSource {
   private static final Pattern CONTENT_RANGE_HEADER =
       Pattern.compile("^bytes (\\d+)-(\\d+)/(\\d+)$");
   private static final AtomicReference<byte[]> skipBufferReference = new AtomicReference<>();
+  private static final MetricsRegistry.Histogram CONNECT_TIME_HISTOGRAM =
+      MetricsRegistry.getDefault().getHistogram("http.connect_time_us");
+  private static final MetricsRegistry.Histogram TIME_TO_FIRST_BYTE_HISTOGRAM =
+      MetricsRegistry.getDefault().getHistogram("http.time_to_first_byte_us");
 
   private final boolean allowCrossProtocolRedirects;
   private final int connectTimeoutMillis;
@@ -186,12 +191,14 @@ public class DefaultHttpDataSource implements HttpDataSource {
     this.dataSpec = dataSpec;
     this.bytesRead = 0;
     this.bytesSkipped = 0;
+    long openStartTimeNs = System.nanoTime();
     try {
       connection = makeConnection(dataSpec);
     } catch (IOException e) {
       throw new HttpDataSourceException("Unable to connect to " + dataSpec.uri.toString(), e,
           dataSpec);
     }
+    CONNECT_TIME_HISTOGRAM.record((System.nanoTime() - openStartTimeNs) / 1000);
 
     int responseCode;
     try {
@@ -201,6 +208,7 @@ public class DefaultHttpDataSource implements HttpDataSource {
       throw new HttpDataSourceException("Unable to connect to " + dataSpec.uri.toString(), e,
           dataSpec);
     }
+    TIME_TO_FIRST_BYTE_HISTOGRAM.record((System.nanoTime() - openStartTimeNs) / 1000);
 
     // Check for a valid response code.
     if (responseCode < 200 || responseCode > 299) {
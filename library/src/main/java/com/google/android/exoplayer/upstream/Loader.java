@@ -16,13 +16,15 @@
 package com.google.android.exoplayer.upstream;
 
 import com.google.android.exoplayer.util.Assertions;
+import com.google.android.exoplayer.util.HeadlessMessageLoop;
+import com.google.android.exoplayer.util.LooperMessageLoop;
+import com.google.android.exoplayer.util.MessageLoop;
+import com.google.android.exoplayer.util.MessageLoopUtil;
+import com.google.android.exoplayer.util.MetricsRegistry;
 import com.google.android.exoplayer.util.TraceUtil;
 import com.google.android.exoplayer.util.Util;
 
-import android.annotation.SuppressLint;
-import android.os.Handler;
 import android.os.Looper;
-import android.os.Message;
 import android.util.Log;
 
 import java.io.IOException;
@@ -103,8 +105,21 @@ public final class Loader {
   private static final int MSG_IO_EXCEPTION = 1;
   private static final int MSG_FATAL_ERROR = 2;
 
+  private static final MetricsRegistry.Histogram LOAD_TIME_HISTOGRAM =
+      MetricsRegistry.getDefault().getHistogram("loader.load_time_us");
+  private static final MetricsRegistry.Counter COMPLETED_LOAD_COUNTER =
+      MetricsRegistry.getDefault().getCounter("loader.completed_loads");
+  private static final MetricsRegistry.Counter CANCELED_LOAD_COUNTER =
+      MetricsRegistry.getDefault().getCounter("loader.canceled_loads");
+  private static final MetricsRegistry.Counter FAILED_LOAD_COUNTER =
+      MetricsRegistry.getDefault().getCounter("loader.failed_loads");
+
   private final ExecutorService downloadExecutorService;
+  private final MessageLoop callbackLoop;
+  private final MessageLoop.Callback taskCallback;
 
+  private MessageLoop senderLoop;
+  private MessageLoop.Sender sender;
   private LoadTask currentTask;
   private boolean loading;
 
@@ -112,21 +127,40 @@ public final class Loader {
    * @param threadName A name for the loader's thread.
    */
   public Loader(String threadName) {
+    this(threadName, null);
+  }
+
+  /**
+   * @param threadName A name for the loader's thread.
+   * @param callbackLoop The loop on which {@link #startLoading(Loadable, Callback)} invokes
+   *     callbacks. If null, callbacks are invoked on the loop running on the thread that starts
+   *     each load.
+   */
+  public Loader(String threadName, MessageLoop callbackLoop) {
     this.downloadExecutorService = Util.newSingleThreadExecutor(threadName);
+    this.callbackLoop = callbackLoop;
+    taskCallback = new MessageLoop.Callback() {
+      @Override
+      public void handleMessage(int what, int arg1, int arg2, Object obj) {
+        currentTask.handleMessage(what, obj);
+      }
+    };
   }
 
   /**
-   * Invokes {@link #startLoading(Looper, Loadable, Callback)}, using the {@link Looper}
-   * associated with the calling thread.
+   * Invokes {@link #startLoading(MessageLoop, Loadable, Callback)}, using the loop passed to the
+   * constructor. If no loop was passed, the loop running on the calling thread is used, as
+   * returned by {@link MessageLoopUtil#myLoop()}.
    *
    * @param loadable The {@link Loadable} to load.
    * @param callback A callback to invoke when the load ends.
-   * @throws IllegalStateException If the calling thread does not have an associated {@link Looper}.
+   * @throws IllegalStateException If no loop was passed to the constructor, and the calling thread
+   *     has neither a {@link HeadlessMessageLoop} nor an associated {@link Looper}.
    */
   public void startLoading(Loadable loadable, Callback callback) {
-    Looper myLooper = Looper.myLooper();
-    Assertions.checkState(myLooper != null);
-    startLoading(myLooper, loadable, callback);
+    MessageLoop loop = callbackLoop != null ? callbackLoop : MessageLoopUtil.myLoop();
+    Assertions.checkState(loop != null);
+    startLoading(loop, loadable, callback);
   }
 
   /**
@@ -140,9 +174,32 @@ public final class Loader {
    * @param callback A callback to invoke when the load ends.
    */
   public void startLoading(Looper looper, Loadable loadable, Callback callback) {
+    MessageLoop loop = senderLoop instanceof LooperMessageLoop
+        && ((LooperMessageLoop) senderLoop).getLooper() == looper ? senderLoop
+        : new LooperMessageLoop(looper);
+    startLoading(loop, loadable, callback);
+  }
+
+  /**
+   * Start loading a {@link Loadable}.
+   * <p>
+   * A {@link Loader} instance can only load one {@link Loadable} at a time, and so this method
+   * must not be called when another load is in progress.
+   *
+   * @param loop The loop on which the callback should be invoked.
+   * @param loadable The {@link Loadable} to load.
+   * @param callback A callback to invoke when the load ends.
+   */
+  public void startLoading(MessageLoop loop, Loadable loadable, Callback callback) {
     Assertions.checkState(!loading);
     loading = true;
-    currentTask = new LoadTask(looper, loadable, callback);
+    if (loop != senderLoop) {
+      // Messages are sent through a single sender for as long as loads are started with the same
+      // loop. Only one load is in progress at a time, so its messages are handled by currentTask.
+      senderLoop = loop;
+      sender = loop.createSender(taskCallback);
+    }
+    currentTask = new LoadTask(sender, loadable, callback);
     downloadExecutorService.submit(currentTask);
   }
 
@@ -177,18 +234,18 @@ public final class Loader {
     downloadExecutorService.shutdown();
   }
 
-  @SuppressLint("HandlerLeak")
-  private final class LoadTask extends Handler implements Runnable {
+  private final class LoadTask implements Runnable {
 
     private static final String TAG = "LoadTask";
 
     private final Loadable loadable;
     private final Loader.Callback callback;
+    private final MessageLoop.Sender sender;
 
     private volatile Thread executorThread;
 
-    public LoadTask(Looper looper, Loadable loadable, Loader.Callback callback) {
-      super(looper);
+    public LoadTask(MessageLoop.Sender sender, Loadable loadable, Loader.Callback callback) {
+      this.sender = sender;
       this.loadable = loadable;
       this.callback = callback;
     }
@@ -206,46 +263,53 @@ public final class Loader {
         executorThread = Thread.currentThread();
         if (!loadable.isLoadCanceled()) {
           TraceUtil.beginSection(loadable.getClass().getSimpleName() + ".load()");
-          loadable.load();
+          long loadStartTimeNs = System.nanoTime();
+          try {
+            loadable.load();
+          } finally {
+            LOAD_TIME_HISTOGRAM.record((System.nanoTime() - loadStartTimeNs) / 1000);
+          }
           TraceUtil.endSection();
         }
-        sendEmptyMessage(MSG_END_OF_SOURCE);
+        sender.sendMessage(MSG_END_OF_SOURCE, 0, 0, null);
       } catch (IOException e) {
-        obtainMessage(MSG_IO_EXCEPTION, e).sendToTarget();
+        sender.sendMessage(MSG_IO_EXCEPTION, 0, 0, e);
       } catch (InterruptedException e) {
         // The load was canceled.
         Assertions.checkState(loadable.isLoadCanceled());
-        sendEmptyMessage(MSG_END_OF_SOURCE);
+        sender.sendMessage(MSG_END_OF_SOURCE, 0, 0, null);
       } catch (Exception e) {
         // This should never happen, but handle it anyway.
         Log.e(TAG, "Unexpected exception loading stream", e);
-        obtainMessage(MSG_IO_EXCEPTION, new UnexpectedLoaderException(e)).sendToTarget();
+        sender.sendMessage(MSG_IO_EXCEPTION, 0, 0, new UnexpectedLoaderException(e));
       } catch (Error e) {
         // We'd hope that the platform would kill the process if an Error is thrown here, but the
         // executor may catch the error (b/20616433). Throw it here, but also pass and throw it from
         // the handler thread so that the process dies even if the executor behaves in this way.
         Log.e(TAG, "Unexpected error loading stream", e);
-        obtainMessage(MSG_FATAL_ERROR, e).sendToTarget();
+        sender.sendMessage(MSG_FATAL_ERROR, 0, 0, e);
         throw e;
       }
     }
 
-    @Override
-    public void handleMessage(Message msg) {
-      if (msg.what == MSG_FATAL_ERROR) {
-        throw (Error) msg.obj;
+    public void handleMessage(int what, Object obj) {
+      if (what == MSG_FATAL_ERROR) {
+        throw (Error) obj;
       }
       onFinished();
       if (loadable.isLoadCanceled()) {
+        CANCELED_LOAD_COUNTER.increment();
         callback.onLoadCanceled(loadable);
         return;
       }
-      switch (msg.what) {
+      switch (what) {
         case MSG_END_OF_SOURCE:
+          COMPLETED_LOAD_COUNTER.increment();
           callback.onLoadCompleted(loadable);
           break;
         case MSG_IO_EXCEPTION:
-          callback.onLoadError(loadable, (IOException) msg.obj);
+          FAILED_LOAD_COUNTER.increment();
+          callback.onLoadError(loadable, (IOException) obj);
           break;
       }
     }
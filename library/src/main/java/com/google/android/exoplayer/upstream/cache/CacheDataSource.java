@@ -22,6 +22,7 @@ import com.google.android.exoplayer.upstream.DataSpec;
 import com.google.android.exoplayer.upstream.FileDataSource;
 import com.google.android.exoplayer.upstream.TeeDataSource;
 import com.google.android.exoplayer.upstream.cache.CacheDataSink.CacheDataSinkException;
+import com.google.android.exoplayer.util.MetricsRegistry;
 
 import android.net.Uri;
 import android.util.Log;
@@ -52,6 +53,11 @@ public final class CacheDataSource implements DataSource {
 
   private static final String TAG = "CacheDataSource";
 
+  private static final MetricsRegistry.Counter CACHE_HIT_BYTES_COUNTER =
+      MetricsRegistry.getDefault().getCounter("cache.hit_bytes");
+  private static final MetricsRegistry.Counter CACHE_MISS_BYTES_COUNTER =
+      MetricsRegistry.getDefault().getCounter("cache.miss_bytes");
+
   private final Cache cache;
   private final DataSource cacheReadDataSource;
   private final DataSource cacheWriteDataSource;
@@ -146,6 +152,9 @@ public final class CacheDataSource implements DataSource {
       if (bytesRead >= 0) {
         if (currentDataSource == cacheReadDataSource) {
           totalCachedBytesRead += bytesRead;
+          CACHE_HIT_BYTES_COUNTER.add(bytesRead);
+        } else {
+          CACHE_MISS_BYTES_COUNTER.add(bytesRead);
         }
         readPosition += bytesRead;
         if (bytesRemaining != C.LENGTH_UNBOUNDED) {
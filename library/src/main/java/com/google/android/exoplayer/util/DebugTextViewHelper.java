@@ -16,9 +16,11 @@
 package com.google.android.exoplayer.util;
 
 import com.google.android.exoplayer.CodecCounters;
+import com.google.android.exoplayer.ExoPlayer.RenderingWakeupCounter;
 import com.google.android.exoplayer.chunk.Format;
 import com.google.android.exoplayer.upstream.BandwidthMeter;
 
+import android.os.SystemClock;
 import android.widget.TextView;
 
 /**
@@ -28,6 +30,9 @@ public final class DebugTextViewHelper implements Runnable {
 
   /**
    * Provides debug information about an ongoing playback.
+   * <p>
+   * If the provider also implements {@link RenderingWakeupCounter}, the rate at which the player's
+   * rendering loop runs is displayed.
    */
   public interface Provider {
 
@@ -58,6 +63,9 @@ public final class DebugTextViewHelper implements Runnable {
   private final TextView textView;
   private final Provider debuggable;
 
+  private int lastWakeupCount;
+  private long lastWakeupCountTimeMs;
+
   /**
    * @param debuggable The {@link Provider} from which debug information should be obtained.
    * @param textView The {@link TextView} that should be updated to display the information.
@@ -94,7 +102,7 @@ public final class DebugTextViewHelper implements Runnable {
 
   private String getRenderString() {
     return getTimeString() + " " + getQualityString() + " " + getBandwidthString() + " "
-        + getVideoCodecCountersString();
+        + getWakeupRateString() + " " + getVideoCodecCountersString();
   }
 
   private String getTimeString() {
@@ -117,6 +125,20 @@ public final class DebugTextViewHelper implements Runnable {
     }
   }
 
+  private String getWakeupRateString() {
+    if (!(debuggable instanceof RenderingWakeupCounter)) {
+      return "wk/s:?";
+    }
+    int wakeupCount = ((RenderingWakeupCounter) debuggable).getRenderingWakeupCount();
+    long nowMs = SystemClock.elapsedRealtime();
+    long elapsedMs = nowMs - lastWakeupCountTimeMs;
+    String wakeupRateString = lastWakeupCountTimeMs == 0 || elapsedMs <= 0 ? "wk/s:?"
+        : "wk/s:" + ((wakeupCount - lastWakeupCount) * 1000L / elapsedMs);
+    lastWakeupCount = wakeupCount;
+    lastWakeupCountTimeMs = nowMs;
+    return wakeupRateString;
+  }
+
   private String getVideoCodecCountersString() {
     CodecCounters codecCounters = debuggable.getCodecCounters();
     return codecCounters == null ? "" : codecCounters.getDebugString();
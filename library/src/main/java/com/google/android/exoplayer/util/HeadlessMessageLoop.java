@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer.util;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+
+/**
+ * A {@link MessageLoop} that runs on a thread of its own without depending on Android's
+ * {@link android.os.Looper}, so that message driven components (e.g. the player's playback thread
+ * and {@link com.google.android.exoplayer.upstream.Loader} callbacks) can run on a desktop JVM.
+ * <p>
+ * Time is simulated. The loop's {@link Clock} only advances when the next message to be handled
+ * is a delayed one, in which case it jumps straight to that message's due time. Playback driven by
+ * the loop therefore runs as fast as the renderers and sources allow, rather than in real time.
+ */
+public final class HeadlessMessageLoop implements MessageLoop {
+
+  private static final ThreadLocal<HeadlessMessageLoop> currentLoop = new ThreadLocal<>();
+
+  private final Thread thread;
+  private final SimulatedClock clock;
+
+  // Guarded by this.
+  private final PriorityQueue<PendingMessage> pendingMessages;
+  private PendingMessage recycledMessages;
+  private long nextSequenceNumber;
+  private boolean quit;
+
+  /**
+   * Creates and starts a loop.
+   *
+   * @param threadName The name of the loop's thread.
+   */
+  public HeadlessMessageLoop(String threadName) {
+    clock = new SimulatedClock();
+    pendingMessages = new PriorityQueue<>(16, new Comparator<PendingMessage>() {
+      @Override
+      public int compare(PendingMessage first, PendingMessage second) {
+        if (first.dueTimeMs != second.dueTimeMs) {
+          return first.dueTimeMs < second.dueTimeMs ? -1 : 1;
+        }
+        return first.sequenceNumber < second.sequenceNumber ? -1 : 1;
+      }
+    });
+    thread = new Thread(threadName) {
+      @Override
+      public void run() {
+        currentLoop.set(HeadlessMessageLoop.this);
+        loop();
+      }
+    };
+    thread.start();
+  }
+
+  /**
+   * Returns the loop running on the calling thread, if any.
+   *
+   * @return The loop running on the calling thread, or null.
+   */
+  public static HeadlessMessageLoop myLoop() {
+    return currentLoop.get();
+  }
+
+  @Override
+  public Sender createSender(Callback callback) {
+    return new LoopSender(callback);
+  }
+
+  @Override
+  public Clock getClock() {
+    return clock;
+  }
+
+  @Override
+  public synchronized void quit() {
+    quit = true;
+    pendingMessages.clear();
+    notifyAll();
+  }
+
+  private void loop() {
+    while (true) {
+      Callback callback;
+      int what;
+      int arg1;
+      int arg2;
+      Object obj;
+      synchronized (this) {
+        while (!quit && pendingMessages.isEmpty()) {
+          try {
+            wait();
+          } catch (InterruptedException e) {
+            // The loop only exits when it's quit.
+          }
+        }
+        if (quit) {
+          return;
+        }
+        PendingMessage message = pendingMessages.remove();
+        if (message.dueTimeMs > clock.timeMs) {
+          // Nothing is due yet, so advance time to the next message.
+          clock.timeMs = message.dueTimeMs;
+        }
+        callback = message.callback;
+        what = message.what;
+        arg1 = message.arg1;
+        arg2 = message.arg2;
+        obj = message.obj;
+        recycle(message);
+      }
+      callback.handleMessage(what, arg1, arg2, obj);
+    }
+  }
+
+  private synchronized void enqueue(Callback callback, int what, int arg1, int arg2, Object obj,
+      long delayMs) {
+    if (quit) {
+      return;
+    }
+    PendingMessage message = recycledMessages;
+    if (message == null) {
+      message = new PendingMessage();
+    } else {
+      recycledMessages = message.next;
+      message.next = null;
+    }
+    message.callback = callback;
+    message.what = what;
+    message.arg1 = arg1;
+    message.arg2 = arg2;
+    message.obj = obj;
+    message.dueTimeMs = clock.timeMs + Math.max(0, delayMs);
+    message.sequenceNumber = nextSequenceNumber++;
+    pendingMessages.add(message);
+    notifyAll();
+  }
+
+  private synchronized void remove(Callback callback, boolean allMessages, int what) {
+    Iterator<PendingMessage> iterator = pendingMessages.iterator();
+    while (iterator.hasNext()) {
+      PendingMessage message = iterator.next();
+      if (message.callback == callback && (allMessages || message.what == what)) {
+        iterator.remove();
+        recycle(message);
+      }
+    }
+  }
+
+  private void recycle(PendingMessage message) {
+    message.callback = null;
+    message.obj = null;
+    message.next = recycledMessages;
+    recycledMessages = message;
+  }
+
+  private final class LoopSender implements Sender {
+
+    private final Callback callback;
+
+    public LoopSender(Callback callback) {
+      this.callback = callback;
+    }
+
+    @Override
+    public void sendMessage(int what, int arg1, int arg2, Object obj) {
+      enqueue(callback, what, arg1, arg2, obj, 0);
+    }
+
+    @Override
+    public void sendEmptyMessageDelayed(int what, long delayMs) {
+      enqueue(callback, what, 0, 0, null, delayMs);
+    }
+
+    @Override
+    public void removeMessages(int what) {
+      remove(callback, false, what);
+    }
+
+    @Override
+    public void removeAllMessages() {
+      remove(callback, true, 0);
+    }
+
+  }
+
+  private static final class SimulatedClock implements Clock {
+
+    // Written only by the loop's thread, whilst holding the loop's lock.
+    private volatile long timeMs;
+
+    @Override
+    public long elapsedRealtime() {
+      return timeMs;
+    }
+
+  }
+
+  private static final class PendingMessage {
+
+    public Callback callback;
+    public int what;
+    public int arg1;
+    public int arg2;
+    public Object obj;
+    public long dueTimeMs;
+    public long sequenceNumber;
+    public PendingMessage next;
+
+  }
+
+}
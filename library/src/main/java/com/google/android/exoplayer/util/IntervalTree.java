@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer.util;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * An immutable centred interval tree over a set of half-open intervals {@code [start, end)}, which
+ * finds the intervals containing a point in {@code O(log n + k)} time, where {@code k} is the
+ * number of intervals found.
+ * <p>
+ * Each node of the tree holds the intervals that contain its centre, sorted both by start and by
+ * end, so that the intervals containing a point on either side of the centre can be found without
+ * visiting any that don't. Intervals that lie entirely before or after the centre are held by the
+ * left and right subtrees respectively. The tree is stored in flat arrays.
+ */
+public final class IntervalTree {
+
+  private final long[] starts;
+  private final long[] ends;
+
+  // The intervals held by each node are at [nodeOffsets[node], nodeOffsets[node] + nodeSizes[node])
+  // in idsByStart, sorted by ascending start, and at the same positions in idsByEnd, sorted by
+  // descending end.
+  private final long[] nodeCentres;
+  private final int[] nodeOffsets;
+  private final int[] nodeSizes;
+  private final int[] leftNodes;
+  private final int[] rightNodes;
+  private final int[] idsByStart;
+  private final int[] idsByEnd;
+  private final int rootNode;
+
+  private int nodeCount;
+  private int idCount;
+
+  /**
+   * @param starts The inclusive start of each interval.
+   * @param ends The exclusive end of each interval. Intervals that end at or before they start
+   *     contain no points.
+   */
+  public IntervalTree(long[] starts, long[] ends) {
+    Assertions.checkArgument(starts.length == ends.length);
+    this.starts = starts;
+    this.ends = ends;
+    int intervalCount = starts.length;
+    // Every node holds at least one interval, so there are at most as many nodes as intervals.
+    nodeCentres = new long[intervalCount];
+    nodeOffsets = new int[intervalCount];
+    nodeSizes = new int[intervalCount];
+    leftNodes = new int[intervalCount];
+    rightNodes = new int[intervalCount];
+    idsByStart = new int[intervalCount];
+    idsByEnd = new int[intervalCount];
+    int[] ids = new int[intervalCount];
+    int nonEmptyCount = 0;
+    for (int i = 0; i < intervalCount; i++) {
+      if (starts[i] < ends[i]) {
+        ids[nonEmptyCount++] = i;
+      }
+    }
+    sortIds(ids, nonEmptyCount, starts);
+    rootNode = buildNode(ids, 0, nonEmptyCount, new int[nonEmptyCount]);
+  }
+
+  /**
+   * Returns the number of intervals in the tree.
+   */
+  public int size() {
+    return starts.length;
+  }
+
+  /**
+   * Returns the intervals that contain a point.
+   *
+   * @param point The point.
+   * @return The indices of the intervals that contain {@code point}, in ascending order.
+   */
+  public int[] getIntervalsContaining(long point) {
+    int[] result = new int[8];
+    int resultCount = 0;
+    int node = rootNode;
+    while (node != -1) {
+      int offset = nodeOffsets[node];
+      int limit = offset + nodeSizes[node];
+      if (point < nodeCentres[node]) {
+        // All of the node's intervals end after the point, so those that start at or before it
+        // contain it.
+        for (int i = offset; i < limit && starts[idsByStart[i]] <= point; i++) {
+          if (resultCount == result.length) {
+            result = Arrays.copyOf(result, resultCount * 2);
+          }
+          result[resultCount++] = idsByStart[i];
+        }
+        node = leftNodes[node];
+      } else {
+        // All of the node's intervals start at or before the point, so those that end after it
+        // contain it.
+        for (int i = offset; i < limit && ends[idsByEnd[i]] > point; i++) {
+          if (resultCount == result.length) {
+            result = Arrays.copyOf(result, resultCount * 2);
+          }
+          result[resultCount++] = idsByEnd[i];
+        }
+        node = rightNodes[node];
+      }
+    }
+    result = Arrays.copyOf(result, resultCount);
+    Arrays.sort(result);
+    return result;
+  }
+
+  /**
+   * Builds a node holding the intervals whose ids are at {@code [from, to)} in {@code ids}, which
+   * are sorted by start, and returns its index. The intervals are reordered in the process.
+   *
+   * @return The index of the node, or -1 if there are no intervals.
+   */
+  private int buildNode(int[] ids, int from, int to, int[] scratch) {
+    if (from == to) {
+      return -1;
+    }
+    // Centring the node on the start of the median interval means that both subtrees hold at most
+    // half of the intervals, and that the node holds at least one.
+    long centre = starts[ids[from + (to - from) / 2]];
+    // Partition the ids stably into those before, containing and after the centre.
+    int leftCount = 0;
+    int middleCount = 0;
+    int rightCount = 0;
+    for (int i = from; i < to; i++) {
+      int id = ids[i];
+      if (ends[id] <= centre) {
+        ids[from + leftCount++] = id;
+      } else if (starts[id] > centre) {
+        scratch[rightCount++] = id;
+      } else {
+        scratch[to - from - 1 - middleCount++] = id;
+      }
+    }
+    int node = nodeCount++;
+    nodeCentres[node] = centre;
+    nodeOffsets[node] = idCount;
+    nodeSizes[node] = middleCount;
+    // The middle ids were written to the end of scratch in reverse, so restore their order.
+    for (int i = 0; i < middleCount; i++) {
+      idsByStart[idCount + i] = scratch[to - from - 1 - i];
+    }
+    int[] middleIds = Arrays.copyOfRange(idsByStart, idCount, idCount + middleCount);
+    sortIds(middleIds, middleCount, ends);
+    for (int i = 0; i < middleCount; i++) {
+      idsByEnd[idCount + i] = middleIds[middleCount - 1 - i];
+    }
+    idCount += middleCount;
+    System.arraycopy(scratch, 0, ids, from + leftCount, rightCount);
+    leftNodes[node] = buildNode(ids, from, from + leftCount, scratch);
+    rightNodes[node] = buildNode(ids, from + leftCount, from + leftCount + rightCount, scratch);
+    return node;
+  }
+
+  /**
+   * Sorts ids by a key, breaking ties by id.
+   *
+   * @param ids The ids to sort.
+   * @param count The number of ids.
+   * @param keys The keys, indexed by id.
+   */
+  private static void sortIds(int[] ids, int count, final long[] keys) {
+    Integer[] boxedIds = new Integer[count];
+    for (int i = 0; i < count; i++) {
+      boxedIds[i] = ids[i];
+    }
+    Arrays.sort(boxedIds, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer id1, Integer id2) {
+        long key1 = keys[id1];
+        long key2 = keys[id2];
+        return key1 < key2 ? -1 : key1 > key2 ? 1 : id1.compareTo(id2);
+      }
+    });
+    for (int i = 0; i < count; i++) {
+      ids[i] = boxedIds[i];
+    }
+  }
+
+}
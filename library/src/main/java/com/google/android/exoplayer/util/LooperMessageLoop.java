@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer.util;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Message;
+
+/**
+ * A {@link MessageLoop} backed by an Android {@link Looper}.
+ */
+public final class LooperMessageLoop implements MessageLoop {
+
+  private final Looper looper;
+  private final Clock clock;
+
+  /**
+   * @param looper The looper on whose thread messages should be handled.
+   */
+  public LooperMessageLoop(Looper looper) {
+    this.looper = Assertions.checkNotNull(looper);
+    clock = new SystemClock();
+  }
+
+  /**
+   * Returns the {@link Looper} backing the loop.
+   *
+   * @return The looper.
+   */
+  public Looper getLooper() {
+    return looper;
+  }
+
+  @Override
+  public Sender createSender(Callback callback) {
+    return new HandlerSender(looper, callback);
+  }
+
+  @Override
+  public Clock getClock() {
+    return clock;
+  }
+
+  @Override
+  public void quit() {
+    looper.quit();
+  }
+
+  private static final class HandlerSender implements Sender, Handler.Callback {
+
+    private final Handler handler;
+    private final Callback callback;
+
+    public HandlerSender(Looper looper, Callback callback) {
+      this.callback = callback;
+      handler = new Handler(looper, this);
+    }
+
+    @Override
+    public void sendMessage(int what, int arg1, int arg2, Object obj) {
+      handler.obtainMessage(what, arg1, arg2, obj).sendToTarget();
+    }
+
+    @Override
+    public void sendEmptyMessageDelayed(int what, long delayMs) {
+      handler.sendEmptyMessageDelayed(what, delayMs);
+    }
+
+    @Override
+    public void removeMessages(int what) {
+      handler.removeMessages(what);
+    }
+
+    @Override
+    public void removeAllMessages() {
+      handler.removeCallbacksAndMessages(null);
+    }
+
+    @Override
+    public boolean handleMessage(Message msg) {
+      callback.handleMessage(msg.what, msg.arg1, msg.arg2, msg.obj);
+      return true;
+    }
+
+  }
+
+}
@@ -15,6 +15,10 @@
  */
 package com.google.android.exoplayer.util;
 
+import com.google.android.exoplayer.ParserException;
+import com.google.android.exoplayer.upstream.DataSpec;
+import com.google.android.exoplayer.upstream.HttpDataSource;
+import com.google.android.exoplayer.upstream.HttpDataSource.InvalidResponseCodeException;
 import com.google.android.exoplayer.upstream.Loader;
 import com.google.android.exoplayer.upstream.Loader.Loadable;
 import com.google.android.exoplayer.upstream.UriDataSource;
@@ -27,6 +31,9 @@ import android.text.TextUtils;
 import android.util.Pair;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CancellationException;
 
 /**
@@ -43,6 +50,12 @@ import java.util.concurrent.CancellationException;
  *     components that require it. These components will call {@link #requestRefresh()} on the
  *     loader whenever a refresh is required.</li>
  * </ol>
+ * <p>
+ * If the {@link UriDataSource} is an {@link HttpDataSource}, refreshes are made as conditional
+ * requests using the ETag and Last-Modified headers of the previous response. If the server
+ * responds that the manifest has not been modified, the previously loaded manifest is retained
+ * without being parsed again. The conditional request headers are set only for the duration of
+ * each refresh request, so they're never sent with other requests made by the same data source.
  *
  * @param <T> The type of manifest.
  */
@@ -98,8 +111,15 @@ public class ManifestFetcher<T> implements Loader.Callback {
 
   }
 
+  private static final int HTTP_NOT_MODIFIED = 304;
+  private static final String HEADER_ETAG = "ETag";
+  private static final String HEADER_LAST_MODIFIED = "Last-Modified";
+  private static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+  private static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
+
   private final UriLoadable.Parser<T> parser;
   private final UriDataSource uriDataSource;
+  private final HttpDataSource httpDataSource;
   private final Handler eventHandler;
   private final EventListener eventListener;
 
@@ -108,6 +128,7 @@ public class ManifestFetcher<T> implements Loader.Callback {
   private int enabledCount;
   private Loader loader;
   private UriLoadable<T> currentLoadable;
+  private String currentLoadableUri;
 
   private int loadExceptionCount;
   private long loadExceptionTimestamp;
@@ -116,6 +137,13 @@ public class ManifestFetcher<T> implements Loader.Callback {
   private volatile T manifest;
   private volatile long manifestLoadTimestamp;
 
+  private volatile String loadedETag;
+  private volatile String loadedLastModified;
+  private String manifestETag;
+  private String manifestLastModified;
+  private String manifestValidatorsUri;
+  private int notModifiedCount;
+
   /**
    * @param manifestUri The manifest location.
    * @param uriDataSource The {@link UriDataSource} to use when loading the manifest.
@@ -136,9 +164,15 @@ public class ManifestFetcher<T> implements Loader.Callback {
    */
   public ManifestFetcher(String manifestUri, UriDataSource uriDataSource,
       UriLoadable.Parser<T> parser, Handler eventHandler, EventListener eventListener) {
-    this.parser = parser;
     this.manifestUri = manifestUri;
     this.uriDataSource = uriDataSource;
+    if (uriDataSource instanceof HttpDataSource) {
+      this.httpDataSource = (HttpDataSource) uriDataSource;
+      this.parser = new ValidatorRecordingParser(parser);
+    } else {
+      this.httpDataSource = null;
+      this.parser = parser;
+    }
     this.eventHandler = eventHandler;
     this.eventListener = eventListener;
   }
@@ -160,7 +194,7 @@ public class ManifestFetcher<T> implements Loader.Callback {
    * @param callback The callback to receive the result.
    */
   public void singleLoad(Looper callbackLooper, final ManifestCallback<T> callback) {
-    SingleFetchHelper fetchHelper = new SingleFetchHelper(
+    SingleFetchHelper fetchHelper = new SingleFetchHelper(manifestUri,
         new UriLoadable<>(manifestUri, uriDataSource, parser), callbackLooper, callback);
     fetchHelper.startLoading();
   }
@@ -185,6 +219,16 @@ public class ManifestFetcher<T> implements Loader.Callback {
     return manifestLoadTimestamp;
   }
 
+  /**
+   * Gets the number of refreshes for which the server responded that the manifest had not been
+   * modified, meaning that the previously loaded manifest was retained without being parsed.
+   *
+   * @return The number of refreshes that were skipped because the manifest had not been modified.
+   */
+  public int getNotModifiedCount() {
+    return notModifiedCount;
+  }
+
   /**
    * Gets the error that affected the most recent attempt to load the manifest, or null if the
    * most recent attempt was successful.
@@ -234,7 +278,15 @@ public class ManifestFetcher<T> implements Loader.Callback {
       loader = new Loader("manifestLoader");
     }
     if (!loader.isLoading()) {
-      currentLoadable = new UriLoadable<>(manifestUri, uriDataSource, parser);
+      currentLoadableUri = manifestUri;
+      UriDataSource loadableDataSource = uriDataSource;
+      if (httpDataSource != null && manifest != null
+          && currentLoadableUri.equals(manifestValidatorsUri)
+          && (manifestETag != null || manifestLastModified != null)) {
+        loadableDataSource = new ConditionalRequestDataSource(httpDataSource, manifestETag,
+            manifestLastModified);
+      }
+      currentLoadable = new UriLoadable<>(currentLoadableUri, loadableDataSource, parser);
       loader.startLoading(currentLoadable, this);
       notifyManifestRefreshStarted();
     }
@@ -251,6 +303,7 @@ public class ManifestFetcher<T> implements Loader.Callback {
     manifestLoadTimestamp = SystemClock.elapsedRealtime();
     loadExceptionCount = 0;
     loadException = null;
+    onValidatorsLoaded(currentLoadableUri);
 
     if (manifest instanceof RedirectingManifest) {
       RedirectingManifest redirectingManifest = (RedirectingManifest) manifest;
@@ -275,6 +328,17 @@ public class ManifestFetcher<T> implements Loader.Callback {
       return;
     }
 
+    if (exception instanceof InvalidResponseCodeException
+        && ((InvalidResponseCodeException) exception).responseCode == HTTP_NOT_MODIFIED) {
+      // The manifest hasn't changed since it was last loaded, so there's nothing to parse.
+      notModifiedCount++;
+      manifestLoadTimestamp = SystemClock.elapsedRealtime();
+      loadExceptionCount = 0;
+      loadException = null;
+      notifyManifestRefreshed();
+      return;
+    }
+
     loadExceptionCount++;
     loadExceptionTimestamp = SystemClock.elapsedRealtime();
     loadException = new IOException(exception);
@@ -282,9 +346,30 @@ public class ManifestFetcher<T> implements Loader.Callback {
     notifyManifestError(loadException);
   }
 
-  /* package */ void onSingleFetchCompleted(T result) {
+  /* package */ void onSingleFetchCompleted(String uri, T result) {
     manifest = result;
     manifestLoadTimestamp = SystemClock.elapsedRealtime();
+    onValidatorsLoaded(uri);
+  }
+
+  private void onValidatorsLoaded(String uri) {
+    manifestETag = loadedETag;
+    manifestLastModified = loadedLastModified;
+    manifestValidatorsUri = uri;
+  }
+
+  private static String getHeaderValue(Map<String, List<String>> headers, String name) {
+    if (headers == null) {
+      return null;
+    }
+    for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+      // Header names are case insensitive.
+      if (name.equalsIgnoreCase(header.getKey())) {
+        List<String> values = header.getValue();
+        return values == null || values.isEmpty() ? null : values.get(0);
+      }
+    }
+    return null;
   }
 
   private long getRetryDelayMillis(long errorCount) {
@@ -324,15 +409,92 @@ public class ManifestFetcher<T> implements Loader.Callback {
     }
   }
 
+  /**
+   * Records the validators of each response before passing it to the wrapped parser.
+   */
+  private class ValidatorRecordingParser implements UriLoadable.Parser<T> {
+
+    private final UriLoadable.Parser<T> parser;
+
+    public ValidatorRecordingParser(UriLoadable.Parser<T> parser) {
+      this.parser = parser;
+    }
+
+    @Override
+    public T parse(String connectionUrl, InputStream inputStream)
+        throws ParserException, IOException {
+      Map<String, List<String>> headers = httpDataSource.getResponseHeaders();
+      loadedETag = getHeaderValue(headers, HEADER_ETAG);
+      loadedLastModified = getHeaderValue(headers, HEADER_LAST_MODIFIED);
+      return parser.parse(connectionUrl, inputStream);
+    }
+
+  }
+
+  /**
+   * Makes a conditional request using the validators of a previously loaded manifest.
+   * <p>
+   * {@link HttpDataSource} only supports request headers that apply to every request that it
+   * makes, so the conditional headers are set when the request is opened and cleared once it's
+   * been made.
+   */
+  private static final class ConditionalRequestDataSource implements UriDataSource {
+
+    private final HttpDataSource httpDataSource;
+    private final String eTag;
+    private final String lastModified;
+
+    public ConditionalRequestDataSource(HttpDataSource httpDataSource, String eTag,
+        String lastModified) {
+      this.httpDataSource = httpDataSource;
+      this.eTag = eTag;
+      this.lastModified = lastModified;
+    }
+
+    @Override
+    public long open(DataSpec dataSpec) throws IOException {
+      if (eTag != null) {
+        httpDataSource.setRequestProperty(HEADER_IF_NONE_MATCH, eTag);
+      }
+      if (lastModified != null) {
+        httpDataSource.setRequestProperty(HEADER_IF_MODIFIED_SINCE, lastModified);
+      }
+      try {
+        return httpDataSource.open(dataSpec);
+      } finally {
+        httpDataSource.clearRequestProperty(HEADER_IF_NONE_MATCH);
+        httpDataSource.clearRequestProperty(HEADER_IF_MODIFIED_SINCE);
+      }
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int readLength) throws IOException {
+      return httpDataSource.read(buffer, offset, readLength);
+    }
+
+    @Override
+    public void close() throws IOException {
+      httpDataSource.close();
+    }
+
+    @Override
+    public String getUri() {
+      return httpDataSource.getUri();
+    }
+
+  }
+
   private class SingleFetchHelper implements Loader.Callback {
 
+    private final String uri;
     private final UriLoadable<T> singleUseLoadable;
     private final Looper callbackLooper;
     private final ManifestCallback<T> wrappedCallback;
     private final Loader singleUseLoader;
 
-    public SingleFetchHelper(UriLoadable<T> singleUseLoadable, Looper callbackLooper,
+    public SingleFetchHelper(String uri, UriLoadable<T> singleUseLoadable, Looper callbackLooper,
         ManifestCallback<T> wrappedCallback) {
+      this.uri = uri;
       this.singleUseLoadable = singleUseLoadable;
       this.callbackLooper = callbackLooper;
       this.wrappedCallback = wrappedCallback;
@@ -347,7 +509,7 @@ public class ManifestFetcher<T> implements Loader.Callback {
     public void onLoadCompleted(Loadable loadable) {
       try {
         T result = singleUseLoadable.getResult();
-        onSingleFetchCompleted(result);
+        onSingleFetchCompleted(uri, result);
         wrappedCallback.onSingleManifest(result);
       } finally {
         releaseLoader();
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer.util;
+
+/**
+ * A thread on which messages are handled one at a time, in the order in which they become due.
+ * <p>
+ * This abstracts Android's {@link android.os.Looper}, so that components that are driven by
+ * messages can also run where no looper is available (e.g. on a desktop JVM). See
+ * {@link LooperMessageLoop} and {@link HeadlessMessageLoop}.
+ */
+public interface MessageLoop {
+
+  /**
+   * Handles messages sent through a {@link Sender}.
+   */
+  public interface Callback {
+
+    /**
+     * Invoked on the loop's thread to handle a message.
+     *
+     * @param what The message code.
+     * @param arg1 The first integer argument.
+     * @param arg2 The second integer argument.
+     * @param obj The object argument, or null.
+     */
+    void handleMessage(int what, int arg1, int arg2, Object obj);
+
+  }
+
+  /**
+   * Sends messages to a {@link Callback}, which handles them on the loop's thread.
+   */
+  public interface Sender {
+
+    /**
+     * Sends a message to be handled as soon as possible.
+     *
+     * @param what The message code.
+     * @param arg1 The first integer argument.
+     * @param arg2 The second integer argument.
+     * @param obj The object argument, or null.
+     */
+    void sendMessage(int what, int arg1, int arg2, Object obj);
+
+    /**
+     * Sends a message with no arguments to be handled once {@code delayMs} have elapsed, as
+     * measured by the loop's {@link Clock}.
+     *
+     * @param what The message code.
+     * @param delayMs The delay in milliseconds.
+     */
+    void sendEmptyMessageDelayed(int what, long delayMs);
+
+    /**
+     * Removes any pending messages with the specified code.
+     *
+     * @param what The message code.
+     */
+    void removeMessages(int what);
+
+    /**
+     * Removes all pending messages.
+     */
+    void removeAllMessages();
+
+  }
+
+  /**
+   * Creates a {@link Sender} for messages to be handled by {@code callback}.
+   *
+   * @param callback The callback that will handle the messages.
+   * @return The sender.
+   */
+  Sender createSender(Callback callback);
+
+  /**
+   * Returns the clock by which message delays are measured.
+   *
+   * @return The clock.
+   */
+  Clock getClock();
+
+  /**
+   * Quits the loop. Pending messages are discarded.
+   */
+  void quit();
+
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer.util;
+
+import android.os.Looper;
+
+/**
+ * Utility methods for {@link MessageLoop}s.
+ */
+public final class MessageLoopUtil {
+
+  private static final ThreadLocal<LooperMessageLoop> looperLoops = new ThreadLocal<>();
+
+  private MessageLoopUtil() {}
+
+  /**
+   * Returns the loop running on the calling thread.
+   * <p>
+   * If a {@link HeadlessMessageLoop} is running on the calling thread then it's returned, without
+   * querying Android's {@link Looper}. Otherwise a {@link LooperMessageLoop} backed by the
+   * thread's {@link Looper} is returned. The same instance is returned to each call made on the
+   * same thread.
+   *
+   * @return The loop running on the calling thread, or null if the thread has neither a
+   *     {@link HeadlessMessageLoop} nor a {@link Looper}.
+   */
+  public static MessageLoop myLoop() {
+    MessageLoop headlessLoop = HeadlessMessageLoop.myLoop();
+    if (headlessLoop != null) {
+      return headlessLoop;
+    }
+    Looper looper = Looper.myLooper();
+    if (looper == null) {
+      return null;
+    }
+    LooperMessageLoop looperLoop = looperLoops.get();
+    if (looperLoop == null || looperLoop.getLooper() != looper) {
+      looperLoop = new LooperMessageLoop(looper);
+      looperLoops.set(looperLoop);
+    }
+    return looperLoop;
+  }
+
+}
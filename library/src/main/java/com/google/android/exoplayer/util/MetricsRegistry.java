@@ -0,0 +1,301 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer.util;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A registry of named counters and histograms describing the performance of the playback
+ * pipeline.
+ * <p>
+ * Metrics are updated without locking, so they can be fed from the loading and playback threads
+ * at little cost. Components obtain their metrics from {@link #getDefault()} once, typically when
+ * they're constructed, and the application pulls a {@link Snapshot} of all of them whenever it
+ * wishes to report them (e.g. to its telemetry). Counters and histograms only ever accumulate, so
+ * a reporter that wants rates or per-interval distributions should diff successive snapshots.
+ * <p>
+ * The library feeds the following metrics into the default registry:
+ * <ul>
+ * <li>{@code loader.*}: Load durations and outcomes of {@link
+ *     com.google.android.exoplayer.upstream.Loader}s.</li>
+ * <li>{@code http.*}: Connection and time to first byte of
+ *     {@link com.google.android.exoplayer.upstream.DefaultHttpDataSource} requests.</li>
+ * <li>{@code cache.*}: Bytes read from the cache and from upstream by
+ *     {@link com.google.android.exoplayer.upstream.cache.CacheDataSource}.</li>
+ * <li>{@code allocator.*}: Bytes allocated by
+ *     {@link com.google.android.exoplayer.upstream.DefaultAllocator}, and the time spent blocked
+ *     waiting for allocations to be released.</li>
+ * <li>{@code sample_queue.*}: The depth of extractors' sample queues, in samples and bytes.</li>
+ * <li>{@code extractor.<Extractor>.*}: Time spent parsing, per MB of input.</li>
+ * <li>{@code <Renderer>.*}: The latency between a sample being queued to a {@code MediaCodec}
+ *     and the corresponding output buffer being dequeued, and the number of samples queued to the
+ *     codec but not yet output each time the renderer is invoked.</li>
+ * </ul>
+ */
+public final class MetricsRegistry {
+
+  /**
+   * A counter that can be incremented concurrently by any thread.
+   */
+  public static final class Counter {
+
+    private final AtomicLong value;
+
+    private Counter() {
+      value = new AtomicLong();
+    }
+
+    /**
+     * Adds to the counter.
+     *
+     * @param delta The amount to add.
+     */
+    public void add(long delta) {
+      value.addAndGet(delta);
+    }
+
+    /**
+     * Increments the counter by one.
+     */
+    public void increment() {
+      value.incrementAndGet();
+    }
+
+    /**
+     * Returns the value of the counter.
+     */
+    public long get() {
+      return value.get();
+    }
+
+  }
+
+  /**
+   * A histogram of non-negative values, which can be recorded concurrently by any thread.
+   * <p>
+   * Values are counted in buckets whose bounds are powers of two, so percentiles are only accurate
+   * to within a factor of two. The count, sum and maximum are exact.
+   */
+  public static final class Histogram {
+
+    /**
+     * The number of buckets. Bucket 0 counts zeros, and bucket {@code i > 0} counts values in the
+     * range {@code [2^(i-1), 2^i)}.
+     */
+    private static final int BUCKET_COUNT = 64;
+
+    private final AtomicLongArray bucketCounts;
+    private final AtomicLong count;
+    private final AtomicLong sum;
+    private final AtomicLong max;
+
+    private Histogram() {
+      bucketCounts = new AtomicLongArray(BUCKET_COUNT);
+      count = new AtomicLong();
+      sum = new AtomicLong();
+      max = new AtomicLong();
+    }
+
+    /**
+     * Records a value. Negative values are recorded as zero.
+     *
+     * @param value The value to record.
+     */
+    public void record(long value) {
+      value = Math.max(0, value);
+      bucketCounts.incrementAndGet(64 - Long.numberOfLeadingZeros(value));
+      count.incrementAndGet();
+      sum.addAndGet(value);
+      long currentMax = max.get();
+      while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+        currentMax = max.get();
+      }
+    }
+
+    private HistogramSnapshot snapshot() {
+      long[] snapshotBucketCounts = new long[BUCKET_COUNT];
+      for (int i = 0; i < BUCKET_COUNT; i++) {
+        snapshotBucketCounts[i] = bucketCounts.get(i);
+      }
+      return new HistogramSnapshot(count.get(), sum.get(), max.get(), snapshotBucketCounts);
+    }
+
+  }
+
+  /**
+   * The state of a {@link Histogram} at the time a {@link Snapshot} was taken.
+   * <p>
+   * The histogram may be recorded while the snapshot is taken, so the count, sum, maximum and
+   * bucket counts aren't guaranteed to be mutually consistent.
+   */
+  public static final class HistogramSnapshot {
+
+    /**
+     * The number of values recorded.
+     */
+    public final long count;
+    /**
+     * The sum of the values recorded.
+     */
+    public final long sum;
+    /**
+     * The largest value recorded, or 0 if no values have been recorded.
+     */
+    public final long max;
+
+    private final long[] bucketCounts;
+
+    private HistogramSnapshot(long count, long sum, long max, long[] bucketCounts) {
+      this.count = count;
+      this.sum = sum;
+      this.max = max;
+      this.bucketCounts = bucketCounts;
+    }
+
+    /**
+     * Returns the mean of the values recorded, or 0 if no values have been recorded.
+     */
+    public double getMean() {
+      return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * Returns an upper bound for the specified percentile of the values recorded, which is
+     * accurate to within a factor of two.
+     *
+     * @param percentile The percentile, in the range [0, 100].
+     * @return The upper bound, or 0 if no values have been recorded.
+     */
+    public long getPercentile(double percentile) {
+      long bucketCountSum = 0;
+      for (long bucketCount : bucketCounts) {
+        bucketCountSum += bucketCount;
+      }
+      long targetCount = Math.max(1, (long) Math.ceil(bucketCountSum * percentile / 100));
+      long cumulativeCount = 0;
+      for (int i = 0; i < bucketCounts.length; i++) {
+        cumulativeCount += bucketCounts[i];
+        if (cumulativeCount >= targetCount) {
+          // The upper bound of the bucket, which wraps to Long.MAX_VALUE for the last bucket.
+          return Math.min((1L << i) - 1, max);
+        }
+      }
+      return 0;
+    }
+
+  }
+
+  /**
+   * The values of all of a registry's metrics at a point in time.
+   */
+  public static final class Snapshot {
+
+    /**
+     * The values of the counters, keyed and sorted by name.
+     */
+    public final Map<String, Long> counters;
+    /**
+     * The states of the histograms, keyed and sorted by name.
+     */
+    public final Map<String, HistogramSnapshot> histograms;
+
+    private Snapshot(Map<String, Long> counters, Map<String, HistogramSnapshot> histograms) {
+      this.counters = Collections.unmodifiableMap(counters);
+      this.histograms = Collections.unmodifiableMap(histograms);
+    }
+
+  }
+
+  private static final MetricsRegistry DEFAULT = new MetricsRegistry();
+
+  private final ConcurrentHashMap<String, Counter> counters;
+  private final ConcurrentHashMap<String, Histogram> histograms;
+
+  /**
+   * Returns the registry into which the library feeds its metrics.
+   */
+  public static MetricsRegistry getDefault() {
+    return DEFAULT;
+  }
+
+  public MetricsRegistry() {
+    counters = new ConcurrentHashMap<>();
+    histograms = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Returns the counter with the specified name, creating it if it doesn't exist.
+   *
+   * @param name The name of the counter.
+   * @return The counter.
+   */
+  public Counter getCounter(String name) {
+    Counter counter = counters.get(name);
+    if (counter == null) {
+      Counter newCounter = new Counter();
+      counter = counters.putIfAbsent(name, newCounter);
+      if (counter == null) {
+        counter = newCounter;
+      }
+    }
+    return counter;
+  }
+
+  /**
+   * Returns the histogram with the specified name, creating it if it doesn't exist.
+   *
+   * @param name The name of the histogram. By convention the name ends with the unit of the values
+   *     recorded (e.g. {@code _us} or {@code _bytes}).
+   * @return The histogram.
+   */
+  public Histogram getHistogram(String name) {
+    Histogram histogram = histograms.get(name);
+    if (histogram == null) {
+      Histogram newHistogram = new Histogram();
+      histogram = histograms.putIfAbsent(name, newHistogram);
+      if (histogram == null) {
+        histogram = newHistogram;
+      }
+    }
+    return histogram;
+  }
+
+  /**
+   * Returns a snapshot of the registry's metrics.
+   * <p>
+   * Metrics may be updated while the snapshot is taken, so the snapshot isn't guaranteed to be
+   * consistent across metrics.
+   *
+   * @return The snapshot.
+   */
+  public Snapshot getSnapshot() {
+    Map<String, Long> counterValues = new TreeMap<>();
+    for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+      counterValues.put(entry.getKey(), entry.getValue().get());
+    }
+    Map<String, HistogramSnapshot> histogramSnapshots = new TreeMap<>();
+    for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+      histogramSnapshots.put(entry.getKey(), entry.getValue().snapshot());
+    }
+    return new Snapshot(counterValues, histogramSnapshots);
+  }
+
+}
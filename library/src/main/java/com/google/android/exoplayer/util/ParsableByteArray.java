@@ -16,6 +16,7 @@
 package com.google.android.exoplayer.util;
 
 import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 
 /**
  * Wraps a byte array, providing a set of methods for parsing data from it. Numerical values are
@@ -255,4 +256,20 @@ public final class ParsableByteArray {
     return result;
   }
 
+  /**
+   * Reads a null-terminated UTF-8 string. The position is advanced past the terminating null
+   * byte, or to the limit if no terminating null byte is found.
+   *
+   * @return The parsed string, excluding the terminating null byte.
+   */
+  public String readNullTerminatedString() {
+    int stringLength = 0;
+    while (position + stringLength < limit && data[position + stringLength] != 0) {
+      stringLength++;
+    }
+    String result = new String(data, position, stringLength, Charset.forName("UTF-8"));
+    position = Math.min(position + stringLength + 1, limit);
+    return result;
+  }
+
 }
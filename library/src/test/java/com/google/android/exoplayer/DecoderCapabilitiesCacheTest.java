@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer;
+
+import com.google.android.exoplayer.util.MimeTypes;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Tests for {@link DecoderCapabilitiesCache}.
+ */
+public final class DecoderCapabilitiesCacheTest extends TestCase {
+
+  private static final String FINGERPRINT = "fingerprint";
+
+  private File file;
+  private FakeLookup lookup;
+
+  @Override
+  public void setUp() throws IOException {
+    file = File.createTempFile("DecoderCapabilitiesCacheTest", null);
+    assertTrue(file.delete());
+    lookup = new FakeLookup();
+    lookup.decoders.put(MimeTypes.VIDEO_H264, new DecoderCapabilities("OMX.video.avc", true,
+        new int[] {1, 2}, new int[] {256, 512}));
+    lookup.decoders.put(MimeTypes.AUDIO_AAC, new DecoderCapabilities("OMX.audio.aac", false,
+        new int[0], new int[0]));
+  }
+
+  @Override
+  public void tearDown() {
+    file.delete();
+  }
+
+  public void testResultsCachedInMemory() throws Exception {
+    DecoderCapabilitiesCache cache = new DecoderCapabilitiesCache(lookup, file, FINGERPRINT);
+    assertSame(lookup.decoders.get(MimeTypes.VIDEO_H264),
+        cache.getDecoderCapabilities(MimeTypes.VIDEO_H264, false));
+    assertNull(cache.getDecoderCapabilities(MimeTypes.VIDEO_VP9, false));
+    cache.getDecoderCapabilities(MimeTypes.VIDEO_H264, false);
+    cache.getDecoderCapabilities(MimeTypes.VIDEO_VP9, false);
+    assertEquals(2, lookup.queryCount);
+  }
+
+  public void testResultsLoadedFromFile() throws Exception {
+    DecoderCapabilitiesCache cache = new DecoderCapabilitiesCache(lookup, file, FINGERPRINT);
+    cache.getDecoderCapabilities(MimeTypes.VIDEO_H264, false);
+    cache.getDecoderCapabilities(MimeTypes.AUDIO_AAC, false);
+    cache.getDecoderCapabilities(MimeTypes.VIDEO_VP9, false);
+    assertEquals(3, lookup.queryCount);
+
+    // A new instance should answer from the file, without querying the lookup.
+    cache.blockUntilStored();
+    cache = new DecoderCapabilitiesCache(lookup, file, FINGERPRINT);
+    DecoderCapabilities capabilities = cache.getDecoderCapabilities(MimeTypes.VIDEO_H264, false);
+    assertEquals("OMX.video.avc", capabilities.name);
+    assertTrue(capabilities.adaptive);
+    assertTrue(Arrays.equals(new int[] {1, 2}, capabilities.profiles));
+    assertTrue(Arrays.equals(new int[] {256, 512}, capabilities.levels));
+    capabilities = cache.getDecoderCapabilities(MimeTypes.AUDIO_AAC, false);
+    assertEquals("OMX.audio.aac", capabilities.name);
+    assertFalse(capabilities.adaptive);
+    assertEquals(0, capabilities.profiles.length);
+    assertNull(cache.getDecoderCapabilities(MimeTypes.VIDEO_VP9, false));
+    assertEquals(3, lookup.queryCount);
+
+    // Secure variants are cached separately.
+    cache.getDecoderCapabilities(MimeTypes.VIDEO_H264, true);
+    assertEquals(4, lookup.queryCount);
+  }
+
+  public void testFileIgnoredIfFingerprintChanges() throws Exception {
+    DecoderCapabilitiesCache cache = new DecoderCapabilitiesCache(lookup, file, FINGERPRINT);
+    cache.getDecoderCapabilities(MimeTypes.VIDEO_H264, false);
+    cache.blockUntilStored();
+    cache = new DecoderCapabilitiesCache(lookup, file, "other");
+    cache.getDecoderCapabilities(MimeTypes.VIDEO_H264, false);
+    assertEquals(2, lookup.queryCount);
+  }
+
+  public void testCorruptFileIgnored() throws Exception {
+    DecoderCapabilitiesCache cache = new DecoderCapabilitiesCache(lookup, file, FINGERPRINT);
+    cache.getDecoderCapabilities(MimeTypes.VIDEO_H264, false);
+    cache.blockUntilStored();
+    // Truncate the file part way through the entry.
+    long length = file.length();
+    FileOutputStream output = new FileOutputStream(file, true);
+    output.getChannel().truncate(length - 4);
+    output.close();
+
+    cache = new DecoderCapabilitiesCache(lookup, file, FINGERPRINT);
+    assertEquals("OMX.video.avc",
+        cache.getDecoderCapabilities(MimeTypes.VIDEO_H264, false).name);
+    assertEquals(2, lookup.queryCount);
+    // The file should have been rewritten.
+    cache.blockUntilStored();
+    cache = new DecoderCapabilitiesCache(lookup, file, FINGERPRINT);
+    cache.getDecoderCapabilities(MimeTypes.VIDEO_H264, false);
+    assertEquals(2, lookup.queryCount);
+  }
+
+  public void testResultsObtainedWhileStoringAreStored() throws Exception {
+    lookup.decoders.put(MimeTypes.VIDEO_VP9, new DecoderCapabilities("OMX.video.vp9", true,
+        new int[0], new int[0]));
+    DecoderCapabilitiesCache cache = new DecoderCapabilitiesCache(lookup, file, FINGERPRINT);
+    // Each result is obtained without waiting for the previous one to be written.
+    cache.getDecoderCapabilities(MimeTypes.VIDEO_H264, false);
+    cache.getDecoderCapabilities(MimeTypes.AUDIO_AAC, false);
+    cache.getDecoderCapabilities(MimeTypes.VIDEO_VP9, false);
+    cache.blockUntilStored();
+
+    cache = new DecoderCapabilitiesCache(lookup, file, FINGERPRINT);
+    assertEquals("OMX.video.avc", cache.getDecoderCapabilities(MimeTypes.VIDEO_H264, false).name);
+    assertEquals("OMX.audio.aac", cache.getDecoderCapabilities(MimeTypes.AUDIO_AAC, false).name);
+    assertEquals("OMX.video.vp9", cache.getDecoderCapabilities(MimeTypes.VIDEO_VP9, false).name);
+    assertEquals(3, lookup.queryCount);
+  }
+
+  public void testResultsCachedInMemoryIfFileCantBeWritten() throws Exception {
+    File unwritableFile = new File(file, "child");
+    DecoderCapabilitiesCache cache =
+        new DecoderCapabilitiesCache(lookup, unwritableFile, FINGERPRINT);
+    assertSame(lookup.decoders.get(MimeTypes.VIDEO_H264),
+        cache.getDecoderCapabilities(MimeTypes.VIDEO_H264, false));
+    cache.blockUntilStored();
+    assertFalse(unwritableFile.exists());
+    assertSame(lookup.decoders.get(MimeTypes.VIDEO_H264),
+        cache.getDecoderCapabilities(MimeTypes.VIDEO_H264, false));
+    assertEquals(1, lookup.queryCount);
+  }
+
+  private static final class FakeLookup implements DecoderCapabilitiesLookup {
+
+    public final HashMap<String, DecoderCapabilities> decoders;
+
+    public int queryCount;
+
+    public FakeLookup() {
+      decoders = new HashMap<>();
+    }
+
+    @Override
+    public DecoderCapabilities getDecoderCapabilities(String mimeType, boolean secure) {
+      queryCount++;
+      return decoders.get(mimeType);
+    }
+
+  }
+
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer;
+
+import com.google.android.exoplayer.extractor.ExtractorSampleSource;
+import com.google.android.exoplayer.extractor.mp3.Mp3Extractor;
+import com.google.android.exoplayer.testutil.SampleConsumingTrackRenderer;
+import com.google.android.exoplayer.upstream.Allocation;
+import com.google.android.exoplayer.upstream.Allocator;
+import com.google.android.exoplayer.upstream.ByteArrayDataSource;
+import com.google.android.exoplayer.upstream.DefaultAllocator;
+import com.google.android.exoplayer.util.HeadlessMessageLoop;
+import com.google.android.exoplayer.util.MpegAudioHeader;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests playback by an {@link ExoPlayer} running on {@link HeadlessMessageLoop}s.
+ */
+public final class HeadlessPlaybackTest extends TestCase {
+
+  private static final String TAG = "HeadlessPlaybackTest";
+
+  /** MPEG-1 Layer III, 128 kbit/s, 44.1 kHz, stereo. */
+  private static final int AUDIO_FRAME_HEADER = 0xFFFB9000;
+  /** Roughly 30 seconds of audio, which is played in simulated time. */
+  private static final int FRAME_COUNT = 1200;
+  private static final int TIMEOUT_MS = 10000;
+  /** Roughly 10 minutes of audio. */
+  private static final int BENCHMARK_FRAME_COUNT = 23000;
+  private static final int BENCHMARK_TIMEOUT_MS = 60000;
+  private static final int ALLOCATION_SIZE = 64 * 1024;
+  private static final int BUFFER_SIZE = 256 * 1024;
+
+  private HeadlessMessageLoop eventLoop;
+  private ExoPlayer player;
+
+  private volatile ExoPlaybackException playbackException;
+
+  @Override
+  public void setUp() {
+    eventLoop = new HeadlessMessageLoop("Events");
+    player = ExoPlayer.Factory.newInstance(1, 1000, 2000, new HeadlessMessageLoop("Playback"),
+        eventLoop);
+  }
+
+  @Override
+  public void tearDown() {
+    player.release();
+    eventLoop.quit();
+  }
+
+  public void testPlaysExtractorSampleSourceToEnd() throws InterruptedException {
+    byte[] data = buildStream(FRAME_COUNT);
+    SampleSource sampleSource = new ExtractorSampleSource(null,
+        new ByteArrayDataSource(data), new DefaultAllocator(ALLOCATION_SIZE), BUFFER_SIZE,
+        new Mp3Extractor());
+    SampleConsumingTrackRenderer renderer = new SampleConsumingTrackRenderer(sampleSource, 0);
+
+    assertTrue(playToEnd(renderer, TIMEOUT_MS));
+    assertNull(playbackException);
+    assertEquals(FRAME_COUNT, renderer.getSampleCount());
+    assertEquals(data.length, renderer.getSampleBytes());
+  }
+
+  public void testPlaybackThroughputBenchmark() throws InterruptedException {
+    byte[] data = buildStream(BENCHMARK_FRAME_COUNT);
+    CountingAllocator allocator = new CountingAllocator(new DefaultAllocator(ALLOCATION_SIZE));
+    SampleSource sampleSource = new ExtractorSampleSource(null,
+        new ByteArrayDataSource(data), allocator, BUFFER_SIZE, new Mp3Extractor());
+    SampleConsumingTrackRenderer renderer = new SampleConsumingTrackRenderer(sampleSource, 0);
+
+    long startTimeNs = System.nanoTime();
+    assertTrue(playToEnd(renderer, BENCHMARK_TIMEOUT_MS));
+    long elapsedNs = System.nanoTime() - startTimeNs;
+    assertNull(playbackException);
+    assertEquals(BENCHMARK_FRAME_COUNT, renderer.getSampleCount());
+    assertEquals(data.length, renderer.getSampleBytes());
+
+    // android.util.Log isn't available when the test runs on the JVM, so the results are printed.
+    double elapsedSeconds = elapsedNs / 1000000000d;
+    System.out.println(TAG + ": Played " + renderer.getSampleCount() + " samples ("
+        + renderer.getSampleBytes() + " bytes) in " + (elapsedNs / 1000000) + "ms: "
+        + (long) (renderer.getSampleCount() / elapsedSeconds) + " samples/sec, "
+        + (long) (renderer.getSampleBytes() / elapsedSeconds) + " bytes/sec, "
+        + (long) (allocator.allocationCount / elapsedSeconds) + " allocations/sec ("
+        + (long) (allocator.allocationCount * ALLOCATION_SIZE / elapsedSeconds)
+        + " bytes/sec)");
+  }
+
+  private static byte[] buildStream(int frameCount) {
+    int frameSize = MpegAudioHeader.getFrameSize(AUDIO_FRAME_HEADER);
+    byte[] data = new byte[frameCount * frameSize];
+    for (int i = 0; i < frameCount; i++) {
+      int offset = i * frameSize;
+      data[offset] = (byte) (AUDIO_FRAME_HEADER >>> 24);
+      data[offset + 1] = (byte) (AUDIO_FRAME_HEADER >>> 16);
+      data[offset + 2] = (byte) (AUDIO_FRAME_HEADER >>> 8);
+      data[offset + 3] = (byte) AUDIO_FRAME_HEADER;
+    }
+    return data;
+  }
+
+  private boolean playToEnd(TrackRenderer renderer, int timeoutMs) throws InterruptedException {
+    final CountDownLatch endedLatch = new CountDownLatch(1);
+    player.addListener(new ExoPlayer.Listener() {
+      @Override
+      public void onPlayerStateChanged(boolean playWhenReady, int playbackState) {
+        if (playbackState == ExoPlayer.STATE_ENDED) {
+          endedLatch.countDown();
+        }
+      }
+
+      @Override
+      public void onPlayWhenReadyCommitted() {
+        // Do nothing.
+      }
+
+      @Override
+      public void onPlayerError(ExoPlaybackException error) {
+        playbackException = error;
+        endedLatch.countDown();
+      }
+    });
+    player.prepare(renderer);
+    player.setPlayWhenReady(true);
+    return endedLatch.await(timeoutMs, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * An {@link Allocator} that counts the allocations obtained from the allocator that it wraps.
+   */
+  private static final class CountingAllocator implements Allocator {
+
+    private final Allocator allocator;
+
+    public volatile long allocationCount;
+
+    public CountingAllocator(Allocator allocator) {
+      this.allocator = allocator;
+    }
+
+    @Override
+    public synchronized Allocation allocate() {
+      allocationCount++;
+      return allocator.allocate();
+    }
+
+    @Override
+    public void release(Allocation allocation) {
+      allocator.release(allocation);
+    }
+
+    @Override
+    public void trim(int targetSize) {
+      allocator.trim(targetSize);
+    }
+
+    @Override
+    public void blockWhileTotalBytesAllocatedExceeds(int limit) throws InterruptedException {
+      allocator.blockWhileTotalBytesAllocatedExceeds(limit);
+    }
+
+    @Override
+    public int getTotalBytesAllocated() {
+      return allocator.getTotalBytesAllocated();
+    }
+
+    @Override
+    public int getIndividualAllocationLength() {
+      return allocator.getIndividualAllocationLength();
+    }
+
+  }
+
+}
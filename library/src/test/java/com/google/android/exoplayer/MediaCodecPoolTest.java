@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer;
+
+import com.google.android.exoplayer.util.MimeTypes;
+
+import android.media.MediaCodec;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for {@link MediaCodecPool}.
+ */
+public class MediaCodecPoolTest extends TestCase {
+
+  private static final String NAME = "OMX.test.decoder";
+  private static final String OTHER_NAME = "OMX.test.other";
+  private static final MediaFormat FORMAT_SD =
+      MediaFormat.createVideoFormat(MimeTypes.VIDEO_H264, 1024, 640, 360, null);
+  private static final MediaFormat FORMAT_HD =
+      MediaFormat.createVideoFormat(MimeTypes.VIDEO_H264, 1024, 1280, 720, null);
+
+  private static final MediaCodecPool.ReconfigurationChecker SAME_SIZE_CHECKER =
+      new MediaCodecPool.ReconfigurationChecker() {
+        @Override
+        public boolean canReconfigureCodec(MediaCodec codec, boolean codecIsAdaptive,
+            MediaFormat oldFormat, MediaFormat newFormat) {
+          return codecIsAdaptive
+              || (oldFormat.width == newFormat.width && oldFormat.height == newFormat.height);
+        }
+      };
+
+  private MediaCodecPool pool;
+  private Object output;
+
+  @Override
+  public void setUp() {
+    pool = new MediaCodecPool();
+    pool.setMaxSize(2);
+    output = new Object();
+  }
+
+  public void testAcquireReturnsConfiguredCodecWithSameOutput() {
+    FakePooledCodec pooledCodec = new FakePooledCodec(NAME, false, FORMAT_SD, output);
+    assertTrue(pool.offer(pooledCodec));
+    assertSame(pooledCodec, pool.acquire(SAME_SIZE_CHECKER, NAME, FORMAT_SD, output, true));
+    assertEquals(0, pool.getSize());
+    assertEquals(0, pooledCodec.releaseCount);
+  }
+
+  public void testAcquireSkipsConfiguredCodecWithOtherOutput() {
+    FakePooledCodec configuredCodec = new FakePooledCodec(NAME, false, FORMAT_SD, new Object());
+    FakePooledCodec stoppedCodec = new FakePooledCodec(NAME, false, null, null);
+    pool.offer(configuredCodec);
+    pool.offer(stoppedCodec);
+    assertSame(stoppedCodec, pool.acquire(SAME_SIZE_CHECKER, NAME, FORMAT_SD, output, true));
+    assertEquals(1, pool.getSize());
+  }
+
+  public void testAcquireSkipsConfiguredCodecThatCantBeReconfigured() {
+    FakePooledCodec configuredCodec = new FakePooledCodec(NAME, false, FORMAT_SD, output);
+    FakePooledCodec stoppedCodec = new FakePooledCodec(NAME, false, null, null);
+    pool.offer(configuredCodec);
+    pool.offer(stoppedCodec);
+    assertSame(stoppedCodec, pool.acquire(SAME_SIZE_CHECKER, NAME, FORMAT_HD, output, true));
+
+    FakePooledCodec adaptiveCodec = new FakePooledCodec(NAME, true, FORMAT_SD, output);
+    pool.offer(adaptiveCodec);
+    assertSame(adaptiveCodec, pool.acquire(SAME_SIZE_CHECKER, NAME, FORMAT_HD, output, true));
+  }
+
+  public void testAcquireMatchesName() {
+    pool.offer(new FakePooledCodec(OTHER_NAME, false, null, null));
+    assertNull(pool.acquire(SAME_SIZE_CHECKER, NAME, FORMAT_SD, output, true));
+    assertEquals(1, pool.getSize());
+  }
+
+  public void testAcquireDisallowingConfiguredReturnsStoppedCodec() {
+    FakePooledCodec configuredCodec = new FakePooledCodec(NAME, false, FORMAT_SD, output);
+    FakePooledCodec stoppedCodec = new FakePooledCodec(NAME, false, null, null);
+    pool.offer(configuredCodec);
+    pool.offer(stoppedCodec);
+    assertSame(stoppedCodec, pool.acquire(SAME_SIZE_CHECKER, NAME, FORMAT_SD, null, false));
+  }
+
+  public void testOfferEvictsLeastRecentlyPooledCodec() {
+    FakePooledCodec firstCodec = new FakePooledCodec(NAME, false, null, null);
+    FakePooledCodec secondCodec = new FakePooledCodec(NAME, false, null, null);
+    FakePooledCodec thirdCodec = new FakePooledCodec(NAME, false, null, null);
+    pool.offer(firstCodec);
+    pool.offer(secondCodec);
+    pool.offer(thirdCodec);
+    assertEquals(2, pool.getSize());
+    assertEquals(1, firstCodec.releaseCount);
+    assertEquals(0, secondCodec.releaseCount);
+    assertEquals(0, thirdCodec.releaseCount);
+  }
+
+  public void testOfferToDisabledPoolIsRejected() {
+    pool.setMaxSize(0);
+    FakePooledCodec pooledCodec = new FakePooledCodec(NAME, false, null, null);
+    assertFalse(pool.offer(pooledCodec));
+    assertEquals(0, pool.getSize());
+    assertEquals(0, pooledCodec.releaseCount);
+  }
+
+  public void testSetMaxSizeEvictsLeastRecentlyPooledCodecs() {
+    FakePooledCodec firstCodec = new FakePooledCodec(NAME, false, null, null);
+    FakePooledCodec secondCodec = new FakePooledCodec(NAME, false, null, null);
+    pool.offer(firstCodec);
+    pool.offer(secondCodec);
+    pool.setMaxSize(1);
+    assertEquals(1, pool.getSize());
+    assertEquals(1, firstCodec.releaseCount);
+    assertEquals(0, secondCodec.releaseCount);
+  }
+
+  public void testCodecWithInvalidOutputIsEvicted() {
+    FakePooledCodec configuredCodec = new FakePooledCodec(NAME, false, FORMAT_SD, output);
+    pool.offer(configuredCodec);
+    configuredCodec.outputValid = false;
+    assertNull(pool.acquire(SAME_SIZE_CHECKER, OTHER_NAME, FORMAT_SD, output, true));
+    assertEquals(0, pool.getSize());
+    assertEquals(1, configuredCodec.releaseCount);
+  }
+
+  public void testCodecWithInvalidOutputIsEvictedOnOffer() {
+    FakePooledCodec configuredCodec = new FakePooledCodec(NAME, false, FORMAT_SD, output);
+    FakePooledCodec stoppedCodec = new FakePooledCodec(NAME, false, null, null);
+    pool.offer(configuredCodec);
+    configuredCodec.outputValid = false;
+    pool.offer(stoppedCodec);
+    assertEquals(1, pool.getSize());
+    assertEquals(1, configuredCodec.releaseCount);
+    assertEquals(0, stoppedCodec.releaseCount);
+  }
+
+  public void testReleaseConfiguredCodecsReleasesCodecsWithSameOutput() {
+    FakePooledCodec configuredCodec = new FakePooledCodec(NAME, false, FORMAT_SD, output);
+    FakePooledCodec otherOutputCodec = new FakePooledCodec(NAME, false, FORMAT_SD, new Object());
+    FakePooledCodec stoppedCodec = new FakePooledCodec(OTHER_NAME, false, null, null);
+    pool.setMaxSize(3);
+    pool.offer(configuredCodec);
+    pool.offer(otherOutputCodec);
+    pool.offer(stoppedCodec);
+    // Configuring a codec with another name on the output requires the output to be free.
+    assertSame(stoppedCodec, pool.acquire(SAME_SIZE_CHECKER, OTHER_NAME, FORMAT_SD, output, true));
+    pool.releaseConfiguredCodecs(output);
+    assertEquals(1, pool.getSize());
+    assertEquals(1, configuredCodec.releaseCount);
+    assertEquals(0, otherOutputCodec.releaseCount);
+    assertEquals(0, stoppedCodec.releaseCount);
+  }
+
+  public void testClearReleasesCodecs() {
+    FakePooledCodec firstCodec = new FakePooledCodec(NAME, false, null, null);
+    FakePooledCodec secondCodec = new FakePooledCodec(OTHER_NAME, false, FORMAT_SD, output);
+    pool.offer(firstCodec);
+    pool.offer(secondCodec);
+    pool.clear();
+    assertEquals(0, pool.getSize());
+    assertEquals(1, firstCodec.releaseCount);
+    assertEquals(1, secondCodec.releaseCount);
+  }
+
+  /**
+   * A {@link MediaCodecPool.PooledCodec} without an underlying codec, which records its releases.
+   */
+  private static final class FakePooledCodec extends MediaCodecPool.PooledCodec {
+
+    public boolean outputValid;
+    public int releaseCount;
+
+    public FakePooledCodec(String name, boolean adaptive, MediaFormat format, Object output) {
+      super(null, name, adaptive, format, output);
+      outputValid = true;
+    }
+
+    @Override
+    public boolean isOutputValid() {
+      return outputValid;
+    }
+
+    @Override
+    public void release() {
+      releaseCount++;
+    }
+
+  }
+
+}
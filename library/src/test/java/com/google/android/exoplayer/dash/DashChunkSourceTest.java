@@ -22,6 +22,7 @@ import com.google.android.exoplayer.MediaFormat;
 import com.google.android.exoplayer.TimeRange;
 import com.google.android.exoplayer.TrackRenderer;
 import com.google.android.exoplayer.chunk.ChunkOperationHolder;
+import com.google.android.exoplayer.chunk.InitializationChunk;
 import com.google.android.exoplayer.chunk.Format;
 import com.google.android.exoplayer.chunk.FormatEvaluator;
 import com.google.android.exoplayer.chunk.FormatEvaluator.FixedEvaluator;
@@ -37,11 +38,16 @@ import com.google.android.exoplayer.dash.mpd.SegmentBase.SegmentTemplate;
 import com.google.android.exoplayer.dash.mpd.SegmentBase.SegmentTimelineElement;
 import com.google.android.exoplayer.dash.mpd.SegmentBase.SingleSegmentBase;
 import com.google.android.exoplayer.dash.mpd.UrlTemplate;
+import com.google.android.exoplayer.testutil.FakeDataSource;
 import com.google.android.exoplayer.testutil.TestUtil;
 import com.google.android.exoplayer.upstream.DataSource;
 import com.google.android.exoplayer.util.FakeClock;
+import com.google.android.exoplayer.util.HeadlessMessageLoop;
 import com.google.android.exoplayer.util.ManifestFetcher;
+import com.google.android.exoplayer.util.MessageLoop;
 
+import android.os.Handler;
+import android.os.Looper;
 import android.test.InstrumentationTestCase;
 
 import org.mockito.Mock;
@@ -49,6 +55,8 @@ import org.mockito.Mock;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Tests {@link DashChunkSource}.
@@ -80,6 +88,13 @@ public class DashChunkSourceTest extends InstrumentationTestCase {
       new Format("2", "video/mp4", 100, TALL_HEIGHT, -1, -1, -1, 1000);
   private static final Format WIDE_VIDEO =
       new Format("3", "video/mp4", WIDE_WIDTH, 50, -1, -1, -1, 1000);
+  private static final Format LOW_BANDWIDTH_VIDEO =
+      new Format("4", "video/mp4", 240, 120, -1, -1, -1, 500);
+
+  private static final long MANIFEST_LOADED_MS = 1000;
+  private static final long CURRENT_TIME_MS = 2000;
+  private static final byte[] PREFETCHED_SEGMENT_DATA = TestUtil.createByteArray(0, 1, 2, 3, 4);
+  private static final long TIMEOUT_MS = 5000;
 
   @Mock private DataSource mockDataSource;
   @Mock private ManifestFetcher<MediaPresentationDescription> mockManifestFetcher;
@@ -315,6 +330,80 @@ public class DashChunkSourceTest extends InstrumentationTestCase {
         seekPositionMs, seekRangeStartMs, seekRangeEndMs, chunkStartTimeMs, chunkEndTimeMs);
   }
 
+  public void testFastStartUsesPrefetchedFirstSegment() throws Exception {
+    MediaPresentationDescription mpd = generateVodMpdWithTemplate();
+    @SuppressWarnings("unchecked")
+    ManifestFetcher<MediaPresentationDescription> manifestFetcher = mock(ManifestFetcher.class);
+    when(manifestFetcher.getManifest()).thenReturn(mpd);
+    when(manifestFetcher.getManifestLoadTimestamp()).thenReturn(MANIFEST_LOADED_MS);
+    DataSource prefetchDataSource = new FakeDataSource.Builder()
+        .appendReadData(PREFETCHED_SEGMENT_DATA).build();
+    StartupTimingsRecorder listener = new StartupTimingsRecorder();
+    final DashChunkSource chunkSource = new DashChunkSource(manifestFetcher, mpd,
+        AdaptationSet.TYPE_VIDEO, null, mockDataSource, prefetchDataSource, EVALUATOR,
+        new FakeClock(CURRENT_TIME_MS), 0, 0, false, new Handler(Looper.getMainLooper()),
+        listener);
+    final List<MediaChunk> queue = new ArrayList<>();
+    final ChunkOperationHolder out = new ChunkOperationHolder();
+    // The prefetch is loaded by a Loader, which delivers its callback to the calling thread's loop.
+    MessageLoop loop = new HeadlessMessageLoop("DashChunkSourceTest");
+    try {
+      runOnLoop(loop, new Runnable() {
+        @Override
+        public void run() {
+          chunkSource.enable();
+          chunkSource.getChunkOperation(queue, 0, 0, out);
+        }
+      });
+      // The lowest bandwidth representation is initialized, whilst its first segment is prefetched.
+      final InitializationChunk initializationChunk = (InitializationChunk) out.chunk;
+      assertEquals(LOW_BANDWIDTH_VIDEO, initializationChunk.format);
+      initializationChunk.format(MediaFormat.createVideoFormat("video/avc", -1, 240, 120, null));
+      runOnLoop(loop, new Runnable() {
+        @Override
+        public void run() {
+          chunkSource.onChunkLoadCompleted(initializationChunk);
+        }
+      });
+
+      // The source waits for the prefetch to complete, rather than requesting the segment again.
+      long deadlineMs = System.currentTimeMillis() + TIMEOUT_MS;
+      do {
+        out.chunk = null;
+        runOnLoop(loop, new Runnable() {
+          @Override
+          public void run() {
+            chunkSource.getChunkOperation(queue, 0, 0, out);
+          }
+        });
+      } while (out.chunk == null && System.currentTimeMillis() < deadlineMs);
+      final MediaChunk mediaChunk = (MediaChunk) out.chunk;
+      assertEquals(LOW_BANDWIDTH_VIDEO, mediaChunk.format);
+      assertEquals(1, mediaChunk.chunkIndex);
+      assertEquals("http://example.com/4/1", mediaChunk.dataSpec.uri.toString());
+      // The chunk reads the prefetched data from memory.
+      assertEquals(0, mediaChunk.dataSpec.position);
+      assertEquals(PREFETCHED_SEGMENT_DATA.length, mediaChunk.dataSpec.length);
+
+      runOnLoop(loop, new Runnable() {
+        @Override
+        public void run() {
+          chunkSource.onChunkLoadCompleted(mediaChunk);
+          chunkSource.disable(queue);
+        }
+      });
+    } finally {
+      loop.quit();
+    }
+
+    assertTrue(listener.awaitStartupTimings());
+    assertEquals(MANIFEST_LOADED_MS, listener.manifestLoadedMs);
+    assertEquals(CURRENT_TIME_MS, listener.enabledMs);
+    assertEquals(CURRENT_TIME_MS, listener.initializationLoadedMs);
+    assertEquals(CURRENT_TIME_MS, listener.firstSegmentLoadedMs);
+    assertTrue(listener.firstSegmentPrefetched);
+  }
+
   private static Representation generateVodRepresentation(long startTimeMs, long duration,
       Format format) {
     SingleSegmentBase segmentBase = new SingleSegmentBase("https://example.com/1.mp4");
@@ -364,6 +453,20 @@ public class DashChunkSourceTest extends InstrumentationTestCase {
     return generateMpd(false, representations, false);
   }
 
+  private static MediaPresentationDescription generateVodMpdWithTemplate() {
+    List<Representation> representations = new ArrayList<>();
+    UrlTemplate initializationTemplate = UrlTemplate.compile("$RepresentationID$/init");
+    UrlTemplate mediaTemplate = UrlTemplate.compile("$RepresentationID$/$Number$");
+    for (Format format : new Format[] {REGULAR_VIDEO, LOW_BANDWIDTH_VIDEO}) {
+      MultiSegmentBase segmentBase = new SegmentTemplate(null, 1000, 0, VOD_DURATION_MS, 1,
+          LIVE_SEGMENT_DURATION_MS, null, initializationTemplate, mediaTemplate,
+          "http://example.com/");
+      representations.add(Representation.newInstance(0, VOD_DURATION_MS, null, 0, format,
+          segmentBase));
+    }
+    return generateMpd(false, representations, false);
+  }
+
   private static MediaPresentationDescription generateLiveMpdWithTimeline(long segmentStartMs,
       long periodStartMs, long durationMs) {
     return generateMpd(true, Collections.singletonList(generateSegmentTimelineRepresentation(
@@ -392,13 +495,29 @@ public class DashChunkSourceTest extends InstrumentationTestCase {
     ManifestFetcher<MediaPresentationDescription> manifestFetcher = mock(ManifestFetcher.class);
     when(manifestFetcher.getManifest()).thenReturn(mpd);
     DashChunkSource chunkSource = new DashChunkSource(manifestFetcher, mpd,
-        AdaptationSet.TYPE_VIDEO, null, mockDataSource, EVALUATOR,
+        AdaptationSet.TYPE_VIDEO, null, mockDataSource, null, EVALUATOR,
         new FakeClock(AVAILABILITY_CURRENT_TIME_MS + periodStartMs), liveEdgeLatencyMs * 1000,
         AVAILABILITY_REALTIME_OFFSET_MS * 1000, false, null, null);
     chunkSource.enable();
     return chunkSource;
   }
 
+  private static void runOnLoop(MessageLoop loop, final Runnable runnable)
+      throws InterruptedException {
+    final CountDownLatch ranLatch = new CountDownLatch(1);
+    loop.createSender(new MessageLoop.Callback() {
+      @Override
+      public void handleMessage(int what, int arg1, int arg2, Object obj) {
+        try {
+          runnable.run();
+        } finally {
+          ranLatch.countDown();
+        }
+      }
+    }).sendMessage(0, 0, 0, null);
+    assertTrue(ranLatch.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+  }
+
   private void checkSeekRange(TimeRange seekRange, long startTimeUs, long endTimeUs) {
     long[] seekRangeValuesUs = seekRange.getCurrentBoundsUs(null);
     assertEquals(startTimeUs, seekRangeValuesUs[0]);
@@ -463,4 +582,41 @@ public class DashChunkSourceTest extends InstrumentationTestCase {
         seekPositionMs, seekRangeStartMs, seekRangeEndMs, chunkStartTimeMs, chunkEndTimeMs);
   }
 
+  private static final class StartupTimingsRecorder implements DashChunkSource.EventListener,
+      DashChunkSource.StartupTimingsListener {
+
+    private final CountDownLatch startupTimingsLatch;
+
+    public long manifestLoadedMs;
+    public long enabledMs;
+    public long initializationLoadedMs;
+    public long firstSegmentLoadedMs;
+    public boolean firstSegmentPrefetched;
+
+    public StartupTimingsRecorder() {
+      startupTimingsLatch = new CountDownLatch(1);
+    }
+
+    public boolean awaitStartupTimings() throws InterruptedException {
+      return startupTimingsLatch.await(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void onSeekRangeChanged(TimeRange seekRange) {
+      // Do nothing.
+    }
+
+    @Override
+    public void onStartupTimings(long manifestLoadedMs, long enabledMs,
+        long initializationLoadedMs, long firstSegmentLoadedMs, boolean firstSegmentPrefetched) {
+      this.manifestLoadedMs = manifestLoadedMs;
+      this.enabledMs = enabledMs;
+      this.initializationLoadedMs = initializationLoadedMs;
+      this.firstSegmentLoadedMs = firstSegmentLoadedMs;
+      this.firstSegmentPrefetched = firstSegmentPrefetched;
+      startupTimingsLatch.countDown();
+    }
+
+  }
+
 }
@@ -15,18 +15,31 @@
  */
 package com.google.android.exoplayer.dash.mpd;
 
+import com.google.android.exoplayer.dash.DashSegmentIndex;
+import com.google.android.exoplayer.dash.mpd.SegmentBase.SegmentTemplate;
+import com.google.android.exoplayer.dash.mpd.SegmentBase.SegmentTimelineElement;
+
 import android.test.InstrumentationTestCase;
+import android.util.Log;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.List;
 
 /**
  * Unit tests for {@link MediaPresentationDescriptionParser}.
  */
 public class MediaPresentationDescriptionParserTest extends InstrumentationTestCase {
 
+  private static final String TAG = "MpdParserTest";
   private static final String SAMPLE_MPD_1 = "dash/sample_mpd_1";
 
+  private static final int LARGE_TIMELINE_ELEMENT_COUNT = 50000;
+  private static final int LARGE_TIMELINE_REPEAT_COUNT = 9;
+  private static final int BENCHMARK_WARMUP_ITERATIONS = 3;
+  private static final int BENCHMARK_ITERATIONS = 5;
+
   public void testParseMediaPresentationDescription() throws IOException {
     MediaPresentationDescriptionParser parser = new MediaPresentationDescriptionParser();
     InputStream inputStream =
@@ -35,4 +48,87 @@ public class MediaPresentationDescriptionParserTest extends InstrumentationTestC
     parser.parse("https://example.com/test.mpd", inputStream);
   }
 
+  public void testParseLargeSegmentTimeline() throws IOException {
+    MediaPresentationDescriptionParser parser = new MediaPresentationDescriptionParser();
+    MediaPresentationDescription mpd = parser.parse("https://example.com/test.mpd",
+        new ByteArrayInputStream(buildLargeSegmentTimelineMpd()));
+
+    Representation representation =
+        mpd.periods.get(0).adaptationSets.get(0).representations.get(0);
+    DashSegmentIndex index = representation.getIndex();
+    int segmentCount = LARGE_TIMELINE_ELEMENT_COUNT * (LARGE_TIMELINE_REPEAT_COUNT + 1);
+    long expectedEndTime = (LARGE_TIMELINE_ELEMENT_COUNT / 2) * (2000 + 2002)
+        * (LARGE_TIMELINE_REPEAT_COUNT + 1);
+    assertEquals(1, index.getFirstSegmentNum());
+    assertEquals(segmentCount, index.getLastSegmentNum());
+    assertEquals(20000000, index.getTimeUs(11));
+    assertEquals(2002000, index.getDurationUs(11));
+    assertEquals(11, index.getSegmentNum(20000000));
+    assertEquals(segmentCount, index.getSegmentNum(expectedEndTime * 1000));
+  }
+
+  public void testParseLargeSegmentTimelineBenchmark() throws IOException {
+    byte[] manifest = buildLargeSegmentTimelineMpd();
+    final SegmentTemplate[] lastSegmentTemplate = new SegmentTemplate[1];
+    MediaPresentationDescriptionParser parser = new MediaPresentationDescriptionParser() {
+      @Override
+      protected SegmentTemplate buildSegmentTemplate(RangedUri initialization, long timescale,
+          long presentationTimeOffset, long periodDurationMs, int startNumber, long duration,
+          List<SegmentTimelineElement> timeline, UrlTemplate initializationTemplate,
+          UrlTemplate mediaTemplate, String baseUrl) {
+        lastSegmentTemplate[0] = super.buildSegmentTemplate(initialization, timescale,
+            presentationTimeOffset, periodDurationMs, startNumber, duration, timeline,
+            initializationTemplate, mediaTemplate, baseUrl);
+        return lastSegmentTemplate[0];
+      }
+    };
+    for (int i = 0; i < BENCHMARK_WARMUP_ITERATIONS; i++) {
+      parser.parse("https://example.com/test.mpd", new ByteArrayInputStream(manifest));
+    }
+
+    long startTimeNs = System.nanoTime();
+    for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+      parser.parse("https://example.com/test.mpd", new ByteArrayInputStream(manifest));
+    }
+    long parseTimeUs = (System.nanoTime() - startTimeNs) / (1000 * BENCHMARK_ITERATIONS);
+
+    // Measure the heap retained by a parsed manifest.
+    lastSegmentTemplate[0] = null;
+    Runtime runtime = Runtime.getRuntime();
+    runtime.gc();
+    long usedMemoryBefore = runtime.totalMemory() - runtime.freeMemory();
+    MediaPresentationDescription mpd = parser.parse("https://example.com/test.mpd",
+        new ByteArrayInputStream(manifest));
+    runtime.gc();
+    long retainedBytes = runtime.totalMemory() - runtime.freeMemory() - usedMemoryBefore;
+    assertEquals(1, mpd.periods.size());
+
+    SegmentTimeline timeline = lastSegmentTemplate[0].segmentTimeline;
+    Log.i(TAG, "Parsed " + timeline.size() + " segments in " + timeline.getRunCount()
+        + " runs: " + parseTimeUs + "us per parse, ~" + (retainedBytes / 1024) + "KB retained");
+    // Memory scales with the number of S elements, not with the number of segments.
+    assertEquals(LARGE_TIMELINE_ELEMENT_COUNT, timeline.getRunCount());
+  }
+
+  /**
+   * Builds a manifest describing a live DVR window of 500,000 segments, using 50,000 S elements
+   * whose durations alternate so that consecutive elements cannot be merged.
+   */
+  private static byte[] buildLargeSegmentTimelineMpd() {
+    StringBuilder builder = new StringBuilder();
+    builder.append("<MPD type=\"dynamic\" availabilityStartTime=\"2015-01-01T00:00:00Z\">")
+        .append("<Period start=\"PT0S\"><AdaptationSet mimeType=\"video/mp4\">")
+        .append("<Representation id=\"1\" bandwidth=\"1000000\" width=\"1280\" ")
+        .append("height=\"720\"><SegmentTemplate timescale=\"1000\" ")
+        .append("media=\"$Time$.m4s\" initialization=\"init.mp4\"><SegmentTimeline>");
+    for (int i = 0; i < LARGE_TIMELINE_ELEMENT_COUNT; i++) {
+      long duration = i % 2 == 0 ? 2000 : 2002;
+      builder.append("<S d=\"").append(duration).append("\" r=\"")
+          .append(LARGE_TIMELINE_REPEAT_COUNT).append("\"/>");
+    }
+    builder.append("</SegmentTimeline></SegmentTemplate></Representation></AdaptationSet>")
+        .append("</Period></MPD>");
+    return builder.toString().getBytes();
+  }
+
 }
@@ -0,0 +1,283 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer.dash.mpd;
+
+import com.google.android.exoplayer.chunk.Format;
+import com.google.android.exoplayer.dash.DashSegmentIndex;
+import com.google.android.exoplayer.dash.mpd.SegmentBase.SegmentTemplate;
+import com.google.android.exoplayer.dash.mpd.SegmentBase.SegmentTimelineElement;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit test for {@link SegmentTimeline}.
+ */
+public class SegmentTimelineTest extends TestCase {
+
+  public void testAppendMergesContiguousRuns() {
+    SegmentTimeline timeline = new SegmentTimeline();
+    timeline.append(0, 100, 3);
+    timeline.append(300, 100, 2);
+    assertEquals(1, timeline.getRunCount());
+    assertEquals(5, timeline.size());
+    assertEquals(500, timeline.getEndTime());
+  }
+
+  public void testAppendDoesNotMergeGapsOrDurationChanges() {
+    SegmentTimeline timeline = new SegmentTimeline();
+    timeline.append(0, 100, 3);
+    timeline.append(400, 100, 1);
+    timeline.append(500, 50, 2);
+    assertEquals(3, timeline.getRunCount());
+    assertEquals(6, timeline.size());
+    assertEquals(0, timeline.getStartTime(0));
+    assertEquals(200, timeline.getStartTime(2));
+    assertEquals(400, timeline.getStartTime(3));
+    assertEquals(550, timeline.getStartTime(5));
+    assertEquals(100, timeline.getDuration(3));
+    assertEquals(50, timeline.getDuration(4));
+    assertEquals(600, timeline.getEndTime());
+  }
+
+  public void testGetSegmentIndex() {
+    SegmentTimeline timeline = new SegmentTimeline();
+    timeline.append(100, 100, 3);
+    timeline.append(500, 50, 2);
+    assertEquals(-1, timeline.getSegmentIndex(99));
+    assertEquals(0, timeline.getSegmentIndex(100));
+    assertEquals(0, timeline.getSegmentIndex(199));
+    assertEquals(2, timeline.getSegmentIndex(300));
+    // Times in the gap between runs map to the last segment of the earlier run.
+    assertEquals(2, timeline.getSegmentIndex(450));
+    assertEquals(3, timeline.getSegmentIndex(500));
+    assertEquals(4, timeline.getSegmentIndex(550));
+    assertEquals(4, timeline.getSegmentIndex(10000));
+  }
+
+  public void testListView() {
+    SegmentTimeline timeline = new SegmentTimeline();
+    timeline.append(0, 10, 2);
+    SegmentTimelineElement element = timeline.get(1);
+    assertEquals(10, element.startTime);
+    assertEquals(10, element.duration);
+    try {
+      timeline.get(2);
+      fail();
+    } catch (IndexOutOfBoundsException e) {
+      // Expected.
+    }
+  }
+
+  public void testCopyOf() {
+    List<SegmentTimelineElement> elements = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      elements.add(new SegmentTimelineElement(i * 10, 10));
+    }
+    SegmentTimeline timeline = SegmentTimeline.copyOf(elements);
+    assertEquals(1, timeline.getRunCount());
+    assertEquals(10, timeline.size());
+    assertEquals(90, timeline.getStartTime(9));
+    assertSame(timeline, SegmentTimeline.copyOf(timeline));
+    assertNull(SegmentTimeline.copyOf(null));
+  }
+
+  public void testAppendTimeline() {
+    SegmentTimeline timeline = new SegmentTimeline();
+    timeline.append(0, 100, 3);
+    SegmentTimeline other = new SegmentTimeline();
+    other.append(100, 100, 4);
+    other.append(500, 50, 2);
+    timeline.append(other, 2);
+    assertEquals(2, timeline.getRunCount());
+    assertEquals(7, timeline.size());
+    assertEquals(300, timeline.getStartTime(3));
+    assertEquals(550, timeline.getStartTime(6));
+    assertEquals(600, timeline.getEndTime());
+  }
+
+  public void testSegmentTemplateAppendSegments() {
+    SegmentTimeline timeline = new SegmentTimeline();
+    timeline.append(0, 1000, 10);
+    SegmentTemplate segmentTemplate = newSegmentTemplate(1, timeline, "$Number$.m4s");
+    DashSegmentIndex index = newRepresentation(segmentTemplate).getIndex();
+
+    // The refreshed window has slid forward by two segments, and contains three new segments.
+    SegmentTimeline refreshedTimeline = new SegmentTimeline();
+    refreshedTimeline.append(5000, 1000, 8);
+    SegmentTemplate refreshed = newSegmentTemplate(6, refreshedTimeline, "$Number$.m4s");
+    assertTrue(segmentTemplate.appendSegments(refreshed));
+    // The segments that precede the refreshed window are removed.
+    assertEquals(6, index.getFirstSegmentNum());
+    assertEquals(5000000, index.getTimeUs(6));
+    assertEquals(13, index.getLastSegmentNum());
+    assertEquals(12000000, index.getTimeUs(13));
+    assertEquals("https://example.com/13.m4s", index.getSegmentUrl(13).getUriString());
+
+    // Refreshing again with the same window appends nothing.
+    assertTrue(segmentTemplate.appendSegments(refreshed));
+    assertEquals(6, index.getFirstSegmentNum());
+    assertEquals(13, index.getLastSegmentNum());
+  }
+
+  public void testSegmentTemplateAppendSegmentsBoundsTimeline() {
+    // A live window of 10 segments whose durations alternate, so that no two runs can be merged.
+    SegmentTemplate segmentTemplate = newSegmentTemplate(1, newAlternatingTimeline(0, 10),
+        "$Number$.m4s");
+    DashSegmentIndex index = newRepresentation(segmentTemplate).getIndex();
+    for (int i = 1; i <= 1000; i++) {
+      // Each refresh slides the window forward by two segments.
+      SegmentTemplate refreshed = newSegmentTemplate(1 + 2 * i, newAlternatingTimeline(2 * i, 10),
+          "$Number$.m4s");
+      assertTrue(segmentTemplate.appendSegments(refreshed));
+    }
+    assertEquals(10, segmentTemplate.segmentTimeline.size());
+    assertEquals(10, segmentTemplate.segmentTimeline.getRunCount());
+    assertEquals(2001, index.getFirstSegmentNum());
+    assertEquals(2010, index.getLastSegmentNum());
+    assertEquals(2000 * 1001000, index.getTimeUs(2001));
+  }
+
+  public void testSegmentTemplateAppendSegmentsCopiesInheritedTimeline() {
+    // Two representations that inherit the same timeline from an enclosing element.
+    SegmentTimeline timeline = new SegmentTimeline();
+    timeline.append(0, 1000, 10);
+    SegmentTemplate first = newSegmentTemplate(1, timeline, "$Number$.m4s");
+    SegmentTemplate second = newSegmentTemplate(1, timeline, "$Number$.m4s");
+
+    SegmentTimeline refreshedTimeline = new SegmentTimeline();
+    refreshedTimeline.append(2000, 1000, 10);
+    assertTrue(first.appendSegments(newSegmentTemplate(3, refreshedTimeline, "$Number$.m4s")));
+    assertTrue(second.appendSegments(newSegmentTemplate(3, refreshedTimeline, "$Number$.m4s")));
+    // Each representation merged into its own copy, leaving the shared timeline unchanged.
+    assertEquals(10, timeline.size());
+    assertEquals(0, timeline.getStartTime(0));
+    assertNotSame(first.segmentTimeline, second.segmentTimeline);
+    for (SegmentTemplate segmentTemplate : new SegmentTemplate[] {first, second}) {
+      DashSegmentIndex index = newRepresentation(segmentTemplate).getIndex();
+      assertEquals(3, index.getFirstSegmentNum());
+      assertEquals(12, index.getLastSegmentNum());
+      assertEquals(11000000, index.getTimeUs(12));
+    }
+  }
+
+  public void testRemoveSegmentsBefore() {
+    SegmentTimeline timeline = new SegmentTimeline();
+    timeline.append(0, 100, 3);
+    timeline.append(300, 50, 2);
+    timeline.append(400, 100, 2);
+    // Remove part of the first run.
+    timeline.removeSegmentsBefore(1);
+    assertEquals(3, timeline.getRunCount());
+    assertEquals(6, timeline.size());
+    assertEquals(100, timeline.getStartTime(0));
+    assertEquals(300, timeline.getStartTime(2));
+    assertEquals(350, timeline.getStartTime(3));
+    assertEquals(400, timeline.getStartTime(4));
+    // Remove the rest of the first run and part of the second.
+    timeline.removeSegmentsBefore(3);
+    assertEquals(2, timeline.getRunCount());
+    assertEquals(3, timeline.size());
+    assertEquals(350, timeline.getStartTime(0));
+    assertEquals(50, timeline.getDuration(0));
+    assertEquals(400, timeline.getStartTime(1));
+    assertEquals(1, timeline.getSegmentIndex(450));
+    assertEquals(600, timeline.getEndTime());
+    // Remove everything.
+    timeline.removeSegmentsBefore(3);
+    assertEquals(0, timeline.getRunCount());
+    assertEquals(0, timeline.size());
+  }
+
+  public void testSegmentTemplateAppendSegmentsIncompatible() {
+    SegmentTimeline timeline = new SegmentTimeline();
+    timeline.append(0, 1000, 10);
+    SegmentTemplate segmentTemplate = newSegmentTemplate(1, timeline, "$Number$.m4s");
+
+    // There's a gap between the existing and refreshed timelines.
+    SegmentTimeline gapTimeline = new SegmentTimeline();
+    gapTimeline.append(11000, 1000, 2);
+    assertFalse(segmentTemplate.appendSegments(newSegmentTemplate(12, gapTimeline,
+        "$Number$.m4s")));
+    // The refreshed segment numbers don't follow on from the existing ones.
+    SegmentTimeline renumberedTimeline = new SegmentTimeline();
+    renumberedTimeline.append(9000, 1000, 3);
+    assertFalse(segmentTemplate.appendSegments(newSegmentTemplate(1, renumberedTimeline,
+        "$Number$.m4s")));
+    assertEquals(10, timeline.size());
+
+    // The segment numbers don't matter if they're not used in the template.
+    SegmentTemplate timeTemplate = newSegmentTemplate(1, timeline, "$Time$.m4s");
+    assertTrue(timeTemplate.appendSegments(newSegmentTemplate(1, renumberedTimeline,
+        "$Time$.m4s")));
+    DashSegmentIndex index = newRepresentation(timeTemplate).getIndex();
+    assertEquals(10, index.getFirstSegmentNum());
+    assertEquals(12, index.getLastSegmentNum());
+  }
+
+  public void testLargeTimelineSegmentIndex() {
+    // 500,000 segments in 50,000 runs of alternating duration.
+    SegmentTimeline timeline = new SegmentTimeline();
+    long time = 0;
+    for (int i = 0; i < 50000; i++) {
+      long duration = i % 2 == 0 ? 2000 : 2002;
+      timeline.append(time, duration, 10);
+      time += duration * 10;
+    }
+    assertEquals(50000, timeline.getRunCount());
+    assertEquals(500000, timeline.size());
+
+    SegmentTemplate segmentTemplate = newSegmentTemplate(1, timeline, "$Time$.m4s");
+    DashSegmentIndex index = newRepresentation(segmentTemplate).getIndex();
+    assertEquals(1, index.getFirstSegmentNum());
+    assertEquals(500000, index.getLastSegmentNum());
+    assertEquals(20000000, index.getTimeUs(11));
+    assertEquals(2002000, index.getDurationUs(11));
+    assertEquals(11, index.getSegmentNum(20000000));
+    assertEquals(500000, index.getSegmentNum(time * 1000));
+    assertEquals("https://example.com/20000.m4s", index.getSegmentUrl(11).getUriString());
+  }
+
+  /**
+   * Returns a timeline of segments whose durations alternate between 1000 and 1002, starting from
+   * the segment at the specified index in the infinite sequence of such segments.
+   */
+  private static SegmentTimeline newAlternatingTimeline(int firstIndex, int count) {
+    SegmentTimeline timeline = new SegmentTimeline();
+    // Each pair of segments lasts 2002, and the indices of the first segments are always even.
+    long time = (firstIndex / 2) * 2002;
+    for (int i = firstIndex; i < firstIndex + count; i++) {
+      long duration = i % 2 == 0 ? 1000 : 1002;
+      timeline.append(time, duration, 1);
+      time += duration;
+    }
+    return timeline;
+  }
+
+  private static SegmentTemplate newSegmentTemplate(int startNumber, SegmentTimeline timeline,
+      String mediaTemplate) {
+    return new SegmentTemplate(null, 1000, 0, -1, startNumber, 0, timeline, null,
+        UrlTemplate.compile(mediaTemplate), "https://example.com/");
+  }
+
+  private static Representation newRepresentation(SegmentTemplate segmentTemplate) {
+    Format format = new Format("1", "video/mp4", 1280, 720, -1, 0, 0, 1000000);
+    return Representation.newInstance(0, -1, null, 0, format, segmentTemplate);
+  }
+
+}
@@ -207,6 +207,87 @@ public class DefaultExtractorInputTest extends TestCase {
     }
   }
 
+  public void testPeekFullyThenReadFully() throws IOException, InterruptedException {
+    FakeDataSource testDataSource = buildDataSource();
+    DefaultExtractorInput input = new DefaultExtractorInput(testDataSource, 0, C.LENGTH_UNBOUNDED);
+    byte[] target = new byte[5];
+    input.peekFully(target, 0, 5);
+    assertTrue(Arrays.equals(Arrays.copyOf(TEST_DATA, 5), target));
+    // Peeking should not advance the read position.
+    assertEquals(0, input.getPosition());
+    assertEquals(5, input.getPeekPosition());
+    // Reading should return the peeked data followed by the rest of the stream.
+    target = new byte[TEST_DATA.length];
+    input.readFully(target, 0, TEST_DATA.length);
+    assertTrue(Arrays.equals(TEST_DATA, target));
+    assertEquals(TEST_DATA.length, input.getPosition());
+    assertEquals(TEST_DATA.length, input.getPeekPosition());
+  }
+
+  public void testResetPeekPosition() throws IOException, InterruptedException {
+    FakeDataSource testDataSource = buildDataSource();
+    DefaultExtractorInput input = new DefaultExtractorInput(testDataSource, 0, C.LENGTH_UNBOUNDED);
+    byte[] target = new byte[4];
+    input.peekFully(target, 0, 4);
+    input.resetPeekPosition();
+    assertEquals(0, input.getPeekPosition());
+    // Peeking again should return the same data, without reading from the data source again.
+    byte[] secondTarget = new byte[6];
+    input.peekFully(secondTarget, 0, 6);
+    assertTrue(Arrays.equals(Arrays.copyOf(TEST_DATA, 6), secondTarget));
+    // Reads should consume the peeked data, after which peeking starts from the read position.
+    input.skipFully(2);
+    input.resetPeekPosition();
+    assertEquals(2, input.getPeekPosition());
+    input.peekFully(target, 0, 4);
+    assertTrue(Arrays.equals(Arrays.copyOfRange(TEST_DATA, 2, 6), target));
+  }
+
+  public void testAdvancePeekPosition() throws IOException, InterruptedException {
+    FakeDataSource testDataSource = buildDataSource();
+    DefaultExtractorInput input = new DefaultExtractorInput(testDataSource, 0, C.LENGTH_UNBOUNDED);
+    input.advancePeekPosition(4);
+    assertEquals(4, input.getPeekPosition());
+    byte[] target = new byte[2];
+    input.peekFully(target, 0, 2);
+    assertTrue(Arrays.equals(Arrays.copyOfRange(TEST_DATA, 4, 6), target));
+    assertEquals(0, input.getPosition());
+  }
+
+  public void testPeekFullyAtEndOfInput() throws IOException, InterruptedException {
+    FakeDataSource testDataSource = buildDataSource();
+    DefaultExtractorInput input = new DefaultExtractorInput(testDataSource, 0, C.LENGTH_UNBOUNDED);
+    input.advancePeekPosition(TEST_DATA.length);
+    // Check that we see end of input if we peek again with allowEndOfInput set.
+    byte[] target = new byte[1];
+    assertFalse(input.peekFully(target, 0, 1, true));
+    assertFalse(input.advancePeekPosition(1, true));
+    // Check that we fail with EOFException if we peek again with allowEndOfInput unset.
+    try {
+      input.peekFully(target, 0, 1);
+      fail();
+    } catch (EOFException e) {
+      // Expected.
+    }
+    // The peeked data should still be readable.
+    input.resetPeekPosition();
+    target = new byte[TEST_DATA.length];
+    input.readFully(target, 0, TEST_DATA.length);
+    assertTrue(Arrays.equals(TEST_DATA, target));
+  }
+
+  public void testPeekFullyTooMuch() throws IOException, InterruptedException {
+    FakeDataSource testDataSource = buildDataSource();
+    DefaultExtractorInput input = new DefaultExtractorInput(testDataSource, 0, C.LENGTH_UNBOUNDED);
+    // Peeking beyond the end of the input should fail, even with allowEndOfInput set.
+    try {
+      input.peekFully(new byte[TEST_DATA.length + 1], 0, TEST_DATA.length + 1, true);
+      fail();
+    } catch (EOFException e) {
+      // Expected.
+    }
+  }
+
   private static FakeDataSource buildDataSource() throws IOException {
     FakeDataSource.Builder builder = new FakeDataSource.Builder();
     builder.appendReadData(Arrays.copyOfRange(TEST_DATA, 0, 3));
@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer.extractor;
+
+import com.google.android.exoplayer.C;
+import com.google.android.exoplayer.SampleHolder;
+import com.google.android.exoplayer.upstream.DefaultAllocator;
+import com.google.android.exoplayer.util.ParsableByteArray;
+
+import android.test.MoreAsserts;
+import android.util.Log;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for {@link DefaultTrackOutput}, and the {@link RollingSampleBuffer} that backs it.
+ */
+public final class DefaultTrackOutputTest extends TestCase {
+
+  private static final String TAG = "DefaultTrackOutputTest";
+
+  private static final long NANOS_PER_SECOND = 1000000000L;
+
+  private static final int ALLOCATION_SIZE = 1024;
+  private static final int MAX_SAMPLE_SIZE = 7;
+  private static final int BENCHMARK_SAMPLE_COUNT = 1000000;
+  private static final int BENCHMARK_BATCH_SIZE = 64;
+  private static final int BENCHMARK_SAMPLES_PER_DRAIN = 10000;
+  private static final int BENCHMARK_WARMUP_ITERATIONS = 3;
+  private static final int BENCHMARK_ITERATIONS = 5;
+
+  private DefaultTrackOutput trackOutput;
+  private SampleHolder sampleHolder;
+  private int writtenSampleCount;
+  private int readSampleCount;
+
+  @Override
+  public void setUp() {
+    trackOutput = new DefaultTrackOutput(new DefaultAllocator(ALLOCATION_SIZE));
+    sampleHolder = new SampleHolder(SampleHolder.BUFFER_REPLACEMENT_MODE_NORMAL);
+  }
+
+  public void testReadSingleSamples() {
+    for (int i = 0; i < 10; i++) {
+      writeSample();
+    }
+    assertReadSamples(10);
+    assertTrue(trackOutput.isEmpty());
+  }
+
+  public void testReadBatchedSamplesAcrossWrapAndCapacityIncrease() {
+    // The sample information queue initially holds 1000 samples. Reading some of the first batch
+    // means that the second batch wraps around the end of the queue.
+    writeSamples(600);
+    assertReadSamples(500);
+    writeSamples(600);
+    assertReadSamples(100);
+    // The third batch doesn't fit, so the capacity is increased whilst the queue is wrapped.
+    writeSamples(900);
+    writeSample();
+    writeSamples(1500);
+    assertReadSamples(writtenSampleCount - readSampleCount);
+    assertEquals(3601, readSampleCount);
+    assertTrue(trackOutput.isEmpty());
+    assertEquals(getSampleTimeUs(writtenSampleCount - 1),
+        trackOutput.getLargestParsedTimestampUs());
+  }
+
+  public void testCommitBenchmark() {
+    for (int i = 0; i < BENCHMARK_WARMUP_ITERATIONS; i++) {
+      runCommitBenchmark(1);
+      runCommitBenchmark(BENCHMARK_BATCH_SIZE);
+    }
+    long singleTimeNs = 0;
+    long batchTimeNs = 0;
+    for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+      singleTimeNs += runCommitBenchmark(1);
+      batchTimeNs += runCommitBenchmark(BENCHMARK_BATCH_SIZE);
+    }
+    long sampleCount = (long) BENCHMARK_SAMPLE_COUNT * BENCHMARK_ITERATIONS;
+    Log.i(TAG, "Committing single samples: " + (sampleCount * NANOS_PER_SECOND / singleTimeNs)
+        + " samples/sec");
+    Log.i(TAG, "Committing batches of " + BENCHMARK_BATCH_SIZE + " samples: "
+        + (sampleCount * NANOS_PER_SECOND / batchTimeNs) + " samples/sec");
+  }
+
+  /**
+   * Writes and reads back {@link #BENCHMARK_SAMPLE_COUNT} one byte samples, committing them in
+   * batches of {@code batchSize}, and returns the time taken in nanoseconds.
+   */
+  private long runCommitBenchmark(int batchSize) {
+    trackOutput = new DefaultTrackOutput(new DefaultAllocator(ALLOCATION_SIZE));
+    long[] timesUs = new long[batchSize];
+    int[] flags = new int[batchSize];
+    int[] sizes = new int[batchSize];
+    ParsableByteArray data = new ParsableByteArray(batchSize);
+    long startTimeNs = System.nanoTime();
+    for (int i = 0; i < BENCHMARK_SAMPLE_COUNT; i += batchSize) {
+      for (int j = 0; j < batchSize; j++) {
+        timesUs[j] = i + j;
+        flags[j] = C.SAMPLE_FLAG_SYNC;
+        sizes[j] = 1;
+      }
+      data.setPosition(0);
+      trackOutput.sampleData(data, batchSize);
+      if (batchSize == 1) {
+        trackOutput.sampleMetadata(timesUs[0], flags[0], sizes[0], 0, null);
+      } else {
+        trackOutput.sampleMetadata(batchSize, timesUs, flags, sizes, 0, null);
+      }
+      if ((i + batchSize) % BENCHMARK_SAMPLES_PER_DRAIN < batchSize) {
+        while (trackOutput.getSample(sampleHolder)) {
+          sampleHolder.clearData();
+        }
+      }
+    }
+    while (trackOutput.getSample(sampleHolder)) {
+      sampleHolder.clearData();
+    }
+    return System.nanoTime() - startTimeNs;
+  }
+
+  private void writeSample() {
+    int index = writtenSampleCount++;
+    trackOutput.sampleData(new ParsableByteArray(getSampleData(index)), getSampleSize(index));
+    trackOutput.sampleMetadata(getSampleTimeUs(index), getSampleFlags(index),
+        getSampleSize(index), 0, null);
+  }
+
+  private void writeSamples(int sampleCount) {
+    long[] timesUs = new long[sampleCount];
+    int[] flags = new int[sampleCount];
+    int[] sizes = new int[sampleCount];
+    for (int i = 0; i < sampleCount; i++) {
+      int index = writtenSampleCount++;
+      byte[] sampleData = getSampleData(index);
+      trackOutput.sampleData(new ParsableByteArray(sampleData), sampleData.length);
+      timesUs[i] = getSampleTimeUs(index);
+      flags[i] = getSampleFlags(index);
+      sizes[i] = sampleData.length;
+    }
+    trackOutput.sampleMetadata(sampleCount, timesUs, flags, sizes, 0, null);
+  }
+
+  private void assertReadSamples(int sampleCount) {
+    for (int i = 0; i < sampleCount; i++) {
+      int index = readSampleCount++;
+      sampleHolder.clearData();
+      assertTrue(trackOutput.getSample(sampleHolder));
+      assertEquals(getSampleTimeUs(index), sampleHolder.timeUs);
+      assertEquals(getSampleFlags(index), sampleHolder.flags);
+      assertEquals(getSampleSize(index), sampleHolder.size);
+      byte[] sampleData = new byte[sampleHolder.size];
+      sampleHolder.data.flip();
+      sampleHolder.data.get(sampleData);
+      MoreAsserts.assertEquals(getSampleData(index), sampleData);
+    }
+  }
+
+  private static byte[] getSampleData(int index) {
+    byte[] data = new byte[getSampleSize(index)];
+    for (int i = 0; i < data.length; i++) {
+      data[i] = (byte) (index + i);
+    }
+    return data;
+  }
+
+  private static int getSampleSize(int index) {
+    return 1 + index % MAX_SAMPLE_SIZE;
+  }
+
+  private static long getSampleTimeUs(int index) {
+    return index * 1000L;
+  }
+
+  private static int getSampleFlags(int index) {
+    return index % 10 == 0 ? C.SAMPLE_FLAG_SYNC : 0;
+  }
+
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer.extractor;
+
+import com.google.android.exoplayer.extractor.ExtractorSampleSource.ExtractingLoadable;
+import com.google.android.exoplayer.extractor.ExtractorSampleSource.ExtractorHolder;
+import com.google.android.exoplayer.upstream.ByteArrayDataSource;
+import com.google.android.exoplayer.upstream.DataSource;
+import com.google.android.exoplayer.upstream.DataSpec;
+import com.google.android.exoplayer.upstream.DefaultAllocator;
+
+import android.net.Uri;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+
+/**
+ * Tests for the loading performed by {@link ExtractorSampleSource}.
+ */
+public class ExtractorSampleSourceTest extends TestCase {
+
+  private static final Uri TEST_URI = Uri.parse("http://www.google.com");
+  private static final int DATA_LENGTH = 4 * 1024 * 1024;
+  /** The position of the second region, which is too far from the first to skip to. */
+  private static final int SECOND_REGION_POSITION = DATA_LENGTH / 2;
+  private static final int READ_LENGTH = 1024;
+  private static final int READ_COUNT = 2000;
+
+  private byte[] data;
+
+  @Override
+  public void setUp() {
+    data = new byte[DATA_LENGTH];
+    for (int i = 0; i < DATA_LENGTH; i++) {
+      data[i] = (byte) i;
+    }
+  }
+
+  public void testAlternatingReadsWithOneDataSourceReopenForEachRead()
+      throws IOException, InterruptedException {
+    CountingDataSource dataSource = new CountingDataSource(data);
+    load(dataSource);
+    assertEquals(READ_COUNT, dataSource.openCount);
+  }
+
+  public void testAlternatingReadsWithTwoDataSourcesOpenEachOnce()
+      throws IOException, InterruptedException {
+    CountingDataSource firstDataSource = new CountingDataSource(data);
+    CountingDataSource secondDataSource = new CountingDataSource(data);
+    load(firstDataSource, secondDataSource);
+    assertEquals(1, firstDataSource.openCount);
+    assertEquals(1, secondDataSource.openCount);
+    assertEquals(1, firstDataSource.closeCount);
+    assertEquals(1, secondDataSource.closeCount);
+  }
+
+  public void testCloseFailureClosesOtherDataSources() throws InterruptedException {
+    CountingDataSource firstDataSource = new CountingDataSource(data);
+    CountingDataSource secondDataSource = new CountingDataSource(data);
+    IOException closeException = new IOException();
+    firstDataSource.closeException = closeException;
+    try {
+      load(firstDataSource, secondDataSource);
+      fail();
+    } catch (IOException e) {
+      assertSame(closeException, e);
+    }
+    assertEquals(1, firstDataSource.closeCount);
+    assertEquals(1, secondDataSource.closeCount);
+  }
+
+  private void load(DataSource... dataSources) throws IOException, InterruptedException {
+    AlternatingExtractor extractor = new AlternatingExtractor();
+    ExtractingLoadable loadable = new ExtractingLoadable(TEST_URI, dataSources,
+        new ExtractorHolder(new Extractor[] {extractor}, null), null,
+        new DefaultAllocator(64 * 1024), 256 * 1024, 0);
+    loadable.load();
+    assertEquals(READ_COUNT, extractor.readCount);
+  }
+
+  /**
+   * An extractor that alternates between reading from the start of the stream and from
+   * {@link #SECOND_REGION_POSITION}, checking the data that it reads.
+   */
+  private static final class AlternatingExtractor implements Extractor {
+
+    private final byte[] buffer;
+    private final long[] regionPositions;
+
+    public int readCount;
+
+    public AlternatingExtractor() {
+      buffer = new byte[READ_LENGTH];
+      regionPositions = new long[] {0, SECOND_REGION_POSITION};
+    }
+
+    @Override
+    public boolean sniff(ExtractorInput input) {
+      return true;
+    }
+
+    @Override
+    public void init(ExtractorOutput output) {
+      // Do nothing.
+    }
+
+    @Override
+    public void seek() {
+      // Do nothing.
+    }
+
+    @Override
+    public int read(ExtractorInput input, PositionHolder seekPosition)
+        throws IOException, InterruptedException {
+      int region = readCount % 2;
+      long position = input.getPosition();
+      assertEquals(regionPositions[region], position);
+      input.readFully(buffer, 0, READ_LENGTH);
+      for (int i = 0; i < READ_LENGTH; i++) {
+        assertEquals((byte) (position + i), buffer[i]);
+      }
+      regionPositions[region] += READ_LENGTH;
+      readCount++;
+      if (readCount == READ_COUNT) {
+        return RESULT_END_OF_INPUT;
+      }
+      seekPosition.position = regionPositions[readCount % 2];
+      return RESULT_SEEK;
+    }
+
+  }
+
+  private static final class CountingDataSource extends ByteArrayDataSource {
+
+    public int openCount;
+    public int closeCount;
+    public IOException closeException;
+
+    public CountingDataSource(byte[] data) {
+      super(data);
+    }
+
+    @Override
+    public long open(DataSpec dataSpec) throws IOException {
+      openCount++;
+      return super.open(dataSpec);
+    }
+
+    @Override
+    public void close() throws IOException {
+      closeCount++;
+      if (closeException != null) {
+        throw closeException;
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer.extractor;
+
+import com.google.android.exoplayer.extractor.ExtractorSelector.UnrecognizedInputFormatException;
+import com.google.android.exoplayer.testutil.TestUtil;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+
+/**
+ * Tests for {@link ExtractorSelector}.
+ */
+public final class ExtractorSelectorTest extends TestCase {
+
+  private static final int DATA_LENGTH = 100;
+
+  private ExtractorInput input;
+
+  @Override
+  public void setUp() throws IOException {
+    input = TestUtil.createTestExtractorInput(TestUtil.buildTestData(DATA_LENGTH));
+  }
+
+  public void testSelectsFirstRecognizingExtractor() throws IOException, InterruptedException {
+    FakeSniffingExtractor rejecting = new FakeSniffingExtractor(FakeSniffingExtractor.REJECT);
+    FakeSniffingExtractor first = new FakeSniffingExtractor(FakeSniffingExtractor.RECOGNIZE);
+    FakeSniffingExtractor second = new FakeSniffingExtractor(FakeSniffingExtractor.RECOGNIZE);
+    Extractor[] extractors = new Extractor[] {rejecting, first, second};
+    assertSame(first, ExtractorSelector.select(extractors, input));
+    assertEquals(1, rejecting.sniffCount);
+    assertEquals(1, first.sniffCount);
+    assertEquals(0, second.sniffCount);
+  }
+
+  public void testEachExtractorSniffsFromStart() throws IOException, InterruptedException {
+    FakeSniffingExtractor first = new FakeSniffingExtractor(FakeSniffingExtractor.REJECT);
+    FakeSniffingExtractor second = new FakeSniffingExtractor(FakeSniffingExtractor.RECOGNIZE);
+    ExtractorSelector.select(new Extractor[] {first, second}, input);
+    assertEquals(0, first.startPeekPosition);
+    assertEquals(0, second.startPeekPosition);
+    assertEquals(0, input.getPosition());
+    assertEquals(0, input.getPeekPosition());
+  }
+
+  public void testEndOfInputTreatedAsUnrecognized() throws IOException, InterruptedException {
+    FakeSniffingExtractor truncated =
+        new FakeSniffingExtractor(FakeSniffingExtractor.PEEK_PAST_END);
+    FakeSniffingExtractor recognizing =
+        new FakeSniffingExtractor(FakeSniffingExtractor.RECOGNIZE);
+    Extractor[] extractors = new Extractor[] {truncated, recognizing};
+    assertSame(recognizing, ExtractorSelector.select(extractors, input));
+    assertEquals(0, recognizing.startPeekPosition);
+  }
+
+  public void testUnrecognizedInputThrows() throws IOException, InterruptedException {
+    Extractor[] extractors = new Extractor[] {
+        new FakeSniffingExtractor(FakeSniffingExtractor.REJECT),
+        new FakeSniffingExtractor(FakeSniffingExtractor.PEEK_PAST_END)};
+    try {
+      ExtractorSelector.select(extractors, input);
+      fail();
+    } catch (UnrecognizedInputFormatException e) {
+      assertTrue(e.getMessage().contains(FakeSniffingExtractor.class.getSimpleName()));
+    }
+    for (Extractor extractor : extractors) {
+      assertEquals(1, ((FakeSniffingExtractor) extractor).sniffCount);
+    }
+    assertEquals(0, input.getPeekPosition());
+  }
+
+  /**
+   * An {@link Extractor} that peeks some data when sniffing, and then recognizes or rejects the
+   * input, or peeks beyond its end.
+   */
+  private static final class FakeSniffingExtractor implements Extractor {
+
+    public static final int RECOGNIZE = 0;
+    public static final int REJECT = 1;
+    public static final int PEEK_PAST_END = 2;
+
+    private final int sniffResult;
+
+    public int sniffCount;
+    public long startPeekPosition;
+
+    public FakeSniffingExtractor(int sniffResult) {
+      this.sniffResult = sniffResult;
+      startPeekPosition = -1;
+    }
+
+    @Override
+    public boolean sniff(ExtractorInput input) throws IOException, InterruptedException {
+      sniffCount++;
+      startPeekPosition = input.getPeekPosition();
+      input.advancePeekPosition(DATA_LENGTH / 2);
+      if (sniffResult == PEEK_PAST_END) {
+        input.advancePeekPosition(DATA_LENGTH);
+        throw new IllegalStateException();
+      }
+      return sniffResult == RECOGNIZE;
+    }
+
+    @Override
+    public void init(ExtractorOutput output) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void seek() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int read(ExtractorInput input, PositionHolder seekPosition) {
+      throw new UnsupportedOperationException();
+    }
+
+  }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer.extractor;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for {@link ExtractorWorkerPool}.
+ */
+public class ExtractorWorkerPoolTest extends TestCase {
+
+  private ExtractorWorkerPool workerPool;
+
+  @Override
+  public void setUp() {
+    workerPool = new ExtractorWorkerPool(2);
+  }
+
+  @Override
+  public void tearDown() {
+    workerPool.release();
+  }
+
+  public void testFirstExceptionRethrown() {
+    IllegalStateException firstException = new IllegalStateException();
+    workerPool.execute(new FailingTask(firstException));
+    workerPool.blockUntilIdle();
+    workerPool.execute(new FailingTask(new IllegalStateException()));
+    workerPool.blockUntilIdle();
+    try {
+      workerPool.maybeThrowError();
+      fail();
+    } catch (IllegalStateException e) {
+      assertSame(firstException, e);
+    }
+  }
+
+  public void testExceptionClearedOnceRethrown() {
+    workerPool.execute(new FailingTask(new IllegalStateException()));
+    workerPool.blockUntilIdle();
+    try {
+      workerPool.maybeThrowError();
+      fail();
+    } catch (IllegalStateException e) {
+      // Expected.
+    }
+    // A subsequent load that succeeds shouldn't see the exception thrown during the previous one.
+    workerPool.execute(new Runnable() {
+      @Override
+      public void run() {
+        // Do nothing.
+      }
+    });
+    workerPool.blockUntilIdle();
+    workerPool.maybeThrowError();
+  }
+
+  private static final class FailingTask implements Runnable {
+
+    private final RuntimeException exception;
+
+    public FailingTask(RuntimeException exception) {
+      this.exception = exception;
+    }
+
+    @Override
+    public void run() {
+      throw exception;
+    }
+
+  }
+
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer.extractor.mp3;
+
+import com.google.android.exoplayer.C;
+import com.google.android.exoplayer.extractor.DefaultExtractorInput;
+import com.google.android.exoplayer.extractor.Extractor;
+import com.google.android.exoplayer.extractor.ExtractorInput;
+import com.google.android.exoplayer.extractor.ExtractorSelector;
+import com.google.android.exoplayer.extractor.PositionHolder;
+import com.google.android.exoplayer.extractor.SeekMap;
+import com.google.android.exoplayer.extractor.mp4.Mp4Extractor;
+import com.google.android.exoplayer.extractor.ts.AdtsExtractor;
+import com.google.android.exoplayer.extractor.ts.TsExtractor;
+import com.google.android.exoplayer.extractor.webm.WebmExtractor;
+import com.google.android.exoplayer.testutil.FakeDataSource;
+import com.google.android.exoplayer.testutil.FakeExtractorOutput;
+import com.google.android.exoplayer.testutil.FakeTrackOutput;
+import com.google.android.exoplayer.testutil.TestUtil;
+import com.google.android.exoplayer.upstream.DataSpec;
+import com.google.android.exoplayer.util.MpegAudioHeader;
+
+import android.net.Uri;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Tests for {@link Mp3Extractor}.
+ */
+public final class Mp3ExtractorTest extends TestCase {
+
+  /** MPEG-1 Layer III, no CRC, 44.1 kHz, stereo. The bitrate index is in bits 12 to 15. */
+  private static final int HEADER_BASE = 0xFFFB0000;
+  /** Bitrate indices of the test stream's frames, which are repeated in order. */
+  private static final int[] BITRATE_INDICES = new int[] {1, 9, 14, 3, 12, 5, 14, 14, 2, 11};
+  private static final int FRAME_COUNT = 400;
+  private static final int SAMPLES_PER_FRAME = 1152;
+  private static final int SAMPLE_RATE = 44100;
+
+  private byte[] data;
+  private int[] framePositions;
+  private int[] frameSizes;
+
+  private Mp3Extractor extractor;
+  private FakeExtractorOutput output;
+
+  @Override
+  public void setUp() {
+    buildVbrStream();
+    extractor = new Mp3Extractor(Mp3Extractor.FLAG_ENABLE_FRAME_INDEX_SEEKING);
+    output = new FakeExtractorOutput();
+    extractor.init(output);
+  }
+
+  public void testReadVbrStream() throws IOException, InterruptedException {
+    consume(0, Integer.MAX_VALUE);
+
+    FakeTrackOutput trackOutput = output.trackOutputs.get(0);
+    trackOutput.assertSampleCount(FRAME_COUNT);
+    for (int i = 0; i < FRAME_COUNT; i++) {
+      assertFrameSample(trackOutput, i, i);
+    }
+  }
+
+  public void testSniffSelectsMp3ExtractorAndRetainsPeekedData()
+      throws IOException, InterruptedException {
+    ExtractorInput input = createInput(0);
+    Extractor[] extractors = new Extractor[] {new Mp4Extractor(), new WebmExtractor(),
+        new TsExtractor(), new AdtsExtractor(), extractor};
+    assertSame(extractor, ExtractorSelector.select(extractors, input));
+    assertEquals(0, input.getPosition());
+
+    // Reading from the same input should output every frame, including those that were peeked.
+    PositionHolder seekPositionHolder = new PositionHolder();
+    while (extractor.read(input, seekPositionHolder) != Extractor.RESULT_END_OF_INPUT) {}
+    FakeTrackOutput trackOutput = output.trackOutputs.get(0);
+    trackOutput.assertSampleCount(FRAME_COUNT);
+    assertFrameSample(trackOutput, 0, 0);
+  }
+
+  public void testSniffSkipsId3Tag() throws IOException, InterruptedException {
+    byte[] id3Tag = TestUtil.joinByteArrays(TestUtil.createId3Header(1024), new byte[1024]);
+    byte[] taggedData = TestUtil.joinByteArrays(id3Tag, data);
+    assertTrue(extractor.sniff(TestUtil.createTestExtractorInput(taggedData)));
+  }
+
+  public void testSniffRejectsId3TagLongerThanLimit() throws IOException, InterruptedException {
+    // The tag's length is the largest that can be encoded, but the data is much shorter. Sniffing
+    // should fail without trying to peek the whole tag.
+    byte[] taggedData = TestUtil.joinByteArrays(TestUtil.createId3Header(0x0FFFFFFF), data);
+    assertFalse(extractor.sniff(TestUtil.createTestExtractorInput(taggedData)));
+  }
+
+  public void testSniffRejectsNonMp3Data() throws IOException, InterruptedException {
+    assertFalse(extractor.sniff(TestUtil.createTestExtractorInput(new byte[8 * 1024])));
+  }
+
+  public void testSeekWithinReadRegionIsExact() throws IOException, InterruptedException {
+    consume(0, Integer.MAX_VALUE);
+    SeekMap seekMap = output.seekMap;
+    assertTrue(seekMap.isSeekable());
+
+    long frameDurationUs = getFrameTimeUs(1);
+    // Synchronization requires several consecutive frames, so don't seek too close to the end.
+    for (int frame = 0; frame < FRAME_COUNT - 4; frame += 7) {
+      // Seek to a time in the middle of the frame, and also exactly to the frame's start.
+      long[] targetTimesUs = new long[] {getFrameTimeUs(frame) + frameDurationUs / 2,
+          getFrameTimeUs(frame)};
+      for (long targetTimeUs : targetTimesUs) {
+        long position = seekMap.getPosition(targetTimeUs);
+        assertEquals(framePositions[frame], position);
+
+        // The first sample read after seeking should be the frame containing the target time.
+        FakeTrackOutput trackOutput = output.trackOutputs.get(0);
+        int sampleIndex = trackOutput.getSampleCount();
+        extractor.seek();
+        consume((int) position, 1);
+        assertFrameSample(trackOutput, sampleIndex, frame);
+        long seekErrorUs = targetTimeUs - getFrameTimeUs(frame);
+        assertTrue(seekErrorUs >= 0 && seekErrorUs < frameDurationUs);
+      }
+    }
+  }
+
+  public void testSeekWithoutFrameIndexIsEstimated() throws IOException, InterruptedException {
+    extractor = new Mp3Extractor();
+    output = new FakeExtractorOutput();
+    extractor.init(output);
+    consume(0, Integer.MAX_VALUE);
+
+    // The first frame has the lowest bitrate, so constant bitrate estimates fall short.
+    int targetFrame = FRAME_COUNT / 10;
+    long position = output.seekMap.getPosition(getFrameTimeUs(targetFrame));
+    assertTrue(position < framePositions[targetFrame - 1]);
+  }
+
+  public void testSeekBeyondReadRegionFallsBackToEstimate()
+      throws IOException, InterruptedException {
+    int framesRead = FRAME_COUNT / 4;
+    consume(0, framesRead);
+    SeekMap seekMap = output.seekMap;
+
+    // Seeks inside the region are exact.
+    int targetFrame = framesRead / 2;
+    assertEquals(framePositions[targetFrame], seekMap.getPosition(getFrameTimeUs(targetFrame)));
+
+    // Seeks beyond the region never land inside it.
+    int indexEndPosition = framePositions[framesRead];
+    assertTrue(seekMap.getPosition(getFrameTimeUs(framesRead + 1)) >= indexEndPosition);
+    assertTrue(seekMap.getPosition(getFrameTimeUs(FRAME_COUNT - 1)) >= indexEndPosition);
+  }
+
+  public void testIndexExtendsWhenReadingContinuesFromRegionEnd()
+      throws IOException, InterruptedException {
+    int framesRead = FRAME_COUNT / 4;
+    consume(0, framesRead);
+
+    // Seek into the indexed region and continue reading past its end.
+    extractor.seek();
+    consume(framePositions[framesRead / 2], FRAME_COUNT / 2);
+
+    int targetFrame = framesRead / 2 + FRAME_COUNT / 2 - 1;
+    assertEquals(framePositions[targetFrame],
+        output.seekMap.getPosition(getFrameTimeUs(targetFrame)));
+  }
+
+  private void buildVbrStream() {
+    framePositions = new int[FRAME_COUNT + 1];
+    frameSizes = new int[FRAME_COUNT];
+    int[] headers = new int[FRAME_COUNT];
+    int position = 0;
+    for (int i = 0; i < FRAME_COUNT; i++) {
+      headers[i] = HEADER_BASE | (BITRATE_INDICES[i % BITRATE_INDICES.length] << 12);
+      frameSizes[i] = MpegAudioHeader.getFrameSize(headers[i]);
+      framePositions[i] = position;
+      position += frameSizes[i];
+    }
+    framePositions[FRAME_COUNT] = position;
+    data = new byte[position];
+    for (int i = 0; i < FRAME_COUNT; i++) {
+      int offset = framePositions[i];
+      data[offset] = (byte) (headers[i] >>> 24);
+      data[offset + 1] = (byte) (headers[i] >>> 16);
+      data[offset + 2] = (byte) (headers[i] >>> 8);
+      data[offset + 3] = (byte) headers[i];
+      // Fill the rest of the frame with a value identifying it, avoiding the sync byte.
+      Arrays.fill(data, offset + 4, offset + frameSizes[i], (byte) (i % 0x7F));
+    }
+  }
+
+  /**
+   * Reads from the stream starting at {@code position}, until {@code sampleCount} more samples
+   * have been output or the end of the stream is reached.
+   */
+  private void consume(int position, int sampleCount) throws IOException, InterruptedException {
+    ExtractorInput input = createInput(position);
+    PositionHolder seekPositionHolder = new PositionHolder();
+    FakeTrackOutput trackOutput = output.trackOutputs.get(0);
+    int targetSampleCount = trackOutput.getSampleCount() + sampleCount;
+    int readResult = Extractor.RESULT_CONTINUE;
+    while (readResult != Extractor.RESULT_END_OF_INPUT
+        && trackOutput.getSampleCount() < targetSampleCount) {
+      readResult = extractor.read(input, seekPositionHolder);
+    }
+  }
+
+  private ExtractorInput createInput(int position) throws IOException {
+    byte[] inputData = Arrays.copyOfRange(data, position, data.length);
+    FakeDataSource dataSource = new FakeDataSource.Builder().appendReadData(inputData).build();
+    dataSource.open(new DataSpec(Uri.parse("http://www.google.com")));
+    return new DefaultExtractorInput(dataSource, position, data.length);
+  }
+
+  private void assertFrameSample(FakeTrackOutput trackOutput, int sampleIndex, int frame) {
+    byte[] frameData = Arrays.copyOfRange(data, framePositions[frame],
+        framePositions[frame] + frameSizes[frame]);
+    trackOutput.assertSample(sampleIndex, frameData, getFrameTimeUs(frame), C.SAMPLE_FLAG_SYNC,
+        null);
+  }
+
+  private static long getFrameTimeUs(int frame) {
+    return (long) frame * SAMPLES_PER_FRAME * C.MICROS_PER_SECOND / SAMPLE_RATE;
+  }
+
+}
@@ -0,0 +1,335 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer.extractor.mp4;
+
+import com.google.android.exoplayer.C;
+import com.google.android.exoplayer.util.ParsableByteArray;
+
+import android.util.Log;
+
+import junit.framework.TestCase;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * Tests for {@link CompactTrackSampleTable}.
+ * <p>
+ * Each test generates the sample table of a two hour, 30 fps video track and checks that the
+ * compact table describes exactly the same samples as an {@link ExpandedTrackSampleTable} parsed
+ * from the same atoms.
+ */
+public final class CompactTrackSampleTableTest extends TestCase {
+
+  private static final String TAG = "CompactTrackSampleTableTest";
+
+  private static final int SAMPLE_COUNT = 2 * 60 * 60 * 30;
+  private static final int TIMESCALE = 30000;
+  private static final int FRAME_DURATION = 1001;
+  private static final int GOP_LENGTH = 30;
+  private static final int SEEK_COUNT = 1000;
+  private static final int BENCHMARK_WARMUP_ITERATIONS = 3;
+  private static final int BENCHMARK_ITERATIONS = 5;
+
+  private Random random;
+  private int[] sampleSizes;
+  private int[] samplesInChunk;
+  private int chunkCount;
+
+  @Override
+  public void setUp() {
+    random = new Random(0);
+    sampleSizes = new int[SAMPLE_COUNT];
+    for (int i = 0; i < SAMPLE_COUNT; i++) {
+      sampleSizes[i] = i % GOP_LENGTH == 0 ? 20000 + random.nextInt(20000) : random.nextInt(8000);
+    }
+    // Chunks hold runs of 15, then 7, then 30 samples.
+    samplesInChunk = new int[SAMPLE_COUNT];
+    int samples = 0;
+    chunkCount = 0;
+    while (samples < SAMPLE_COUNT) {
+      int samplesPerChunk = samples < SAMPLE_COUNT / 3 ? 15 : samples < SAMPLE_COUNT / 2 ? 7 : 30;
+      samplesPerChunk = Math.min(samplesPerChunk, SAMPLE_COUNT - samples);
+      samplesInChunk[chunkCount++] = samplesPerChunk;
+      samples += samplesPerChunk;
+    }
+  }
+
+  public void testCompactTableMatchesExpandedTable() {
+    Atom.ContainerAtom stbl = buildStbl(false, false, true);
+    assertTablesMatch(stbl);
+    assertSeeksMatch(stbl);
+  }
+
+  public void testCompactTableMatchesExpandedTableWith64BitOffsets() {
+    Atom.ContainerAtom stbl = buildStbl(true, false, true);
+    assertTablesMatch(stbl);
+    assertSeeksMatch(stbl);
+  }
+
+  public void testCompactTableMatchesExpandedTableWithoutStss() {
+    Atom.ContainerAtom stbl = buildStbl(false, false, false);
+    assertTablesMatch(stbl);
+    assertSeeksMatch(stbl);
+  }
+
+  public void testCompactTableMatchesExpandedTableWithCtts() {
+    Atom.ContainerAtom stbl = buildStbl(false, true, true);
+    assertTablesMatch(stbl);
+
+    // Synchronization samples have no composition offset, so seeking is unaffected.
+    TrackSampleTable compactTable = AtomParsers.parseCompactStbl(newTrack(), stbl, null);
+    TrackSampleTable.Cursor cursor = compactTable.newCursor();
+    for (int i = 0; i < SAMPLE_COUNT; i += GOP_LENGTH) {
+      cursor.seekTo(i);
+      long timeUs = cursor.timestampUs;
+      assertEquals(i, compactTable.getIndexOfEarlierOrEqualSynchronizationSample(timeUs));
+      assertEquals(i, compactTable.getIndexOfEarlierOrEqualSynchronizationSample(timeUs + 1));
+      assertEquals(i, compactTable.getIndexOfLaterOrEqualSynchronizationSample(timeUs));
+      assertEquals(i, compactTable.getIndexOfLaterOrEqualSynchronizationSample(timeUs - 1));
+    }
+  }
+
+  public void testSampleTableBenchmark() {
+    logBenchmark("Expanded", false);
+    logBenchmark("Compact", true);
+  }
+
+  private void logBenchmark(String name, boolean compact) {
+    Track track = newTrack();
+    Atom.ContainerAtom stbl = buildStbl(false, true, true);
+    for (int i = 0; i < BENCHMARK_WARMUP_ITERATIONS; i++) {
+      readAllSamples(parseStbl(track, stbl, compact));
+    }
+
+    long startTimeNs = System.nanoTime();
+    TrackSampleTable table = null;
+    for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+      table = parseStbl(track, stbl, compact);
+    }
+    long parseTimeUs = (System.nanoTime() - startTimeNs) / (1000 * BENCHMARK_ITERATIONS);
+
+    startTimeNs = System.nanoTime();
+    for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+      readAllSamples(table);
+    }
+    long readTimeUs = (System.nanoTime() - startTimeNs) / (1000 * BENCHMARK_ITERATIONS);
+
+    TrackSampleTable.Cursor cursor = table.newCursor();
+    long durationUs = getTimeUs(SAMPLE_COUNT);
+    startTimeNs = System.nanoTime();
+    for (int i = 0; i < SEEK_COUNT; i++) {
+      long timeUs = (long) (random.nextDouble() * durationUs);
+      cursor.seekTo(table.getIndexOfEarlierOrEqualSynchronizationSample(timeUs));
+    }
+    long seekTimeNs = (System.nanoTime() - startTimeNs) / SEEK_COUNT;
+
+    // Measure the heap retained by a table parsed from atoms that are then discarded, so that the
+    // atom data referenced by the compact table is counted.
+    table = null;
+    stbl = null;
+    Runtime runtime = Runtime.getRuntime();
+    runtime.gc();
+    long usedMemoryBefore = runtime.totalMemory() - runtime.freeMemory();
+    table = parseStbl(track, buildStbl(false, true, true), compact);
+    runtime.gc();
+    long retainedBytes = runtime.totalMemory() - runtime.freeMemory() - usedMemoryBefore;
+    assertEquals(SAMPLE_COUNT, table.sampleCount);
+
+    Log.i(TAG, name + " table of " + SAMPLE_COUNT + " samples: " + parseTimeUs + "us to parse, "
+        + readTimeUs + "us to read forward, " + seekTimeNs + "ns per seek, ~"
+        + (retainedBytes / 1024) + "KB retained");
+  }
+
+  private static TrackSampleTable parseStbl(Track track, Atom.ContainerAtom stbl,
+      boolean compact) {
+    return compact ? AtomParsers.parseCompactStbl(track, stbl, null)
+        : AtomParsers.parseStbl(track, stbl);
+  }
+
+  private static void readAllSamples(TrackSampleTable table) {
+    TrackSampleTable.Cursor cursor = table.newCursor();
+    long totalSize = 0;
+    for (int i = 0; i < table.sampleCount; i++) {
+      totalSize += cursor.size;
+      cursor.advance();
+    }
+    assertTrue(totalSize > 0);
+  }
+
+  private void assertTablesMatch(Atom.ContainerAtom stbl) {
+    Track track = newTrack();
+    TrackSampleTable expandedTable = AtomParsers.parseStbl(track, stbl);
+    TrackSampleTable compactTable = AtomParsers.parseCompactStbl(track, stbl, null);
+    assertEquals(SAMPLE_COUNT, expandedTable.sampleCount);
+    assertEquals(SAMPLE_COUNT, compactTable.sampleCount);
+
+    // Sequential access.
+    TrackSampleTable.Cursor expected = expandedTable.newCursor();
+    TrackSampleTable.Cursor actual = compactTable.newCursor();
+    for (int i = 0; i < SAMPLE_COUNT; i++) {
+      assertCursorsMatch(expected, actual);
+      expected.advance();
+      actual.advance();
+    }
+    assertEquals(SAMPLE_COUNT, actual.index);
+
+    // Random access, followed by sequential access.
+    for (int i = 0; i < SEEK_COUNT; i++) {
+      int index = random.nextInt(SAMPLE_COUNT);
+      expected.seekTo(index);
+      actual.seekTo(index);
+      assertCursorsMatch(expected, actual);
+      for (int j = index + 1; j < Math.min(index + GOP_LENGTH, SAMPLE_COUNT); j++) {
+        expected.advance();
+        actual.advance();
+        assertCursorsMatch(expected, actual);
+      }
+    }
+  }
+
+  private void assertSeeksMatch(Atom.ContainerAtom stbl) {
+    Track track = newTrack();
+    TrackSampleTable expandedTable = AtomParsers.parseStbl(track, stbl);
+    TrackSampleTable compactTable = AtomParsers.parseCompactStbl(track, stbl, null);
+    // The frame duration is doubled for a quarter of the track.
+    long durationUs = getTimeUs(SAMPLE_COUNT + SAMPLE_COUNT / 4);
+    for (int i = 0; i < SEEK_COUNT; i++) {
+      long timeUs = i == 0 ? -1 : (long) (random.nextDouble() * (durationUs + 1000000));
+      assertEquals(expandedTable.getIndexOfEarlierOrEqualSynchronizationSample(timeUs),
+          compactTable.getIndexOfEarlierOrEqualSynchronizationSample(timeUs));
+      assertEquals(expandedTable.getIndexOfLaterOrEqualSynchronizationSample(timeUs),
+          compactTable.getIndexOfLaterOrEqualSynchronizationSample(timeUs));
+    }
+  }
+
+  private static void assertCursorsMatch(TrackSampleTable.Cursor expected,
+      TrackSampleTable.Cursor actual) {
+    assertEquals(expected.index, actual.index);
+    assertEquals(expected.offset, actual.offset);
+    assertEquals(expected.size, actual.size);
+    assertEquals(expected.timestampUs, actual.timestampUs);
+    assertEquals(expected.flags, actual.flags);
+  }
+
+  private static Track newTrack() {
+    return new Track(1, Track.TYPE_VIDEO, TIMESCALE, getTimeUs(SAMPLE_COUNT), null, null, -1);
+  }
+
+  private static long getTimeUs(int sampleIndex) {
+    return (long) sampleIndex * FRAME_DURATION * C.MICROS_PER_SECOND / TIMESCALE;
+  }
+
+  private Atom.ContainerAtom buildStbl(boolean use64BitOffsets, boolean includeCtts,
+      boolean includeStss) {
+    Atom.ContainerAtom stbl = new Atom.ContainerAtom(Atom.TYPE_stbl, 0);
+
+    // stsz
+    ByteBuffer stsz = newFullAtom(Atom.TYPE_stsz, 8 + 4 * SAMPLE_COUNT);
+    stsz.putInt(0);
+    stsz.putInt(SAMPLE_COUNT);
+    for (int i = 0; i < SAMPLE_COUNT; i++) {
+      stsz.putInt(sampleSizes[i]);
+    }
+    stbl.add(newLeafAtom(Atom.TYPE_stsz, stsz));
+
+    // stco or co64, with chunks separated by a gap and, if 64-bit, starting beyond 4 GB.
+    int chunkOffsetsType = use64BitOffsets ? Atom.TYPE_co64 : Atom.TYPE_stco;
+    ByteBuffer chunkOffsets = newFullAtom(chunkOffsetsType,
+        4 + (use64BitOffsets ? 8 : 4) * chunkCount);
+    chunkOffsets.putInt(chunkCount);
+    long offset = use64BitOffsets ? 0x100000000L : 1000;
+    int sampleIndex = 0;
+    for (int i = 0; i < chunkCount; i++) {
+      if (use64BitOffsets) {
+        chunkOffsets.putLong(offset);
+      } else {
+        chunkOffsets.putInt((int) offset);
+      }
+      for (int j = 0; j < samplesInChunk[i]; j++) {
+        offset += sampleSizes[sampleIndex++];
+      }
+      offset += 1000;
+    }
+    stbl.add(newLeafAtom(chunkOffsetsType, chunkOffsets));
+
+    // stsc
+    int stscEntryCount = 0;
+    for (int i = 0; i < chunkCount; i++) {
+      if (i == 0 || samplesInChunk[i] != samplesInChunk[i - 1]) {
+        stscEntryCount++;
+      }
+    }
+    ByteBuffer stsc = newFullAtom(Atom.TYPE_stsc, 4 + 12 * stscEntryCount);
+    stsc.putInt(stscEntryCount);
+    for (int i = 0; i < chunkCount; i++) {
+      if (i == 0 || samplesInChunk[i] != samplesInChunk[i - 1]) {
+        stsc.putInt(i + 1);
+        stsc.putInt(samplesInChunk[i]);
+        stsc.putInt(1);
+      }
+    }
+    stbl.add(newLeafAtom(Atom.TYPE_stsc, stsc));
+
+    // stts, with the frame duration doubled for a period in the middle of the track.
+    ByteBuffer stts = newFullAtom(Atom.TYPE_stts, 4 + 8 * 3);
+    stts.putInt(3);
+    stts.putInt(SAMPLE_COUNT / 2);
+    stts.putInt(FRAME_DURATION);
+    stts.putInt(SAMPLE_COUNT / 4);
+    stts.putInt(2 * FRAME_DURATION);
+    stts.putInt(SAMPLE_COUNT - SAMPLE_COUNT / 2 - SAMPLE_COUNT / 4);
+    stts.putInt(FRAME_DURATION);
+    stbl.add(newLeafAtom(Atom.TYPE_stts, stts));
+
+    // ctts, with a B-frame pattern that leaves synchronization samples unchanged.
+    if (includeCtts) {
+      ByteBuffer ctts = newFullAtom(Atom.TYPE_ctts, 4 + 8 * SAMPLE_COUNT);
+      ctts.putInt(SAMPLE_COUNT);
+      for (int i = 0; i < SAMPLE_COUNT; i++) {
+        ctts.putInt(1);
+        int indexInGop = i % GOP_LENGTH;
+        ctts.putInt(indexInGop == 0 ? 0 : (indexInGop % 3 == 1 ? 2 * FRAME_DURATION : 0));
+      }
+      stbl.add(newLeafAtom(Atom.TYPE_ctts, ctts));
+    }
+
+    // stss
+    if (includeStss) {
+      int syncSampleCount = (SAMPLE_COUNT + GOP_LENGTH - 1) / GOP_LENGTH;
+      ByteBuffer stss = newFullAtom(Atom.TYPE_stss, 4 + 4 * syncSampleCount);
+      stss.putInt(syncSampleCount);
+      for (int i = 0; i < SAMPLE_COUNT; i += GOP_LENGTH) {
+        stss.putInt(i + 1);
+      }
+      stbl.add(newLeafAtom(Atom.TYPE_stss, stss));
+    }
+    return stbl;
+  }
+
+  private static ByteBuffer newFullAtom(int type, int payloadSize) {
+    ByteBuffer atom = ByteBuffer.allocate(Atom.FULL_HEADER_SIZE + payloadSize);
+    atom.putInt(Atom.FULL_HEADER_SIZE + payloadSize);
+    atom.putInt(type);
+    atom.putInt(0); // Version and flags.
+    return atom;
+  }
+
+  private static Atom.LeafAtom newLeafAtom(int type, ByteBuffer atom) {
+    return new Atom.LeafAtom(type, new ParsableByteArray(atom.array()));
+  }
+
+}
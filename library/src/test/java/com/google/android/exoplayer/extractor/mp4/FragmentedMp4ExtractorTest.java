@@ -0,0 +1,363 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer.extractor.mp4;
+
+import com.google.android.exoplayer.C;
+import com.google.android.exoplayer.extractor.DefaultExtractorInput;
+import com.google.android.exoplayer.extractor.Extractor;
+import com.google.android.exoplayer.extractor.ExtractorInput;
+import com.google.android.exoplayer.extractor.PositionHolder;
+import com.google.android.exoplayer.extractor.SeekMap;
+import com.google.android.exoplayer.testutil.FakeDataSource;
+import com.google.android.exoplayer.testutil.FakeExtractorOutput;
+import com.google.android.exoplayer.testutil.FakeTrackOutput;
+import com.google.android.exoplayer.testutil.TestUtil;
+import com.google.android.exoplayer.upstream.DataSpec;
+import com.google.android.exoplayer.util.MimeTypes;
+
+import android.net.Uri;
+
+import junit.framework.TestCase;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Tests for {@link FragmentedMp4Extractor}.
+ * <p>
+ * The test stream is muxed, with a video and an audio track fragment in each moof atom. In each
+ * mdat atom the audio samples precede the video samples, which is the reverse of the order of the
+ * track fragments.
+ */
+public final class FragmentedMp4ExtractorTest extends TestCase {
+
+  /** String of hexadecimal bytes containing the video stsd payload from an AVC video. */
+  private static final byte[] VIDEO_STSD_PAYLOAD = getByteArray(
+      "00000000000000010000009961766331000000000000000100000000000000000000000000000000050002"
+      + "d00048000000480000000000000001000000000000000000000000000000000000000000000000000000"
+      + "00000000000018ffff0000002f617663430164001fffe100186764001facb402802dd808800000030080"
+      + "00001e078c195001000468ee3cb000000014627472740000e35c0042a61000216cb8");
+  private static final byte[] VIDEO_HDLR_PAYLOAD = getByteArray("000000000000000076696465");
+  private static final byte[] VIDEO_MDHD_PAYLOAD =
+      getByteArray("0000000000000000cf6c48890000001e00001c8a55c40000");
+  /** String of hexadecimal bytes containing the audio stsd payload from an AAC track. */
+  private static final byte[] AUDIO_STSD_PAYLOAD = getByteArray(
+      "0000000000000001000000596d703461000000000000000100000000000000000001001000000000ac4400"
+      + "000000003565736473000000000327000000041f401500023e00024bc000023280051012080000000000"
+      + "000000000000000000060102");
+  private static final byte[] AUDIO_HDLR_PAYLOAD = getByteArray("0000000000000000736f756e");
+  private static final byte[] AUDIO_MDHD_PAYLOAD =
+      getByteArray("00000000cf6c4889cf6c488a0000ac4400a3e40055c40000");
+  /** String of hexadecimal bytes containing an mvhd payload from an AVC/AAC video. */
+  private static final byte[] MVHD_PAYLOAD = getByteArray(
+      "00000000cf6c4888cf6c48880000025800023ad40001000001000000000000000000000000010000000000"
+      + "000000000000000000000100000000000000000000000000004000000000000000000000000000000000"
+      + "000000000000000000000000000003");
+
+  private static final int VIDEO_TRACK_ID = 1;
+  private static final int AUDIO_TRACK_ID = 2;
+  private static final int VIDEO_TIMESCALE = 30;
+  private static final int AUDIO_TIMESCALE = 44100;
+  private static final int AUDIO_SAMPLE_DURATION = 1024;
+
+  private static final int FRAGMENT_COUNT = 4;
+  private static final int SAMPLES_PER_FRAGMENT = 3;
+  private static final int VIDEO_SAMPLE_SIZE = 16;
+  private static final int AUDIO_SAMPLE_SIZE = 8;
+  private static final int NON_SYNC_SAMPLE_FLAGS = 0x10000;
+  private static final byte[] EMPTY = new byte[0];
+
+  private FragmentedMp4Extractor extractor;
+  private FakeExtractorOutput extractorOutput;
+  private long[] moofPositions;
+
+  public void testParsesMuxedFragments() throws Exception {
+    useFlags(0);
+    byte[] data = getTestStream(true);
+    TestUtil.consumeTestData(extractor, data);
+
+    assertEquals(2, extractorOutput.trackOutputs.size());
+    assertTrue(extractorOutput.tracksEnded);
+    assertEquals(MimeTypes.VIDEO_H264, extractorOutput.trackOutputs.get(0).format.mimeType);
+    assertEquals(MimeTypes.AUDIO_AAC, extractorOutput.trackOutputs.get(1).format.mimeType);
+    assertSamples(0);
+    // Without the mfra flag, no seek map is output.
+    assertNull(extractorOutput.seekMap);
+  }
+
+  public void testReadsSeekIndexFromMfra() throws Exception {
+    useFlags(FragmentedMp4Extractor.FLAG_SEEK_USING_MFRA);
+    byte[] data = getTestStream(true);
+    consumeTestDataWithKnownLength(data, 0);
+
+    // The samples are read after the seek index.
+    assertSamples(0);
+    SeekMap seekMap = extractorOutput.seekMap;
+    assertTrue(seekMap.isSeekable());
+    for (int i = 0; i < FRAGMENT_COUNT; i++) {
+      long fragmentTimeUs = getVideoTimeUs(i * SAMPLES_PER_FRAGMENT);
+      assertEquals(moofPositions[Math.max(i - 1, 0)], seekMap.getPosition(fragmentTimeUs - 1));
+      assertEquals(moofPositions[i], seekMap.getPosition(fragmentTimeUs));
+      assertEquals(moofPositions[i], seekMap.getPosition(fragmentTimeUs + 1));
+    }
+  }
+
+  public void testSeeksToFragment() throws Exception {
+    useFlags(FragmentedMp4Extractor.FLAG_SEEK_USING_MFRA);
+    byte[] data = getTestStream(true);
+    consumeTestDataWithKnownLength(data, 0);
+
+    // Seek to the third fragment and read to the end of the stream again.
+    long seekTimeUs = getVideoTimeUs(2 * SAMPLES_PER_FRAGMENT);
+    long seekPosition = extractorOutput.seekMap.getPosition(seekTimeUs);
+    extractor.seek();
+    consumeTestDataWithKnownLength(data, seekPosition);
+    assertSamples(2);
+  }
+
+  public void testOutputsUnseekableSeekMapWithoutMfra() throws Exception {
+    useFlags(FragmentedMp4Extractor.FLAG_SEEK_USING_MFRA);
+    byte[] data = getTestStream(false);
+    consumeTestDataWithKnownLength(data, 0);
+
+    assertFalse(extractorOutput.seekMap.isSeekable());
+    assertSamples(0);
+  }
+
+  public void testOutputsUnseekableSeekMapForUnknownLength() throws Exception {
+    useFlags(FragmentedMp4Extractor.FLAG_SEEK_USING_MFRA);
+    byte[] data = getTestStream(true);
+    TestUtil.consumeTestData(extractor, data);
+
+    assertFalse(extractorOutput.seekMap.isSeekable());
+    assertSamples(0);
+  }
+
+  public void testSniffRecognizesFragmentedMp4() throws Exception {
+    useFlags(0);
+    assertTrue(extractor.sniff(TestUtil.createTestExtractorInput(getTestStream(false))));
+  }
+
+  public void testSniffRejectsUnfragmentedMp4() throws Exception {
+    useFlags(0);
+    byte[] data = TestUtil.joinByteArrays(atom(Atom.TYPE_ftyp, EMPTY),
+        atom(Atom.TYPE_moov, atom(Atom.TYPE_mvhd, MVHD_PAYLOAD)),
+        atom(Atom.TYPE_mdat, new byte[VIDEO_SAMPLE_SIZE]));
+    assertFalse(extractor.sniff(TestUtil.createTestExtractorInput(data)));
+  }
+
+  private void useFlags(int flags) {
+    extractor = new FragmentedMp4Extractor(flags);
+    extractorOutput = new FakeExtractorOutput();
+    extractor.init(extractorOutput);
+  }
+
+  /**
+   * Asserts that the track outputs hold every sample of the stream, followed by the samples from
+   * {@code seekFragmentIndex} onwards if it is not zero.
+   */
+  private void assertSamples(int seekFragmentIndex) {
+    FakeTrackOutput videoTrackOutput = extractorOutput.trackOutputs.get(0);
+    FakeTrackOutput audioTrackOutput = extractorOutput.trackOutputs.get(1);
+    int sampleCount = FRAGMENT_COUNT * SAMPLES_PER_FRAGMENT;
+    int seekSampleIndex = seekFragmentIndex * SAMPLES_PER_FRAGMENT;
+    int outputSampleCount = seekFragmentIndex == 0 ? sampleCount
+        : 2 * sampleCount - seekSampleIndex;
+    videoTrackOutput.assertSampleCount(outputSampleCount);
+    audioTrackOutput.assertSampleCount(outputSampleCount);
+    for (int i = 0; i < outputSampleCount; i++) {
+      int sampleIndex = i < sampleCount ? i : i - sampleCount + seekSampleIndex;
+      int videoFlags = sampleIndex % SAMPLES_PER_FRAGMENT == 0 ? C.SAMPLE_FLAG_SYNC : 0;
+      videoTrackOutput.assertSample(i, getVideoOutputSampleData(sampleIndex),
+          getVideoTimeUs(sampleIndex), videoFlags, null);
+      audioTrackOutput.assertSample(i, getAudioSampleData(sampleIndex),
+          getAudioTimeUs(sampleIndex), C.SAMPLE_FLAG_SYNC, null);
+    }
+  }
+
+  /**
+   * Consumes {@code data} from {@code position}, using inputs whose length is known and following
+   * seeks requested by the extractor.
+   */
+  private void consumeTestDataWithKnownLength(byte[] data, long position) throws Exception {
+    PositionHolder positionHolder = new PositionHolder();
+    int result = Extractor.RESULT_SEEK;
+    while (result == Extractor.RESULT_SEEK) {
+      FakeDataSource dataSource = new FakeDataSource.Builder()
+          .appendReadData(Arrays.copyOfRange(data, (int) position, data.length)).build();
+      dataSource.open(new DataSpec(Uri.parse("http://www.google.com")));
+      ExtractorInput input = new DefaultExtractorInput(dataSource, position, data.length);
+      do {
+        result = extractor.read(input, positionHolder);
+      } while (result == Extractor.RESULT_CONTINUE);
+      position = positionHolder.position;
+    }
+  }
+
+  private static long getVideoTimeUs(int sampleIndex) {
+    return (sampleIndex * 1000L / VIDEO_TIMESCALE) * 1000L;
+  }
+
+  private static long getAudioTimeUs(int sampleIndex) {
+    return ((long) sampleIndex * AUDIO_SAMPLE_DURATION * 1000L / AUDIO_TIMESCALE) * 1000L;
+  }
+
+  private static byte[] getVideoInputSampleData(int sampleIndex) {
+    // A single length delimited NAL unit.
+    ByteBuffer sample = ByteBuffer.allocate(VIDEO_SAMPLE_SIZE);
+    sample.putInt(VIDEO_SAMPLE_SIZE - 4);
+    while (sample.hasRemaining()) {
+      sample.put((byte) (sampleIndex + sample.position()));
+    }
+    return sample.array();
+  }
+
+  private static byte[] getVideoOutputSampleData(int sampleIndex) {
+    // The output sample should begin with a NAL start code.
+    byte[] sampleData = getVideoInputSampleData(sampleIndex);
+    sampleData[3] = 1;
+    return sampleData;
+  }
+
+  private static byte[] getAudioSampleData(int sampleIndex) {
+    byte[] sampleData = new byte[AUDIO_SAMPLE_SIZE];
+    Arrays.fill(sampleData, (byte) (-sampleIndex));
+    return sampleData;
+  }
+
+  /** Gets a muxed fragmented stream, optionally ending with an mfra atom. */
+  private byte[] getTestStream(boolean includeMfra) {
+    byte[] data = TestUtil.joinByteArrays(atom(Atom.TYPE_ftyp, EMPTY),
+        atom(Atom.TYPE_moov,
+            atom(Atom.TYPE_mvhd, MVHD_PAYLOAD),
+            getTrak(VIDEO_TRACK_ID, VIDEO_MDHD_PAYLOAD, VIDEO_HDLR_PAYLOAD, VIDEO_STSD_PAYLOAD),
+            getTrak(AUDIO_TRACK_ID, AUDIO_MDHD_PAYLOAD, AUDIO_HDLR_PAYLOAD, AUDIO_STSD_PAYLOAD),
+            atom(Atom.TYPE_mvex, getTrex(VIDEO_TRACK_ID), getTrex(AUDIO_TRACK_ID))));
+    moofPositions = new long[FRAGMENT_COUNT];
+    for (int i = 0; i < FRAGMENT_COUNT; i++) {
+      moofPositions[i] = data.length;
+      data = TestUtil.joinByteArrays(data, getFragment(i));
+    }
+    if (includeMfra) {
+      ByteBuffer tfra = ByteBuffer.allocate(16 + FRAGMENT_COUNT * 19);
+      tfra.putInt(0x01000000); // Version 1.
+      tfra.putInt(VIDEO_TRACK_ID);
+      tfra.putInt(0); // One byte traf, trun and sample numbers.
+      tfra.putInt(FRAGMENT_COUNT);
+      for (int i = 0; i < FRAGMENT_COUNT; i++) {
+        tfra.putLong(i * SAMPLES_PER_FRAGMENT);
+        tfra.putLong(moofPositions[i]);
+        tfra.put(new byte[] {1, 1, 1});
+      }
+      ByteBuffer mfro = ByteBuffer.allocate(8);
+      mfro.putInt(0);
+      mfro.putInt(8 + 8 + tfra.capacity() + 8 + mfro.capacity());
+      data = TestUtil.joinByteArrays(data, atom(Atom.TYPE_mfra,
+          atom(Atom.TYPE_tfra, tfra.array()), atom(Atom.TYPE_mfro, mfro.array())));
+    }
+    return data;
+  }
+
+  private static byte[] getTrak(int trackId, byte[] mdhd, byte[] hdlr, byte[] stsd) {
+    ByteBuffer tkhd = ByteBuffer.allocate(24);
+    tkhd.position(12);
+    tkhd.putInt(trackId);
+    tkhd.putInt(0);
+    tkhd.putInt(-1); // Unknown duration.
+    return atom(Atom.TYPE_trak,
+        atom(Atom.TYPE_tkhd, tkhd.array()),
+        atom(Atom.TYPE_mdia,
+            atom(Atom.TYPE_mdhd, mdhd),
+            atom(Atom.TYPE_hdlr, hdlr),
+            atom(Atom.TYPE_minf,
+                atom(Atom.TYPE_stbl,
+                    atom(Atom.TYPE_stsd, stsd)))));
+  }
+
+  private static byte[] getTrex(int trackId) {
+    ByteBuffer trex = ByteBuffer.allocate(24);
+    trex.putInt(0);
+    trex.putInt(trackId);
+    trex.putInt(1); // Default sample description index.
+    return atom(Atom.TYPE_trex, trex.array());
+  }
+
+  private static byte[] getFragment(int fragmentIndex) {
+    int firstSampleIndex = fragmentIndex * SAMPLES_PER_FRAGMENT;
+    int audioDataSize = SAMPLES_PER_FRAGMENT * AUDIO_SAMPLE_SIZE;
+    // Build the moof atom once to determine its size, and then again with the data offsets.
+    int moofSize = getMoof(firstSampleIndex, 0, 0).length;
+    int audioDataOffset = moofSize + Atom.HEADER_SIZE;
+    byte[] moof = getMoof(firstSampleIndex, audioDataOffset + audioDataSize, audioDataOffset);
+    byte[] mdat = new byte[0];
+    for (int i = 0; i < SAMPLES_PER_FRAGMENT; i++) {
+      mdat = TestUtil.joinByteArrays(mdat, getAudioSampleData(firstSampleIndex + i));
+    }
+    for (int i = 0; i < SAMPLES_PER_FRAGMENT; i++) {
+      mdat = TestUtil.joinByteArrays(mdat, getVideoInputSampleData(firstSampleIndex + i));
+    }
+    return TestUtil.joinByteArrays(moof, atom(Atom.TYPE_mdat, mdat));
+  }
+
+  private static byte[] getMoof(int firstSampleIndex, int videoDataOffset, int audioDataOffset) {
+    return atom(Atom.TYPE_moof,
+        getTraf(VIDEO_TRACK_ID, firstSampleIndex, 1, VIDEO_SAMPLE_SIZE, videoDataOffset, true),
+        getTraf(AUDIO_TRACK_ID, firstSampleIndex * AUDIO_SAMPLE_DURATION, AUDIO_SAMPLE_DURATION,
+            AUDIO_SAMPLE_SIZE, audioDataOffset, false));
+  }
+
+  private static byte[] getTraf(int trackId, long decodeTime, int sampleDuration, int sampleSize,
+      int dataOffset, boolean onlyFirstSampleIsSync) {
+    ByteBuffer tfhd = ByteBuffer.allocate(8);
+    tfhd.putInt(0x020000); // default-base-is-moof.
+    tfhd.putInt(trackId);
+    ByteBuffer tfdt = ByteBuffer.allocate(12);
+    tfdt.putInt(0x01000000); // Version 1.
+    tfdt.putLong(decodeTime);
+    ByteBuffer trun = ByteBuffer.allocate(12 + SAMPLES_PER_FRAGMENT * 12);
+    trun.putInt(0x000701); // Data offset and sample durations, sizes and flags present.
+    trun.putInt(SAMPLES_PER_FRAGMENT);
+    trun.putInt(dataOffset);
+    for (int i = 0; i < SAMPLES_PER_FRAGMENT; i++) {
+      trun.putInt(sampleDuration);
+      trun.putInt(sampleSize);
+      trun.putInt(onlyFirstSampleIsSync && i > 0 ? NON_SYNC_SAMPLE_FLAGS : 0);
+    }
+    return atom(Atom.TYPE_traf,
+        atom(Atom.TYPE_tfhd, tfhd.array()),
+        atom(Atom.TYPE_tfdt, tfdt.array()),
+        atom(Atom.TYPE_trun, trun.array()));
+  }
+
+  private static byte[] atom(int type, byte[]... payloads) {
+    byte[] payload = TestUtil.joinByteArrays(payloads);
+    ByteBuffer atom = ByteBuffer.allocate(Atom.HEADER_SIZE + payload.length);
+    atom.putInt(atom.capacity());
+    atom.putInt(type);
+    atom.put(payload);
+    return atom.array();
+  }
+
+  private static byte[] getByteArray(String hexBytes) {
+    byte[] result = new byte[hexBytes.length() / 2];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = (byte) ((Character.digit(hexBytes.charAt(i * 2), 16) << 4)
+          + Character.digit(hexBytes.charAt(i * 2 + 1), 16));
+    }
+    return result;
+  }
+
+}
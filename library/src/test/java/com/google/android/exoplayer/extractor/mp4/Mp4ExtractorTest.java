@@ -17,19 +17,28 @@ package com.google.android.exoplayer.extractor.mp4;
 
 import com.google.android.exoplayer.C;
 import com.google.android.exoplayer.MediaFormat;
+import com.google.android.exoplayer.extractor.DefaultExtractorInput;
+import com.google.android.exoplayer.extractor.Extractor;
+import com.google.android.exoplayer.extractor.ExtractorInput;
+import com.google.android.exoplayer.extractor.PositionHolder;
 import com.google.android.exoplayer.extractor.SeekMap;
+import com.google.android.exoplayer.testutil.FakeDataSource;
 import com.google.android.exoplayer.testutil.FakeExtractorOutput;
 import com.google.android.exoplayer.testutil.FakeTrackOutput;
 import com.google.android.exoplayer.testutil.TestUtil;
 import com.google.android.exoplayer.util.MimeTypes;
+import com.google.android.exoplayer.upstream.DataSpec;
 import com.google.android.exoplayer.util.Util;
 
 import android.annotation.TargetApi;
+import android.net.Uri;
 
 import junit.framework.TestCase;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -183,6 +192,112 @@ public final class Mp4ExtractorTest extends TestCase {
     }
   }
 
+  public void testParsesValidMp4FileWithCompactSampleTables() throws Exception {
+    useFlags(Mp4Extractor.FLAG_COMPACT_SAMPLE_TABLES);
+    testParsesValidMp4File();
+  }
+
+  public void testParsesValidMp4FileInTimestampOrder() throws Exception {
+    useFlags(Mp4Extractor.FLAG_READ_SAMPLES_IN_TIMESTAMP_ORDER);
+    testParsesValidMp4File();
+  }
+
+  public void testParsesValidMp4FileWithoutStssWithCompactSampleTables() throws Exception {
+    useFlags(Mp4Extractor.FLAG_COMPACT_SAMPLE_TABLES);
+    testParsesValidMp4FileWithoutStss();
+  }
+
+  public void testParsesValidMp4vFileWithCompactSampleTables() throws Exception {
+    useFlags(Mp4Extractor.FLAG_COMPACT_SAMPLE_TABLES);
+    testParsesValidMp4vFile();
+  }
+
+  public void testSniffRecognizesUnfragmentedMp4() throws Exception {
+    assertTrue(extractor.sniff(TestUtil.createTestExtractorInput(getTestMp4File(false))));
+  }
+
+  public void testSniffRejectsFragmentedMp4() throws Exception {
+    byte[] data = Mp4Atom.serialize(
+        atom(Atom.TYPE_ftyp, EMPTY),
+        atom(Atom.TYPE_moov,
+            atom(Atom.TYPE_mvhd, MVHD_PAYLOAD),
+            atom(Atom.TYPE_mvex, EMPTY)));
+    assertFalse(extractor.sniff(TestUtil.createTestExtractorInput(data)));
+  }
+
+  public void testSniffRejectsNonMp4Data() throws Exception {
+    // An atom that's too small to contain its own header.
+    byte[] data = TestUtil.joinByteArrays(TestUtil.createByteArray(0, 0, 0, 4),
+        new byte[1024]);
+    assertFalse(extractor.sniff(TestUtil.createTestExtractorInput(data)));
+  }
+
+  public void testResumesParsingAfterReadErrors() throws Exception {
+    assertResumesParsingAfterReadErrors(0);
+  }
+
+  public void testResumesParsingAfterReadErrorsWithCompactSampleTables() throws Exception {
+    assertResumesParsingAfterReadErrors(Mp4Extractor.FLAG_COMPACT_SAMPLE_TABLES);
+  }
+
+  private void assertResumesParsingAfterReadErrors(int flags) throws Exception {
+    byte[] data = getTestInputData(true /* includeStss */, false /* mp4vFormat */);
+    // Fail reading at positions throughout the ftyp and moov atoms.
+    for (int errorPosition = 1; errorPosition < 1038; errorPosition += 13) {
+      useFlags(flags);
+      consumeTestDataWithReadError(data, errorPosition);
+      assertSeekMap(extractorOutput.seekMap, true);
+      FakeTrackOutput videoTrackOutput = extractorOutput.trackOutputs.get(0);
+      videoTrackOutput.assertSampleCount(SAMPLE_TIMESTAMPS.length);
+      for (int i = 0; i < SAMPLE_TIMESTAMPS.length; i++) {
+        byte[] sampleData = getOutputSampleData(i, true);
+        int sampleFlags = SAMPLE_IS_SYNC[i] ? C.SAMPLE_FLAG_SYNC : 0;
+        long sampleTimestampUs = getVideoTimestampUs(SAMPLE_TIMESTAMPS[i]);
+        videoTrackOutput.assertSample(i, sampleData, sampleTimestampUs, sampleFlags, null);
+      }
+    }
+  }
+
+  /**
+   * Consumes {@code data}, simulating a read error at {@code errorPosition} after which reading
+   * resumes from the position of the input, as {@code ExtractorSampleSource} does.
+   */
+  private void consumeTestDataWithReadError(byte[] data, int errorPosition) throws Exception {
+    FakeDataSource dataSource = new FakeDataSource.Builder()
+        .appendReadData(Arrays.copyOf(data, errorPosition))
+        .appendReadError(new IOException())
+        .appendReadData(Arrays.copyOfRange(data, errorPosition, data.length))
+        .build();
+    PositionHolder positionHolder = new PositionHolder();
+    long position = 0;
+    boolean errorThrown = false;
+    int result = Extractor.RESULT_CONTINUE;
+    while (result != Extractor.RESULT_END_OF_INPUT) {
+      dataSource.open(new DataSpec(Uri.parse("http://www.google.com"), position, C.LENGTH_UNBOUNDED,
+          null));
+      ExtractorInput input = new DefaultExtractorInput(dataSource, position, C.LENGTH_UNBOUNDED);
+      try {
+        do {
+          result = extractor.read(input, positionHolder);
+        } while (result == Extractor.RESULT_CONTINUE);
+        position = result == Extractor.RESULT_SEEK ? positionHolder.position : input.getPosition();
+      } catch (IOException e) {
+        assertFalse(errorThrown);
+        errorThrown = true;
+        position = input.getPosition();
+      } finally {
+        dataSource.close();
+      }
+    }
+    assertTrue(errorThrown);
+  }
+
+  private void useFlags(int flags) {
+    extractorOutput = new FakeExtractorOutput();
+    extractor = new Mp4Extractor(flags);
+    extractor.init(extractorOutput);
+  }
+
   private static void assertSeekMap(SeekMap seekMap, boolean haveStss) {
     assertNotNull(seekMap);
     int expectedSeekPosition = getSampleOffset(0);
@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer.extractor.mp4;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for {@link PackedSampleSizes}.
+ */
+public final class PackedSampleSizesTest extends TestCase {
+
+  private static final int[] SAMPLE_SIZES =
+      {0, 17, 255, 256, 40000, 65535, 65536, 1 << 20, (1 << 24) - 1, 1 << 24, Integer.MAX_VALUE};
+
+  public void testAddAndGet() {
+    PackedSampleSizes sampleSizes = new PackedSampleSizes(2);
+    for (int i = 0; i < SAMPLE_SIZES.length; i++) {
+      sampleSizes.add(SAMPLE_SIZES[i]);
+      // Earlier sizes are retained when the sizes are repacked.
+      assertEquals(i + 1, sampleSizes.size());
+      for (int j = 0; j <= i; j++) {
+        assertEquals(SAMPLE_SIZES[j], sampleSizes.get(j));
+      }
+    }
+  }
+
+  public void testGetOutOfBounds() {
+    PackedSampleSizes sampleSizes = new PackedSampleSizes(0);
+    sampleSizes.add(1);
+    try {
+      sampleSizes.get(1);
+      fail();
+    } catch (IndexOutOfBoundsException e) {
+      // Expected.
+    }
+  }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer.extractor.ts;
+
+import com.google.android.exoplayer.testutil.TestUtil;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Tests for {@link AdtsExtractor}.
+ */
+public final class AdtsExtractorTest extends TestCase {
+
+  private static final int FRAME_COUNT = 10;
+  private static final int FRAME_SIZE = 100;
+
+  private byte[] data;
+  private AdtsExtractor extractor;
+
+  @Override
+  public void setUp() {
+    data = new byte[FRAME_COUNT * FRAME_SIZE];
+    for (int i = 0; i < FRAME_COUNT; i++) {
+      int offset = i * FRAME_SIZE;
+      // AAC LC, 44.1 kHz, stereo, no CRC.
+      data[offset] = (byte) 0xFF;
+      data[offset + 1] = (byte) 0xF1;
+      data[offset + 2] = (byte) 0x50;
+      data[offset + 3] = (byte) (0x80 | ((FRAME_SIZE >> 11) & 0x03));
+      data[offset + 4] = (byte) (FRAME_SIZE >> 3);
+      data[offset + 5] = (byte) (((FRAME_SIZE & 0x07) << 5) | 0x1F);
+      data[offset + 6] = (byte) 0xFC;
+      // Fill the rest of the frame with a value that isn't a sync byte.
+      Arrays.fill(data, offset + 7, offset + FRAME_SIZE, (byte) 0x11);
+    }
+    extractor = new AdtsExtractor();
+  }
+
+  public void testSniffRecognizesAdts() throws IOException, InterruptedException {
+    assertTrue(extractor.sniff(TestUtil.createTestExtractorInput(data)));
+  }
+
+  public void testSniffRecognizesAdtsAfterGarbage() throws IOException, InterruptedException {
+    byte[] prefixedData = TestUtil.joinByteArrays(new byte[FRAME_SIZE / 2], data);
+    assertTrue(extractor.sniff(TestUtil.createTestExtractorInput(prefixedData)));
+  }
+
+  public void testSniffSkipsId3Tag() throws IOException, InterruptedException {
+    byte[] id3Tag = TestUtil.joinByteArrays(TestUtil.createId3Header(1024), new byte[1024]);
+    byte[] taggedData = TestUtil.joinByteArrays(id3Tag, data);
+    assertTrue(extractor.sniff(TestUtil.createTestExtractorInput(taggedData)));
+  }
+
+  public void testSniffRejectsId3TagLongerThanLimit() throws IOException, InterruptedException {
+    // The tag's length is the largest that can be encoded, but the data is much shorter. Sniffing
+    // should fail without trying to peek the whole tag.
+    byte[] taggedData = TestUtil.joinByteArrays(TestUtil.createId3Header(0x0FFFFFFF), data);
+    assertFalse(extractor.sniff(TestUtil.createTestExtractorInput(taggedData)));
+  }
+
+  public void testSniffRejectsNonAdtsData() throws IOException, InterruptedException {
+    assertFalse(extractor.sniff(TestUtil.createTestExtractorInput(new byte[16 * 1024])));
+  }
+
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer.extractor.ts;
+
+import com.google.android.exoplayer.C;
+import com.google.android.exoplayer.extractor.ExtractorWorkerPool;
+import com.google.android.exoplayer.testutil.FakeExtractorOutput;
+import com.google.android.exoplayer.testutil.FakeTrackOutput;
+import com.google.android.exoplayer.testutil.TestUtil;
+import com.google.android.exoplayer.util.MpegAudioHeader;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Tests for {@link TsExtractor}.
+ */
+public final class TsExtractorTest extends TestCase {
+
+  private static final int TS_PACKET_SIZE = 188;
+  private static final int PMT_PID = 0x100;
+  private static final int[] AUDIO_PIDS = new int[] {0x101, 0x102};
+  /** Stream types of the audio elementary streams, both of which are read by MpegAudioReader. */
+  private static final int[] AUDIO_STREAM_TYPES = new int[] {0x03, 0x04};
+  /** MPEG-1 Layer III, 128 kbit/s, 44.1 kHz, stereo. */
+  private static final int AUDIO_FRAME_HEADER = 0xFFFB9000;
+  /** The number of frames per audio stream. Enough to exceed the pipelined readers' batching. */
+  private static final int FRAME_COUNT = 600;
+  /** The duration of each frame in 90 kHz PTS units, rounded down. */
+  private static final int FRAME_PTS_DURATION = 1152 * 90000 / 44100;
+
+  private byte[] frame;
+  private byte[] data;
+
+  @Override
+  public void setUp() {
+    frame = new byte[MpegAudioHeader.getFrameSize(AUDIO_FRAME_HEADER)];
+    frame[0] = (byte) (AUDIO_FRAME_HEADER >>> 24);
+    frame[1] = (byte) (AUDIO_FRAME_HEADER >>> 16);
+    frame[2] = (byte) (AUDIO_FRAME_HEADER >>> 8);
+    frame[3] = (byte) AUDIO_FRAME_HEADER;
+    data = buildStream();
+  }
+
+  public void testReadMpegAudio() throws IOException, InterruptedException {
+    TsExtractor extractor = new TsExtractor();
+    FakeExtractorOutput output = new FakeExtractorOutput();
+    extractor.init(output);
+    TestUtil.consumeTestData(extractor, data);
+    assertAudioSamples(output);
+  }
+
+  public void testReadMpegAudioWithWorkerPool() throws IOException, InterruptedException {
+    ExtractorWorkerPool workerPool = new ExtractorWorkerPool(2);
+    try {
+      TsExtractor extractor = new TsExtractor(0, null, true, workerPool);
+      FakeExtractorOutput output = new FakeExtractorOutput();
+      extractor.init(output);
+      TestUtil.consumeTestData(extractor, data);
+      // The extractor waits for the pool at the end of the input, so all samples are available.
+      assertAudioSamples(output);
+    } finally {
+      workerPool.release();
+    }
+  }
+
+  public void testSniffRecognizesTs() throws IOException, InterruptedException {
+    assertTrue(new TsExtractor().sniff(TestUtil.createTestExtractorInput(data)));
+  }
+
+  public void testSniffRejectsMissingSyncByte() throws IOException, InterruptedException {
+    byte[] corruptedData = Arrays.copyOf(data, data.length);
+    corruptedData[TS_PACKET_SIZE * 2] = 0;
+    assertFalse(new TsExtractor().sniff(TestUtil.createTestExtractorInput(corruptedData)));
+  }
+
+  private void assertAudioSamples(FakeExtractorOutput output) {
+    for (int streamType : AUDIO_STREAM_TYPES) {
+      FakeTrackOutput trackOutput = output.trackOutputs.get(streamType);
+      trackOutput.assertSampleCount(FRAME_COUNT);
+      for (int i = 0; i < FRAME_COUNT; i++) {
+        trackOutput.assertSample(i, getFrame(i), getPts(i) * C.MICROS_PER_SECOND / 90000,
+            C.SAMPLE_FLAG_SYNC, null);
+      }
+    }
+  }
+
+  /**
+   * Builds a stream containing a PAT, a PMT and two MPEG audio streams, whose PES packets are
+   * interleaved and each contain a single frame. Alternate packets have an unspecified length.
+   */
+  private byte[] buildStream() {
+    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    // Program association section, with a single program.
+    writeSection(stream, 0, new byte[] {0x00, (byte) 0xB0, 0x0D, 0x00, 0x01, (byte) 0xC1, 0x00,
+        0x00, 0x00, 0x01, (byte) (0xE0 | (PMT_PID >> 8)), (byte) PMT_PID, 0, 0, 0, 0});
+    // Program map section, listing the audio streams.
+    byte[] pmt = new byte[12 + AUDIO_PIDS.length * 5 + 4];
+    int sectionLength = pmt.length - 3;
+    pmt[0] = 0x02;
+    pmt[1] = (byte) (0xB0 | (sectionLength >> 8));
+    pmt[2] = (byte) sectionLength;
+    pmt[8] = (byte) 0xE0;
+    pmt[10] = (byte) 0xF0;
+    for (int i = 0; i < AUDIO_PIDS.length; i++) {
+      int offset = 12 + i * 5;
+      pmt[offset] = (byte) AUDIO_STREAM_TYPES[i];
+      pmt[offset + 1] = (byte) (0xE0 | (AUDIO_PIDS[i] >> 8));
+      pmt[offset + 2] = (byte) AUDIO_PIDS[i];
+      pmt[offset + 3] = (byte) 0xF0;
+    }
+    writeSection(stream, PMT_PID, pmt);
+    for (int i = 0; i < FRAME_COUNT; i++) {
+      for (int pid : AUDIO_PIDS) {
+        writePesPacket(stream, pid, getPts(i), getFrame(i), i % 2 == 0);
+      }
+    }
+    return stream.toByteArray();
+  }
+
+  private byte[] getFrame(int index) {
+    byte[] frameData = Arrays.copyOf(frame, frame.length);
+    // Fill the rest of the frame with a value identifying it, avoiding the sync byte.
+    Arrays.fill(frameData, 4, frameData.length, (byte) (index % 0x7F));
+    return frameData;
+  }
+
+  private static long getPts(int frameIndex) {
+    return (long) frameIndex * FRAME_PTS_DURATION;
+  }
+
+  private static void writeSection(ByteArrayOutputStream stream, int pid, byte[] section) {
+    byte[] payload = new byte[section.length + 1];
+    // The payload starts with a pointer field of zero.
+    System.arraycopy(section, 0, payload, 1, section.length);
+    writeTsPackets(stream, pid, payload);
+  }
+
+  private static void writePesPacket(ByteArrayOutputStream stream, int pid, long pts,
+      byte[] payload, boolean specifyLength) {
+    byte[] pesPacket = new byte[14 + payload.length];
+    pesPacket[2] = 0x01;
+    pesPacket[3] = (byte) 0xC0;
+    int packetLength = specifyLength ? pesPacket.length - 6 : 0;
+    pesPacket[4] = (byte) (packetLength >> 8);
+    pesPacket[5] = (byte) packetLength;
+    pesPacket[6] = (byte) 0x80;
+    pesPacket[7] = (byte) 0x80; // PTS_DTS_flags = '10'
+    pesPacket[8] = 0x05;
+    pesPacket[9] = (byte) (0x21 | ((pts >> 29) & 0x0E));
+    pesPacket[10] = (byte) (pts >> 22);
+    pesPacket[11] = (byte) (0x01 | ((pts >> 14) & 0xFE));
+    pesPacket[12] = (byte) (pts >> 7);
+    pesPacket[13] = (byte) (0x01 | ((pts << 1) & 0xFE));
+    System.arraycopy(payload, 0, pesPacket, 14, payload.length);
+    writeTsPackets(stream, pid, pesPacket);
+  }
+
+  /**
+   * Writes {@code payload} as the payload of one or more TS packets, stuffing the last packet's
+   * adaptation field so that the payload ends at the end of the packet.
+   */
+  private static void writeTsPackets(ByteArrayOutputStream stream, int pid, byte[] payload) {
+    int offset = 0;
+    while (offset < payload.length) {
+      int payloadSize = Math.min(TS_PACKET_SIZE - 4, payload.length - offset);
+      int adaptationFieldSize = TS_PACKET_SIZE - 4 - payloadSize;
+      byte[] packet = new byte[TS_PACKET_SIZE];
+      packet[0] = 0x47;
+      packet[1] = (byte) ((offset == 0 ? 0x40 : 0x00) | (pid >> 8));
+      packet[2] = (byte) pid;
+      packet[3] = (byte) (adaptationFieldSize > 0 ? 0x30 : 0x10);
+      if (adaptationFieldSize > 0) {
+        // The adaptation field length excludes the length byte itself.
+        packet[4] = (byte) (adaptationFieldSize - 1);
+        if (adaptationFieldSize > 1) {
+          packet[5] = 0x00;
+          Arrays.fill(packet, 6, 4 + adaptationFieldSize, (byte) 0xFF);
+        }
+      }
+      System.arraycopy(payload, offset, packet, 4 + adaptationFieldSize, payloadSize);
+      stream.write(packet, 0, TS_PACKET_SIZE);
+      offset += payloadSize;
+    }
+  }
+
+}
@@ -23,6 +23,7 @@ import com.google.android.exoplayer.upstream.DataSource;
 import com.google.android.exoplayer.upstream.DataSpec;
 
 import android.net.Uri;
+import android.util.Log;
 
 import junit.framework.TestCase;
 
@@ -36,6 +37,13 @@ import java.util.List;
  */
 public class DefaultEbmlReaderTest extends TestCase {
 
+  private static final String TAG = "DefaultEbmlReaderTest";
+
+  private static final int BENCHMARK_BLOCK_COUNT = 20000;
+  private static final int BENCHMARK_BLOCK_SIZE = 1024;
+  private static final int BENCHMARK_WARMUP_ITERATIONS = 3;
+  private static final int BENCHMARK_ITERATIONS = 5;
+
   public void testMasterElement() throws IOException, InterruptedException {
     ExtractorInput input = createTestInput(0x1A, 0x45, 0xDF, 0xA3, 0x84, 0x42, 0x85, 0x81, 0x01);
     TestOutput expected = new TestOutput();
@@ -53,6 +61,28 @@ public class DefaultEbmlReaderTest extends TestCase {
     assertEvents(input, expected.events);
   }
 
+  public void testMasterElementsNestedBeyondInitialStackCapacity()
+      throws IOException, InterruptedException {
+    int depth = 20;
+    int[] data = new int[depth * 5];
+    for (int i = 0; i < depth; i++) {
+      data[i * 5] = 0x18;
+      data[i * 5 + 1] = 0x53;
+      data[i * 5 + 2] = 0x80;
+      data[i * 5 + 3] = 0x67;
+      data[i * 5 + 4] = 0x80 | ((depth - i - 1) * 5);
+    }
+    ExtractorInput input = createTestInput(data);
+    TestOutput expected = new TestOutput();
+    for (int i = 0; i < depth; i++) {
+      expected.startMasterElement(TestOutput.ID_SEGMENT, (i + 1) * 5, (depth - i - 1) * 5);
+    }
+    for (int i = 0; i < depth; i++) {
+      expected.endMasterElement(TestOutput.ID_SEGMENT);
+    }
+    assertEvents(input, expected.events);
+  }
+
   public void testUnsignedIntegerElement() throws IOException, InterruptedException {
     // 0xFE is chosen because for signed integers it should be interpreted as -2
     ExtractorInput input = createTestInput(0x42, 0xF7, 0x81, 0xFE);
@@ -117,6 +147,65 @@ public class DefaultEbmlReaderTest extends TestCase {
     assertEvents(input, expected.events);
   }
 
+  public void testBytesElement() throws IOException, InterruptedException {
+    ExtractorInput input = createTestInput(0x53, 0xAB, 0x84, 0x1C, 0x53, 0xBB, 0x6B,
+        0x53, 0xAB, 0x82, 0x01, 0x02);
+    TestOutput expected = new TestOutput();
+    expected.bytesElement(TestOutput.ID_SEEK_ID, new byte[] {0x1C, 0x53, (byte) 0xBB, 0x6B}, 0, 4);
+    expected.bytesElement(TestOutput.ID_SEEK_ID, new byte[] {0x01, 0x02}, 0, 2);
+    assertEvents(input, expected.events);
+  }
+
+  public void testBytesElementEmpty() throws IOException, InterruptedException {
+    ExtractorInput input = createTestInput(0x53, 0xAB, 0x80);
+    TestOutput expected = new TestOutput();
+    expected.bytesElement(TestOutput.ID_SEEK_ID, new byte[0], 0, 0);
+    assertEvents(input, expected.events);
+  }
+
+  public void testParseLargeFileBenchmark() throws IOException, InterruptedException {
+    // A Matroska file with a cluster for each block, and a cue point for every hundredth block.
+    StreamBuilder builder = new StreamBuilder()
+        .setHeader("matroska")
+        .setInfo(1000, BENCHMARK_BLOCK_COUNT * 1000L)
+        .addVp9Track(1280, 720, null);
+    byte[] blockData = new byte[BENCHMARK_BLOCK_SIZE];
+    for (int i = 0; i < BENCHMARK_BLOCK_COUNT; i++) {
+      builder.addSimpleBlockMedia(1, i, 0, i % 30 == 0, false, blockData);
+    }
+    byte[] data = builder.build(BENCHMARK_BLOCK_COUNT / 100);
+
+    for (int i = 0; i < BENCHMARK_WARMUP_ITERATIONS; i++) {
+      parseAll(data);
+    }
+    long elementCount = 0;
+    long startTimeNs = System.nanoTime();
+    for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+      elementCount = parseAll(data);
+    }
+    long elapsedUs = (System.nanoTime() - startTimeNs) / 1000;
+    assertTrue(elementCount > BENCHMARK_BLOCK_COUNT);
+    long totalBytes = (long) data.length * BENCHMARK_ITERATIONS;
+    Log.i(TAG, "Parsed " + data.length + " bytes (" + elementCount + " elements) in "
+        + (elapsedUs / BENCHMARK_ITERATIONS) + "us: " + (totalBytes / elapsedUs) + " bytes/us, "
+        + (elementCount * BENCHMARK_ITERATIONS * 1000000 / elapsedUs) + " elements/sec");
+  }
+
+  /**
+   * Reads every element in {@code data}, returning the number of elements that were output.
+   */
+  private static long parseAll(byte[] data) throws IOException, InterruptedException {
+    DataSource dataSource = new FakeDataSource.Builder().appendReadData(data).build();
+    dataSource.open(new DataSpec(Uri.parse("http://www.google.com")));
+    ExtractorInput input = new DefaultExtractorInput(dataSource, 0, data.length);
+    DefaultEbmlReader reader = new DefaultEbmlReader();
+    CountingOutput output = new CountingOutput();
+    reader.init(output);
+    while (reader.read(input)) {}
+    assertEquals(data.length, input.getPosition());
+    return output.elementCount;
+  }
+
   private static void assertEvents(ExtractorInput input, List<String> expectedEvents)
       throws IOException, InterruptedException {
     DefaultEbmlReader reader = new DefaultEbmlReader();
@@ -158,6 +247,60 @@ public class DefaultEbmlReaderTest extends TestCase {
     return input;
   }
 
+  /**
+   * An {@link EbmlReaderOutput} that recognizes the same elements as {@link WebmExtractor}, and
+   * counts them without retaining their contents.
+   */
+  private static final class CountingOutput implements EbmlReaderOutput {
+
+    private final WebmExtractor extractor = new WebmExtractor();
+
+    public long elementCount;
+
+    @Override
+    public int getElementType(int id) {
+      return extractor.getElementType(id);
+    }
+
+    @Override
+    public void startMasterElement(int id, long contentPosition, long contentSize) {
+      elementCount++;
+    }
+
+    @Override
+    public void endMasterElement(int id) {
+      // Do nothing.
+    }
+
+    @Override
+    public void integerElement(int id, long value) {
+      elementCount++;
+    }
+
+    @Override
+    public void floatElement(int id, double value) {
+      elementCount++;
+    }
+
+    @Override
+    public void stringElement(int id, String value) {
+      elementCount++;
+    }
+
+    @Override
+    public void binaryElement(int id, int contentSize, ExtractorInput input)
+        throws IOException, InterruptedException {
+      elementCount++;
+      input.skipFully(contentSize);
+    }
+
+    @Override
+    public void bytesElement(int id, byte[] data, int offset, int length) {
+      elementCount++;
+    }
+
+  }
+
   /**
    * An {@link EbmlReaderOutput} that records each event callback.
    */
@@ -172,6 +315,7 @@ public class DefaultEbmlReaderTest extends TestCase {
     private static final int ID_SEGMENT = 0x18538067;
     private static final int ID_DURATION = 0x4489;
     private static final int ID_SIMPLE_BLOCK = 0xA3;
+    private static final int ID_SEEK_ID = 0x53AB;
 
     private final List<String> events = new ArrayList<>();
 
@@ -190,6 +334,8 @@ public class DefaultEbmlReaderTest extends TestCase {
           return EbmlReader.TYPE_BINARY;
         case ID_DURATION:
           return EbmlReader.TYPE_FLOAT;
+        case ID_SEEK_ID:
+          return EbmlReader.TYPE_BYTES;
         default:
           return EbmlReader.TYPE_UNKNOWN;
       }
@@ -229,6 +375,12 @@ public class DefaultEbmlReaderTest extends TestCase {
       events.add(formatEvent(id, "bytes=" + Arrays.toString(bytes)));
     }
 
+    @Override
+    public void bytesElement(int id, byte[] data, int offset, int length) {
+      events.add(formatEvent(id, "bytes=" + Arrays.toString(
+          Arrays.copyOfRange(data, offset, offset + length))));
+    }
+
     private static String formatEvent(int id, String event) {
       return "[" + Integer.toHexString(id) + "] " + event;
     }
@@ -69,10 +69,12 @@ import java.util.List;
   private EbmlElement info;
   private List<EbmlElement> trackEntries;
   private List<EbmlElement> mediaSegments;
+  private List<Integer> clusterTimecodes;
 
   public StreamBuilder() {
     trackEntries = new LinkedList<>();
     mediaSegments = new LinkedList<>();
+    clusterTimecodes = new LinkedList<>();
   }
 
   public StreamBuilder setHeader(String docType) {
@@ -205,6 +207,48 @@ import java.util.List;
     return EbmlElement.serialize(header, segmentElement);
   }
 
+  /**
+   * Serializes the constructed stream to a {@code byte[]}, with Cues that follow the media and a
+   * SeekHead that points to them. The Cues contain a cue point for each Cluster.
+   */
+  public byte[] buildWithCuesAtEnd() {
+    Assertions.checkNotNull(header);
+    Assertions.checkNotNull(info);
+
+    EbmlElement tracks = element(0x1654AE6B, trackEntries.toArray(new EbmlElement[0]));
+    EbmlElement[] clusters = mediaSegments.toArray(new EbmlElement[0]);
+
+    // The size of the SeekHead doesn't depend on the position of the Cues.
+    EbmlElement seekHead = createSeekHeadElement(0);
+    long position = seekHead.getSize() + info.getSize() + tracks.getSize();
+    EbmlElement[] cuePointElements = new EbmlElement[clusters.length];
+    for (int i = 0; i < clusters.length; i++) {
+      cuePointElements[i] = createCuePointElement(clusterTimecodes.get(i), (int) position);
+      position += clusters[i].getSize();
+    }
+    EbmlElement cues = element(0x1C53BB6B, cuePointElements); // Cues
+    seekHead = createSeekHeadElement(position);
+
+    // Build the top-level segment element.
+    EbmlElement[] children = new EbmlElement[4 + clusters.length];
+    children[0] = seekHead;
+    children[1] = info;
+    children[2] = tracks;
+    System.arraycopy(clusters, 0, children, 3, clusters.length);
+    children[3 + clusters.length] = cues;
+    EbmlElement segmentElement = element(0x18538067, children); // Segment
+
+    // Serialize the EBML header and the top-level segment element.
+    return EbmlElement.serialize(header, segmentElement);
+  }
+
+  private static EbmlElement createSeekHeadElement(long cuesPosition) {
+    return element(0x114D9B74, // SeekHead
+        element(0x4DBB, // Seek
+            element(0x53AB, getIntegerBytes(0x1C53BB6B)), // SeekID
+            element(0x53AC, getLongBytes(cuesPosition)))); // SeekPosition
+  }
+
   private static EbmlElement createCuePointElement(int cueTime, int cueClusterPosition) {
     byte[] positionBytes = getLongBytes(cueClusterPosition);
     return element(0xBB, // CuePoint
@@ -304,7 +348,8 @@ import java.util.List;
         element(0x63A2, codecPrivate)); // CodecPrivate
   }
 
-  private static EbmlElement createCluster(int timecode, EbmlElement blockGroupOrSimpleBlock) {
+  private EbmlElement createCluster(int timecode, EbmlElement blockGroupOrSimpleBlock) {
+    clusterTimecodes.add(timecode);
     return element(0x1F43B675, // Cluster
         element(0xE7, getIntegerBytes(timecode)), // Timecode
         blockGroupOrSimpleBlock);
@@ -22,6 +22,11 @@ import com.google.android.exoplayer.MediaFormat;
 import com.google.android.exoplayer.ParserException;
 import com.google.android.exoplayer.drm.DrmInitData;
 import com.google.android.exoplayer.extractor.ChunkIndex;
+import com.google.android.exoplayer.extractor.Extractor;
+import com.google.android.exoplayer.extractor.ExtractorInput;
+import com.google.android.exoplayer.extractor.PositionHolder;
+import com.google.android.exoplayer.extractor.SeekMap;
+import com.google.android.exoplayer.extractor.mp4.Mp4Extractor;
 import com.google.android.exoplayer.extractor.webm.StreamBuilder.ContentEncodingSettings;
 import com.google.android.exoplayer.testutil.FakeExtractorOutput;
 import com.google.android.exoplayer.testutil.FakeTrackOutput;
@@ -290,6 +295,21 @@ public final class WebmExtractorTest extends InstrumentationTestCase {
     TestUtil.consumeTestData(extractor, data);
   }
 
+  public void testSniff() throws IOException, InterruptedException {
+    byte[] data = new StreamBuilder()
+        .setHeader(WEBM_DOC_TYPE)
+        .setInfo(DEFAULT_TIMECODE_SCALE, TEST_DURATION_US)
+        .addVp9Track(TEST_WIDTH, TEST_HEIGHT, null)
+        .build(1);
+
+    assertTrue(extractor.sniff(TestUtil.createTestExtractorInput(data)));
+    assertFalse(new Mp4Extractor().sniff(TestUtil.createTestExtractorInput(data)));
+  }
+
+  public void testSniffRejectsNonEbmlData() throws IOException, InterruptedException {
+    assertFalse(extractor.sniff(TestUtil.createTestExtractorInput(createFrameData(2048))));
+  }
+
   public void testPrepareInvalidDocType() throws IOException, InterruptedException {
     byte[] data = new StreamBuilder()
         .setHeader("webB")
@@ -646,6 +666,101 @@ public final class WebmExtractorTest extends InstrumentationTestCase {
         false, null, getAudioOutput());
   }
 
+  public void testReadCuesLazily() throws IOException, InterruptedException {
+    useLazyCues();
+    byte[] media = createFrameData(100);
+    byte[] data = getStreamWithCuesAtEnd(media);
+    ExtractorInput input = TestUtil.createTestExtractorInput(data);
+    PositionHolder seekPosition = new PositionHolder();
+
+    // The first sample is read without reading the Cues, and positions are estimated.
+    assertEquals(Extractor.RESULT_CONTINUE, extractor.read(input, seekPosition));
+    getVideoOutput().assertSampleCount(1);
+    assertTrue(extractorOutput.seekMap.isSeekable());
+    assertFalse(extractorOutput.seekMap instanceof ChunkIndex);
+
+    // The Cues are read at the start of the second Cluster, seeking to them and back once.
+    assertEquals(2, consumeTestData(data, input));
+    assertVp9VideoFormat();
+    getVideoOutput().assertSampleCount(3);
+    for (int i = 0; i < 3; i++) {
+      assertSample(i, media, i * 100000, true, false, null, getVideoOutput());
+    }
+    ChunkIndex index = (ChunkIndex) extractorOutput.seekMap;
+    assertEquals(3, index.length);
+    for (int i = 0; i < 3; i++) {
+      assertEquals(i * 100000, index.timesUs[i]);
+      assertClusterAt(data, index.offsets[i]);
+    }
+    assertEquals(index.offsets[1] - index.offsets[0], index.sizes[0]);
+    assertEquals(index.offsets[2] - index.offsets[1], index.sizes[1]);
+  }
+
+  public void testSeekBeforeCuesReadSkipsToNextCluster() throws IOException, InterruptedException {
+    useLazyCues();
+    byte[] media = createFrameData(100);
+    byte[] data = getStreamWithCuesAtEnd(media);
+    ExtractorInput input = TestUtil.createTestExtractorInput(data);
+    assertEquals(Extractor.RESULT_CONTINUE, extractor.read(input, new PositionHolder()));
+
+    // Seek to an estimated position part way through the second Cluster.
+    SeekMap seekMap = extractorOutput.seekMap;
+    int seekPosition = (int) seekMap.getPosition(TEST_DURATION_US / 2);
+    assertTrue(seekPosition > seekMap.getPosition(0));
+    extractor.seek();
+    consumeTestData(data, TestUtil.createTestExtractorInput(data, seekPosition));
+
+    // The extractor should have skipped to the third Cluster, and read the Cues at the end.
+    getVideoOutput().assertSampleCount(2);
+    assertSample(0, media, 0, true, false, null, getVideoOutput());
+    assertSample(1, media, 200000, true, false, null, getVideoOutput());
+    assertEquals(3, ((ChunkIndex) extractorOutput.seekMap).length);
+  }
+
+  private void useLazyCues() {
+    extractor = new WebmExtractor(WebmExtractor.FLAG_READ_CUES_LAZILY);
+    extractor.init(extractorOutput);
+  }
+
+  private static byte[] getStreamWithCuesAtEnd(byte[] media) {
+    return new StreamBuilder()
+        .setHeader(WEBM_DOC_TYPE)
+        .setInfo(DEFAULT_TIMECODE_SCALE, TEST_DURATION_US)
+        .addVp9Track(TEST_WIDTH, TEST_HEIGHT, null)
+        .addSimpleBlockMedia(1 /* trackNumber */, 0 /* clusterTimecode */, 0 /* blockTimecode */,
+            true /* keyframe */, false /* invisible */, media)
+        .addSimpleBlockMedia(1 /* trackNumber */, 100 /* clusterTimecode */,
+            0 /* blockTimecode */, true /* keyframe */, false /* invisible */, media)
+        .addSimpleBlockMedia(1 /* trackNumber */, 200 /* clusterTimecode */,
+            0 /* blockTimecode */, true /* keyframe */, false /* invisible */, media)
+        .buildWithCuesAtEnd();
+  }
+
+  /**
+   * Reads {@code data} to the end from {@code input}, following seeks requested by the extractor.
+   *
+   * @return The number of seeks requested by the extractor.
+   */
+  private int consumeTestData(byte[] data, ExtractorInput input)
+      throws IOException, InterruptedException {
+    PositionHolder seekPosition = new PositionHolder();
+    int result = Extractor.RESULT_CONTINUE;
+    int seekCount = 0;
+    while (result != Extractor.RESULT_END_OF_INPUT) {
+      result = extractor.read(input, seekPosition);
+      if (result == Extractor.RESULT_SEEK) {
+        input = TestUtil.createTestExtractorInput(data, (int) seekPosition.position);
+        seekCount++;
+      }
+    }
+    return seekCount;
+  }
+
+  private static void assertClusterAt(byte[] data, long position) {
+    int id = ByteBuffer.wrap(data, (int) position, 4).getInt();
+    assertEquals(0x1F43B675, id);
+  }
+
   private FakeTrackOutput getVideoOutput() {
     // In the sample data the video track has id 1.
     return extractorOutput.trackOutputs.get(1);
@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer.smoothstreaming;
+
+import com.google.android.exoplayer.smoothstreaming.SmoothStreamingManifest.StreamElement;
+
+import android.util.Log;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+/**
+ * Unit test for {@link SmoothStreamingManifestParser}.
+ */
+public class SmoothStreamingManifestParserTest extends TestCase {
+
+  private static final String TAG = "SmoothStreamingManifestParserTest";
+
+  private static final String URL = "https://example.com/test.ism/Manifest";
+
+  // A 4 hour live archive of 2 second chunks.
+  private static final int CHUNK_COUNT = 7200;
+  private static final long CHUNK_DURATION = 20000000L;
+  private static final int REFRESH_CHUNK_STEP = 3;
+  private static final int BENCHMARK_WARMUP_ITERATIONS = 3;
+  private static final int BENCHMARK_REFRESH_COUNT = 100;
+
+  public void testParseLiveArchiveRefreshes() throws IOException {
+    SmoothStreamingManifestParser parser = new SmoothStreamingManifestParser();
+    SmoothStreamingManifest manifest = parse(parser, 0, CHUNK_COUNT);
+    assertLiveArchive(manifest, 0, CHUNK_COUNT);
+
+    // Each refresh slides the window forward by a few chunks.
+    SmoothStreamingManifest previousManifest = manifest;
+    for (int firstChunk = REFRESH_CHUNK_STEP; firstChunk < 300;
+        firstChunk += REFRESH_CHUNK_STEP) {
+      manifest = parse(parser, firstChunk, CHUNK_COUNT);
+      assertLiveArchive(manifest, firstChunk, CHUNK_COUNT);
+      // Refreshing must not affect elements of the previous manifest.
+      assertLiveArchive(previousManifest, firstChunk - REFRESH_CHUNK_STEP, CHUNK_COUNT);
+      previousManifest = manifest;
+    }
+  }
+
+  public void testParseRefreshWithGap() throws IOException {
+    SmoothStreamingManifestParser parser = new SmoothStreamingManifestParser();
+    assertLiveArchive(parse(parser, 0, 10), 0, 10);
+    assertLiveArchive(parse(parser, 20, 10), 20, 10);
+    // A window that moves backwards is parsed from scratch.
+    assertLiveArchive(parse(parser, 5, 10), 5, 10);
+  }
+
+  public void testParseLiveArchiveBenchmark() throws IOException {
+    byte[][] manifests = new byte[BENCHMARK_REFRESH_COUNT + 1][];
+    for (int i = 0; i < manifests.length; i++) {
+      manifests[i] = buildManifest(i * REFRESH_CHUNK_STEP, CHUNK_COUNT);
+    }
+    for (int i = 0; i < BENCHMARK_WARMUP_ITERATIONS; i++) {
+      SmoothStreamingManifestParser parser = new SmoothStreamingManifestParser();
+      for (int j = 0; j < manifests.length; j++) {
+        parser.parse(URL, new ByteArrayInputStream(manifests[j]));
+      }
+    }
+
+    SmoothStreamingManifestParser parser = new SmoothStreamingManifestParser();
+    long startTimeNs = System.nanoTime();
+    parser.parse(URL, new ByteArrayInputStream(manifests[0]));
+    long initialParseTimeUs = (System.nanoTime() - startTimeNs) / 1000;
+
+    SmoothStreamingManifest manifest = null;
+    startTimeNs = System.nanoTime();
+    for (int i = 1; i < manifests.length; i++) {
+      manifest = parser.parse(URL, new ByteArrayInputStream(manifests[i]));
+    }
+    long refreshTimeUs = (System.nanoTime() - startTimeNs) / (1000 * BENCHMARK_REFRESH_COUNT);
+    assertLiveArchive(manifest, BENCHMARK_REFRESH_COUNT * REFRESH_CHUNK_STEP, CHUNK_COUNT);
+
+    // Measure the heap retained by a refreshed manifest.
+    Runtime runtime = Runtime.getRuntime();
+    runtime.gc();
+    long usedMemoryBefore = runtime.totalMemory() - runtime.freeMemory();
+    manifest = parser.parse(URL, new ByteArrayInputStream(manifests[0]));
+    runtime.gc();
+    long retainedBytes = runtime.totalMemory() - runtime.freeMemory() - usedMemoryBefore;
+    assertEquals(CHUNK_COUNT, manifest.streamElements[0].chunkCount);
+
+    Log.i(TAG, "Parsed " + CHUNK_COUNT + " chunk live archive (" + (manifests[0].length / 1024)
+        + "KB): " + initialParseTimeUs + "us initial parse, " + refreshTimeUs
+        + "us per refresh, ~" + (retainedBytes / 1024) + "KB retained");
+  }
+
+  private static void assertLiveArchive(SmoothStreamingManifest manifest, int firstChunk,
+      int chunkCount) {
+    assertEquals(2, manifest.streamElements.length);
+    for (StreamElement streamElement : manifest.streamElements) {
+      assertEquals(chunkCount, streamElement.chunkCount);
+      assertEquals(firstChunk * 2000000L, streamElement.getStartTimeUs(0));
+      assertEquals((firstChunk + chunkCount - 1) * 2000000L,
+          streamElement.getStartTimeUs(chunkCount - 1));
+      assertEquals(2000000L, streamElement.getChunkDurationUs(chunkCount / 2));
+      assertEquals(chunkCount / 2, streamElement.getChunkIndex(
+          streamElement.getStartTimeUs(chunkCount / 2) + 1000000L));
+      assertEquals(0, streamElement.getChunkIndex(0));
+      String chunkUri = streamElement.buildRequestUri(0, 1).toString();
+      assertTrue(chunkUri.endsWith("=" + ((firstChunk + 1) * CHUNK_DURATION) + ")"));
+    }
+  }
+
+  private static SmoothStreamingManifest parse(SmoothStreamingManifestParser parser,
+      int firstChunk, int chunkCount) throws IOException {
+    return parser.parse(URL, new ByteArrayInputStream(buildManifest(firstChunk, chunkCount)));
+  }
+
+  private static byte[] buildManifest(int firstChunk, int chunkCount) {
+    StringBuilder builder = new StringBuilder();
+    builder.append("<SmoothStreamingMedia MajorVersion=\"2\" MinorVersion=\"0\" Duration=\"0\" ")
+        .append("IsLive=\"TRUE\" DVRWindowLength=\"").append(chunkCount * CHUNK_DURATION)
+        .append("\">");
+    appendStreamIndex(builder, "video", "<QualityLevel Index=\"0\" Bitrate=\"1000000\" "
+        + "FourCC=\"AVC1\" MaxWidth=\"1280\" MaxHeight=\"720\" "
+        + "CodecPrivateData=\"00000001674D401F\"/>", firstChunk, chunkCount);
+    appendStreamIndex(builder, "audio", "<QualityLevel Index=\"0\" Bitrate=\"128000\" "
+        + "FourCC=\"AACL\" SamplingRate=\"48000\" Channels=\"2\" "
+        + "CodecPrivateData=\"1190\"/>", firstChunk, chunkCount);
+    builder.append("</SmoothStreamingMedia>");
+    return builder.toString().getBytes();
+  }
+
+  private static void appendStreamIndex(StringBuilder builder, String type, String qualityLevel,
+      int firstChunk, int chunkCount) {
+    builder.append("<StreamIndex Type=\"").append(type).append("\" QualityLevels=\"1\" ")
+        .append("Url=\"QualityLevels({bitrate})/Fragments(").append(type)
+        .append("={start time})\">").append(qualityLevel);
+    builder.append("<c t=\"").append(firstChunk * CHUNK_DURATION).append("\" d=\"")
+        .append(CHUNK_DURATION).append("\"/>");
+    for (int i = 1; i < chunkCount; i++) {
+      builder.append("<c d=\"").append(CHUNK_DURATION).append("\"/>");
+    }
+    builder.append("</StreamIndex>");
+  }
+
+}
@@ -81,6 +81,23 @@ public final class FakeTrackOutput implements TrackOutput {
     sampleEncryptionKeys.add(encryptionKey);
   }
 
+  @Override
+  public void sampleMetadata(int sampleCount, long[] timesUs, int[] flags, int[] sizes, int offset,
+      byte[] encryptionKey) {
+    int bytesAfterSample = offset;
+    for (int i = 0; i < sampleCount; i++) {
+      bytesAfterSample += sizes[i];
+    }
+    for (int i = 0; i < sampleCount; i++) {
+      bytesAfterSample -= sizes[i];
+      sampleMetadata(timesUs[i], flags[i], sizes[i], bytesAfterSample, encryptionKey);
+    }
+  }
+
+  public int getSampleCount() {
+    return sampleTimesUs.size();
+  }
+
   public void assertSampleCount(int count) {
     TestCase.assertEquals(count, sampleTimesUs.size());
   }
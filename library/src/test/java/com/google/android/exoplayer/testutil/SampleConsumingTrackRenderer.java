@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer.testutil;
+
+import com.google.android.exoplayer.ExoPlaybackException;
+import com.google.android.exoplayer.MediaFormatHolder;
+import com.google.android.exoplayer.SampleHolder;
+import com.google.android.exoplayer.SampleSource;
+import com.google.android.exoplayer.SampleSource.SampleSourceReader;
+import com.google.android.exoplayer.TrackRenderer;
+
+import java.io.IOException;
+
+/**
+ * A {@link TrackRenderer} that consumes the samples of a track without decoding them, discarding
+ * each sample once the playback position reaches its timestamp.
+ * <p>
+ * Allows the throughput of a {@link SampleSource} to be measured without any real decoders, for
+ * example by a player running on a {@link com.google.android.exoplayer.util.HeadlessMessageLoop}.
+ */
+public final class SampleConsumingTrackRenderer extends TrackRenderer {
+
+  private final SampleSourceReader source;
+  private final int trackIndex;
+  private final MediaFormatHolder formatHolder;
+  private final SampleHolder sampleHolder;
+
+  private boolean hasPendingSample;
+  private boolean inputStreamEnded;
+
+  // Written only by the playback thread.
+  private volatile int sampleCount;
+  private volatile long sampleBytes;
+
+  /**
+   * @param source The source from which to read samples.
+   * @param trackIndex The index of the track to consume.
+   */
+  public SampleConsumingTrackRenderer(SampleSource source, int trackIndex) {
+    this.source = source.register();
+    this.trackIndex = trackIndex;
+    formatHolder = new MediaFormatHolder();
+    sampleHolder = new SampleHolder(SampleHolder.BUFFER_REPLACEMENT_MODE_NORMAL);
+  }
+
+  /**
+   * Returns the number of samples consumed.
+   */
+  public int getSampleCount() {
+    return sampleCount;
+  }
+
+  /**
+   * Returns the total size of the samples consumed, in bytes.
+   */
+  public long getSampleBytes() {
+    return sampleBytes;
+  }
+
+  @Override
+  protected int doPrepare(long positionUs) throws ExoPlaybackException {
+    try {
+      if (!source.prepare(positionUs)) {
+        return TrackRenderer.STATE_UNPREPARED;
+      }
+    } catch (IOException e) {
+      throw new ExoPlaybackException(e);
+    }
+    return trackIndex < source.getTrackCount() ? TrackRenderer.STATE_PREPARED
+        : TrackRenderer.STATE_IGNORE;
+  }
+
+  @Override
+  protected void onEnabled(long positionUs, boolean joining) {
+    source.enable(trackIndex, positionUs);
+    seekToInternal();
+  }
+
+  @Override
+  protected void seekTo(long positionUs) {
+    source.seekToUs(positionUs);
+    seekToInternal();
+  }
+
+  private void seekToInternal() {
+    hasPendingSample = false;
+    inputStreamEnded = false;
+  }
+
+  @Override
+  protected void doSomeWork(long positionUs, long elapsedRealtimeUs)
+      throws ExoPlaybackException {
+    try {
+      source.continueBuffering(trackIndex, positionUs);
+      while (!inputStreamEnded) {
+        if (!hasPendingSample) {
+          int result = source.readData(trackIndex, positionUs, formatHolder, sampleHolder, false);
+          if (result == SampleSource.SAMPLE_READ) {
+            hasPendingSample = true;
+          } else if (result == SampleSource.END_OF_STREAM) {
+            inputStreamEnded = true;
+          } else if (result == SampleSource.NOTHING_READ) {
+            return;
+          }
+        } else if (sampleHolder.timeUs <= positionUs) {
+          sampleCount++;
+          sampleBytes += sampleHolder.size;
+          sampleHolder.clearData();
+          hasPendingSample = false;
+        } else {
+          return;
+        }
+      }
+    } catch (IOException e) {
+      throw new ExoPlaybackException(e);
+    }
+  }
+
+  @Override
+  protected void onDisabled() {
+    source.disable(trackIndex);
+  }
+
+  @Override
+  protected void onReleased() {
+    source.release();
+  }
+
+  @Override
+  protected long getDurationUs() {
+    return source.getTrackInfo(trackIndex).durationUs;
+  }
+
+  @Override
+  protected long getBufferedPositionUs() {
+    return source.getBufferedPositionUs();
+  }
+
+  @Override
+  protected boolean isEnded() {
+    return inputStreamEnded;
+  }
+
+  @Override
+  protected boolean isReady() {
+    return hasPendingSample || inputStreamEnded;
+  }
+
+}
@@ -99,6 +99,15 @@ public class TestUtil {
     return joined;
   }
 
+  /**
+   * Returns an ID3v2.4 tag header for a tag whose length excluding the header is
+   * {@code tagLength}. The length is encoded in the header's four synchsafe size bytes.
+   */
+  public static byte[] createId3Header(int tagLength) {
+    return createByteArray('I', 'D', '3', 4, 0, 0, (tagLength >> 21) & 0x7F,
+        (tagLength >> 14) & 0x7F, (tagLength >> 7) & 0x7F, tagLength & 0x7F);
+  }
+
   public static void setUpMockito(InstrumentationTestCase instrumentationTestCase) {
     // Workaround for https://code.google.com/p/dexmaker/issues/detail?id=2.
     System.setProperty("dexmaker.dexcache",
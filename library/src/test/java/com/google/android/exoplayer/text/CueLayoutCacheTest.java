@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer.text;
+
+import com.google.android.exoplayer.text.CuePainter.CueLayout;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests for {@link CueLayoutCache}.
+ */
+public class CueLayoutCacheTest extends TestCase {
+
+  private static final CaptionStyleCompat STYLE = CaptionStyleCompat.DEFAULT;
+  private static final CaptionStyleCompat OTHER_STYLE = new CaptionStyleCompat(0, 0, 0,
+      CaptionStyleCompat.EDGE_TYPE_NONE, 0, null);
+
+  private FakeLayouter layouter;
+  private CueLayoutCache cache;
+
+  @Override
+  public void setUp() {
+    layouter = new FakeLayouter();
+    cache = new CueLayoutCache(layouter);
+  }
+
+  public void testLayoutCachedByCue() {
+    cache.setConfiguration(STYLE, 1, 0, 0, 640, 360);
+    Cue cue = new Cue("cue");
+    Cue otherCue = new Cue("cue");
+    CueLayout layout = cache.getLayout(cue);
+    assertSame(layout, cache.getLayout(cue));
+    assertEquals(1, layouter.layoutCount);
+    // Cues are cached by identity, not by value.
+    assertNotSame(layout, cache.getLayout(otherCue));
+    assertEquals(2, layouter.layoutCount);
+  }
+
+  public void testLayoutUsesConfiguration() {
+    cache.setConfiguration(STYLE, 1.5f, 10, 20, 640, 360);
+    cache.getLayout(new Cue("cue"));
+    assertSame(STYLE, layouter.lastStyle);
+    assertEquals(1.5f, layouter.lastFontScale);
+    assertTrue(Arrays.equals(new int[] {10, 20, 640, 360}, layouter.lastBounds));
+  }
+
+  public void testSetSameConfigurationKeepsLayouts() {
+    cache.setConfiguration(STYLE, 1, 0, 0, 640, 360);
+    Cue cue = new Cue("cue");
+    CueLayout layout = cache.getLayout(cue);
+    cache.setConfiguration(STYLE, 1, 0, 0, 640, 360);
+    assertSame(layout, cache.getLayout(cue));
+    assertEquals(1, layouter.layoutCount);
+  }
+
+  public void testSetChangedConfigurationClearsLayouts() {
+    cache.setConfiguration(STYLE, 1, 0, 0, 640, 360);
+    Cue cue = new Cue("cue");
+    cache.getLayout(cue);
+    assertInvalidates(cue, OTHER_STYLE, 1, 0, 0, 640, 360);
+    assertInvalidates(cue, OTHER_STYLE, 2, 0, 0, 640, 360);
+    assertInvalidates(cue, OTHER_STYLE, 2, 1, 0, 640, 360);
+    assertInvalidates(cue, OTHER_STYLE, 2, 1, 1, 640, 360);
+    assertInvalidates(cue, OTHER_STYLE, 2, 1, 1, 641, 360);
+    assertInvalidates(cue, OTHER_STYLE, 2, 1, 1, 641, 361);
+  }
+
+  public void testLayoutForSupersededConfigurationNotCached() {
+    cache.setConfiguration(STYLE, 1, 0, 0, 640, 360);
+    Cue cue = new Cue("cue");
+    // The configuration changes whilst the cue is being laid out, as it would if the view were
+    // resized whilst another thread prepared the cue.
+    layouter.configurationDuringLayout = new Runnable() {
+      @Override
+      public void run() {
+        cache.setConfiguration(STYLE, 1, 0, 0, 1280, 720);
+      }
+    };
+    CueLayout staleLayout = cache.getLayout(cue);
+    layouter.configurationDuringLayout = null;
+    CueLayout layout = cache.getLayout(cue);
+    assertNotSame(staleLayout, layout);
+    assertEquals(2, layouter.layoutCount);
+    assertTrue(Arrays.equals(new int[] {0, 0, 1280, 720}, layouter.lastBounds));
+    assertSame(layout, cache.getLayout(cue));
+  }
+
+  public void testLeastRecentlyUsedLayoutEvicted() {
+    cache.setConfiguration(STYLE, 1, 0, 0, 640, 360);
+    List<Cue> cues = new ArrayList<>();
+    for (int i = 0; i < CueLayoutCache.MAX_SIZE; i++) {
+      Cue cue = new Cue("cue " + i);
+      cues.add(cue);
+      cache.getLayout(cue);
+    }
+    // Using the first cue makes the second the least recently used.
+    CueLayout firstLayout = cache.getLayout(cues.get(0));
+    cache.getLayout(new Cue("extra cue"));
+    assertEquals(CueLayoutCache.MAX_SIZE + 1, layouter.layoutCount);
+
+    assertSame(firstLayout, cache.getLayout(cues.get(0)));
+    assertEquals(CueLayoutCache.MAX_SIZE + 1, layouter.layoutCount);
+    cache.getLayout(cues.get(1));
+    assertEquals(CueLayoutCache.MAX_SIZE + 2, layouter.layoutCount);
+  }
+
+  public void testPrepareBeforeConfigurationDoesNothing() {
+    cache.prepare(Arrays.asList(new Cue("cue")));
+    assertEquals(0, layouter.layoutCount);
+  }
+
+  public void testPrepareLaysOutUncachedCues() {
+    cache.setConfiguration(STYLE, 1, 0, 0, 640, 360);
+    Cue cachedCue = new Cue("cached");
+    Cue uncachedCue = new Cue("uncached");
+    CueLayout cachedLayout = cache.getLayout(cachedCue);
+    cache.prepare(Arrays.asList(cachedCue, uncachedCue));
+    assertEquals(2, layouter.layoutCount);
+    assertSame(cachedLayout, cache.getLayout(cachedCue));
+    cache.getLayout(uncachedCue);
+    assertEquals(2, layouter.layoutCount);
+  }
+
+  private void assertInvalidates(Cue cue, CaptionStyleCompat style, float fontScale, int left,
+      int top, int right, int bottom) {
+    int layoutCount = layouter.layoutCount;
+    CueLayout layout = cache.getLayout(cue);
+    cache.setConfiguration(style, fontScale, left, top, right, bottom);
+    assertNotSame(layout, cache.getLayout(cue));
+    assertEquals(layoutCount + 1, layouter.layoutCount);
+  }
+
+  private static final class FakeLayouter implements CueLayoutCache.Layouter {
+
+    public int layoutCount;
+    public CaptionStyleCompat lastStyle;
+    public float lastFontScale;
+    public int[] lastBounds;
+    public Runnable configurationDuringLayout;
+
+    @Override
+    public CueLayout layout(Cue cue, CaptionStyleCompat style, float fontScale, int cueBoxLeft,
+        int cueBoxTop, int cueBoxRight, int cueBoxBottom) {
+      layoutCount++;
+      lastStyle = style;
+      lastFontScale = fontScale;
+      lastBounds = new int[] {cueBoxLeft, cueBoxTop, cueBoxRight, cueBoxBottom};
+      if (configurationDuringLayout != null) {
+        configurationDuringLayout.run();
+      }
+      return new CueLayout(null, cueBoxLeft, cueBoxTop, 0);
+    }
+
+  }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer.text.eia608;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for {@link ClosedCaptionQueue}.
+ */
+public class ClosedCaptionQueueTest extends TestCase {
+
+  private ClosedCaptionQueue queue;
+
+  @Override
+  public void setUp() {
+    queue = new ClosedCaptionQueue();
+  }
+
+  public void testRemovesInTimeOrder() {
+    // Samples arrive in decode order, which differs from presentation order.
+    long[] timesUs = new long[] {0, 3000, 1000, 2000, 6000, 4000, 5000};
+    for (long timeUs : timesUs) {
+      add(timeUs, (int) timeUs, false);
+    }
+    for (int i = 0; i < timesUs.length; i++) {
+      assertFirst(i * 1000, i * 1000);
+      queue.removeFirst();
+    }
+    assertTrue(queue.isEmpty());
+  }
+
+  public void testSamplesWithEqualTimesRemovedInOrderAdded() {
+    add(1000, 1, true);
+    add(1000, 2, false);
+    add(0, 3, false);
+    assertFirst(0, 3);
+    queue.removeFirst();
+    assertFirst(1000, 1);
+    assertTrue(queue.isFirstDecodeOnly());
+    queue.removeFirst();
+    assertFirst(1000, 2);
+    assertFalse(queue.isFirstDecodeOnly());
+    queue.removeFirst();
+    assertTrue(queue.isEmpty());
+  }
+
+  public void testGrowsAndReusesSlots() {
+    // Interleave adds and removals so that the ring wraps before the queue grows.
+    int nextRemovedValue = 0;
+    for (int i = 0; i < 1000; i++) {
+      add(i * 1000, i, false);
+      if (i % 3 == 0) {
+        assertFirst(nextRemovedValue * 1000, nextRemovedValue);
+        queue.removeFirst();
+        nextRemovedValue++;
+      }
+    }
+    while (!queue.isEmpty()) {
+      assertFirst(nextRemovedValue * 1000, nextRemovedValue);
+      queue.removeFirst();
+      nextRemovedValue++;
+    }
+    assertEquals(1000, nextRemovedValue);
+  }
+
+  public void testClear() {
+    add(0, 0, false);
+    add(1000, 1, false);
+    queue.clear();
+    assertTrue(queue.isEmpty());
+    add(2000, 2, false);
+    assertFirst(2000, 2);
+  }
+
+  /**
+   * Adds a sample whose captions are {@code value % 7 + 1} consecutive ints starting at
+   * {@code value}.
+   */
+  private void add(long timeUs, int value, boolean decodeOnly) {
+    int[] captions = new int[ClosedCaptionQueue.MAX_CAPTIONS_PER_SAMPLE];
+    int captionCount = value % 7 + 1;
+    for (int i = 0; i < captionCount; i++) {
+      captions[i] = value + i;
+    }
+    queue.add(timeUs, decodeOnly, captions, captionCount);
+  }
+
+  private void assertFirst(long timeUs, int value) {
+    assertFalse(queue.isEmpty());
+    assertEquals(timeUs, queue.getFirstTimeUs());
+    assertEquals(value % 7 + 1, queue.getFirstCaptionCount());
+    for (int i = 0; i < queue.getFirstCaptionCount(); i++) {
+      assertEquals(value + i, queue.getFirstCaption(i));
+    }
+  }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer.text.webvtt;
+
+import junit.framework.TestCase;
+
+import java.nio.charset.Charset;
+
+/**
+ * Unit test for {@link WebvttCueTimingLexer}.
+ */
+public class WebvttCueTimingLexerTest extends TestCase {
+
+  private WebvttCueTimingLexer lexer;
+
+  @Override
+  public void setUp() {
+    lexer = new WebvttCueTimingLexer();
+  }
+
+  public void testLexMinutesAndSeconds() {
+    byte[] line = getBytes("00:01.500 --> 01:02.003");
+    assertEquals(WebvttCueTimingLexer.RESULT_OK, lexer.lex(line, 0, line.length));
+    assertEquals(1500000, lexer.startTimeUs);
+    assertEquals(62003000, lexer.endTimeUs);
+    assertEquals(line.length, lexer.settingsPosition);
+  }
+
+  public void testLexHours() {
+    byte[] line = getBytes("01:00:00.000 --> 123:59:59.999");
+    assertEquals(WebvttCueTimingLexer.RESULT_OK, lexer.lex(line, 0, line.length));
+    assertEquals(3600000000L, lexer.startTimeUs);
+    assertEquals(((123 * 60 + 59) * 60 + 59) * 1000000L + 999000, lexer.endTimeUs);
+  }
+
+  public void testLexSettingsPosition() {
+    byte[] line = getBytes("x\t00:00.000-->00:01.000 align:start line:0\r\n");
+    // Lex the line between the identifier and the terminator.
+    assertEquals(WebvttCueTimingLexer.RESULT_OK, lexer.lex(line, 1, line.length - 2));
+    assertEquals(0, lexer.startTimeUs);
+    assertEquals(1000000, lexer.endTimeUs);
+    assertEquals(" align:start line:0", new String(line, lexer.settingsPosition,
+        line.length - 2 - lexer.settingsPosition, Charset.forName("UTF-8")));
+  }
+
+  public void testLexInvalidStartTime() {
+    assertResult(WebvttCueTimingLexer.RESULT_INVALID_START_TIME, "");
+    assertResult(WebvttCueTimingLexer.RESULT_INVALID_START_TIME, "--> 00:01.000");
+    assertResult(WebvttCueTimingLexer.RESULT_INVALID_START_TIME, "0:01.000 --> 00:02.000");
+    assertResult(WebvttCueTimingLexer.RESULT_INVALID_START_TIME, "00:60.000 --> 01:00.000");
+    assertResult(WebvttCueTimingLexer.RESULT_INVALID_START_TIME, "00:01.00 --> 00:02.000");
+    assertResult(WebvttCueTimingLexer.RESULT_INVALID_START_TIME, "00:01:1.000 --> 00:02.000");
+  }
+
+  public void testLexInvalidEndTime() {
+    assertResult(WebvttCueTimingLexer.RESULT_INVALID_END_TIME, "00:01.000");
+    assertResult(WebvttCueTimingLexer.RESULT_INVALID_END_TIME, "00:01.000 -> 00:02.000");
+    assertResult(WebvttCueTimingLexer.RESULT_INVALID_END_TIME, "00:01.000 --> 00:02.0000");
+    assertResult(WebvttCueTimingLexer.RESULT_INVALID_END_TIME, "00:01.000 --> 00:02");
+  }
+
+  public void testContainsArrow() {
+    byte[] line = getBytes("a --> b");
+    assertTrue(WebvttCueTimingLexer.containsArrow(line, 0, line.length));
+    assertFalse(WebvttCueTimingLexer.containsArrow(line, 0, 4));
+    assertFalse(WebvttCueTimingLexer.containsArrow(getBytes("identifier-->"), 0, 12));
+  }
+
+  private void assertResult(int expectedResult, String line) {
+    byte[] bytes = getBytes(line);
+    assertEquals(line, expectedResult, lexer.lex(bytes, 0, bytes.length));
+  }
+
+  private static byte[] getBytes(String s) {
+    return s.getBytes(Charset.forName("UTF-8"));
+  }
+
+}
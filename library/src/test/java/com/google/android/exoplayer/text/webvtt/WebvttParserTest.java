@@ -16,23 +16,41 @@
 package com.google.android.exoplayer.text.webvtt;
 
 import com.google.android.exoplayer.C;
+import com.google.android.exoplayer.text.Cue;
 
 import android.test.InstrumentationTestCase;
+import android.util.Log;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.List;
 
 /**
  * Unit test for {@link WebvttParser}.
  */
 public class WebvttParserTest extends InstrumentationTestCase {
 
+  private static final String TAG = "WebvttParserTest";
+
   private static final String TYPICAL_WEBVTT_FILE = "webvtt/typical";
   private static final String TYPICAL_WITH_IDS_WEBVTT_FILE = "webvtt/typical_with_identifiers";
   private static final String TYPICAL_WITH_TAGS_WEBVTT_FILE = "webvtt/typical_with_tags";
   private static final String LIVE_TYPICAL_WEBVTT_FILE = "webvtt/live_typical";
   private static final String EMPTY_WEBVTT_FILE = "webvtt/empty";
 
+  private static final String TWO_CUES_WEBVTT = "WEBVTT\n"
+      + "\n"
+      + "00:00.000 --> 00:01.234\n"
+      + "This is the first subtitle.\n"
+      + "\n"
+      + "00:02.345 --> 00:03.456 align:start\n"
+      + "This is the second subtitle.\n";
+
+  private static final int LARGE_FILE_CUE_COUNT = 50000;
+  private static final int BENCHMARK_WARMUP_ITERATIONS = 3;
+  private static final int BENCHMARK_ITERATIONS = 5;
+
   public void testParseNullWebvttFile() throws IOException {
     WebvttParser parser = new WebvttParser();
     InputStream inputStream =
@@ -156,4 +174,138 @@ public class WebvttParserTest extends InstrumentationTestCase {
     assertEquals(startTimeUs + 3456000, subtitle.getEventTime(3));
   }
 
+  public void testParseCarriageReturnLineTerminators() throws IOException {
+    assertTwoCues(parse(new WebvttParser(), TWO_CUES_WEBVTT.replace("\n", "\r"), 0));
+  }
+
+  public void testParseCarriageReturnLineFeedLineTerminators() throws IOException {
+    assertTwoCues(parse(new WebvttParser(), TWO_CUES_WEBVTT.replace("\n", "\r\n"), 0));
+  }
+
+  public void testParseSkipsBlankLinesBetweenCues() throws IOException {
+    String webvtt = TWO_CUES_WEBVTT.replace("subtitle.\n\n", "subtitle.\n\n\n\r\n\n")
+        + "\n\n";
+    assertTwoCues(parse(new WebvttParser(), webvtt, 0));
+  }
+
+  public void testIncrementalParseCarriesOverActiveCues() throws IOException {
+    WebvttParser parser = new WebvttParser(false, true);
+    parse(parser, "WEBVTT\n\n"
+        + "00:00.000 --> 00:00.500\nEnded.\n\n"
+        + "00:00.800 --> 00:01.500\nStraddling.\n", 0);
+    WebvttSubtitle subtitle = parse(parser, "WEBVTT\n\n"
+        + "00:00.600 --> 00:00.900\nNew.\n", 1000000);
+
+    // The straddling cue is carried over. The cue that ended before the segment isn't.
+    assertEquals(1000000, subtitle.getStartTime());
+    assertEquals(4, subtitle.getEventTimeCount());
+    assertEquals(800000, subtitle.getEventTime(0));
+    assertEquals(1500000, subtitle.getEventTime(1));
+    assertEquals(1600000, subtitle.getEventTime(2));
+    assertEquals(1900000, subtitle.getEventTime(3));
+    assertCueText("Straddling.", subtitle.getCues(1200000));
+    assertCueText("New.", subtitle.getCues(1700000));
+  }
+
+  public void testIncrementalParseDoesNotDuplicateRepeatedCues() throws IOException {
+    WebvttParser parser = new WebvttParser(false, true);
+    parse(parser, "WEBVTT\n\n"
+        + "00:00.800 --> 00:01.500\nRepeated.\n", 0);
+    // The next segment repeats the cue that straddles the segment boundary.
+    WebvttSubtitle subtitle = parse(parser, "WEBVTT\n\n"
+        + "00:00.800 --> 00:01.500\nRepeated.\n\n"
+        + "00:01.600 --> 00:01.900\nNew.\n", 0);
+    assertEquals(4, subtitle.getEventTimeCount());
+    assertCueText("Repeated.", subtitle.getCues(1000000));
+    assertCueText("New.", subtitle.getCues(1700000));
+  }
+
+  public void testIncrementalParseAfterSeekDiscardsPreviousCues() throws IOException {
+    WebvttParser parser = new WebvttParser(false, true);
+    parse(parser, "WEBVTT\n\n"
+        + "00:00.000 --> 00:10.000\nLong.\n", 5000000);
+    // A segment that starts before the previous one follows a seek, so nothing is carried over.
+    WebvttSubtitle subtitle = parse(parser, "WEBVTT\n\n"
+        + "00:00.000 --> 00:01.000\nAfter seek.\n", 0);
+    assertEquals(2, subtitle.getEventTimeCount());
+    assertCueText("After seek.", subtitle.getCues(500000));
+  }
+
+  public void testNonIncrementalParseDoesNotCarryOverCues() throws IOException {
+    WebvttParser parser = new WebvttParser();
+    parse(parser, "WEBVTT\n\n"
+        + "00:00.800 --> 00:01.500\nStraddling.\n", 0);
+    WebvttSubtitle subtitle = parse(parser, "WEBVTT\n\n"
+        + "00:00.600 --> 00:00.900\nNew.\n", 1000000);
+    assertEquals(2, subtitle.getEventTimeCount());
+    assertTrue(subtitle.getCues(1200000).isEmpty());
+  }
+
+  public void testParseAfterLargeFile() throws IOException {
+    WebvttParser parser = new WebvttParser();
+    WebvttSubtitle subtitle = parser.parse(new ByteArrayInputStream(buildLargeWebvttFile()),
+        C.UTF8_NAME, 0);
+    assertEquals(2 * LARGE_FILE_CUE_COUNT, subtitle.getEventTimeCount());
+    // The parser is still usable once it has released the buffer that held the large file.
+    assertTwoCues(parse(parser, TWO_CUES_WEBVTT, 0));
+  }
+
+  public void testParseLargeFileBenchmark() throws IOException {
+    byte[] webvtt = buildLargeWebvttFile();
+    WebvttParser parser = new WebvttParser();
+    for (int i = 0; i < BENCHMARK_WARMUP_ITERATIONS; i++) {
+      parser.parse(new ByteArrayInputStream(webvtt), C.UTF8_NAME, 0);
+    }
+
+    long startTimeNs = System.nanoTime();
+    for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+      parser.parse(new ByteArrayInputStream(webvtt), C.UTF8_NAME, 0);
+    }
+    long parseTimeUs = (System.nanoTime() - startTimeNs) / (1000 * BENCHMARK_ITERATIONS);
+    Log.i(TAG, "Parsed " + LARGE_FILE_CUE_COUNT + " cues (" + (webvtt.length / 1024) + "KB) in "
+        + parseTimeUs + "us per parse, " + (webvtt.length / Math.max(parseTimeUs, 1))
+        + "MB/s");
+  }
+
+  private static WebvttSubtitle parse(WebvttParser parser, String webvtt, long startTimeUs)
+      throws IOException {
+    return parser.parse(new ByteArrayInputStream(webvtt.getBytes(C.UTF8_NAME)), C.UTF8_NAME,
+        startTimeUs);
+  }
+
+  private static void assertTwoCues(WebvttSubtitle subtitle) {
+    assertEquals(4, subtitle.getEventTimeCount());
+    assertEquals(0, subtitle.getEventTime(0));
+    assertEquals(1234000, subtitle.getEventTime(1));
+    assertEquals(2345000, subtitle.getEventTime(2));
+    assertEquals(3456000, subtitle.getEventTime(3));
+    assertCueText("This is the first subtitle.", subtitle.getCues(0));
+    assertCueText("This is the second subtitle.", subtitle.getCues(2345000));
+  }
+
+  private static void assertCueText(String expectedText, List<Cue> cues) {
+    assertEquals(1, cues.size());
+    assertEquals(expectedText, cues.get(0).text.toString());
+  }
+
+  /**
+   * Builds a file of {@link #LARGE_FILE_CUE_COUNT} cues, each with settings and two lines of text.
+   */
+  private static byte[] buildLargeWebvttFile() throws IOException {
+    StringBuilder builder = new StringBuilder("WEBVTT\n\n");
+    for (int i = 0; i < LARGE_FILE_CUE_COUNT; i++) {
+      long startTimeMs = i * 2000L;
+      builder.append(formatTimestamp(startTimeMs)).append(" --> ")
+          .append(formatTimestamp(startTimeMs + 1500)).append(" align:middle position:50%\n")
+          .append("Subtitle number ").append(i).append(",\n")
+          .append("which spans two lines.\n\n");
+    }
+    return builder.toString().getBytes(C.UTF8_NAME);
+  }
+
+  private static String formatTimestamp(long timeMs) {
+    return String.format("%02d:%02d:%02d.%03d", timeMs / 3600000, (timeMs / 60000) % 60,
+        (timeMs / 1000) % 60, timeMs % 1000);
+  }
+
 }
@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer.upstream;
+
+import com.google.android.exoplayer.upstream.Loader.Loadable;
+import com.google.android.exoplayer.util.Clock;
+import com.google.android.exoplayer.util.HeadlessMessageLoop;
+import com.google.android.exoplayer.util.MessageLoop;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for {@link Loader}.
+ */
+public class LoaderTest extends TestCase {
+
+  private static final long TIMEOUT_MS = 5000;
+
+  private HeadlessMessageLoop headlessLoop;
+  private CountingMessageLoop loop;
+  private Loader loader;
+
+  @Override
+  public void setUp() {
+    headlessLoop = new HeadlessMessageLoop("LoaderTest");
+    loop = new CountingMessageLoop(headlessLoop);
+    loader = new Loader("Loader:LoaderTest", loop);
+  }
+
+  @Override
+  public void tearDown() {
+    loader.release();
+    headlessLoop.quit();
+  }
+
+  public void testCallbacksInvokedOnInjectedLoop() throws InterruptedException {
+    RecordingCallback callback = new RecordingCallback();
+    loader.startLoading(new FakeLoadable(null), callback);
+    assertTrue(callback.await());
+    assertEquals(1, callback.completedCount);
+    assertSame(headlessLoop, callback.loop);
+  }
+
+  public void testLoadErrorInvokedOnInjectedLoop() throws InterruptedException {
+    IOException exception = new IOException();
+    RecordingCallback callback = new RecordingCallback();
+    loader.startLoading(new FakeLoadable(exception), callback);
+    assertTrue(callback.await());
+    assertSame(exception, callback.exception);
+    assertSame(headlessLoop, callback.loop);
+  }
+
+  public void testSuccessiveLoadsShareSender() throws InterruptedException {
+    for (int i = 0; i < 3; i++) {
+      RecordingCallback callback = new RecordingCallback();
+      loader.startLoading(new FakeLoadable(null), callback);
+      assertTrue(callback.await());
+      assertEquals(1, callback.completedCount);
+    }
+    assertEquals(1, loop.senderCount);
+  }
+
+  public void testStartLoadingOnHeadlessLoopThread() throws InterruptedException {
+    final Loader threadLoader = new Loader("Loader:LoaderTest");
+    final RecordingCallback callback = new RecordingCallback();
+    // Started without an injected loop, the load reports to the loop running on the thread that
+    // starts it.
+    headlessLoop.createSender(new MessageLoop.Callback() {
+      @Override
+      public void handleMessage(int what, int arg1, int arg2, Object obj) {
+        threadLoader.startLoading(new FakeLoadable(null), callback);
+      }
+    }).sendMessage(0, 0, 0, null);
+    try {
+      assertTrue(callback.await());
+      assertEquals(1, callback.completedCount);
+      assertSame(headlessLoop, callback.loop);
+    } finally {
+      threadLoader.release();
+    }
+  }
+
+  private static final class FakeLoadable implements Loadable {
+
+    private final IOException exception;
+
+    public FakeLoadable(IOException exception) {
+      this.exception = exception;
+    }
+
+    @Override
+    public void cancelLoad() {
+      // Do nothing.
+    }
+
+    @Override
+    public boolean isLoadCanceled() {
+      return false;
+    }
+
+    @Override
+    public void load() throws IOException {
+      if (exception != null) {
+        throw exception;
+      }
+    }
+
+  }
+
+  private static final class RecordingCallback implements Loader.Callback {
+
+    private final CountDownLatch finishedLatch;
+
+    public int completedCount;
+    public IOException exception;
+    public HeadlessMessageLoop loop;
+
+    public RecordingCallback() {
+      finishedLatch = new CountDownLatch(1);
+    }
+
+    public boolean await() throws InterruptedException {
+      return finishedLatch.await(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void onLoadCanceled(Loadable loadable) {
+      fail();
+    }
+
+    @Override
+    public void onLoadCompleted(Loadable loadable) {
+      completedCount++;
+      loop = HeadlessMessageLoop.myLoop();
+      finishedLatch.countDown();
+    }
+
+    @Override
+    public void onLoadError(Loadable loadable, IOException exception) {
+      this.exception = exception;
+      loop = HeadlessMessageLoop.myLoop();
+      finishedLatch.countDown();
+    }
+
+  }
+
+  /**
+   * A {@link MessageLoop} that counts the senders created on the loop that it wraps.
+   */
+  private static final class CountingMessageLoop implements MessageLoop {
+
+    private final MessageLoop loop;
+
+    public volatile int senderCount;
+
+    public CountingMessageLoop(MessageLoop loop) {
+      this.loop = loop;
+    }
+
+    @Override
+    public Sender createSender(Callback callback) {
+      senderCount++;
+      return loop.createSender(callback);
+    }
+
+    @Override
+    public Clock getClock() {
+      return loop.getClock();
+    }
+
+    @Override
+    public void quit() {
+      loop.quit();
+    }
+
+  }
+
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer.util;
+
+import com.google.android.exoplayer.text.Subtitle;
+import com.google.android.exoplayer.text.ttml.TtmlParser;
+import com.google.android.exoplayer.text.webvtt.WebvttParser;
+
+import android.util.Log;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Unit tests for {@link IntervalTree}.
+ */
+public class IntervalTreeTest extends TestCase {
+
+  private static final String TAG = "IntervalTreeTest";
+
+  private static final int BENCHMARK_CUE_COUNT = 50000;
+  private static final long BENCHMARK_CUE_SPACING_US = 2000000;
+  private static final long BENCHMARK_CUE_DURATION_US = 3000000;
+  /** Every hundredth cue lasts this long, so that many cues overlap it. */
+  private static final long BENCHMARK_LONG_CUE_DURATION_US = 60000000;
+  private static final long BENCHMARK_QUERY_STEP_US = 500000;
+  private static final int BENCHMARK_RANDOM_QUERY_COUNT = 100000;
+
+  public void testEmpty() {
+    IntervalTree tree = new IntervalTree(new long[0], new long[0]);
+    assertEquals(0, tree.getIntervalsContaining(0).length);
+  }
+
+  public void testBoundaries() {
+    IntervalTree tree = new IntervalTree(new long[] {0, 10, 10, 5}, new long[] {10, 20, 10, 15});
+    assertIntervals(tree, -1);
+    assertIntervals(tree, 0, 0);
+    assertIntervals(tree, 5, 0, 3);
+    // The end of an interval is exclusive, and the empty interval contains no points.
+    assertIntervals(tree, 10, 1, 3);
+    assertIntervals(tree, 15, 1);
+    assertIntervals(tree, 20);
+  }
+
+  public void testMatchesLinearScan() {
+    Random random = new Random(0);
+    int intervalCount = 1000;
+    long[] starts = new long[intervalCount];
+    long[] ends = new long[intervalCount];
+    for (int i = 0; i < intervalCount; i++) {
+      starts[i] = random.nextInt(10000);
+      // Include some long intervals, some short ones and some empty ones.
+      ends[i] = starts[i] + (i % 10 == 0 ? random.nextInt(5000) : random.nextInt(50));
+    }
+    IntervalTree tree = new IntervalTree(starts, ends);
+    for (long point = -1; point <= 15001; point += 7) {
+      int[] expected = new int[intervalCount];
+      int expectedCount = 0;
+      for (int i = 0; i < intervalCount; i++) {
+        if (starts[i] <= point && point < ends[i]) {
+          expected[expectedCount++] = i;
+        }
+      }
+      assertTrue(Arrays.equals(Arrays.copyOf(expected, expectedCount),
+          tree.getIntervalsContaining(point)));
+    }
+  }
+
+  public void testSubtitleQueryBenchmark() throws IOException {
+    long[] startTimesUs = new long[BENCHMARK_CUE_COUNT];
+    long[] endTimesUs = new long[BENCHMARK_CUE_COUNT];
+    StringBuilder webvtt = new StringBuilder("WEBVTT\n\n");
+    StringBuilder ttml = new StringBuilder("<tt xmlns=\"http://www.w3.org/ns/ttml\"><body><div>");
+    for (int i = 0; i < BENCHMARK_CUE_COUNT; i++) {
+      startTimesUs[i] = i * BENCHMARK_CUE_SPACING_US;
+      endTimesUs[i] = startTimesUs[i]
+          + (i % 100 == 0 ? BENCHMARK_LONG_CUE_DURATION_US : BENCHMARK_CUE_DURATION_US);
+      webvtt.append(formatWebvttTime(startTimesUs[i])).append(" --> ")
+          .append(formatWebvttTime(endTimesUs[i])).append("\nCue ").append(i).append("\n\n");
+      ttml.append("<p begin=\"").append(startTimesUs[i] / 1000).append("ms\" end=\"")
+          .append(endTimesUs[i] / 1000).append("ms\">Cue ").append(i).append("</p>");
+    }
+    ttml.append("</div></body></tt>");
+    byte[] webvttData = webvtt.toString().getBytes("UTF-8");
+    byte[] ttmlData = ttml.toString().getBytes("UTF-8");
+
+    long startTimeNs = System.nanoTime();
+    IntervalTree tree = new IntervalTree(startTimesUs, endTimesUs);
+    long treeBuildTimeUs = (System.nanoTime() - startTimeNs) / 1000;
+    startTimeNs = System.nanoTime();
+    Subtitle webvttSubtitle =
+        new WebvttParser().parse(new ByteArrayInputStream(webvttData), "UTF-8", 0);
+    long webvttParseTimeUs = (System.nanoTime() - startTimeNs) / 1000;
+    startTimeNs = System.nanoTime();
+    Subtitle ttmlSubtitle =
+        new TtmlParser().parse(new ByteArrayInputStream(ttmlData), "UTF-8", 0);
+    long ttmlParseTimeUs = (System.nanoTime() - startTimeNs) / 1000;
+
+    long durationUs = endTimesUs[BENCHMARK_CUE_COUNT - 1];
+    long[] randomTimesUs = new long[BENCHMARK_RANDOM_QUERY_COUNT];
+    Random random = new Random(0);
+    for (int i = 0; i < BENCHMARK_RANDOM_QUERY_COUNT; i++) {
+      randomTimesUs[i] = (long) (random.nextDouble() * durationUs);
+    }
+
+    Log.i(TAG, "Built an interval tree of " + BENCHMARK_CUE_COUNT + " cues in " + treeBuildTimeUs
+        + "us. Queries: " + benchmarkTreeQueries(tree, durationUs, randomTimesUs));
+    Log.i(TAG, "Parsed a WebvttSubtitle of " + BENCHMARK_CUE_COUNT + " cues in "
+        + webvttParseTimeUs + "us. Queries: "
+        + benchmarkSubtitleQueries(webvttSubtitle, durationUs, randomTimesUs));
+    Log.i(TAG, "Parsed a TtmlSubtitle of " + BENCHMARK_CUE_COUNT + " cues in " + ttmlParseTimeUs
+        + "us. Queries: " + benchmarkSubtitleQueries(ttmlSubtitle, durationUs, randomTimesUs));
+  }
+
+  /**
+   * Queries {@code tree} at successive times and at {@code randomTimesUs}, returning a description
+   * of the time taken per query.
+   */
+  private static String benchmarkTreeQueries(IntervalTree tree, long durationUs,
+      long[] randomTimesUs) {
+    int queryCount = 0;
+    int resultCount = 0;
+    long startTimeNs = System.nanoTime();
+    for (long timeUs = 0; timeUs < durationUs; timeUs += BENCHMARK_QUERY_STEP_US) {
+      resultCount += tree.getIntervalsContaining(timeUs).length;
+      queryCount++;
+    }
+    long sequentialTimeNs = (System.nanoTime() - startTimeNs) / queryCount;
+    startTimeNs = System.nanoTime();
+    for (long timeUs : randomTimesUs) {
+      resultCount += tree.getIntervalsContaining(timeUs).length;
+    }
+    long randomTimeNs = (System.nanoTime() - startTimeNs) / randomTimesUs.length;
+    assertTrue(resultCount > 0);
+    return sequentialTimeNs + "ns sequential, " + randomTimeNs + "ns random";
+  }
+
+  /**
+   * Queries {@code subtitle} at successive times, and again once its results are cached, and then
+   * at {@code randomTimesUs}, returning a description of the time taken per query.
+   */
+  private static String benchmarkSubtitleQueries(Subtitle subtitle, long durationUs,
+      long[] randomTimesUs) {
+    assertEquals(durationUs, subtitle.getLastEventTime());
+    long[] sequentialTimesNs = new long[2];
+    int resultCount = 0;
+    for (int pass = 0; pass < sequentialTimesNs.length; pass++) {
+      int queryCount = 0;
+      long startTimeNs = System.nanoTime();
+      for (long timeUs = 0; timeUs < durationUs; timeUs += BENCHMARK_QUERY_STEP_US) {
+        resultCount += subtitle.getCues(timeUs).size();
+        queryCount++;
+      }
+      sequentialTimesNs[pass] = (System.nanoTime() - startTimeNs) / queryCount;
+    }
+    long startTimeNs = System.nanoTime();
+    for (long timeUs : randomTimesUs) {
+      resultCount += subtitle.getCues(timeUs).size();
+    }
+    long randomTimeNs = (System.nanoTime() - startTimeNs) / randomTimesUs.length;
+    assertTrue(resultCount > 0);
+    return sequentialTimesNs[0] + "ns sequential, " + sequentialTimesNs[1]
+        + "ns sequential when cached, " + randomTimeNs + "ns random";
+  }
+
+  private static String formatWebvttTime(long timeUs) {
+    long timeMs = timeUs / 1000;
+    return String.format("%02d:%02d:%02d.%03d", timeMs / 3600000, (timeMs / 60000) % 60,
+        (timeMs / 1000) % 60, timeMs % 1000);
+  }
+
+  private static void assertIntervals(IntervalTree tree, long point, int... expected) {
+    assertTrue(Arrays.toString(tree.getIntervalsContaining(point)),
+        Arrays.equals(expected, tree.getIntervalsContaining(point)));
+  }
+
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer.util;
+
+import com.google.android.exoplayer.upstream.DataSpec;
+import com.google.android.exoplayer.upstream.HttpDataSource;
+import com.google.android.exoplayer.upstream.UriLoadable;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for {@link ManifestFetcher}.
+ */
+public class ManifestFetcherTest extends TestCase {
+
+  private static final String MANIFEST_URI = "http://example.com/manifest";
+  private static final String ETAG = "\"1\"";
+  private static final long TIMEOUT_MS = 5000;
+
+  private HeadlessMessageLoop loop;
+  private FakeHttpDataSource dataSource;
+  private CountingParser parser;
+  private ManifestFetcher<String> manifestFetcher;
+
+  @Override
+  public void setUp() {
+    loop = new HeadlessMessageLoop("ManifestFetcherTest");
+    dataSource = new FakeHttpDataSource();
+    parser = new CountingParser();
+    manifestFetcher = new ManifestFetcher<>(MANIFEST_URI, dataSource, parser);
+  }
+
+  @Override
+  public void tearDown() {
+    loop.quit();
+  }
+
+  public void testNotModifiedRefreshReusesManifest() throws InterruptedException {
+    refreshAndWait(new Condition() {
+      @Override
+      public boolean isMet() {
+        return manifestFetcher.getManifest() != null;
+      }
+    });
+    String manifest = manifestFetcher.getManifest();
+    assertEquals(1, parser.parseCount);
+    assertEquals(0, manifestFetcher.getNotModifiedCount());
+    assertNull(dataSource.requestHeaders.get(0).get("If-None-Match"));
+
+    refreshAndWait(new Condition() {
+      @Override
+      public boolean isMet() {
+        return manifestFetcher.getNotModifiedCount() == 1;
+      }
+    });
+    // The server responded 304, so the previous manifest was reused without being parsed.
+    assertSame(manifest, manifestFetcher.getManifest());
+    assertEquals(1, parser.parseCount);
+    assertNull(manifestFetcher.getError());
+    assertEquals(ETAG, dataSource.requestHeaders.get(1).get("If-None-Match"));
+    // The conditional header isn't left set on the data source.
+    assertTrue(dataSource.requestProperties.isEmpty());
+  }
+
+  public void testModifiedRefreshParsesManifest() throws InterruptedException {
+    refreshAndWait(new Condition() {
+      @Override
+      public boolean isMet() {
+        return manifestFetcher.getManifest() != null;
+      }
+    });
+    dataSource.eTag = "\"2\"";
+    refreshAndWait(new Condition() {
+      @Override
+      public boolean isMet() {
+        return parser.parseCount == 2;
+      }
+    });
+    assertEquals(0, manifestFetcher.getNotModifiedCount());
+    assertEquals(ETAG, dataSource.requestHeaders.get(1).get("If-None-Match"));
+
+    // The next refresh is conditional on the new validator.
+    refreshAndWait(new Condition() {
+      @Override
+      public boolean isMet() {
+        return manifestFetcher.getNotModifiedCount() == 1;
+      }
+    });
+    assertEquals("\"2\"", dataSource.requestHeaders.get(2).get("If-None-Match"));
+    assertTrue(dataSource.requestProperties.isEmpty());
+  }
+
+  private void refreshAndWait(final Condition condition) throws InterruptedException {
+    runOnLoop(new Runnable() {
+      @Override
+      public void run() {
+        manifestFetcher.enable();
+        manifestFetcher.requestRefresh();
+      }
+    });
+    final boolean[] met = new boolean[1];
+    long deadlineMs = System.currentTimeMillis() + TIMEOUT_MS;
+    while (!met[0] && System.currentTimeMillis() < deadlineMs) {
+      // The fetcher's callbacks are invoked on the loop, so the condition is checked there.
+      runOnLoop(new Runnable() {
+        @Override
+        public void run() {
+          met[0] = condition.isMet();
+        }
+      });
+    }
+    assertTrue(met[0]);
+    runOnLoop(new Runnable() {
+      @Override
+      public void run() {
+        manifestFetcher.disable();
+      }
+    });
+  }
+
+  private void runOnLoop(final Runnable runnable) throws InterruptedException {
+    final CountDownLatch ranLatch = new CountDownLatch(1);
+    loop.createSender(new MessageLoop.Callback() {
+      @Override
+      public void handleMessage(int what, int arg1, int arg2, Object obj) {
+        try {
+          runnable.run();
+        } finally {
+          ranLatch.countDown();
+        }
+      }
+    }).sendMessage(0, 0, 0, null);
+    assertTrue(ranLatch.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+  }
+
+  private interface Condition {
+
+    boolean isMet();
+
+  }
+
+  private static final class CountingParser implements UriLoadable.Parser<String> {
+
+    public volatile int parseCount;
+
+    @Override
+    public String parse(String connectionUrl, InputStream inputStream) throws IOException {
+      parseCount++;
+      StringBuilder builder = new StringBuilder();
+      int value;
+      while ((value = inputStream.read()) != -1) {
+        builder.append((char) value);
+      }
+      return builder.toString();
+    }
+
+  }
+
+  /**
+   * A fake {@link HttpDataSource} that responds with 304 (Not Modified) to requests whose
+   * If-None-Match header matches the current ETag.
+   */
+  private static final class FakeHttpDataSource implements HttpDataSource {
+
+    private static final byte[] MANIFEST_DATA = "manifest".getBytes();
+
+    public final Map<String, String> requestProperties;
+    public final List<Map<String, String>> requestHeaders;
+    public volatile String eTag;
+
+    private String uri;
+    private int readPosition;
+
+    public FakeHttpDataSource() {
+      requestProperties = new HashMap<>();
+      requestHeaders = Collections.synchronizedList(new ArrayList<Map<String, String>>());
+      eTag = ETAG;
+    }
+
+    @Override
+    public long open(DataSpec dataSpec) throws HttpDataSourceException {
+      Map<String, String> headers;
+      synchronized (requestProperties) {
+        headers = new HashMap<>(requestProperties);
+      }
+      requestHeaders.add(headers);
+      if (eTag.equals(headers.get("If-None-Match"))) {
+        throw new InvalidResponseCodeException(304,
+            Collections.<String, List<String>>emptyMap(), dataSpec);
+      }
+      uri = dataSpec.uri.toString();
+      readPosition = 0;
+      return MANIFEST_DATA.length;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int readLength) {
+      if (readPosition == MANIFEST_DATA.length) {
+        return -1;
+      }
+      int bytesRead = Math.min(readLength, MANIFEST_DATA.length - readPosition);
+      System.arraycopy(MANIFEST_DATA, readPosition, buffer, offset, bytesRead);
+      readPosition += bytesRead;
+      return bytesRead;
+    }
+
+    @Override
+    public void close() {
+      uri = null;
+    }
+
+    @Override
+    public String getUri() {
+      return uri;
+    }
+
+    @Override
+    public void setRequestProperty(String name, String value) {
+      synchronized (requestProperties) {
+        requestProperties.put(name, value);
+      }
+    }
+
+    @Override
+    public void clearRequestProperty(String name) {
+      synchronized (requestProperties) {
+        requestProperties.remove(name);
+      }
+    }
+
+    @Override
+    public void clearAllRequestProperties() {
+      synchronized (requestProperties) {
+        requestProperties.clear();
+      }
+    }
+
+    @Override
+    public Map<String, List<String>> getResponseHeaders() {
+      return Collections.singletonMap("ETag", Collections.singletonList(eTag));
+    }
+
+  }
+
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer.util;
+
+import com.google.android.exoplayer.util.MetricsRegistry.HistogramSnapshot;
+import com.google.android.exoplayer.util.MetricsRegistry.Snapshot;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for {@link MetricsRegistry}.
+ */
+public class MetricsRegistryTest extends TestCase {
+
+  private MetricsRegistry registry;
+
+  @Override
+  public void setUp() {
+    registry = new MetricsRegistry();
+  }
+
+  public void testGetReturnsSameMetricForSameName() {
+    assertSame(registry.getCounter("a"), registry.getCounter("a"));
+    assertNotSame(registry.getCounter("a"), registry.getCounter("b"));
+    assertSame(registry.getHistogram("a"), registry.getHistogram("a"));
+  }
+
+  public void testSnapshotContainsCounterValues() {
+    registry.getCounter("b").add(5);
+    registry.getCounter("a").increment();
+    registry.getCounter("a").increment();
+    Snapshot snapshot = registry.getSnapshot();
+    assertEquals(2, snapshot.counters.size());
+    assertEquals(2L, (long) snapshot.counters.get("a"));
+    assertEquals(5L, (long) snapshot.counters.get("b"));
+    // Later updates don't affect the snapshot.
+    registry.getCounter("a").increment();
+    assertEquals(2L, (long) snapshot.counters.get("a"));
+  }
+
+  public void testHistogramSnapshot() {
+    MetricsRegistry.Histogram histogram = registry.getHistogram("h");
+    for (int i = 1; i <= 100; i++) {
+      histogram.record(i);
+    }
+    histogram.record(-1);
+    HistogramSnapshot snapshot = registry.getSnapshot().histograms.get("h");
+    assertEquals(101, snapshot.count);
+    assertEquals(5050, snapshot.sum);
+    assertEquals(100, snapshot.max);
+    assertEquals(50, snapshot.getMean(), 0.01);
+    // The bounds are the upper bounds of the buckets containing the percentiles.
+    assertEquals(0, snapshot.getPercentile(0));
+    assertEquals(63, snapshot.getPercentile(50));
+    assertEquals(100, snapshot.getPercentile(99));
+    assertEquals(100, snapshot.getPercentile(100));
+  }
+
+  public void testEmptyHistogramSnapshot() {
+    registry.getHistogram("h");
+    HistogramSnapshot snapshot = registry.getSnapshot().histograms.get("h");
+    assertEquals(0, snapshot.count);
+    assertEquals(0, snapshot.getMean(), 0);
+    assertEquals(0, snapshot.getPercentile(50));
+  }
+
+  public void testConcurrentUpdates() throws InterruptedException {
+    final MetricsRegistry.Counter counter = registry.getCounter("c");
+    final MetricsRegistry.Histogram histogram = registry.getHistogram("h");
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      final int threadIndex = i;
+      threads.add(new Thread() {
+        @Override
+        public void run() {
+          for (int j = 0; j < 10000; j++) {
+            counter.increment();
+            histogram.record(threadIndex * 10000 + j);
+          }
+        }
+      });
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    Snapshot snapshot = registry.getSnapshot();
+    assertEquals(40000L, (long) snapshot.counters.get("c"));
+    assertEquals(40000, snapshot.histograms.get("h").count);
+    assertEquals(39999, snapshot.histograms.get("h").max);
+    assertEquals(39999L * 40000 / 2, snapshot.histograms.get("h").sum);
+  }
+
+}
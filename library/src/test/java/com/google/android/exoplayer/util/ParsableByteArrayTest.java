@@ -253,4 +253,17 @@ public class ParsableByteArrayTest extends TestCase {
     assertTrue(Arrays.equals(parsableByteArray.data, copy));
   }
 
+  public void testReadNullTerminatedString() {
+    byte[] bytes = new byte[] {'f', 'o', 'o', 0, 'b', 'a', 'r'};
+    ParsableByteArray parsableByteArray = new ParsableByteArray(bytes);
+
+    // When reading a terminated string
+    assertEquals("foo", parsableByteArray.readNullTerminatedString());
+    // Then the position is after the terminating byte.
+    assertEquals(4, parsableByteArray.getPosition());
+    // When reading an unterminated string, the remaining bytes are read.
+    assertEquals("bar", parsableByteArray.readNullTerminatedString());
+    assertEquals(bytes.length, parsableByteArray.getPosition());
+  }
+
 }